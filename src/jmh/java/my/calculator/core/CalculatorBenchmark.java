@@ -0,0 +1,102 @@
+package my.calculator.core;
+
+import java.math.BigDecimal;
+import java.math.MathContext;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Measures each phase of the calculator pipeline, and the whole of it, over representative
+ * expression shapes.
+ *
+ * Phases are benchmarked in isolation on inputs prepared by the previous phase, so a
+ * regression can be pinned to the phase that caused it. The bytecode backend is measured by
+ * {@link EvaluationBenchmark}, since the JIT compiler of the JVM folds constant programs.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Benchmark)
+public class CalculatorBenchmark {
+
+    /** Expression shapes, by name. */
+    private static final Map<String, String> SHAPES = Map.of(
+            "short", "2+3*4",
+            "nested", "((((((((1+2)*3)-4)/5)+6)*7)-8)/9)",
+            "chain", "1+2-3+4-5+6-7+8-9+10-11+12-13+14-15+16-17+18-19+20-21+22-23+24-25",
+            "scientific", "sin(30)+cos(60)*tan(45)-ln(10)+log(100)+√(16)+exp(2)-atan(1)",
+            "implicit", "9sin(90)+2π(3)-4e");
+
+    @Param({"short", "nested", "chain", "scientific", "implicit"})
+    public String shape;
+
+    private String expression;
+    private List<Token> tokens;
+    private List<Token> explicitTokens;
+    private CompiledExpression compiled;
+    private double result;
+
+    @Setup
+    public void setUp() {
+        expression = SHAPES.get(shape);
+        tokens = Lexer.tokenize(expression, Map.of());
+        explicitTokens = CalculatorLogic.insertImplicitMultiplicationOperators(tokens);
+        // Optimized, every shape would fold to a single constant: time the program as parsed
+        compiled = CalculatorEngine.builder().optimizationEnabled(false).jitThreshold(-1).build().compile(expression);
+        result = compiled.evaluate();
+    }
+
+    @Benchmark
+    public List<Token> tokenize() {
+        return Lexer.tokenize(expression, Map.of());
+    }
+
+    @Benchmark
+    public List<Token> implicitMultiplication() {
+        return CalculatorLogic.insertImplicitMultiplicationOperators(tokens);
+    }
+
+    @Benchmark
+    public List<Token> shuntingYard() {
+        return CalculatorLogic.shuntingYard(explicitTokens);
+    }
+
+    @Benchmark
+    public CompiledExpression compile() {
+        return CalculatorLogic.compile(expression);
+    }
+
+    @Benchmark
+    public double evaluate() {
+        return compiled.evaluate();
+    }
+
+    @Benchmark
+    public BigDecimal evaluateDecimal128() {
+        return compiled.evaluate(MathContext.DECIMAL128);
+    }
+
+    @Benchmark
+    public String formatResult() {
+        return CalculatorLogic.formatResult(result);
+    }
+
+    @Benchmark
+    public String calculate() {
+        return CalculatorLogic.calculate(expression);
+    }
+}
@@ -0,0 +1,86 @@
+package my.calculator.core;
+
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OperationsPerInvocation;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Measures the evaluation of compiled expressions with variables by the interpreter, the
+ * bytecode backend and the batch evaluator, with and without the optimizer.
+ *
+ * The constant shapes of {@link CalculatorBenchmark} fold to a single constant, in the
+ * optimizer or in the JIT compiler of the JVM. These shapes read their variables from an
+ * array, so the whole program runs on every evaluation.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Benchmark)
+public class EvaluationBenchmark {
+
+    /** Rows of the batch benchmark; results are reported per row. */
+    private static final int BATCH_SIZE = 1024;
+
+    /** Expression shapes, by name. */
+    private static final Map<String, String> SHAPES = Map.of(
+            "polynomial", "3x^2+sin(x)/(y+1)",
+            "repeated", "(x+y)^2+√((x+y)^2+1)-ln(x+y)",
+            "scientific", "sin(x)*cos(y)+tan(x/2)-exp(y/10)+log(x)+√(y)");
+
+    @Param({"polynomial", "repeated", "scientific"})
+    public String shape;
+
+    @Param({"true", "false"})
+    public boolean optimized;
+
+    private CompiledExpression interpreted;
+    private CompiledExpression promoted;
+    private double[] variables;
+    private double[][] columns;
+    private double[] out;
+
+    @Setup
+    public void setUp() {
+        String expression = SHAPES.get(shape);
+        CalculatorEngine engine = CalculatorEngine.builder().optimizationEnabled(optimized).jitThreshold(-1).build();
+        interpreted = engine.compile(expression, "x", "y");
+        promoted = engine.toBuilder().jitThreshold(0).build().compile(expression, "x", "y");
+        variables = new double[] {1.5, 2};
+        columns = new double[2][BATCH_SIZE];
+        for (int i = 0; i < BATCH_SIZE; i++) {
+            columns[0][i] = 1 + (double) i / BATCH_SIZE;
+            columns[1][i] = 2;
+        }
+        out = new double[BATCH_SIZE];
+    }
+
+    @Benchmark
+    public double evaluate() {
+        return interpreted.evaluate(variables);
+    }
+
+    @Benchmark
+    public double evaluateBytecode() {
+        return promoted.evaluate(variables);
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(BATCH_SIZE)
+    public double[] evaluateBatch() {
+        interpreted.evaluateBatch(columns, out);
+        return out;
+    }
+}
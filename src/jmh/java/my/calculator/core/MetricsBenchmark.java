@@ -0,0 +1,58 @@
+package my.calculator.core;
+
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Measures the cost of {@link EngineMetrics}: the same uncached calculation by an engine
+ * without metrics and by one recording them, from one thread and from four threads sharing
+ * the metrics.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Benchmark)
+public class MetricsBenchmark {
+
+    @Param({"2+3*4", "sin(30)+cos(60)*tan(45)-ln(10)+log(100)+√(16)+exp(2)-atan(1)"})
+    public String expression;
+
+    private CalculatorEngine plain;
+    private CalculatorEngine measured;
+
+    @Setup
+    public void setUp() {
+        // Without caches, every phase runs on every calculation
+        plain = CalculatorEngine.builder().build();
+        measured = plain.toBuilder().metrics(new EngineMetrics()).build();
+    }
+
+    @Benchmark
+    public String withoutMetrics() {
+        return plain.calculate(expression);
+    }
+
+    @Benchmark
+    public String withMetrics() {
+        return measured.calculate(expression);
+    }
+
+    @Benchmark
+    @Threads(4)
+    public String withMetricsContended() {
+        return measured.calculate(expression);
+    }
+}
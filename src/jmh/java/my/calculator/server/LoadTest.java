@@ -0,0 +1,184 @@
+package my.calculator.server;
+
+import java.io.IOException;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Load test of {@link CalculatorServer} from localhost: a number of clients send requests back
+ * to back for a while, and the throughput and the latency percentiles are reported.
+ *
+ * <pre>
+ * mvn -Pbenchmark test-compile exec:exec -Dbenchmark.main=my.calculator.server.LoadTest \
+ *     -Djmh.args="--clients 16 --seconds 10 --batch 100"
+ * </pre>
+ *
+ * Options:
+ * <ul>
+ *     <li>{@code --url URL}: the server to test; by default one is started in this JVM;</li>
+ *     <li>{@code --clients N}: number of concurrent clients, 8 by default;</li>
+ *     <li>{@code --seconds N}: measured duration, 10 by default, after 2 seconds of warm-up;</li>
+ *     <li>{@code --batch N}: send batches of N expressions to /batch instead of single
+ *     expressions to /evaluate.</li>
+ * </ul>
+ */
+public class LoadTest {
+
+    private static final String[] EXPRESSIONS = {
+        "2+3*4", "((((((((1+2)*3)-4)/5)+6)*7)-8)/9)", "sin(30)+cos(60)*tan(45)-ln(10)+log(100)+√(16)",
+        "9sin(90)+2π(3)-4e", "10!/3!", "5/0"
+    };
+
+    public static void main(String[] args) throws Exception {
+        String url = null;
+        int clients = 8;
+        int seconds = 10;
+        int batch = 0;
+        for (int i = 0; i + 1 < args.length; i += 2) {
+            switch (args[i]) {
+                case "--url" -> url = args[i + 1];
+                case "--clients" -> clients = Integer.parseInt(args[i + 1]);
+                case "--seconds" -> seconds = Integer.parseInt(args[i + 1]);
+                case "--batch" -> batch = Integer.parseInt(args[i + 1]);
+                default -> throw new IllegalArgumentException("Unknown option: " + args[i]);
+            }
+        }
+        CalculatorServer server = null;
+        if (url == null) {
+            server = CalculatorServer.start(0);
+            url = "http://localhost:" + server.getPort();
+        }
+        try {
+            HttpClient client = HttpClient.newBuilder().version(HttpClient.Version.HTTP_1_1).build();
+            List<HttpRequest> requests = requests(url, batch);
+            System.out.println("Warming up...");
+            run(client, requests, clients, 2_000_000_000L);
+            System.out.println("Measuring...");
+            Result result = run(client, requests, clients, seconds * 1_000_000_000L);
+            result.print(batch);
+        } finally {
+            if (server != null) {
+                server.close();
+            }
+        }
+    }
+
+    private static List<HttpRequest> requests(String url, int batch) {
+        List<HttpRequest> requests = new ArrayList<>();
+        for (int i = 0; i < EXPRESSIONS.length; i++) {
+            if (batch == 0) {
+                requests.add(HttpRequest.newBuilder(URI.create(url + "/evaluate"))
+                        .POST(HttpRequest.BodyPublishers.ofString(EXPRESSIONS[i])).build());
+            } else {
+                StringBuilder body = new StringBuilder();
+                for (int j = 0; j < batch; j++) {
+                    body.append(EXPRESSIONS[(i + j) % EXPRESSIONS.length]).append('+').append(j).append('\n');
+                }
+                requests.add(HttpRequest.newBuilder(URI.create(url + "/batch"))
+                        .header("Content-Type", "text/plain")
+                        .POST(HttpRequest.BodyPublishers.ofString(body.toString())).build());
+            }
+        }
+        return requests;
+    }
+
+    /**
+     * Sends requests from every client until the duration is over.
+     */
+    private static Result run(HttpClient client, List<HttpRequest> requests, int clients, long durationNanos)
+            throws InterruptedException {
+        long end = System.nanoTime() + durationNanos;
+        AtomicLong failures = new AtomicLong();
+        List<long[]> latencies = new ArrayList<>();
+        int[] counts = new int[clients];
+        Thread[] threads = new Thread[clients];
+        for (int c = 0; c < clients; c++) {
+            long[] own = new long[1 << 16];
+            latencies.add(own);
+            int index = c;
+            threads[c] = new Thread(() -> {
+                long[] samples = own;
+                int count = 0;
+                while (System.nanoTime() < end) {
+                    HttpRequest request = requests.get(count % requests.size());
+                    long start = System.nanoTime();
+                    try {
+                        HttpResponse<String> response = client.send(request, HttpResponse.BodyHandlers.ofString());
+                        // Status 400 is the expected answer to "5/0"
+                        if (response.statusCode() != 200 && response.statusCode() != 400) {
+                            failures.incrementAndGet();
+                        }
+                    } catch (IOException e) {
+                        failures.incrementAndGet();
+                    } catch (InterruptedException e) {
+                        return;
+                    }
+                    if (count == samples.length) {
+                        samples = Arrays.copyOf(samples, count * 2);
+                        latencies.set(index, samples);
+                    }
+                    samples[count++] = System.nanoTime() - start;
+                    counts[index] = count;
+                }
+            }, "load-test-" + c);
+            threads[c].start();
+        }
+        long start = System.nanoTime();
+        for (Thread thread : threads) {
+            thread.join();
+        }
+        long elapsed = System.nanoTime() - start;
+
+        int total = 0;
+        for (int count : counts) {
+            total += count;
+        }
+        long[] all = new long[total];
+        int offset = 0;
+        for (int c = 0; c < clients; c++) {
+            System.arraycopy(latencies.get(c), 0, all, offset, counts[c]);
+            offset += counts[c];
+        }
+        Arrays.sort(all);
+        return new Result(all, elapsed, failures.get());
+    }
+
+    private static final class Result {
+        final long[] sortedLatencies;
+        final long elapsedNanos;
+        final long failures;
+
+        Result(long[] sortedLatencies, long elapsedNanos, long failures) {
+            this.sortedLatencies = sortedLatencies;
+            this.elapsedNanos = elapsedNanos;
+            this.failures = failures;
+        }
+
+        long percentile(double p) {
+            if (sortedLatencies.length == 0) {
+                return 0;
+            }
+            int index = (int) Math.ceil(p / 100 * sortedLatencies.length) - 1;
+            return sortedLatencies[Math.max(0, index)];
+        }
+
+        void print(int batch) {
+            double seconds = elapsedNanos / 1e9;
+            double requestsPerSecond = sortedLatencies.length / seconds;
+            System.out.printf("Requests: %d in %.1f s, %d failed%n", sortedLatencies.length, seconds, failures);
+            System.out.printf("Throughput: %.0f requests/s", requestsPerSecond);
+            if (batch > 0) {
+                System.out.printf(", %.0f expressions/s", requestsPerSecond * batch);
+            }
+            System.out.println();
+            System.out.printf("Latency: p50 %.3f ms, p99 %.3f ms, p99.9 %.3f ms, max %.3f ms%n",
+                    percentile(50) / 1e6, percentile(99) / 1e6, percentile(99.9) / 1e6, percentile(100) / 1e6);
+        }
+    }
+}
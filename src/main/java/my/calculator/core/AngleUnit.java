@@ -0,0 +1,11 @@
+package my.calculator.core;
+
+/**
+ * The unit of the angles taken by sin, cos and tan and returned by asin, acos and atan.
+ */
+public enum AngleUnit {
+    /** Angles in degrees, as the calculator has always used. */
+    DEGREES,
+    /** Angles in radians. */
+    RADIANS
+}
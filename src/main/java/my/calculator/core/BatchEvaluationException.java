@@ -0,0 +1,68 @@
+package my.calculator.core;
+
+import java.util.List;
+
+/**
+ * Thrown by a parallel batch evaluation when one or more chunks of rows failed.
+ *
+ * Chunks are evaluated independently, so a failure in one chunk does not stop the others:
+ * every chunk that succeeded has its results in the output array, and the rows of every
+ * failed chunk are set to {@code NaN}. The failures are listed in row order.
+ */
+public class BatchEvaluationException extends RuntimeException {
+
+    private static final long serialVersionUID = 1L;
+
+    private final transient List<ChunkFailure> failures;
+
+    BatchEvaluationException(List<ChunkFailure> failures, int chunkCount) {
+        super(failures.size() + " of " + chunkCount + " chunks failed, first at rows "
+                + failures.get(0) + ": " + failures.get(0).getError().getMessage(), failures.get(0).getError());
+        this.failures = List.copyOf(failures);
+    }
+
+    /**
+     * Returns the failed chunks, ordered by their first row.
+     */
+    public List<ChunkFailure> getFailures() {
+        return failures;
+    }
+
+    /**
+     * A chunk of rows whose evaluation failed.
+     */
+    public static final class ChunkFailure {
+        private final int fromRow;
+        private final int toRow;
+        private final RuntimeException error;
+
+        ChunkFailure(int fromRow, int toRow, RuntimeException error) {
+            this.fromRow = fromRow;
+            this.toRow = toRow;
+            this.error = error;
+        }
+
+        /** Returns the first row of the chunk, inclusive. */
+        public int getFromRow() {
+            return fromRow;
+        }
+
+        /** Returns the last row of the chunk, exclusive. */
+        public int getToRow() {
+            return toRow;
+        }
+
+        /**
+         * Returns the error that stopped the chunk, an {@link ArithmeticException} or an
+         * {@link IllegalArgumentException} just like a single evaluation would throw.
+         */
+        public RuntimeException getError() {
+            return error;
+        }
+
+        @Override
+        public String toString() {
+            return "[" + fromRow + ", " + toRow + ")";
+        }
+    }
+}
@@ -0,0 +1,204 @@
+package my.calculator.core;
+
+import java.util.Arrays;
+
+/**
+ * Column-at-a-time evaluator for {@link CompiledExpression} programs.
+ *
+ * Rows are processed in blocks of {@link #BLOCK_SIZE}. Each stack slot is a {@code double[]}
+ * holding one value per row of the block, so every instruction is a tight loop over primitive
+ * arrays instead of a dispatch per row. Temporaries are buffers past the end of the stack.
+ * The buffers are allocated once per call and reused for every block.
+ */
+final class BatchEvaluator {
+
+    /** Rows per block; small enough for the stack buffers to stay in the L1/L2 cache. */
+    static final int BLOCK_SIZE = 1024;
+
+    /** Private constructor to prevent instantiation */
+    private BatchEvaluator() {
+        // Prevent instantiation
+    }
+
+    /**
+     * Evaluates rows {@code [from, to)} of a batch.
+     *
+     * @param expression the compiled expression.
+     * @param columns    the variable values, one column per slot.
+     * @param out        the array receiving the results.
+     * @param from       the first row, inclusive.
+     * @param to         the last row, exclusive.
+     */
+    static void evaluate(CompiledExpression expression, double[][] columns, double[] out, int from, int to) {
+        evaluate(expression, columns, out, from, to, false);
+    }
+
+    /**
+     * Evaluates rows {@code [from, to)} of a batch, setting the rows that cannot be evaluated
+     * to {@code NaN}. A block with such a row is evaluated again one row at a time.
+     *
+     * @param expression the compiled expression.
+     * @param columns    the variable values, one column per slot.
+     * @param out        the array receiving the results.
+     * @param from       the first row, inclusive.
+     * @param to         the last row, exclusive.
+     */
+    static void evaluateLenient(CompiledExpression expression, double[][] columns, double[] out, int from, int to) {
+        evaluate(expression, columns, out, from, to, true);
+    }
+
+    private static void evaluate(CompiledExpression expression, double[][] columns, double[] out, int from, int to,
+                                 boolean lenient) {
+        int blockSize = Math.min(BLOCK_SIZE, to - from);
+        if (blockSize <= 0) {
+            return;
+        }
+        int maxStack = expression.maxStack();
+        double[][] stack = new double[maxStack + expression.temps()][blockSize];
+        for (int start = from; start < to; start += blockSize) {
+            int length = Math.min(blockSize, to - start);
+            try {
+                int sp = evaluateBlock(expression.code(), expression.constants(), expression.calls(), columns, stack,
+                        maxStack, start, length);
+                // Like the interpreter, the result is the top of the stack
+                System.arraycopy(stack[sp - 1], 0, out, start, length);
+            } catch (ArithmeticException | IllegalArgumentException e) {
+                if (!lenient) {
+                    throw e;
+                }
+                evaluateRows(expression, columns, out, start, start + length);
+            }
+        }
+    }
+
+    /**
+     * Evaluates rows {@code [from, to)} one at a time, setting those that fail to {@code NaN}.
+     */
+    private static void evaluateRows(CompiledExpression expression, double[][] columns, double[] out, int from, int to) {
+        double[] variables = new double[columns.length];
+        for (int row = from; row < to; row++) {
+            for (int slot = 0; slot < variables.length; slot++) {
+                variables[slot] = columns[slot][row];
+            }
+            try {
+                out[row] = expression.evaluate(variables);
+            } catch (ArithmeticException | IllegalArgumentException e) {
+                out[row] = Double.NaN;
+            }
+        }
+    }
+
+    /**
+     * Runs the program over one block.
+     *
+     * @return the final stack pointer.
+     */
+    private static int evaluateBlock(int[] code, double[] constants, CompiledExpression.Call[] calls,
+                                     double[][] columns, double[][] stack, int firstTemp, int start, int length) {
+        int sp = 0;
+        int pc = 0;
+        while (pc < code.length) {
+            int op = code[pc++];
+            switch (op) {
+                case OpCode.CONST -> Arrays.fill(stack[sp++], 0, length, constants[code[pc++]]);
+                case OpCode.VAR -> System.arraycopy(columns[code[pc++]], start, stack[sp++], 0, length);
+                case OpCode.ADD -> {
+                    sp--;
+                    double[] a = stack[sp - 1];
+                    double[] b = stack[sp];
+                    for (int i = 0; i < length; i++) {
+                        a[i] = a[i] + b[i];
+                    }
+                }
+                case OpCode.SUB -> {
+                    sp--;
+                    double[] a = stack[sp - 1];
+                    double[] b = stack[sp];
+                    for (int i = 0; i < length; i++) {
+                        a[i] = a[i] - b[i];
+                    }
+                }
+                case OpCode.MUL -> {
+                    sp--;
+                    double[] a = stack[sp - 1];
+                    double[] b = stack[sp];
+                    for (int i = 0; i < length; i++) {
+                        a[i] = a[i] * b[i];
+                    }
+                }
+                case OpCode.DIV -> {
+                    sp--;
+                    double[] a = stack[sp - 1];
+                    double[] b = stack[sp];
+                    for (int i = 0; i < length; i++) {
+                        a[i] = Operations.divide(a[i], b[i]);
+                    }
+                }
+                case OpCode.MOD -> {
+                    sp--;
+                    double[] a = stack[sp - 1];
+                    double[] b = stack[sp];
+                    for (int i = 0; i < length; i++) {
+                        a[i] = Operations.mod(a[i], b[i]);
+                    }
+                }
+                case OpCode.POW -> {
+                    sp--;
+                    double[] a = stack[sp - 1];
+                    double[] b = stack[sp];
+                    for (int i = 0; i < length; i++) {
+                        a[i] = Math.pow(a[i], b[i]);
+                    }
+                }
+                case OpCode.STORE -> System.arraycopy(stack[sp - 1], 0, stack[firstTemp + code[pc++]], 0, length);
+                case OpCode.LOAD -> System.arraycopy(stack[firstTemp + code[pc++]], 0, stack[sp++], 0, length);
+                case OpCode.CALL -> {
+                    CompiledExpression.Call call = calls[code[pc++]];
+                    sp -= call.arguments;
+                    double[] result = stack[sp];
+                    // One argument array for the whole block, refilled for every row
+                    double[] arguments = new double[call.arguments];
+                    for (int i = 0; i < length; i++) {
+                        for (int j = 0; j < arguments.length; j++) {
+                            arguments[j] = stack[sp + j][i];
+                        }
+                        result[i] = call.function.apply(arguments);
+                    }
+                    sp++;
+                }
+                default -> applyUnary(op, stack[sp - 1], length);
+            }
+        }
+        return sp;
+    }
+
+    private static void applyUnary(int op, double[] a, int length) {
+        switch (op) {
+            case OpCode.SIN -> {
+                for (int i = 0; i < length; i++) {
+                    a[i] = Operations.sin(a[i]);
+                }
+            }
+            case OpCode.COS -> {
+                for (int i = 0; i < length; i++) {
+                    a[i] = Operations.cos(a[i]);
+                }
+            }
+            case OpCode.EXP -> {
+                for (int i = 0; i < length; i++) {
+                    a[i] = Math.exp(a[i]);
+                }
+            }
+            case OpCode.SQUARE -> {
+                for (int i = 0; i < length; i++) {
+                    a[i] = a[i] * a[i];
+                }
+            }
+            default -> {
+                for (int i = 0; i < length; i++) {
+                    a[i] = Operations.unary(op, a[i]);
+                }
+            }
+        }
+    }
+}
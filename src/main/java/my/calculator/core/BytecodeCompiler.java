@@ -0,0 +1,406 @@
+package my.calculator.core;
+
+import java.io.ByteArrayOutputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.MethodType;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Translates the program of a {@link CompiledExpression} to a {@link CompiledFunction} hidden class.
+ *
+ * Each instruction maps to a few bytecodes working on the JVM operand stack: constants are
+ * loaded from the class constant pool, variables from the argument array, {@code +}, {@code -}
+ * and {@code *} become {@code dadd}, {@code dsub} and {@code dmul}, temporaries are local
+ * variables, and everything else is a static call to {@link Operations}; programs calling
+ * user-defined functions are not translated. The generated method has no branches, so the
+ * class file needs no stack map frames and is written by hand without any library.
+ *
+ * Hidden classes are not strongly linked to their loader, so a generated class is unloaded
+ * once its expression is no longer reachable.
+ */
+final class BytecodeCompiler {
+
+    /**
+     * Largest method generated, in bytes. HotSpot does not compile larger methods, so bigger
+     * expressions are better left to the interpreter.
+     */
+    static final int MAX_CODE_BYTES = 8000;
+
+    private static final String CLASS_NAME = "my/calculator/core/GeneratedFunction";
+    private static final String SUPER_NAME = "java/lang/Object";
+    private static final String INTERFACE_NAME = "my/calculator/core/CompiledFunction";
+    private static final String OPERATIONS_NAME = "my/calculator/core/Operations";
+
+    private static final int JAVA_17_VERSION = 61;
+    private static final int ACC_PUBLIC = 0x0001;
+    private static final int ACC_FINAL = 0x0010;
+    private static final int ACC_SUPER = 0x0020;
+
+    // Bytecodes used by the generated methods
+    private static final int ICONST_0 = 0x03;
+    private static final int DCONST_0 = 0x0e;
+    private static final int DCONST_1 = 0x0f;
+    private static final int BIPUSH = 0x10;
+    private static final int SIPUSH = 0x11;
+    private static final int LDC2_W = 0x14;
+    private static final int DLOAD = 0x18;
+    private static final int ALOAD_0 = 0x2a;
+    private static final int ALOAD_1 = 0x2b;
+    private static final int DALOAD = 0x31;
+    private static final int DSTORE = 0x39;
+    private static final int DUP2 = 0x5c;
+    private static final int DADD = 0x63;
+    private static final int DSUB = 0x67;
+    private static final int DMUL = 0x6b;
+    private static final int DRETURN = 0xaf;
+    private static final int RETURN = 0xb1;
+    private static final int INVOKESPECIAL = 0xb7;
+    private static final int INVOKESTATIC = 0xb8;
+
+    /** Local variable of the first temporary; 0 and 1 are {@code this} and the variables. */
+    private static final int FIRST_TEMP_LOCAL = 2;
+
+    private static final MethodHandles.Lookup LOOKUP = MethodHandles.lookup();
+
+    /** Private constructor to prevent instantiation */
+    private BytecodeCompiler() {
+        // Prevent instantiation
+    }
+
+    /**
+     * Compiles an expression to bytecode.
+     *
+     * @param expression the expression to compile.
+     * @return the compiled function, or null if the expression is too large or the class could
+     *         not be defined, in which case the expression should stay interpreted.
+     */
+    static CompiledFunction compile(CompiledExpression expression) {
+        byte[] classFile = generate(expression);
+        if (classFile == null) {
+            return null;
+        }
+        try {
+            MethodHandles.Lookup lookup = LOOKUP.defineHiddenClass(classFile, true);
+            return (CompiledFunction) lookup.findConstructor(lookup.lookupClass(), MethodType.methodType(void.class))
+                    .invoke();
+        } catch (VirtualMachineError e) {
+            throw e;
+        } catch (Throwable e) {
+            return null;
+        }
+    }
+
+    /**
+     * Generates the class file of an expression.
+     *
+     * @return the class file, or null if the expression is too large.
+     */
+    static byte[] generate(CompiledExpression expression) {
+        ConstantPool pool = new ConstantPool();
+        int thisClass = pool.classRef(CLASS_NAME);
+        int superClass = pool.classRef(SUPER_NAME);
+        int interfaceClass = pool.classRef(INTERFACE_NAME);
+        int constructorName = pool.utf8("<init>");
+        int constructorType = pool.utf8("()V");
+        int superConstructor = pool.methodRef(SUPER_NAME, "<init>", "()V");
+        int applyName = pool.utf8("apply");
+        int applyType = pool.utf8("([D)D");
+        int codeAttribute = pool.utf8("Code");
+
+        ByteArrayOutputStream code = new ByteArrayOutputStream();
+        int maxStack = generateApply(expression, pool, code);
+        int maxLocals = FIRST_TEMP_LOCAL + 2 * expression.temps();
+        if (maxStack < 0 || maxLocals > 0xFF || code.size() > MAX_CODE_BYTES || pool.size() > 0xFFFF) {
+            return null;
+        }
+
+        try {
+            ByteArrayOutputStream bytes = new ByteArrayOutputStream(256 + code.size());
+            DataOutputStream out = new DataOutputStream(bytes);
+            out.writeInt(0xCAFEBABE);
+            out.writeShort(0);
+            out.writeShort(JAVA_17_VERSION);
+            pool.writeTo(out);
+            out.writeShort(ACC_FINAL | ACC_SUPER);
+            out.writeShort(thisClass);
+            out.writeShort(superClass);
+            out.writeShort(1);
+            out.writeShort(interfaceClass);
+            out.writeShort(0); // fields
+            out.writeShort(2); // methods
+
+            byte[] constructorCode = {
+                (byte) ALOAD_0, (byte) INVOKESPECIAL, (byte) (superConstructor >> 8), (byte) superConstructor,
+                (byte) RETURN
+            };
+            writeMethod(out, constructorName, constructorType, codeAttribute, 1, 1, constructorCode);
+            writeMethod(out, applyName, applyType, codeAttribute, maxStack, maxLocals, code.toByteArray());
+
+            out.writeShort(0); // attributes
+            return bytes.toByteArray();
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    /**
+     * Writes the body of {@code apply}.
+     *
+     * @return the maximum operand stack size, in slots, or -1 if the program cannot be compiled.
+     */
+    private static int generateApply(CompiledExpression expression, ConstantPool pool, ByteArrayOutputStream code) {
+        int[] program = expression.code();
+        double[] constants = expression.constants();
+        // Stack sizes are counted in JVM slots: two per double
+        int depth = 0;
+        int maxDepth = 0;
+        int pc = 0;
+        while (pc < program.length) {
+            int op = program[pc++];
+            switch (op) {
+                case OpCode.CONST -> {
+                    double value = constants[program[pc++]];
+                    if (Double.doubleToRawLongBits(value) == 0L) {
+                        code.write(DCONST_0);
+                    } else if (value == 1.0) {
+                        code.write(DCONST_1);
+                    } else {
+                        writeWithIndex(code, LDC2_W, pool.doubleConstant(value));
+                    }
+                    depth += 2;
+                }
+                case OpCode.VAR -> {
+                    int slot = program[pc++];
+                    code.write(ALOAD_1);
+                    if (slot <= 5) {
+                        code.write(ICONST_0 + slot);
+                    } else if (slot <= Byte.MAX_VALUE) {
+                        code.write(BIPUSH);
+                        code.write(slot);
+                    } else if (slot <= Short.MAX_VALUE) {
+                        writeWithIndex(code, SIPUSH, slot);
+                    } else {
+                        return -1;
+                    }
+                    code.write(DALOAD);
+                    // The array reference and the index are on the stack before daload
+                    maxDepth = Math.max(maxDepth, depth + 2);
+                    depth += 2;
+                }
+                case OpCode.ADD -> {
+                    code.write(DADD);
+                    depth -= 2;
+                }
+                case OpCode.SUB -> {
+                    code.write(DSUB);
+                    depth -= 2;
+                }
+                case OpCode.MUL -> {
+                    code.write(DMUL);
+                    depth -= 2;
+                }
+                case OpCode.DIV -> {
+                    writeWithIndex(code, INVOKESTATIC, pool.methodRef(OPERATIONS_NAME, "divide", "(DD)D"));
+                    depth -= 2;
+                }
+                case OpCode.MOD -> {
+                    writeWithIndex(code, INVOKESTATIC, pool.methodRef(OPERATIONS_NAME, "mod", "(DD)D"));
+                    depth -= 2;
+                }
+                case OpCode.POW -> {
+                    writeWithIndex(code, INVOKESTATIC, pool.methodRef(OPERATIONS_NAME, "pow", "(DD)D"));
+                    depth -= 2;
+                }
+                case OpCode.STORE -> {
+                    code.write(DUP2);
+                    code.write(DSTORE);
+                    code.write(FIRST_TEMP_LOCAL + 2 * program[pc++]);
+                    maxDepth = Math.max(maxDepth, depth + 2);
+                }
+                case OpCode.LOAD -> {
+                    code.write(DLOAD);
+                    code.write(FIRST_TEMP_LOCAL + 2 * program[pc++]);
+                    depth += 2;
+                }
+                case OpCode.CALL -> {
+                    // User-defined functions are left to the interpreter
+                    return -1;
+                }
+                default -> {
+                    String name = unaryMethodName(op);
+                    if (name == null) {
+                        return -1;
+                    }
+                    writeWithIndex(code, INVOKESTATIC, pool.methodRef(OPERATIONS_NAME, name, "(D)D"));
+                }
+            }
+            maxDepth = Math.max(maxDepth, depth);
+        }
+        code.write(DRETURN);
+        return maxDepth;
+    }
+
+    /**
+     * Returns the {@link Operations} method implementing a unary opcode, or null if unknown.
+     */
+    private static String unaryMethodName(int op) {
+        return switch (op) {
+            case OpCode.FACTORIAL -> "factorial";
+            case OpCode.SIN -> "sin";
+            case OpCode.COS -> "cos";
+            case OpCode.TAN -> "tan";
+            case OpCode.ASIN -> "asin";
+            case OpCode.ACOS -> "acos";
+            case OpCode.ATAN -> "atan";
+            case OpCode.EXP -> "exp";
+            case OpCode.LN -> "ln";
+            case OpCode.LOG -> "log";
+            case OpCode.SQRT -> "sqrt";
+            case OpCode.SQUARE -> "square";
+            case OpCode.TEN_POW -> "tenPow";
+            case OpCode.NEG -> "negate";
+            case OpCode.SIN_RAD -> "sinRadians";
+            case OpCode.COS_RAD -> "cosRadians";
+            case OpCode.TAN_RAD -> "tanRadians";
+            case OpCode.ASIN_RAD -> "asinRadians";
+            case OpCode.ACOS_RAD -> "acosRadians";
+            case OpCode.ATAN_RAD -> "atanRadians";
+            default -> null;
+        };
+    }
+
+    private static void writeWithIndex(ByteArrayOutputStream code, int opcode, int index) {
+        code.write(opcode);
+        code.write(index >> 8);
+        code.write(index);
+    }
+
+    private static void writeMethod(DataOutputStream out, int name, int type, int codeAttribute,
+                                    int maxStack, int maxLocals, byte[] code) throws IOException {
+        out.writeShort(ACC_PUBLIC);
+        out.writeShort(name);
+        out.writeShort(type);
+        out.writeShort(1);
+        out.writeShort(codeAttribute);
+        out.writeInt(12 + code.length);
+        out.writeShort(maxStack);
+        out.writeShort(maxLocals);
+        out.writeInt(code.length);
+        out.write(code);
+        out.writeShort(0); // exception table
+        out.writeShort(0); // attributes
+    }
+
+    /**
+     * The constant pool of a class being generated. Entries are deduplicated.
+     */
+    private static final class ConstantPool {
+        private static final int UTF8 = 1;
+        private static final int DOUBLE = 6;
+        private static final int CLASS = 7;
+        private static final int METHOD_REF = 10;
+        private static final int NAME_AND_TYPE = 12;
+
+        private final ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        private final DataOutputStream out = new DataOutputStream(bytes);
+        private final Map<Object, Integer> indexes = new HashMap<>();
+        /** Index of the next entry; entry 0 does not exist. */
+        private int next = 1;
+
+        int size() {
+            return next;
+        }
+
+        int utf8(String value) {
+            Integer index = indexes.get(value);
+            if (index != null) {
+                return index;
+            }
+            try {
+                out.writeByte(UTF8);
+                out.writeUTF(value);
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+            return register(value, 1);
+        }
+
+        int classRef(String internalName) {
+            String key = "class " + internalName;
+            Integer index = indexes.get(key);
+            if (index != null) {
+                return index;
+            }
+            write(CLASS, utf8(internalName));
+            return register(key, 1);
+        }
+
+        int methodRef(String owner, String name, String descriptor) {
+            String key = "method " + owner + '.' + name + descriptor;
+            Integer index = indexes.get(key);
+            if (index != null) {
+                return index;
+            }
+            int ownerIndex = classRef(owner);
+            int nameAndType = nameAndType(name, descriptor);
+            write(METHOD_REF, ownerIndex, nameAndType);
+            return register(key, 1);
+        }
+
+        int doubleConstant(double value) {
+            // Keyed by bits: 0.0 and -0.0 are different constants
+            Long key = Double.doubleToRawLongBits(value);
+            Integer index = indexes.get(key);
+            if (index != null) {
+                return index;
+            }
+            try {
+                out.writeByte(DOUBLE);
+                out.writeLong(key);
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+            // Doubles take two entries
+            return register(key, 2);
+        }
+
+        private int nameAndType(String name, String descriptor) {
+            String key = "nameAndType " + name + ' ' + descriptor;
+            Integer index = indexes.get(key);
+            if (index != null) {
+                return index;
+            }
+            int nameIndex = utf8(name);
+            int typeIndex = utf8(descriptor);
+            write(NAME_AND_TYPE, nameIndex, typeIndex);
+            return register(key, 1);
+        }
+
+        private void write(int tag, int... indexes) {
+            try {
+                out.writeByte(tag);
+                for (int index : indexes) {
+                    out.writeShort(index);
+                }
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+        }
+
+        private int register(Object key, int entries) {
+            int index = next;
+            indexes.put(key, index);
+            next += entries;
+            return index;
+        }
+
+        void writeTo(DataOutputStream classFile) throws IOException {
+            classFile.writeShort(next);
+            bytes.writeTo(classFile);
+        }
+    }
+}
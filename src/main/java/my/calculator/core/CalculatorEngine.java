@@ -0,0 +1,766 @@
+package my.calculator.core;
+
+import java.math.BigDecimal;
+import java.math.MathContext;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.regex.Pattern;
+import jdk.jfr.EventType;
+
+/**
+ * A configured calculator: parses, evaluates and formats expressions with its own settings.
+ *
+ * An engine is immutable and thread-safe, so engines with different settings (degrees and
+ * radians, number of fraction digits, caches...) can be used side by side, from any thread.
+ * Engines are created with a {@link Builder}:
+ *
+ * <pre>
+ * CalculatorEngine radians = CalculatorEngine.builder().angleUnit(AngleUnit.RADIANS).build();
+ * radians.calculate("sin(π/2)"); // "1"
+ * </pre>
+ *
+ * The static methods of {@link CalculatorLogic} delegate to a default engine.
+ */
+public final class CalculatorEngine {
+
+    /** Default number of evaluations after which a compiled expression is translated to bytecode. */
+    public static final int DEFAULT_JIT_THRESHOLD = 10_000;
+
+    private static final String[] NO_VARIABLES = new String[0];
+
+    /** Allowed shape of a variable name. */
+    private static final Pattern VARIABLE_NAME = Pattern.compile("[A-Za-z_][A-Za-z0-9_]*");
+
+    /** Checked before creating an event, so that nothing is allocated unless a recording wants it. */
+    private static final EventType PARSE_EVENT = EventType.getEventType(ParseEvent.class);
+    private static final EventType EVALUATE_EVENT = EventType.getEventType(EvaluateEvent.class);
+
+    private final AngleUnit angleUnit;
+    private final int fractionDigits;
+    private final int jitThreshold;
+    private final boolean optimizationEnabled;
+    private final ExpressionCache expressionCache;
+    private final ResultCache resultCache;
+    private final FunctionRegistry registry;
+    /** The metrics to record, or null. */
+    private final EngineMetrics metrics;
+
+    /** The opcode compiled for each function, indexed by the opcode of its token (in degrees). */
+    private final int[] functions;
+
+    private CalculatorEngine(Builder builder) {
+        this.angleUnit = builder.angleUnit;
+        this.fractionDigits = builder.fractionDigits;
+        this.jitThreshold = builder.jitThreshold;
+        this.optimizationEnabled = builder.optimizationEnabled;
+        this.expressionCache = builder.expressionCache;
+        this.resultCache = builder.resultCache;
+        this.registry = builder.registry;
+        this.metrics = builder.metrics;
+        this.functions = new int[OpCode.COUNT];
+        for (int op = 0; op < OpCode.COUNT; op++) {
+            functions[op] = op;
+        }
+        if (angleUnit == AngleUnit.RADIANS) {
+            functions[OpCode.SIN] = OpCode.SIN_RAD;
+            functions[OpCode.COS] = OpCode.COS_RAD;
+            functions[OpCode.TAN] = OpCode.TAN_RAD;
+            functions[OpCode.ASIN] = OpCode.ASIN_RAD;
+            functions[OpCode.ACOS] = OpCode.ACOS_RAD;
+            functions[OpCode.ATAN] = OpCode.ATAN_RAD;
+        }
+    }
+
+    /**
+     * Returns a builder with the default settings.
+     */
+    public static Builder builder() {
+        return new Builder();
+    }
+
+    /**
+     * Returns a builder with the settings of this engine, to create a variant of it.
+     */
+    public Builder toBuilder() {
+        Builder builder = new Builder();
+        builder.angleUnit = angleUnit;
+        builder.fractionDigits = fractionDigits;
+        builder.jitThreshold = jitThreshold;
+        builder.optimizationEnabled = optimizationEnabled;
+        builder.expressionCache = expressionCache;
+        builder.resultCache = resultCache;
+        builder.registry = registry;
+        builder.metrics = metrics;
+        return builder;
+    }
+
+    /**
+     * Calculates the result from a given mathematical expression.
+     *
+     * @param input The mathematical expression as a string.
+     * @return The result as a string.
+     * @throws IllegalArgumentException if the expression is invalid.
+     * @throws ArithmeticException      if arithmetic errors occur (e.g., division by zero).
+     */
+    public String calculate(String input) throws IllegalArgumentException, ArithmeticException {
+        EngineMetrics m = metrics;
+        if (m != null) {
+            return calculateMeasured(input, m);
+        }
+        ResultCache cache = resultCache;
+        FunctionRegistry.Snapshot definitions = definitions();
+        if (cache == null || input == null) {
+            return format(evaluateRecorded(compile(input, NO_VARIABLES, definitions, false)));
+        }
+        // Results depend on the definitions, which are identified by their version
+        String key = (registry == null) ? input : definitions.version + ":" + input;
+        String cached = cache.get(key, this);
+        if (cached != null) {
+            return cached;
+        }
+        CompiledExpression compiled = null;
+        try {
+            compiled = compile(input, NO_VARIABLES, definitions, false);
+            String result = format(evaluateRecorded(compiled));
+            if (isMemoizable(compiled)) {
+                cache.putResult(key, result, this);
+            }
+            return result;
+        } catch (ArithmeticException | IllegalArgumentException e) {
+            if (isMemoizable(compiled)) {
+                cache.putError(key, e, this);
+            }
+            throw e;
+        }
+    }
+
+    /**
+     * Returns true if the outcome of an expression can be cached: an invalid expression, or one
+     * calling no user-defined functions, which may have side effects or depend on state.
+     *
+     * @param compiled the compiled expression, or null if it could not be compiled.
+     */
+    private static boolean isMemoizable(CompiledExpression compiled) {
+        return compiled == null || compiled.calls().length == 0;
+    }
+
+    /**
+     * {@link #calculate(String)} recording metrics, kept apart so that the path without
+     * metrics stays as it was.
+     */
+    private String calculateMeasured(String input, EngineMetrics m) {
+        m.calculation(input);
+        ResultCache cache = resultCache;
+        FunctionRegistry.Snapshot definitions = definitions();
+        String key = null;
+        try {
+            if (cache != null && input != null) {
+                key = (registry == null) ? input : definitions.version + ":" + input;
+                String cached = cache.get(key, this);
+                if (cached != null) {
+                    m.resultCacheHits.increment();
+                    return cached;
+                }
+                m.resultCacheMisses.increment();
+            }
+        } catch (ArithmeticException | IllegalArgumentException e) {
+            // A cached error
+            m.resultCacheHits.increment();
+            m.failed(e);
+            throw e;
+        }
+        CompiledExpression compiled = null;
+        try {
+            compiled = compile(input, NO_VARIABLES, definitions, false);
+            long start = System.nanoTime();
+            double value = evaluateRecorded(compiled);
+            long evaluated = System.nanoTime();
+            String result = format(value);
+            m.record(EngineMetrics.Phase.EVALUATE, evaluated - start);
+            m.record(EngineMetrics.Phase.FORMAT, System.nanoTime() - evaluated);
+            if (key != null && isMemoizable(compiled)) {
+                cache.putResult(key, result, this);
+            }
+            return result;
+        } catch (ArithmeticException | IllegalArgumentException e) {
+            m.failed(e);
+            if (key != null && isMemoizable(compiled)) {
+                cache.putError(key, e, this);
+            }
+            throw e;
+        }
+    }
+
+    /**
+     * Evaluates a mathematical expression without formatting the result.
+     *
+     * @param input The mathematical expression as a string.
+     * @return The result as a double.
+     * @throws IllegalArgumentException if the expression is invalid.
+     * @throws ArithmeticException      if arithmetic errors occur (e.g., division by zero).
+     */
+    public double evaluate(String input) throws IllegalArgumentException, ArithmeticException {
+        return evaluateRecorded(compile(input, NO_VARIABLES, definitions(), false));
+    }
+
+    /**
+     * Evaluates a compiled expression, emitting an {@link EvaluateEvent}.
+     */
+    private static double evaluateRecorded(CompiledExpression compiled) {
+        if (!EVALUATE_EVENT.isEnabled()) {
+            return compiled.evaluate();
+        }
+        EvaluateEvent event = new EvaluateEvent();
+        event.begin();
+        RuntimeException error = null;
+        try {
+            return compiled.evaluate();
+        } catch (RuntimeException e) {
+            error = e;
+            throw e;
+        } finally {
+            event.complete(compiled, error);
+        }
+    }
+
+    /**
+     * Calculates the result of a mathematical expression with arbitrary precision.
+     * The result is printed without exponent and without trailing zeros.
+     *
+     * @param input The mathematical expression as a string.
+     * @param mc    The precision and rounding of every operation.
+     * @return The result as a string.
+     * @throws IllegalArgumentException if the expression is invalid.
+     * @throws ArithmeticException      if arithmetic errors occur (e.g., division by zero).
+     * @see CompiledExpression#evaluate(BigDecimal[], MathContext)
+     */
+    public String calculate(String input, MathContext mc) throws IllegalArgumentException, ArithmeticException {
+        return evaluate(input, mc).stripTrailingZeros().toPlainString();
+    }
+
+    /**
+     * Evaluates a mathematical expression with arbitrary precision.
+     *
+     * @param input The mathematical expression as a string.
+     * @param mc    The precision and rounding of every operation.
+     * @return The result, rounded to {@code mc}.
+     * @throws IllegalArgumentException if the expression is invalid.
+     * @throws ArithmeticException      if arithmetic errors occur (e.g., division by zero).
+     * @see CompiledExpression#evaluate(BigDecimal[], MathContext)
+     */
+    public BigDecimal evaluate(String input, MathContext mc) throws IllegalArgumentException, ArithmeticException {
+        return compile(input, NO_VARIABLES, definitions(), false).evaluate(mc);
+    }
+
+    /**
+     * Parses a mathematical expression once into a reusable {@link CompiledExpression}.
+     *
+     * @param input     The mathematical expression as a string.
+     * @param variables The names of the variables the expression may reference.
+     * @return The compiled expression.
+     * @throws IllegalArgumentException if the expression or a variable name is invalid.
+     * @see CalculatorLogic#compile(String, String...)
+     */
+    public CompiledExpression compile(String input, String... variables) throws IllegalArgumentException {
+        return compile(input, variables, definitions(), true);
+    }
+
+    /**
+     * Compiles an expression, or finds it in the cache.
+     *
+     * @param reused true if the caller evaluates the program more than once. Only such programs,
+     *               and those kept in the cache, are optimized: for a single evaluation the
+     *               optimizer costs more than it saves.
+     */
+    private CompiledExpression compile(String input, String[] variables, FunctionRegistry.Snapshot definitions,
+                                       boolean reused) {
+        if (input == null) {
+            throw new IllegalArgumentException("Input is empty");
+        }
+        ExpressionCache cache = expressionCache;
+        if (cache == null) {
+            return parse(input, variables, definitions, reused);
+        }
+        String key = ExpressionCache.key(input, variables);
+        // An expression compiled before the registry changed, or with other settings, is compiled again
+        CompiledExpression compiled = cache.get(key, cached -> compilesLike(cached.engine())
+                && cached.definitions().version == definitions.version);
+        boolean hit = compiled != null;
+        EngineMetrics m = metrics;
+        if (m != null) {
+            (hit ? m.expressionCacheHits : m.expressionCacheMisses).increment();
+        }
+        if (!hit) {
+            compiled = parse(input, variables, definitions, true);
+            cache.put(key, compiled);
+        }
+        return compiled;
+    }
+
+    /**
+     * Returns true if the other engine compiles expressions as this one does, so that they can
+     * share compiled expressions.
+     */
+    private boolean compilesLike(CalculatorEngine other) {
+        return other == this || (other.angleUnit == angleUnit && other.jitThreshold == jitThreshold
+                && other.optimizationEnabled == optimizationEnabled && other.registry == registry);
+    }
+
+    /**
+     * Returns true if the other engine calculates the same results as this one, so that they can
+     * share cached results.
+     */
+    boolean calculatesLike(CalculatorEngine other) {
+        return other == this || (other.angleUnit == angleUnit && other.fractionDigits == fractionDigits
+                && other.registry == registry);
+    }
+
+    /**
+     * Returns true if the name is a built-in function or a function of the registry.
+     *
+     * @param name the name to look up.
+     * @return true if the name can be called as a function.
+     */
+    public boolean isFunction(String name) {
+        return Lexer.isFunctionName(name) || definitions().functions.containsKey(name);
+    }
+
+    /**
+     * Formats a result with the number of fraction digits of this engine.
+     *
+     * @param value The numerical result to format.
+     * @return The formatted result as a string.
+     */
+    public String format(double value) {
+        return ResultFormatter.format(value, fractionDigits);
+    }
+
+    /**
+     * Returns the unit of angles.
+     */
+    public AngleUnit getAngleUnit() {
+        return angleUnit;
+    }
+
+    /**
+     * Returns the maximum number of fraction digits of formatted results.
+     */
+    public int getFractionDigits() {
+        return fractionDigits;
+    }
+
+    /**
+     * Returns the number of evaluations after which a compiled expression is translated to
+     * bytecode, or a negative value if translation is disabled.
+     */
+    public int getJitThreshold() {
+        return jitThreshold;
+    }
+
+    /**
+     * Returns true if compiled expressions are optimized.
+     */
+    public boolean isOptimizationEnabled() {
+        return optimizationEnabled;
+    }
+
+    /**
+     * Returns the cache of compiled expressions, or null if caching is disabled.
+     */
+    public ExpressionCache getExpressionCache() {
+        return expressionCache;
+    }
+
+    /**
+     * Returns the cache of results, or null if caching is disabled.
+     */
+    public ResultCache getResultCache() {
+        return resultCache;
+    }
+
+    /**
+     * Returns the registry of user-defined functions and constants, or null if there is none.
+     */
+    public FunctionRegistry getRegistry() {
+        return registry;
+    }
+
+    /**
+     * Returns the metrics recorded, or null if metrics are disabled.
+     */
+    public EngineMetrics getMetrics() {
+        return metrics;
+    }
+
+    /**
+     * Returns the user-defined functions and constants currently in effect.
+     */
+    FunctionRegistry.Snapshot definitions() {
+        FunctionRegistry r = registry;
+        return (r == null) ? FunctionRegistry.Snapshot.EMPTY : r.snapshot();
+    }
+
+    /**
+     * Parses an expression into a {@link CompiledExpression}, bypassing the cache.
+     *
+     * @param optimize true to optimize the program, if the engine enables optimization.
+     */
+    private CompiledExpression parse(String input, String[] variables, FunctionRegistry.Snapshot definitions,
+                                     boolean optimize) {
+        ParseEvent event = PARSE_EVENT.isEnabled() ? new ParseEvent() : null;
+        if (event != null) {
+            event.begin();
+        }
+        int tokenCount = 0;
+        RuntimeException error = null;
+        try {
+            if (input.trim().isEmpty()) {
+                throw new IllegalArgumentException("Input is empty");
+            }
+            Map<String, Integer> slots = variableSlots(variables, definitions);
+
+            // Tokenize, then parse the tokens
+            EngineMetrics m = metrics;
+            long start = (m != null) ? System.nanoTime() : 0;
+            List<Token> tokens = Lexer.tokenize(input, slots, definitions);
+            if (m != null) {
+                m.record(EngineMetrics.Phase.TOKENIZE, System.nanoTime() - start);
+            }
+            tokenCount = tokens.size();
+            return parseTokens(input, variables.clone(), tokens, definitions, optimize);
+        } catch (RuntimeException e) {
+            error = e;
+            throw e;
+        } finally {
+            if (event != null) {
+                event.complete(input, tokenCount, error);
+            }
+        }
+    }
+
+    /**
+     * Parses the tokens of an expression into a {@link CompiledExpression}.
+     *
+     * @param input       the expression the tokens come from.
+     * @param variables   the variable names, in slot order; not copied.
+     * @param tokens      the tokens, as returned by the {@link Lexer}.
+     * @param definitions the user-defined functions and constants the tokens were lexed with.
+     * @param optimize    true to optimize the program, if the engine enables optimization.
+     * @return the compiled expression.
+     * @throws IllegalArgumentException if the expression is invalid.
+     */
+    CompiledExpression parseTokens(String input, String[] variables, List<Token> tokens,
+                                   FunctionRegistry.Snapshot definitions, boolean optimize) {
+        EngineMetrics m = metrics;
+        if (m != null) {
+            return parseTokensMeasured(input, variables, tokens, definitions, optimize, m);
+        }
+        // Make implicit multiplications explicit
+        tokens = CalculatorLogic.insertImplicitMultiplicationOperators(tokens);
+
+        // Convert to RPN
+        List<Token> rpn = CalculatorLogic.shuntingYard(tokens);
+
+        // Translate RPN into a program
+        CompiledExpression compiled = toProgram(input, variables, rpn, definitions);
+        return (optimize && optimizationEnabled) ? Optimizer.optimize(compiled) : compiled;
+    }
+
+    /**
+     * {@link #parseTokens} recording the duration of each phase.
+     */
+    private CompiledExpression parseTokensMeasured(String input, String[] variables, List<Token> tokens,
+                                                   FunctionRegistry.Snapshot definitions, boolean optimize,
+                                                   EngineMetrics m) {
+        long start = System.nanoTime();
+        tokens = CalculatorLogic.insertImplicitMultiplicationOperators(tokens);
+        long inserted = System.nanoTime();
+        m.record(EngineMetrics.Phase.IMPLICIT_MULTIPLICATION, inserted - start);
+        List<Token> rpn = CalculatorLogic.shuntingYard(tokens);
+        long converted = System.nanoTime();
+        m.record(EngineMetrics.Phase.SHUNTING_YARD, converted - inserted);
+        CompiledExpression compiled = toProgram(input, variables, rpn, definitions);
+        compiled = (optimize && optimizationEnabled) ? Optimizer.optimize(compiled) : compiled;
+        m.record(EngineMetrics.Phase.COMPILE, System.nanoTime() - converted);
+        return compiled;
+    }
+
+    /**
+     * Parses an expression already known to be valid into a program for arbitrary precision
+     * evaluation, keeping its number literals exact.
+     */
+    DecimalProgram parseDecimal(String input, String[] variables, FunctionRegistry.Snapshot definitions) {
+        Map<String, Integer> slots = variableSlots(variables, definitions);
+        List<Token> tokens = Lexer.tokenize(input, slots, definitions);
+        tokens = CalculatorLogic.insertImplicitMultiplicationOperators(tokens);
+        return DecimalProgram.of(Lexer.removeWhitespace(input), CalculatorLogic.shuntingYard(tokens),
+                variables.length, functions, definitions);
+    }
+
+    /**
+     * Validates variable names and maps each of them to its slot.
+     *
+     * @param variables   the variable names, in slot order.
+     * @param definitions the user-defined functions and constants.
+     * @return a map from variable name to slot index.
+     * @throws IllegalArgumentException if a name is malformed, duplicated, or clashes with a
+     *                                  function or constant.
+     */
+    static Map<String, Integer> variableSlots(String[] variables, FunctionRegistry.Snapshot definitions) {
+        if (variables.length == 0) {
+            return Map.of();
+        }
+        Map<String, Integer> slots = new HashMap<>();
+        for (int i = 0; i < variables.length; i++) {
+            String name = variables[i];
+            if (name == null || !VARIABLE_NAME.matcher(name).matches()) {
+                throw new IllegalArgumentException("Invalid variable name: " + name);
+            }
+            if (Lexer.RESERVED_NAMES.contains(name) || definitions.isDefined(name)) {
+                throw new IllegalArgumentException("Variable name is reserved: " + name);
+            }
+            if (slots.put(name, i) != null) {
+                throw new IllegalArgumentException("Duplicate variable: " + name);
+            }
+        }
+        return slots;
+    }
+
+    /**
+     * Translates an RPN token list into a {@link CompiledExpression} program.
+     * Operand counts are checked here, so the resulting program can never underflow its stack.
+     *
+     * @param source        the original expression text.
+     * @param variableNames the variable names, in slot order.
+     * @param rpn           a list of tokens in RPN form.
+     * @param definitions   the user-defined functions and constants.
+     * @return the compiled expression.
+     * @throws IllegalArgumentException if the RPN expression is invalid.
+     */
+    private CompiledExpression toProgram(String source, String[] variableNames, List<Token> rpn,
+                                         FunctionRegistry.Snapshot definitions) {
+        int[] code = new int[rpn.size() * 2];
+        double[] constants = new double[rpn.size()];
+        List<CompiledExpression.Call> calls = null;
+        int codeLength = 0;
+        int constantCount = 0;
+        int depth = 0;
+        int maxStack = 0;
+
+        for (Token token : rpn) {
+            switch (token.type) {
+                case VARIABLE -> {
+                    code[codeLength++] = OpCode.VAR;
+                    code[codeLength++] = token.slot;
+                    maxStack = Math.max(maxStack, ++depth);
+                }
+                case NUMBER, CONSTANT -> {
+                    int index = indexOfConstant(constants, constantCount, token.value);
+                    if (index == constantCount) {
+                        constants[constantCount++] = token.value;
+                    }
+                    code[codeLength++] = OpCode.CONST;
+                    code[codeLength++] = index;
+                    maxStack = Math.max(maxStack, ++depth);
+                }
+                case FUNCTION -> {
+                    if (token.op == OpCode.CALL) {
+                        FunctionRegistry.Definition definition = definitions.functions.get(token.symbol);
+                        definition.checkArguments(token.arguments);
+                        if (depth < token.arguments) {
+                            throw new IllegalArgumentException("Insufficient values for function " + token.symbol);
+                        }
+                        if (calls == null) {
+                            calls = new ArrayList<>();
+                        }
+                        calls.add(new CompiledExpression.Call(token.symbol, definition.function, token.arguments));
+                        code[codeLength++] = OpCode.CALL;
+                        code[codeLength++] = calls.size() - 1;
+                        depth -= token.arguments - 1;
+                        maxStack = Math.max(maxStack, depth);
+                        continue;
+                    }
+                    if (token.arguments > 1) {
+                        throw new IllegalArgumentException("Function " + token.symbol + " expects 1 argument but got "
+                                + token.arguments);
+                    }
+                    if (depth < 1) {
+                        throw new IllegalArgumentException("Insufficient values for function " + token.symbol);
+                    }
+                    code[codeLength++] = functions[token.op];
+                }
+                case OPERATOR -> {
+                    if (token.op == OpCode.FACTORIAL) {
+                        if (depth < 1) {
+                            throw new IllegalArgumentException("Insufficient values for operation !");
+                        }
+                    } else {
+                        if (depth < 2) {
+                            throw new IllegalArgumentException("Insufficient values for operation " + token.symbol);
+                        }
+                        depth--;
+                    }
+                    code[codeLength++] = token.op;
+                }
+                default -> throw new IllegalArgumentException("Unknown token: " + token);
+            }
+        }
+
+        if (depth == 0) {
+            throw new IllegalArgumentException("Invalid expression");
+        }
+        if (calls == null && definitions == FunctionRegistry.Snapshot.EMPTY) {
+            return new CompiledExpression(source, variableNames, Arrays.copyOf(code, codeLength),
+                    Arrays.copyOf(constants, constantCount), maxStack, 0, this);
+        }
+        CompiledExpression.Call[] callArray = (calls == null) ? new CompiledExpression.Call[0]
+                : calls.toArray(new CompiledExpression.Call[0]);
+        return new CompiledExpression(source, variableNames, Arrays.copyOf(code, codeLength),
+                Arrays.copyOf(constants, constantCount), callArray, maxStack, 0, this, definitions);
+    }
+
+    private static int indexOfConstant(double[] constants, int count, double value) {
+        long bits = Double.doubleToLongBits(value);
+        for (int i = 0; i < count; i++) {
+            if (Double.doubleToLongBits(constants[i]) == bits) {
+                return i;
+            }
+        }
+        return count;
+    }
+
+    /**
+     * Builder of {@link CalculatorEngine}. Not thread-safe; the engines it builds are.
+     */
+    public static final class Builder {
+        private AngleUnit angleUnit = AngleUnit.DEGREES;
+        private int fractionDigits = ResultFormatter.DEFAULT_FRACTION_DIGITS;
+        private int jitThreshold = DEFAULT_JIT_THRESHOLD;
+        private boolean optimizationEnabled = true;
+        private ExpressionCache expressionCache;
+        private ResultCache resultCache;
+        private FunctionRegistry registry;
+        private EngineMetrics metrics;
+
+        private Builder() {
+        }
+
+        /**
+         * Sets the unit of angles. Defaults to {@link AngleUnit#DEGREES}.
+         *
+         * @param angleUnit the unit of angles.
+         * @return this builder.
+         * @throws IllegalArgumentException if the unit is null.
+         */
+        public Builder angleUnit(AngleUnit angleUnit) {
+            if (angleUnit == null) {
+                throw new IllegalArgumentException("Angle unit must not be null");
+            }
+            this.angleUnit = angleUnit;
+            return this;
+        }
+
+        /**
+         * Sets the maximum number of fraction digits of formatted results, rounded half up.
+         * Defaults to {@link ResultFormatter#DEFAULT_FRACTION_DIGITS}.
+         *
+         * @param fractionDigits the maximum number of fraction digits.
+         * @return this builder.
+         * @throws IllegalArgumentException if the number is negative.
+         */
+        public Builder fractionDigits(int fractionDigits) {
+            if (fractionDigits < 0) {
+                throw new IllegalArgumentException("Number of fraction digits must not be negative");
+            }
+            this.fractionDigits = fractionDigits;
+            return this;
+        }
+
+        /**
+         * Sets the number of evaluations after which a compiled expression is translated to JVM
+         * bytecode. Defaults to {@link #DEFAULT_JIT_THRESHOLD}.
+         *
+         * @param jitThreshold the number of interpreted evaluations, 0 to translate before the
+         *                     first evaluation, or a negative value to always interpret.
+         * @return this builder.
+         */
+        public Builder jitThreshold(int jitThreshold) {
+            this.jitThreshold = jitThreshold;
+            return this;
+        }
+
+        /**
+         * Enables or disables the optimization of compiled expressions. Enabled by default.
+         * Only expressions that may be evaluated more than once are optimized: those returned by
+         * {@link CalculatorEngine#compile(String, String...)} and those kept in the expression
+         * cache.
+         *
+         * @param optimizationEnabled true to optimize compiled expressions.
+         * @return this builder.
+         */
+        public Builder optimizationEnabled(boolean optimizationEnabled) {
+            this.optimizationEnabled = optimizationEnabled;
+            return this;
+        }
+
+        /**
+         * Sets the cache of compiled expressions. Disabled by default. The cache may be shared by
+         * several engines: an expression compiled by an engine with other settings is compiled
+         * again.
+         *
+         * @param expressionCache the cache to use, or null to disable caching.
+         * @return this builder.
+         */
+        public Builder expressionCache(ExpressionCache expressionCache) {
+            this.expressionCache = expressionCache;
+            return this;
+        }
+
+        /**
+         * Sets the cache of formatted results. Disabled by default. The cache may be shared by
+         * several engines: a result calculated by an engine with other settings is calculated
+         * again. Expressions calling user-defined functions are always calculated.
+         *
+         * @param resultCache the cache to use, or null to disable caching.
+         * @return this builder.
+         */
+        public Builder resultCache(ResultCache resultCache) {
+            this.resultCache = resultCache;
+            return this;
+        }
+
+        /**
+         * Sets the registry of user-defined functions and constants. None by default. The
+         * registry may be shared by several engines, and changed while they are in use.
+         *
+         * @param registry the registry to use, or null for built-in functions only.
+         * @return this builder.
+         */
+        public Builder registry(FunctionRegistry registry) {
+            this.registry = registry;
+            return this;
+        }
+
+        /**
+         * Sets the metrics to record. Disabled by default. Metrics may be shared by several
+         * engines, whose measurements then add up.
+         *
+         * @param metrics the metrics to record, or null to disable them.
+         * @return this builder.
+         */
+        public Builder metrics(EngineMetrics metrics) {
+            this.metrics = metrics;
+            return this;
+        }
+
+        /**
+         * Builds an engine with the current settings.
+         */
+        public CalculatorEngine build() {
+            return new CalculatorEngine(this);
+        }
+    }
+}
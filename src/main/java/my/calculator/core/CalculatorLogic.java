@@ -1,19 +1,12 @@
 package my.calculator.core;
 
-import java.math.RoundingMode;
-import java.text.DecimalFormat;
-import java.text.DecimalFormatSymbols;
+import java.math.BigDecimal;
+import java.math.MathContext;
 import java.util.ArrayDeque;
 import java.util.ArrayList;
-import java.util.Arrays;
 import java.util.Deque;
-import java.util.HashMap;
-import java.util.HashSet;
+import java.util.Iterator;
 import java.util.List;
-import java.util.Map;
-import java.util.Set;
-import java.util.regex.Matcher;
-import java.util.regex.Pattern;
 
 /**
  * The CalculatorLogic class provides methods to parse and evaluate mathematical expressions.
@@ -21,9 +14,13 @@ import java.util.regex.Pattern;
  * 
  * Features:
  *   -Shunting Yard algorithm for infix to RPN conversion
- *   -RPN evaluation with arithmetic and scientific functions
+ *   -RPN compilation into a reusable {@link CompiledExpression} (parse once, evaluate many times)
+ *   -Evaluation with arithmetic and scientific functions
  *   -Implicit multiplication (e.g., "9sin(90)" → "9 * sin(90)")
  *   -Constants: π (pi) and e are handled as numeric constants, not functions.
+ *
+ * The static methods delegate to a default {@link CalculatorEngine}; create other engines to
+ * use different settings side by side.
  */
 public class CalculatorLogic {
 
@@ -32,48 +29,57 @@ public class CalculatorLogic {
         // Prevent instantiation
     }
 
-    /** Operator precedence mapping. Higher number = higher precedence. */
-    private static final Map<String, Integer> OPERATOR_PRECEDENCE = new HashMap<>();
-    /** Operator associativity mapping. true = left-associative, false = right-associative. */
-    private static final Map<String, Boolean> OPERATOR_ASSOCIATIVITY = new HashMap<>();
+    /** Operator precedence, indexed by opcode. Higher number = higher precedence. */
+    private static final int[] OPERATOR_PRECEDENCE = new int[OpCode.COUNT];
+    /** Operator associativity, indexed by opcode. true = left-associative, false = right-associative. */
+    private static final boolean[] LEFT_ASSOCIATIVE = new boolean[OpCode.COUNT];
 
-    /** Set of supported functions (no longer includes pi or e). */
-    private static final Set<String> FUNCTIONS = new HashSet<>(Arrays.asList(
-            "sin", "cos", "tan", "asin", "acos", "atan",
-            "exp", "ln", "log", "√", "x²", "10^x"
-    ));
+    /** Engine the static methods delegate to. */
+    private static volatile CalculatorEngine defaultEngine = CalculatorEngine.builder().build();
 
-    /** Set of constants: pi and e. These are treated as numeric constants. */
-    private static final Map<String, Double> CONSTANTS = new HashMap<>();
+    /** Default number of evaluations after which a compiled expression is translated to bytecode. */
+    public static final int DEFAULT_JIT_THRESHOLD = CalculatorEngine.DEFAULT_JIT_THRESHOLD;
 
     static {
         // Define operator precedence
-        OPERATOR_PRECEDENCE.put("(", 0);
-        OPERATOR_PRECEDENCE.put(")", 0);
-        OPERATOR_PRECEDENCE.put("^", 3);
-        OPERATOR_PRECEDENCE.put("%", 2);
-        OPERATOR_PRECEDENCE.put("*",2);
-        OPERATOR_PRECEDENCE.put("/", 2);
-        OPERATOR_PRECEDENCE.put("+", 1);
-        OPERATOR_PRECEDENCE.put("-", 1);
-        OPERATOR_PRECEDENCE.put("!", 4);
+        OPERATOR_PRECEDENCE[OpCode.POW] = 3;
+        OPERATOR_PRECEDENCE[OpCode.MOD] = 2;
+        OPERATOR_PRECEDENCE[OpCode.MUL] = 2;
+        OPERATOR_PRECEDENCE[OpCode.DIV] = 2;
+        OPERATOR_PRECEDENCE[OpCode.ADD] = 1;
+        OPERATOR_PRECEDENCE[OpCode.SUB] = 1;
+        OPERATOR_PRECEDENCE[OpCode.FACTORIAL] = 4;
 
         // Define operator associativity
-        OPERATOR_ASSOCIATIVITY.put("^", false);
-        OPERATOR_ASSOCIATIVITY.put("!", false);
-        OPERATOR_ASSOCIATIVITY.put("*", true);
-        OPERATOR_ASSOCIATIVITY.put("/", true);
-        OPERATOR_ASSOCIATIVITY.put("%", true);
-        OPERATOR_ASSOCIATIVITY.put("+", true);
-        OPERATOR_ASSOCIATIVITY.put("-", true);
-
-        // Initialize constants
-        CONSTANTS.put("e", Math.E);
-        CONSTANTS.put("π", Math.PI);
+        LEFT_ASSOCIATIVE[OpCode.MUL] = true;
+        LEFT_ASSOCIATIVE[OpCode.DIV] = true;
+        LEFT_ASSOCIATIVE[OpCode.MOD] = true;
+        LEFT_ASSOCIATIVE[OpCode.ADD] = true;
+        LEFT_ASSOCIATIVE[OpCode.SUB] = true;
     }
 
     /**
-     * Calculates the result from a given mathematical expression.
+     * Returns the engine the static methods of this class delegate to.
+     */
+    public static CalculatorEngine getDefaultEngine() {
+        return defaultEngine;
+    }
+
+    /**
+     * Replaces the engine the static methods of this class delegate to.
+     *
+     * @param engine the new default engine.
+     * @throws IllegalArgumentException if the engine is null.
+     */
+    public static void setDefaultEngine(CalculatorEngine engine) {
+        if (engine == null) {
+            throw new IllegalArgumentException("Engine must not be null");
+        }
+        defaultEngine = engine;
+    }
+
+    /**
+     * Calculates the result from a given mathematical expression with the default engine.
      *
      * @param input The mathematical expression as a string.
      * @return The result as a string.
@@ -81,418 +87,323 @@ public class CalculatorLogic {
      * @throws ArithmeticException      if arithmetic errors occur (e.g., division by zero).
      */
     public static String calculate(String input) throws IllegalArgumentException, ArithmeticException {
-        if (input == null || input.trim().isEmpty()) {
-            throw new IllegalArgumentException("Input is empty");
-        }
-
-        // Remove spaces
-        input = input.replaceAll("\\s+", "");
-
-        // Check for consecutive operators
-        if (hasConsecutiveOperators(input)) {
-            throw new IllegalArgumentException("Invalid input: Consecutive operators");
-        }
-
-        // Convert to RPN
-        List<String> rpn = shuntingYard(input);
-
-        // Evaluate RPN
-        double result = evaluateRPN(rpn);
-        return formatResult(result);
+        return defaultEngine.calculate(input);
     }
 
     /**
-     * Inserts a function name with parentheses into an input string.
-     * For example, if input is "3+" and functionName is "sin", returns "3+sin()".
+     * Evaluates a mathematical expression without formatting the result. Callers that need the
+     * number rather than its display form should use this instead of {@link #calculate(String)}.
      *
-     * @param input        the current input string.
-     * @param functionName the function to insert (e.g., "sin").
-     * @return the new input string with the inserted function.
+     * @param input The mathematical expression as a string.
+     * @return The result as a double.
+     * @throws IllegalArgumentException if the expression is invalid.
+     * @throws ArithmeticException      if arithmetic errors occur (e.g., division by zero).
      */
-    public static String insertFunction(String input, String functionName) {
-        if (input == null) {
-            input = "";
-        }
-        int caretPos = input.length();
-        String newText = functionName + "()";
-        return input.substring(0, caretPos) + newText;
+    public static double evaluate(String input) throws IllegalArgumentException, ArithmeticException {
+        return defaultEngine.evaluate(input);
     }
 
     /**
-     * Checks if consecutive operators are present in the input, which would make it invalid.
+     * Calculates the result of a mathematical expression with arbitrary precision.
+     * Number literals are taken exactly as written, and every operation is rounded to {@code mc}.
+     * The result is printed without exponent and without trailing zeros.
      *
-     * @param input the expression to check.
-     * @return true if consecutive operators are found, false otherwise.
+     * @param input The mathematical expression as a string.
+     * @param mc    The precision and rounding of every operation.
+     * @return The result as a string.
+     * @throws IllegalArgumentException if the expression is invalid.
+     * @throws ArithmeticException      if arithmetic errors occur (e.g., division by zero).
+     * @see CompiledExpression#evaluate(BigDecimal[], MathContext)
      */
-    private static boolean hasConsecutiveOperators(String input) {
-        String operatorPattern = "[-+*/%^]{2,}";
-        Pattern pattern = Pattern.compile(operatorPattern);
-        Matcher matcher = pattern.matcher(input);
-        return matcher.find();
+    public static String calculate(String input, MathContext mc) throws IllegalArgumentException, ArithmeticException {
+        return defaultEngine.calculate(input, mc);
     }
 
     /**
-     * Converts the input expression to Reverse Polish Notation (RPN) using the Shunting Yard Algorithm.
+     * Evaluates a mathematical expression with arbitrary precision.
      *
-     * @param input the mathematical expression in infix notation.
-     * @return a list of tokens representing the expression in RPN.
-     * @throws IllegalArgumentException if parentheses are mismatched or unknown tokens are found.
+     * @param input The mathematical expression as a string.
+     * @param mc    The precision and rounding of every operation.
+     * @return The result, rounded to {@code mc}.
+     * @throws IllegalArgumentException if the expression is invalid.
+     * @throws ArithmeticException      if arithmetic errors occur (e.g., division by zero).
+     * @see CompiledExpression#evaluate(BigDecimal[], MathContext)
      */
-    private static List<String> shuntingYard(String input) throws IllegalArgumentException {
-        List<String> tokens = tokenize(input);
-        tokens = insertImplicitMultiplicationOperators(tokens);
-        List<String> outputQueue = new ArrayList<>();
-        Deque<String> operatorStack = new ArrayDeque<>();
-    
-        for (String token : tokens) {
-            processToken(token, outputQueue, operatorStack);
-        }
-    
-        while (!operatorStack.isEmpty()) {
-            String op = operatorStack.pop();
-            if (op.equals("(") || op.equals(")")) {
-                throw new IllegalArgumentException("Mismatched parentheses");
-            }
-            outputQueue.add(op);
-        }
-    
-        return outputQueue;
-    }
-    
-    private static void processToken(String token, List<String> outputQueue, Deque<String> operatorStack) {
-        if (isNumber(token)) {
-            outputQueue.add(token);
-        } else if (CONSTANTS.containsKey(token)) {
-            double val = (token.equals("π")) ? Math.PI : Math.E;
-            outputQueue.add(Double.toString(val));
-        } else if (FUNCTIONS.contains(token)) {
-            operatorStack.push(token);
-        } else if (isOperator(token)) {
-            handleOperator(token, outputQueue, operatorStack);
-        } else if (token.equals("(")) {
-            operatorStack.push(token);
-        } else if (token.equals(")")) {
-            handleClosingParenthesis(outputQueue, operatorStack);
-        } else {
-            throw new IllegalArgumentException("Unknown token: " + token);
-        }
+    public static BigDecimal evaluate(String input, MathContext mc) throws IllegalArgumentException, ArithmeticException {
+        return defaultEngine.evaluate(input, mc);
     }
-    
-    private static void handleOperator(String token, List<String> outputQueue, Deque<String> operatorStack) {
-        while (!operatorStack.isEmpty() && isOperator(operatorStack.peek())) {
-            String topOp = operatorStack.peek();
-            if ((OPERATOR_ASSOCIATIVITY.get(token) && OPERATOR_PRECEDENCE.get(token) <= OPERATOR_PRECEDENCE.get(topOp))
-                    || (!OPERATOR_ASSOCIATIVITY.get(token) && OPERATOR_PRECEDENCE.get(token) < OPERATOR_PRECEDENCE.get(topOp))) {
-                outputQueue.add(operatorStack.pop());
-            } else {
-                break;
-            }
-        }
-        operatorStack.push(token);
+
+    /**
+     * Installs the cache of results used by {@link #calculate(String)}.
+     * Caching is disabled by default.
+     *
+     * @param cache the cache to use, or null to disable caching.
+     */
+    public static synchronized void setResultCache(ResultCache cache) {
+        defaultEngine = defaultEngine.toBuilder().resultCache(cache).build();
     }
-    
-    private static void handleClosingParenthesis(List<String> outputQueue, Deque<String> operatorStack) {
-        while (!operatorStack.isEmpty() && !operatorStack.peek().equals("(")) {
-            outputQueue.add(operatorStack.pop());
-        }
-        if (operatorStack.isEmpty()) {
-            throw new IllegalArgumentException("Mismatched parentheses");
-        }
-        operatorStack.pop(); // pop "("
-        if (!operatorStack.isEmpty() && FUNCTIONS.contains(operatorStack.peek())) {
-            outputQueue.add(operatorStack.pop());
-        }
+
+    /**
+     * Returns the cache of results, or null if caching is disabled.
+     */
+    public static ResultCache getResultCache() {
+        return defaultEngine.getResultCache();
     }
 
     /**
-     * Tokenizes the input string into numbers, constants, functions, and operators.
+     * Sets the metrics recorded by {@link #calculate(String)}.
      *
-     * @param input the expression string to tokenize.
-     * @return a list of tokens.
-     * @throws IllegalArgumentException if invalid tokens are detected.
+     * @param metrics the metrics to record, or null to disable them.
      */
-    private static List<String> tokenize(String input) throws IllegalArgumentException {
-        input = input.replace("÷", "/");
-        String numberPattern = "\\d+(\\.\\d+)?";
-        String functionPattern = "(sin|cos|tan|asin|acos|atan|exp|ln|log|√|10\\^x)";
-        String constantsPattern = "(π|e)";
-        String binaryOperatorPattern = "[-+*/%^]";
-        String unaryOperatorPattern = "[!]";  // Factorial as unary operator
-        String parenthesesPattern = "[()]";
-        String tokenPattern = String.format("(%s)|(%s)|(%s)|(%s)|(%s)|(%s)", 
-        functionPattern, 
-        numberPattern, 
-        constantsPattern, 
-        binaryOperatorPattern,
-        unaryOperatorPattern,
-        parenthesesPattern);
-
-        Pattern pattern = Pattern.compile(tokenPattern);
-        Matcher matcher = pattern.matcher(input);
-
-        List<String> tokens = new ArrayList<>();
-        int pos = 0;
-        while (matcher.find()) {
-            if (matcher.start() != pos) {
-                throw new IllegalArgumentException("Invalid token at position " + pos);
-            }
-            String token = matcher.group();
-            tokens.add(token);
-            pos = matcher.end();
-        }
+    public static synchronized void setMetrics(EngineMetrics metrics) {
+        defaultEngine = defaultEngine.toBuilder().metrics(metrics).build();
+    }
 
-        if (pos != input.length()) {
-            throw new IllegalArgumentException("Invalid token at position " + pos);
-        }
+    /**
+     * Returns the metrics recorded, or null if metrics are disabled.
+     */
+    public static EngineMetrics getMetrics() {
+        return defaultEngine.getMetrics();
+    }
 
-        tokens = handleUnaryOperators(tokens);
-        return tokens;
+    /**
+     * Parses a mathematical expression once into a reusable {@link CompiledExpression}.
+     * The returned object is immutable and thread-safe; evaluating it does not parse again.
+     *
+     * Variables are bound to slots in the order they are given, so that
+     * {@code compile("3x^2+sin(x)", "x").evaluate(new double[] {2})} evaluates with x = 2.
+     * Like constants, variables take part in implicit multiplication ("3x" → "3 * x").
+     *
+     * @param input     The mathematical expression as a string.
+     * @param variables The names of the variables the expression may reference.
+     * @return The compiled expression.
+     * @throws IllegalArgumentException if the expression or a variable name is invalid.
+     */
+    public static CompiledExpression compile(String input, String... variables) throws IllegalArgumentException {
+        return defaultEngine.compile(input, variables);
     }
 
     /**
-     * Inserts implicit multiplication where needed.
-     * For example, if we have [ "9", "sin", "(" ] -> [ "9", "*", "sin", "(" ].
+     * Installs the cache used by {@link #compile(String, String...)} and {@link #calculate(String)}.
+     * Caching is disabled by default.
      *
-     * @param tokens the list of tokens after initial tokenization.
-     * @return updated token list with implicit "*" inserted where appropriate.
+     * @param cache the cache to use, or null to disable caching.
      */
-    private static List<String> insertImplicitMultiplicationOperators(List<String> tokens) {
-        List<String> result = new ArrayList<>();
-        for (int i = 0; i < tokens.size(); i++) {
-            String current = tokens.get(i);
-            result.add(current);
-            if (i < tokens.size() - 1) {
-                String next = tokens.get(i + 1);
-                boolean currentTriggers = isNumber(current) || CONSTANTS.containsKey(current) || current.equals(")");
-                boolean nextTriggers = FUNCTIONS.contains(next) || next.equals("(") || CONSTANTS.containsKey(next);
+    public static synchronized void setExpressionCache(ExpressionCache cache) {
+        defaultEngine = defaultEngine.toBuilder().expressionCache(cache).build();
+    }
 
-                if (currentTriggers && nextTriggers) {
-                    result.add("*");
-                }
-            }
-        }
-        return result;
+    /**
+     * Returns the cache of compiled expressions, or null if caching is disabled.
+     */
+    public static ExpressionCache getExpressionCache() {
+        return defaultEngine.getExpressionCache();
     }
 
     /**
-     * Handles unary operators in the token list, specifically the unary minus for negative numbers.
+     * Sets the number of evaluations after which a compiled expression is translated to JVM
+     * bytecode, which evaluates faster than the interpreter. Applies to expressions compiled
+     * afterwards. Defaults to {@link #DEFAULT_JIT_THRESHOLD}.
      *
-     * @param tokens the original list of tokens
-     * @return a processed list with unary operators handled
+     * @param threshold the number of interpreted evaluations, 0 to translate before the first
+     *                  evaluation, or a negative value to always interpret.
      */
-    private static List<String> handleUnaryOperators(List<String> tokens) {
-        List<String> processedTokens = new ArrayList<>();
-        for (int i = 0; i < tokens.size(); i++) {
-            String token = tokens.get(i);
-            if (token.equals("-") && (i == 0 || isOperator(tokens.get(i - 1)) || tokens.get(i - 1).equals("("))) {
-                // Unary minus detected, treat it as "0 - ..."
-                processedTokens.add("0");
-            }
-            processedTokens.add(token);
-        }
-        return processedTokens;
+    public static synchronized void setJitThreshold(int threshold) {
+        defaultEngine = defaultEngine.toBuilder().jitThreshold(threshold).build();
     }
 
     /**
-     * Gets constant value
+     * Returns the number of evaluations after which a compiled expression is translated to
+     * bytecode, or a negative value if translation is disabled.
      */
-    private static double getConstantValue(String token) {
-        return CONSTANTS.get(token);
+    public static int getJitThreshold() {
+        return defaultEngine.getJitThreshold();
     }
 
     /**
-     * Evaluates the Reverse Polish Notation (RPN) expression.
+     * Enables or disables the optimization of compiled expressions: constant folding,
+     * simplifications and the reuse of common subexpressions. Optimized expressions give exactly
+     * the same results and errors, only faster. Applies to expressions compiled afterwards, and
+     * only to those that may be evaluated more than once (see
+     * {@link CalculatorEngine.Builder#optimizationEnabled(boolean)}). Optimization is enabled by
+     * default.
      *
-     * @param rpn a list of tokens in RPN form.
-     * @return the result as a double.
-     * @throws IllegalArgumentException if the RPN expression is invalid.
-     * @throws ArithmeticException      if arithmetic errors occur.
+     * @param enabled true to optimize compiled expressions.
      */
-    private static double evaluateRPN(List<String> tokens) {
-        Deque<Double> numbers = new ArrayDeque<>();
-        
-        for (String token : tokens) {
-            if (isNumber(token)) {
-                numbers.push(Double.valueOf(token));
-            } else if (isConstant(token)) {
-                numbers.push(getConstantValue(token));
-            } else if (isFunction(token)) {
-                if (numbers.isEmpty()) {
-                    throw new IllegalArgumentException("Insufficient values for function " + token);
-                }
-                double a = numbers.pop();
-                numbers.push(applyFunction(a, token));
-            } else if (token.equals("!")) {
-                if (numbers.isEmpty()) {
-                    throw new IllegalArgumentException("Insufficient values for operation !");
-                }
-                double a = numbers.pop();
-                numbers.push(factorial(a));
-            } else if (isOperator(token)) {
-                if (numbers.size() < 2) {
-                    throw new IllegalArgumentException("Insufficient values for operation " + token);
-                }
-                double b = numbers.pop();
-                double a = numbers.pop();
-                numbers.push(applyOperator(a, b, token));
-            }
-        }
-        
-        return numbers.pop();
+    public static synchronized void setOptimizationEnabled(boolean enabled) {
+        defaultEngine = defaultEngine.toBuilder().optimizationEnabled(enabled).build();
     }
 
     /**
-     * Applies an operator to two operands.
-     *
-     * @param a        the first operand
-     * @param b        the second operand
-     * @param operator the operator symbol
-     * @return the result of a operator b
-     * @throws ArithmeticException if division or modulus by zero occurs
+     * Returns true if compiled expressions are optimized.
      */
-    private static double applyOperator(double a, double b, String operator) throws ArithmeticException {
-        return switch (operator) {
-                    case "+" -> a + b;
-                    case "-" -> a - b;
-                    case "*" -> a * b;
-                    case "/" -> {
-                        if (b == 0) {
-                            throw new ArithmeticException("Cannot divide by zero");
-                        }
-                        yield a / b;
-                    }
-                    case "%" -> {
-                        if (b == 0) {
-                            throw new ArithmeticException("Cannot mod by zero");
-                        }
-                        yield a % b;
-                    }
-                    case "^" -> Math.pow(a, b);
-                    case "!" -> factorial(a);
-                    default -> throw new IllegalArgumentException("Unknown operator: " + operator);
-                };
+    public static boolean isOptimizationEnabled() {
+        return defaultEngine.isOptimizationEnabled();
     }
 
     /**
-     * Checks if the value is within the domain of the given function.
+     * Inserts a function name with parentheses into an input string.
+     * For example, if input is "3+" and functionName is "sin", returns "3+sin()".
      *
-     * @param function the function name
-     * @param value    the value to check
-     * @throws IllegalArgumentException if the value is out of the domain
+     * @param input        the current input string.
+     * @param functionName the function to insert (e.g., "sin").
+     * @return the new input string with the inserted function.
      */
-    private static void checkDomain(String function, double value) {
-        if ((function.equals("asin") || function.equals("acos")) && (value < -1 || value > 1)) {
-            throw new IllegalArgumentException("Domain definition of " + function + " is (-1, 1)");
+    public static String insertFunction(String input, String functionName) {
+        if (input == null) {
+            input = "";
         }
+        int caretPos = input.length();
+        String newText = functionName + "()";
+        return input.substring(0, caretPos) + newText;
     }
 
     /**
-     * Applies a mathematical function to an operand.
+     * Converts the tokens of an expression to Reverse Polish Notation (RPN) using the Shunting Yard Algorithm.
+     * Function tokens in the result carry the number of arguments they were called with.
      *
-     * @param a        the operand
-     * @param function the function name
-     * @return the result of applying the function to a
-     * @throws IllegalArgumentException if the function is unknown
-     * @throws ArithmeticException      if the function is not defined for the given operand
+     * @param tokens the tokens of the expression in infix notation, implicit multiplications included.
+     * @return a list of tokens representing the expression in RPN.
+     * @throws IllegalArgumentException if parentheses are mismatched, or a comma is misplaced.
      */
-    private static double applyFunction(double a, String function) throws IllegalArgumentException, ArithmeticException {
-        checkDomain(function, a);
-        return switch (function) {
-            case "sin" -> Math.sin(Math.toRadians(a));
-            case "cos" -> Math.cos(Math.toRadians(a));
-            case "tan" -> Math.tan(Math.toRadians(a));
-            case "asin" -> Math.toDegrees(Math.asin(a));
-            case "acos" -> Math.toDegrees(Math.acos(a));
-            case "atan" -> Math.toDegrees(Math.atan(a));
-            case "exp" -> Math.exp(a);
-            case "ln" -> {
-                if (a <= 0) {
-                    throw new ArithmeticException("ln undefined for non-positive values");
+    static List<Token> shuntingYard(List<Token> tokens) throws IllegalArgumentException {
+        List<Token> outputQueue = new ArrayList<>(tokens.size());
+        Deque<Token> operatorStack = new ArrayDeque<>();
+        // Commas in each open parenthesis, indexed by nesting depth; allocated on the first comma
+        int[] commas = null;
+        int depth = 0;
+        Token previous = null;
+    
+        for (Token token : tokens) {
+            switch (token.type) {
+                case NUMBER, CONSTANT, VARIABLE -> outputQueue.add(token);
+                case FUNCTION -> operatorStack.push(token);
+                case LEFT_PAREN -> {
+                    operatorStack.push(token);
+                    depth++;
+                    if (commas != null) {
+                        commas[depth] = 0;
+                    }
                 }
-                yield Math.log(a);
-            }
-            case "log" -> {
-                if (a <= 0) {
-                    throw new ArithmeticException("log undefined for non-positive values");
+                case OPERATOR -> handleOperator(token, outputQueue, operatorStack);
+                case COMMA -> {
+                    if (previous == null || previous.type == Token.Type.LEFT_PAREN
+                            || previous.type == Token.Type.COMMA) {
+                        throw missingArgument(token);
+                    }
+                    handleComma(token, outputQueue, operatorStack);
+                    if (commas == null) {
+                        commas = new int[tokens.size() + 1];
+                    }
+                    commas[depth]++;
                 }
-                yield Math.log10(a);
-            }
-            case "√" -> {
-                if (a < 0) {
-                    throw new ArithmeticException("Square root of negative number is undefined");
+                case RIGHT_PAREN -> {
+                    int arguments;
+                    if (previous != null && previous.type == Token.Type.LEFT_PAREN) {
+                        arguments = 0;
+                    } else if (previous != null && previous.type == Token.Type.COMMA) {
+                        throw missingArgument(token);
+                    } else {
+                        arguments = 1 + ((commas == null || depth <= 0) ? 0 : commas[depth]);
+                    }
+                    handleClosingParenthesis(outputQueue, operatorStack, arguments);
+                    depth--;
                 }
-                yield Math.sqrt(a);
             }
-            case "x²" -> a * a;
-            case "n!" -> factorial(a);
-            case "10^x" -> Math.pow(10, a);
-            default -> throw new IllegalArgumentException("Unknown function: " + function);
-        };
+            previous = token;
+        }
+    
+        while (!operatorStack.isEmpty()) {
+            Token op = operatorStack.pop();
+            if (op.type == Token.Type.LEFT_PAREN) {
+                throw new IllegalArgumentException("Mismatched parentheses");
+            }
+            outputQueue.add(op);
+        }
+    
+        return outputQueue;
     }
 
-    /**
-     * Calculates the factorial of a number (only for non-negative integers).
-     *
-     * @param a the number to factorial
-     * @return factorial of a
-     * @throws ArithmeticException if a is negative or non-integer
-     */
-    private static double factorial(double a) throws ArithmeticException {
-        if (a < 0 || a != (int) a) {
-            throw new ArithmeticException("Factorial is only defined for non-negative integers");
+    private static IllegalArgumentException missingArgument(Token token) {
+        return new IllegalArgumentException("Missing argument at position " + token.position);
+    }
+
+    private static void handleOperator(Token token, List<Token> outputQueue, Deque<Token> operatorStack) {
+        boolean leftAssociative = LEFT_ASSOCIATIVE[token.op];
+        int precedence = OPERATOR_PRECEDENCE[token.op];
+        while (!operatorStack.isEmpty() && operatorStack.peek().type == Token.Type.OPERATOR) {
+            int topPrecedence = OPERATOR_PRECEDENCE[operatorStack.peek().op];
+            if ((leftAssociative && precedence <= topPrecedence)
+                    || (!leftAssociative && precedence < topPrecedence)) {
+                outputQueue.add(operatorStack.pop());
+            } else {
+                break;
+            }
         }
-        int n = (int) a;
-        if (n > 20) {
-            // to prevent overflow
-            throw new ArithmeticException("Factorial result is too large");
+        operatorStack.push(token);
+    }
+    
+    private static void handleComma(Token comma, List<Token> outputQueue, Deque<Token> operatorStack) {
+        while (!operatorStack.isEmpty() && operatorStack.peek().type != Token.Type.LEFT_PAREN) {
+            outputQueue.add(operatorStack.pop());
         }
-        long result = 1;
-        for (int i = 2; i <= n; i++) {
-            result *= i;
+        // Commas only separate the arguments of a function call: "(" must be right above a function
+        Iterator<Token> open = operatorStack.iterator();
+        if (open.hasNext()) {
+            open.next();
+            if (open.hasNext() && open.next().type == Token.Type.FUNCTION) {
+                return;
+            }
         }
-        return result;
+        throw new IllegalArgumentException("Misplaced comma at position " + comma.position);
     }
 
-    /**
-     * Checks if a string represents a number.
-     *
-     * @param token the string token
-     * @return true if token is a number, false otherwise
-     */
-    private static boolean isNumber(String token) {
-        try {
-            Double.parseDouble(token);
-            return true;
-        } catch (NumberFormatException e) {
-            return false;
+    private static void handleClosingParenthesis(List<Token> outputQueue, Deque<Token> operatorStack, int arguments) {
+        while (!operatorStack.isEmpty() && operatorStack.peek().type != Token.Type.LEFT_PAREN) {
+            outputQueue.add(operatorStack.pop());
+        }
+        if (operatorStack.isEmpty()) {
+            throw new IllegalArgumentException("Mismatched parentheses");
+        }
+        operatorStack.pop(); // pop "("
+        if (!operatorStack.isEmpty() && operatorStack.peek().type == Token.Type.FUNCTION) {
+            Token function = operatorStack.pop();
+            outputQueue.add((arguments == 1) ? function : function.withArguments(arguments));
         }
     }
 
     /**
-     * Checks if a token is a constant
-     */
-    private static boolean isConstant(String token) {
-        return CONSTANTS.containsKey(token);
-    }
-
-    /**
-     * Checks if a string is an operator.
+     * Inserts implicit multiplication where needed.
+     * For example, if we have [ "9", "sin", "(" ] -> [ "9", "*", "sin", "(" ].
      *
-     * @param token the string token
-     * @return true if token is an operator, false otherwise
+     * @param tokens the list of tokens after initial tokenization.
+     * @return updated token list with implicit "*" inserted where appropriate.
      */
-    private static boolean isOperator(String token) {
-        return OPERATOR_PRECEDENCE.containsKey(token) && !token.equals("(") && !token.equals(")");
-    }
+    static List<Token> insertImplicitMultiplicationOperators(List<Token> tokens) {
+        List<Token> result = null;
+        for (int i = 0; i < tokens.size(); i++) {
+            Token current = tokens.get(i);
+            if (result != null) {
+                result.add(current);
+            }
+            if (i < tokens.size() - 1) {
+                Token next = tokens.get(i + 1);
+                boolean currentTriggers = current.isValue() || current.type == Token.Type.VARIABLE
+                        || current.type == Token.Type.RIGHT_PAREN;
+                boolean nextTriggers = next.type == Token.Type.FUNCTION || next.type == Token.Type.LEFT_PAREN
+                        || next.type == Token.Type.CONSTANT || next.type == Token.Type.VARIABLE;
 
-    /**
-     * Checks if a string is a function.
-     *
-     * @param token the string token
-     * @return true if token is a function, false otherwise
-     */
-    private static boolean isFunction(String token) {
-        return FUNCTIONS.contains(token);
+                if (currentTriggers && nextTriggers) {
+                    if (result == null) {
+                        // Copy lazily: most expressions have no implicit multiplication
+                        result = new ArrayList<>(tokens.size() + 4);
+                        result.addAll(tokens.subList(0, i + 1));
+                    }
+                    result.add(Token.operator("*", OpCode.MUL, next.position, 0));
+                }
+            }
+        }
+        return (result == null) ? tokens : result;
     }
 
     /**
@@ -501,11 +412,7 @@ public class CalculatorLogic {
      * @param result The numerical result to format.
      * @return The formatted result as a string.
      */
-    private static String formatResult(double result) {
-        DecimalFormatSymbols symbols = new DecimalFormatSymbols();
-        symbols.setDecimalSeparator('.');
-        DecimalFormat df = new DecimalFormat("#.##########", symbols);
-        df.setRoundingMode(RoundingMode.HALF_UP);
-        return df.format(result);
+    static String formatResult(double result) {
+        return ResultFormatter.format(result);
     }
 }
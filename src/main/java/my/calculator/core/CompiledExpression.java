@@ -0,0 +1,466 @@
+package my.calculator.core;
+
+import java.math.BigDecimal;
+import java.math.MathContext;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.ForkJoinPool;
+
+/**
+ * A parsed expression ready to be evaluated any number of times.
+ *
+ * The expression is stored as a flat program of {@link OpCode} instructions and a pool of
+ * {@code double} constants, so evaluation is pure arithmetic: no tokenizing, no string
+ * comparisons and no number parsing. Instances are immutable and can be shared freely
+ * between threads. Evaluation runs on a reusable per-thread {@code double[]} stack, so once a
+ * thread is warmed up, {@link #evaluate(double[])} allocates nothing.
+ *
+ * Expressions may reference named variables. Each variable is bound to a slot, its index in
+ * {@link #getVariableNames()}, and values are passed by slot to {@link #evaluate(double[])}.
+ * Whole input columns can be evaluated at once with {@link #evaluateBatch(double[][], double[])},
+ * and {@link #evaluate(BigDecimal[], MathContext)} evaluates with arbitrary precision.
+ *
+ * Expressions evaluated often are promoted to bytecode: after a number of interpreted
+ * evaluations set by {@link CalculatorLogic#setJitThreshold(int)}, the program is translated to
+ * a hidden class by {@link BytecodeCompiler}, and later evaluations run that class instead of the
+ * interpreter. Both run the same {@link Operations}, so results and errors are the same. If an
+ * expression cannot be translated, it simply stays interpreted; so do expressions calling
+ * user-defined functions.
+ *
+ * Calls to user-defined functions are resolved once, at compile time: the program refers to
+ * the {@link UserFunction} directly, so evaluation does not look names up.
+ *
+ * Obtain instances with {@link CalculatorLogic#compile(String, String...)}.
+ */
+public final class CompiledExpression {
+
+    private static final double[] NO_VARIABLES = new double[0];
+    private static final BigDecimal[] NO_DECIMAL_VARIABLES = new BigDecimal[0];
+    private static final Call[] NO_CALLS = new Call[0];
+
+    private final String expression;
+    private final String[] variableNames;
+    private final int[] code;
+    private final double[] constants;
+    private final int maxStack;
+    private final int temps;
+    private final Call[] calls;
+    private final CalculatorEngine engine;
+    private final FunctionRegistry.Snapshot definitions;
+
+    /**
+     * Interpreted evaluations left before promotion to bytecode; negative once promotion was
+     * attempted or if it is disabled. Updated without synchronization, as an exact count does
+     * not matter.
+     */
+    private int evaluationsBeforeJit;
+
+    /** The bytecode version of the program, or null while interpreted. */
+    private volatile CompiledFunction function;
+
+    /** The program for arbitrary precision evaluation, built on first use. */
+    private volatile DecimalProgram decimalProgram;
+
+    /** Whether translation to bytecode was attempted and failed; guarded by this. */
+    private boolean jitFailed;
+
+    CompiledExpression(String expression, String[] variableNames, int[] code, double[] constants, int maxStack,
+                       int temps, CalculatorEngine engine) {
+        this(expression, variableNames, code, constants, NO_CALLS, maxStack, temps, engine,
+                FunctionRegistry.Snapshot.EMPTY);
+    }
+
+    CompiledExpression(String expression, String[] variableNames, int[] code, double[] constants, Call[] calls,
+                       int maxStack, int temps, CalculatorEngine engine, FunctionRegistry.Snapshot definitions) {
+        this.expression = expression;
+        this.variableNames = variableNames;
+        this.code = code;
+        this.constants = constants;
+        this.maxStack = maxStack;
+        this.temps = temps;
+        this.calls = calls;
+        this.engine = engine;
+        this.definitions = definitions;
+        this.evaluationsBeforeJit = engine.getJitThreshold();
+    }
+
+    /**
+     * Returns an expression with the same source and variables running another program.
+     */
+    CompiledExpression withProgram(int[] code, double[] constants, int maxStack, int temps) {
+        return new CompiledExpression(expression, variableNames, code, constants, calls, maxStack, temps, engine,
+                definitions);
+    }
+
+    /**
+     * Returns the source text this expression was compiled from.
+     */
+    public String getExpression() {
+        return expression;
+    }
+
+    int[] code() {
+        return code;
+    }
+
+    double[] constants() {
+        return constants;
+    }
+
+    int maxStack() {
+        return maxStack;
+    }
+
+    /**
+     * Returns the calls to user-defined functions, indexed by the operand of {@link OpCode#CALL}.
+     */
+    Call[] calls() {
+        return calls;
+    }
+
+    /**
+     * Returns the engine that compiled this expression.
+     */
+    CalculatorEngine engine() {
+        return engine;
+    }
+
+    /**
+     * Returns the user-defined functions and constants this expression was compiled with.
+     */
+    FunctionRegistry.Snapshot definitions() {
+        return definitions;
+    }
+
+    /**
+     * Returns the number of temporaries used by {@link OpCode#STORE} and {@link OpCode#LOAD}.
+     */
+    int temps() {
+        return temps;
+    }
+
+    /**
+     * Estimates the memory retained by this expression, in bytes.
+     */
+    long estimatedBytes() {
+        long bytes = 64 + 2L * expression.length() + 4L * code.length + 8L * constants.length + 24L * calls.length;
+        for (String name : variableNames) {
+            bytes += 48 + 2L * name.length();
+        }
+        return bytes;
+    }
+
+    /**
+     * Returns the names of the variables, in slot order.
+     */
+    public List<String> getVariableNames() {
+        return List.of(variableNames);
+    }
+
+    /**
+     * Returns the number of variable slots.
+     */
+    public int getVariableCount() {
+        return variableNames.length;
+    }
+
+    /**
+     * Evaluates an expression that has no variables.
+     *
+     * @return the result as a double.
+     * @throws IllegalArgumentException if the expression has variables, or if a function is
+     *                                  called outside of its domain.
+     * @throws ArithmeticException      if arithmetic errors occur (e.g., division by zero).
+     */
+    public double evaluate() {
+        return evaluate(NO_VARIABLES);
+    }
+
+    /**
+     * Evaluates the expression with the given variable values.
+     *
+     * @param variables the variable values, indexed by slot.
+     * @return the result as a double.
+     * @throws IllegalArgumentException if fewer values than variables are given, or if a function
+     *                                  is called outside of its domain.
+     * @throws ArithmeticException      if arithmetic errors occur (e.g., division by zero).
+     */
+    public double evaluate(double[] variables) {
+        checkVariableCount(variables.length);
+        CompiledFunction f = function;
+        if (f == null && evaluationsBeforeJit >= 0 && --evaluationsBeforeJit < 0) {
+            f = promote();
+        }
+        if (f != null) {
+            return f.apply(variables);
+        }
+        EvaluationStack stack = EvaluationStack.current();
+        int base = stack.reserve(temps + maxStack);
+        try {
+            return run(variables, stack.values, base);
+        } finally {
+            stack.release(base);
+        }
+    }
+
+    /**
+     * Evaluates an expression that has no variables with arbitrary precision.
+     *
+     * @param mc the precision and rounding of every operation.
+     * @return the result, rounded to {@code mc}.
+     * @throws IllegalArgumentException if the expression has variables, or if a function is
+     *                                  called outside of its domain.
+     * @throws ArithmeticException      if arithmetic errors occur (e.g., division by zero).
+     * @see #evaluate(BigDecimal[], MathContext)
+     */
+    public BigDecimal evaluate(MathContext mc) {
+        return evaluate(NO_DECIMAL_VARIABLES, mc);
+    }
+
+    /**
+     * Evaluates the expression with arbitrary precision.
+     *
+     * Number literals are taken exactly as written, π and e are computed to the precision of
+     * {@code mc}, and every operation is rounded to {@code mc}. Factorials are exact up to
+     * 10000!. Unlike double evaluation, results that would be infinite or NaN are errors.
+     * With {@link MathContext#UNLIMITED}, only exact operations succeed.
+     *
+     * @param variables the variable values, indexed by slot.
+     * @param mc        the precision and rounding of every operation.
+     * @return the result, rounded to {@code mc}.
+     * @throws IllegalArgumentException if fewer values than variables are given, or if a function
+     *                                  is called outside of its domain.
+     * @throws ArithmeticException      if arithmetic errors occur (e.g., division by zero).
+     */
+    public BigDecimal evaluate(BigDecimal[] variables, MathContext mc) {
+        DecimalProgram program = decimalProgram;
+        if (program == null) {
+            program = engine.parseDecimal(expression, variableNames, definitions);
+            decimalProgram = program;
+        }
+        return program.evaluate(variables, mc);
+    }
+
+    /**
+     * Translates the program to bytecode, once.
+     *
+     * @return the bytecode version, or null if the program could not be translated.
+     */
+    synchronized CompiledFunction promote() {
+        evaluationsBeforeJit = -1;
+        if (function == null && !jitFailed) {
+            function = BytecodeCompiler.compile(this);
+            jitFailed = function == null;
+        }
+        return function;
+    }
+
+    /**
+     * Returns true if evaluation runs bytecode rather than the interpreter.
+     */
+    boolean isPromoted() {
+        return function != null;
+    }
+
+    /**
+     * Interprets the program using {@code stack[base..base + temps)} as temporaries and the
+     * following {@code maxStack} slots as operand stack. Allocates nothing unless an error is thrown
+     * or a user-defined function is called.
+     */
+    private double run(double[] variables, double[] stack, int base) {
+        final int[] code = this.code;
+        final double[] constants = this.constants;
+        int sp = base + temps;
+        int pc = 0;
+        while (pc < code.length) {
+            switch (code[pc++]) {
+                case OpCode.CONST -> stack[sp++] = constants[code[pc++]];
+                case OpCode.VAR -> stack[sp++] = variables[code[pc++]];
+                case OpCode.ADD -> {
+                    sp--;
+                    stack[sp - 1] = stack[sp - 1] + stack[sp];
+                }
+                case OpCode.SUB -> {
+                    sp--;
+                    stack[sp - 1] = stack[sp - 1] - stack[sp];
+                }
+                case OpCode.MUL -> {
+                    sp--;
+                    stack[sp - 1] = stack[sp - 1] * stack[sp];
+                }
+                case OpCode.DIV -> {
+                    sp--;
+                    stack[sp - 1] = Operations.divide(stack[sp - 1], stack[sp]);
+                }
+                case OpCode.MOD -> {
+                    sp--;
+                    stack[sp - 1] = Operations.mod(stack[sp - 1], stack[sp]);
+                }
+                case OpCode.POW -> {
+                    sp--;
+                    stack[sp - 1] = Operations.pow(stack[sp - 1], stack[sp]);
+                }
+                case OpCode.FACTORIAL -> stack[sp - 1] = Operations.factorial(stack[sp - 1]);
+                case OpCode.SIN -> stack[sp - 1] = Operations.sin(stack[sp - 1]);
+                case OpCode.COS -> stack[sp - 1] = Operations.cos(stack[sp - 1]);
+                case OpCode.TAN -> stack[sp - 1] = Operations.tan(stack[sp - 1]);
+                case OpCode.ASIN -> stack[sp - 1] = Operations.asin(stack[sp - 1]);
+                case OpCode.ACOS -> stack[sp - 1] = Operations.acos(stack[sp - 1]);
+                case OpCode.ATAN -> stack[sp - 1] = Operations.atan(stack[sp - 1]);
+                case OpCode.EXP -> stack[sp - 1] = Operations.exp(stack[sp - 1]);
+                case OpCode.LN -> stack[sp - 1] = Operations.ln(stack[sp - 1]);
+                case OpCode.LOG -> stack[sp - 1] = Operations.log(stack[sp - 1]);
+                case OpCode.SQRT -> stack[sp - 1] = Operations.sqrt(stack[sp - 1]);
+                case OpCode.SQUARE -> stack[sp - 1] = Operations.square(stack[sp - 1]);
+                case OpCode.TEN_POW -> stack[sp - 1] = Operations.tenPow(stack[sp - 1]);
+                case OpCode.NEG -> stack[sp - 1] = Operations.negate(stack[sp - 1]);
+                case OpCode.SIN_RAD -> stack[sp - 1] = Operations.sinRadians(stack[sp - 1]);
+                case OpCode.COS_RAD -> stack[sp - 1] = Operations.cosRadians(stack[sp - 1]);
+                case OpCode.TAN_RAD -> stack[sp - 1] = Operations.tanRadians(stack[sp - 1]);
+                case OpCode.ASIN_RAD -> stack[sp - 1] = Operations.asinRadians(stack[sp - 1]);
+                case OpCode.ACOS_RAD -> stack[sp - 1] = Operations.acosRadians(stack[sp - 1]);
+                case OpCode.ATAN_RAD -> stack[sp - 1] = Operations.atanRadians(stack[sp - 1]);
+                case OpCode.STORE -> stack[base + code[pc++]] = stack[sp - 1];
+                case OpCode.LOAD -> stack[sp++] = stack[base + code[pc++]];
+                case OpCode.CALL -> {
+                    Call call = calls[code[pc++]];
+                    sp -= call.arguments;
+                    stack[sp] = call.function.apply(Arrays.copyOfRange(stack, sp, sp + call.arguments));
+                    sp++;
+                }
+                default -> throw new IllegalStateException("Unknown opcode at " + (pc - 1));
+            }
+        }
+        return stack[sp - 1];
+    }
+
+    /**
+     * Evaluates the expression for every row of a batch of inputs.
+     * Row {@code i} is evaluated with {@code varColumns[slot][i]} as the value of each variable,
+     * and its result is written to {@code out[i]}; the batch size is {@code out.length}.
+     *
+     * The program is run one instruction at a time over a whole block of rows, which is much
+     * faster than evaluating the rows one by one.
+     *
+     * @param varColumns the variable values, one column per slot.
+     * @param out        the array receiving the results.
+     * @throws IllegalArgumentException if a column is missing or shorter than {@code out}, or if a
+     *                                  function is called outside of its domain.
+     * @throws ArithmeticException      if arithmetic errors occur (e.g., division by zero).
+     */
+    public void evaluateBatch(double[][] varColumns, double[] out) {
+        checkColumns(varColumns, out.length);
+        BatchEvaluator.evaluate(this, varColumns, out, 0, out.length);
+    }
+
+    /**
+     * Evaluates the expression for every row of a batch of inputs, like
+     * {@link #evaluateBatch(double[][], double[])}, except that a row that cannot be evaluated,
+     * such as a division by zero or a function called outside of its domain, is set to
+     * {@code NaN} instead of failing the batch. Suited to sampling a function for a plot.
+     *
+     * @param varColumns the variable values, one column per slot.
+     * @param out        the array receiving the results.
+     * @throws IllegalArgumentException if a column is missing or shorter than {@code out}.
+     */
+    public void evaluateBatchLenient(double[][] varColumns, double[] out) {
+        checkColumns(varColumns, out.length);
+        BatchEvaluator.evaluateLenient(this, varColumns, out, 0, out.length);
+    }
+
+    /**
+     * Evaluates a batch in parallel on the common {@link ForkJoinPool}, with the default chunk size.
+     *
+     * @param varColumns the variable values, one column per slot.
+     * @param out        the array receiving the results.
+     * @throws IllegalArgumentException if a column is missing or shorter than {@code out}.
+     * @throws BatchEvaluationException if evaluation failed for one or more chunks.
+     * @see #evaluateBatchParallel(double[][], double[], ForkJoinPool, int)
+     */
+    public void evaluateBatchParallel(double[][] varColumns, double[] out) {
+        evaluateBatchParallel(varColumns, out, ForkJoinPool.commonPool(), ParallelBatchEvaluator.DEFAULT_CHUNK_SIZE);
+    }
+
+    /**
+     * Evaluates a batch in parallel. The rows are split into chunks of {@code chunkSize} rows
+     * which are evaluated as independent tasks on {@code pool}; results are written in input
+     * order. A chunk that fails does not stop the others: its rows are set to {@code NaN} and
+     * the failure is reported once the whole batch is done.
+     *
+     * @param varColumns the variable values, one column per slot.
+     * @param out        the array receiving the results.
+     * @param pool       the pool running the chunks.
+     * @param chunkSize  the number of rows per chunk.
+     * @throws IllegalArgumentException if a column is missing or shorter than {@code out}, or if
+     *                                  the chunk size is not positive.
+     * @throws BatchEvaluationException if evaluation failed for one or more chunks.
+     */
+    public void evaluateBatchParallel(double[][] varColumns, double[] out, ForkJoinPool pool, int chunkSize) {
+        if (chunkSize <= 0) {
+            throw new IllegalArgumentException("Chunk size must be positive");
+        }
+        checkColumns(varColumns, out.length);
+        ParallelBatchEvaluator.evaluate(this, varColumns, out, pool, chunkSize);
+    }
+
+    void checkColumns(double[][] varColumns, int rows) {
+        checkVariableCount(varColumns.length);
+        for (int slot = 0; slot < variableNames.length; slot++) {
+            if (varColumns[slot].length < rows) {
+                throw new IllegalArgumentException("Column " + variableNames[slot] + " has "
+                        + varColumns[slot].length + " values but the batch has " + rows + " rows");
+            }
+        }
+    }
+
+    private void checkVariableCount(int count) {
+        if (count < variableNames.length) {
+            throw new IllegalArgumentException("Expected " + variableNames.length
+                    + " variable values but got " + count);
+        }
+    }
+
+    /**
+     * Returns a human readable listing of the compiled program, one instruction per line.
+     */
+    public String disassemble() {
+        StringBuilder sb = new StringBuilder();
+        int pc = 0;
+        while (pc < code.length) {
+            int op = code[pc++];
+            sb.append(OpCode.name(op));
+            if (op == OpCode.CONST) {
+                sb.append(' ').append(constants[code[pc++]]);
+            } else if (op == OpCode.VAR) {
+                sb.append(' ').append(variableNames[code[pc++]]);
+            } else if (op == OpCode.CALL) {
+                Call call = calls[code[pc++]];
+                sb.append(' ').append(call.name).append('/').append(call.arguments);
+            } else if (OpCode.hasOperand(op)) {
+                sb.append(" t").append(code[pc++]);
+            }
+            sb.append('\n');
+        }
+        return sb.toString();
+    }
+
+    @Override
+    public String toString() {
+        return expression;
+    }
+
+    /**
+     * A call to a user-defined function, resolved when the expression is compiled.
+     */
+    static final class Call {
+        final String name;
+        final UserFunction function;
+        final int arguments;
+
+        Call(String name, UserFunction function, int arguments) {
+            this.name = name;
+            this.function = function;
+            this.arguments = arguments;
+        }
+    }
+}
@@ -0,0 +1,21 @@
+package my.calculator.core;
+
+/**
+ * A {@link CompiledExpression} translated to JVM bytecode by {@link BytecodeCompiler}.
+ *
+ * Implementations are generated hidden classes. They run the same {@link Operations} as the
+ * interpreter, so results and errors are identical, but the JIT compiler sees one straight-line
+ * method per expression instead of a switch over opcodes.
+ */
+interface CompiledFunction {
+
+    /**
+     * Evaluates the expression.
+     *
+     * @param variables the variable values, indexed by slot; the caller checks the length.
+     * @return the result as a double.
+     * @throws IllegalArgumentException if a function is called outside of its domain.
+     * @throws ArithmeticException      if arithmetic errors occur (e.g., division by zero).
+     */
+    double apply(double[] variables);
+}
@@ -0,0 +1,628 @@
+package my.calculator.core;
+
+import java.math.BigDecimal;
+import java.math.BigInteger;
+import java.math.MathContext;
+import java.math.RoundingMode;
+import java.util.Arrays;
+
+/**
+ * Arbitrary precision counterparts of {@link Operations}, on {@link BigDecimal}.
+ *
+ * Results are rounded to the requested {@link MathContext}. Transcendental functions are
+ * computed with a few guard digits by power series, on fixed point integers, that stop as soon
+ * as the next term vanishes at that precision, so their cost grows with the precision asked for
+ * rather than with a fixed number of terms. Angles are in degrees, reduced exactly before conversion,
+ * so that for instance sin(180) is exactly 0.
+ *
+ * Expensive values are memoized: the working {@link MathContext}s, π, e and ln(10) at the
+ * highest precision computed so far, and checkpoints of the factorial table.
+ *
+ * Domain errors have the same types and messages as {@link Operations}. Results that a double
+ * would represent as infinity or NaN are errors here.
+ */
+final class DecimalMath {
+
+    /** Extra digits carried by intermediate computations. */
+    private static final int GUARD_DIGITS = 10;
+
+    /** Working contexts are cached up to this precision. */
+    private static final int CACHED_CONTEXTS = 1024;
+
+    /** Largest n for which n! is computed. */
+    static final int MAX_FACTORIAL = 10_000;
+
+    /** Largest estimated number of digits of a power computed exactly, with unlimited precision. */
+    static final int MAX_EXACT_POWER_DIGITS = 100_000;
+
+    /** Distance between two memoized factorials. */
+    private static final int FACTORIAL_STEP = 64;
+
+    private static final BigDecimal TWO = BigDecimal.valueOf(2);
+    private static final BigDecimal TEN = BigDecimal.TEN;
+    private static final BigDecimal NINETY = BigDecimal.valueOf(90);
+    private static final BigDecimal HALF_TURN = BigDecimal.valueOf(180);
+    private static final BigDecimal FULL_TURN = BigDecimal.valueOf(360);
+    private static final BigDecimal THIRTY = BigDecimal.valueOf(30);
+    private static final BigDecimal ONE_HALF = new BigDecimal("0.5");
+    private static final BigDecimal ONE_TENTH = new BigDecimal("0.1");
+
+    private static final MathContext[] CONTEXTS = new MathContext[CACHED_CONTEXTS];
+    private static final BigInteger[] POWERS_OF_TEN = new BigInteger[CACHED_CONTEXTS + 64];
+
+    private static volatile BigDecimal pi = BigDecimal.ZERO;
+    private static volatile BigDecimal e = BigDecimal.ZERO;
+    private static volatile BigDecimal ln10 = BigDecimal.ZERO;
+
+    /** {@code factorials[i]} is {@code (i * FACTORIAL_STEP)!}; grown on demand. */
+    private static volatile BigInteger[] factorials = {BigInteger.ONE};
+
+    /** Private constructor to prevent instantiation */
+    private DecimalMath() {
+        // Prevent instantiation
+    }
+
+    /**
+     * Returns a context of the given precision rounding half even, cached for common precisions.
+     */
+    static MathContext context(int precision) {
+        if (precision >= CACHED_CONTEXTS) {
+            return new MathContext(precision, RoundingMode.HALF_EVEN);
+        }
+        MathContext mc = CONTEXTS[precision];
+        if (mc == null) {
+            // Benign race: every thread creates an equal context
+            mc = new MathContext(precision, RoundingMode.HALF_EVEN);
+            CONTEXTS[precision] = mc;
+        }
+        return mc;
+    }
+
+    /**
+     * Returns the context for intermediate results of a function rounded to {@code mc}.
+     *
+     * @throws ArithmeticException if mc has unlimited precision.
+     */
+    private static MathContext working(MathContext mc, String function) {
+        if (mc.getPrecision() == 0) {
+            throw new ArithmeticException(function + " needs a limited precision");
+        }
+        return context(mc.getPrecision() + GUARD_DIGITS);
+    }
+
+    static BigDecimal divide(BigDecimal a, BigDecimal b, MathContext mc) {
+        if (b.signum() == 0) {
+            throw new ArithmeticException("Cannot divide by zero");
+        }
+        return a.divide(b, mc);
+    }
+
+    static BigDecimal mod(BigDecimal a, BigDecimal b, MathContext mc) {
+        if (b.signum() == 0) {
+            throw new ArithmeticException("Cannot mod by zero");
+        }
+        // Exact, with the sign of a like the % operator on doubles
+        return a.remainder(b).round(mc);
+    }
+
+    /**
+     * Computes a to the power b: exactly for integer exponents, as exp(b ln(a)) otherwise.
+     *
+     * @throws ArithmeticException if the result is infinite or not a real number, or if it
+     *                             would have more than {@link #MAX_EXACT_POWER_DIGITS} digits
+     *                             with unlimited precision.
+     */
+    static BigDecimal pow(BigDecimal a, BigDecimal b, MathContext mc) {
+        if (isInteger(b) && b.abs().compareTo(BigDecimal.valueOf(999_999_999)) <= 0) {
+            int n = b.intValueExact();
+            if (a.signum() == 0 && n < 0) {
+                throw new ArithmeticException("Cannot divide by zero");
+            }
+            // Rounded powers are computed at the precision asked for; exact ones in full
+            if (mc.getPrecision() == 0 && exactPowerDigits(a, n) > MAX_EXACT_POWER_DIGITS) {
+                throw new ArithmeticException("Result is too " + (n > 0 ? "large" : "small"));
+            }
+            if (mc.getPrecision() == 0 && n < 0) {
+                return BigDecimal.ONE.divide(a.pow(-n), mc);
+            }
+            return a.pow(n, mc);
+        }
+        if (a.signum() == 0) {
+            if (b.signum() < 0) {
+                throw new ArithmeticException("Cannot divide by zero");
+            }
+            return BigDecimal.ZERO;
+        }
+        if (a.signum() < 0) {
+            throw new ArithmeticException("Result is not a real number");
+        }
+        MathContext wmc = working(mc, "pow");
+        BigDecimal exponent = b.multiply(ln(a, wmc), wmc);
+        // exp magnifies the absolute error of its argument: carry its integer digits too
+        int integerDigits = exponent.precision() - exponent.scale();
+        if (integerDigits > 0) {
+            wmc = context(wmc.getPrecision() + integerDigits);
+            exponent = b.multiply(ln(a, wmc), wmc);
+        }
+        return exp(exponent, mc);
+    }
+
+    /**
+     * Returns a lower bound of the number of digits of the unscaled value of a to the power n.
+     */
+    private static long exactPowerDigits(BigDecimal a, int n) {
+        // log10(2) is above 0.3, and |unscaled| is at least 2^(bitLength - 1)
+        return (long) Math.abs(n) * (a.unscaledValue().abs().bitLength() - 1) * 3 / 10;
+    }
+
+    /** Sine of an angle in degrees. */
+    static BigDecimal sin(BigDecimal degrees, MathContext mc) {
+        // Reduce to [0, 360), exactly
+        BigDecimal d = degrees.remainder(FULL_TURN);
+        if (d.signum() < 0) {
+            d = d.add(FULL_TURN);
+        }
+        boolean negative = false;
+        if (d.compareTo(HALF_TURN) >= 0) {
+            d = d.subtract(HALF_TURN);
+            negative = true;
+        }
+        if (d.compareTo(NINETY) > 0) {
+            d = HALF_TURN.subtract(d);
+        }
+        // Now in [0, 90]
+        BigDecimal result;
+        if (d.signum() == 0) {
+            return BigDecimal.ZERO;
+        } else if (d.compareTo(NINETY) == 0) {
+            result = BigDecimal.ONE;
+        } else if (d.compareTo(THIRTY) == 0) {
+            result = ONE_HALF;
+        } else {
+            MathContext wmc = working(mc, "sin");
+            result = sinSeries(toRadians(d, wmc), wmc);
+        }
+        return (negative ? result.negate() : result).round(mc);
+    }
+
+    /** Cosine of an angle in degrees. */
+    static BigDecimal cos(BigDecimal degrees, MathContext mc) {
+        return sin(degrees.add(NINETY), mc);
+    }
+
+    /**
+     * Tangent of an angle in degrees.
+     *
+     * @throws ArithmeticException if the angle is an odd multiple of 90 degrees.
+     */
+    static BigDecimal tan(BigDecimal degrees, MathContext mc) {
+        MathContext wmc = working(mc, "tan");
+        BigDecimal cos = cos(degrees, wmc);
+        if (cos.signum() == 0) {
+            throw new ArithmeticException("tan undefined for odd multiples of 90");
+        }
+        return sin(degrees, wmc).divide(cos, mc);
+    }
+
+    /**
+     * Arc sine, in degrees.
+     *
+     * @throws IllegalArgumentException if a is outside [-1, 1]
+     */
+    static BigDecimal asin(BigDecimal a, MathContext mc) {
+        checkUnitDomain("asin", a);
+        if (a.abs().compareTo(BigDecimal.ONE) == 0) {
+            return NINETY.multiply(BigDecimal.valueOf(a.signum())).round(mc);
+        }
+        if (a.compareTo(ONE_HALF) == 0 || a.compareTo(ONE_HALF.negate()) == 0) {
+            return THIRTY.multiply(BigDecimal.valueOf(a.signum())).round(mc);
+        }
+        MathContext wmc = working(mc, "asin");
+        // asin(a) = atan(a / sqrt(1 - a^2))
+        BigDecimal cos = BigDecimal.ONE.subtract(a).multiply(BigDecimal.ONE.add(a), wmc).sqrt(wmc);
+        return toDegrees(atanInRadians(a.divide(cos, wmc), wmc), wmc).round(mc);
+    }
+
+    /**
+     * Arc cosine, in degrees.
+     *
+     * @throws IllegalArgumentException if a is outside [-1, 1]
+     */
+    static BigDecimal acos(BigDecimal a, MathContext mc) {
+        checkUnitDomain("acos", a);
+        if (a.abs().compareTo(BigDecimal.ONE) == 0 || a.abs().compareTo(ONE_HALF) == 0) {
+            // Exact: 0, 180, 60 or 120 degrees
+            return NINETY.subtract(asin(a, MathContext.UNLIMITED)).round(mc);
+        }
+        MathContext wmc = working(mc, "acos");
+        return NINETY.subtract(asin(a, wmc), wmc).round(mc);
+    }
+
+    /** Arc tangent, in degrees. */
+    static BigDecimal atan(BigDecimal a, MathContext mc) {
+        if (a.signum() == 0) {
+            return BigDecimal.ZERO;
+        }
+        MathContext wmc = working(mc, "atan");
+        return toDegrees(atanInRadians(a, wmc), wmc).round(mc);
+    }
+
+    /** Sine of an angle in radians. */
+    static BigDecimal sinRadians(BigDecimal radians, MathContext mc) {
+        return sin(toDegrees(radians, angleContext(radians, mc, "sin")), mc);
+    }
+
+    /** Cosine of an angle in radians. */
+    static BigDecimal cosRadians(BigDecimal radians, MathContext mc) {
+        return cos(toDegrees(radians, angleContext(radians, mc, "cos")), mc);
+    }
+
+    /** Tangent of an angle in radians. */
+    static BigDecimal tanRadians(BigDecimal radians, MathContext mc) {
+        return tan(toDegrees(radians, angleContext(radians, mc, "tan")), mc);
+    }
+
+    /**
+     * Arc sine, in radians.
+     *
+     * @throws IllegalArgumentException if a is outside [-1, 1]
+     */
+    static BigDecimal asinRadians(BigDecimal a, MathContext mc) {
+        checkUnitDomain("asin", a);
+        MathContext wmc = working(mc, "asin");
+        return toRadians(asin(a, wmc), wmc).round(mc);
+    }
+
+    /**
+     * Arc cosine, in radians.
+     *
+     * @throws IllegalArgumentException if a is outside [-1, 1]
+     */
+    static BigDecimal acosRadians(BigDecimal a, MathContext mc) {
+        checkUnitDomain("acos", a);
+        MathContext wmc = working(mc, "acos");
+        return toRadians(acos(a, wmc), wmc).round(mc);
+    }
+
+    /** Arc tangent, in radians. */
+    static BigDecimal atanRadians(BigDecimal a, MathContext mc) {
+        if (a.signum() == 0) {
+            return BigDecimal.ZERO;
+        }
+        MathContext wmc = working(mc, "atan");
+        return atanInRadians(a, wmc).round(mc);
+    }
+
+    /**
+     * Returns the context converting an angle in radians to degrees, with room for the integer
+     * digits that reducing the angle to a single turn cancels.
+     */
+    private static MathContext angleContext(BigDecimal radians, MathContext mc, String function) {
+        MathContext wmc = working(mc, function);
+        int integerDigits = radians.precision() - radians.scale();
+        return (integerDigits > 0) ? context(wmc.getPrecision() + integerDigits) : wmc;
+    }
+
+    /**
+     * Computes e to the power a.
+     *
+     * @throws ArithmeticException if the result is too large or too small to be represented.
+     */
+    static BigDecimal exp(BigDecimal a, MathContext mc) {
+        if (a.signum() == 0) {
+            return BigDecimal.ONE;
+        }
+        // exp(a) = e^n * exp(f), with n the nearest integer and |f| <= 0.5
+        BigDecimal integer = a.setScale(0, RoundingMode.HALF_EVEN);
+        if (integer.abs().compareTo(BigDecimal.valueOf(999_999_999)) > 0) {
+            throw new ArithmeticException("Result is too " + (a.signum() > 0 ? "large" : "small"));
+        }
+        int n = integer.intValueExact();
+        // Each power of e loses about log10(|n|) digits
+        MathContext wmc = context(working(mc, "exp").getPrecision() + Integer.toString(Math.abs(n)).length());
+        BigDecimal fraction = a.subtract(integer);
+        BigDecimal result = expSeries(fraction, wmc);
+        if (n != 0) {
+            result = result.multiply(e(wmc).pow(n, wmc), wmc);
+        }
+        return result.round(mc);
+    }
+
+    /**
+     * Natural logarithm.
+     *
+     * @throws ArithmeticException if a is not positive
+     */
+    static BigDecimal ln(BigDecimal a, MathContext mc) {
+        if (a.signum() <= 0) {
+            throw new ArithmeticException("ln undefined for non-positive values");
+        }
+        MathContext wmc = working(mc, "ln");
+        return lnPositive(a, wmc).round(mc);
+    }
+
+    /**
+     * Base 10 logarithm.
+     *
+     * @throws ArithmeticException if a is not positive
+     */
+    static BigDecimal log(BigDecimal a, MathContext mc) {
+        if (a.signum() <= 0) {
+            throw new ArithmeticException("log undefined for non-positive values");
+        }
+        BigDecimal stripped = a.stripTrailingZeros();
+        if (stripped.unscaledValue().equals(BigInteger.ONE)) {
+            // Exact for powers of ten
+            return BigDecimal.valueOf(-stripped.scale()).round(mc);
+        }
+        MathContext wmc = working(mc, "log");
+        return lnPositive(a, wmc).divide(ln10(wmc), mc);
+    }
+
+    /**
+     * Square root.
+     *
+     * @throws ArithmeticException if a is negative
+     */
+    static BigDecimal sqrt(BigDecimal a, MathContext mc) {
+        if (a.signum() < 0) {
+            throw new ArithmeticException("Square root of negative number is undefined");
+        }
+        return a.sqrt(mc);
+    }
+
+    static BigDecimal tenPow(BigDecimal a, MathContext mc) {
+        if (isInteger(a) && a.abs().compareTo(BigDecimal.valueOf(999_999_999)) <= 0) {
+            return BigDecimal.ONE.scaleByPowerOfTen(a.intValueExact()).round(mc);
+        }
+        return pow(TEN, a, mc);
+    }
+
+    /**
+     * Calculates the factorial of a number, exactly before rounding to {@code mc}.
+     *
+     * @throws ArithmeticException if a is negative or non-integer, or if a is above {@link #MAX_FACTORIAL}
+     */
+    static BigDecimal factorial(BigDecimal a, MathContext mc) {
+        if (a.signum() < 0 || !isInteger(a)) {
+            throw new ArithmeticException("Factorial is only defined for non-negative integers");
+        }
+        if (a.compareTo(BigDecimal.valueOf(MAX_FACTORIAL)) > 0) {
+            throw new ArithmeticException("Factorial result is too large");
+        }
+        return new BigDecimal(factorial(a.intValueExact())).round(mc);
+    }
+
+    /**
+     * Returns n!, starting from the nearest memoized factorial below n.
+     */
+    static BigInteger factorial(int n) {
+        int checkpoint = n / FACTORIAL_STEP;
+        BigInteger[] table = factorials;
+        if (checkpoint >= table.length) {
+            table = growFactorials(checkpoint);
+        }
+        BigInteger result = table[checkpoint];
+        for (int i = checkpoint * FACTORIAL_STEP + 1; i <= n; i++) {
+            result = result.multiply(BigInteger.valueOf(i));
+        }
+        return result;
+    }
+
+    private static synchronized BigInteger[] growFactorials(int checkpoint) {
+        BigInteger[] table = factorials;
+        if (checkpoint < table.length) {
+            return table;
+        }
+        BigInteger[] grown = Arrays.copyOf(table, checkpoint + 1);
+        for (int i = table.length; i < grown.length; i++) {
+            BigInteger value = grown[i - 1];
+            for (int k = (i - 1) * FACTORIAL_STEP + 1; k <= i * FACTORIAL_STEP; k++) {
+                value = value.multiply(BigInteger.valueOf(k));
+            }
+            grown[i] = value;
+        }
+        factorials = grown;
+        return grown;
+    }
+
+    /**
+     * Returns π to the precision of mc, computed with Machin's formula
+     * π = 16 atan(1/5) - 4 atan(1/239) and memoized.
+     */
+    static BigDecimal pi(MathContext mc) {
+        BigDecimal value = pi;
+        if (value.precision() < mc.getPrecision()) {
+            MathContext wmc = working(mc, "π");
+            BigDecimal a = atanSeries(BigDecimal.ONE.divide(BigDecimal.valueOf(5), wmc), wmc);
+            BigDecimal b = atanSeries(BigDecimal.ONE.divide(BigDecimal.valueOf(239), wmc), wmc);
+            value = a.multiply(BigDecimal.valueOf(16)).subtract(b.multiply(BigDecimal.valueOf(4)), wmc);
+            pi = value;
+        }
+        return value.round(mc);
+    }
+
+    /**
+     * Returns e to the precision of mc, memoized.
+     */
+    static BigDecimal e(MathContext mc) {
+        BigDecimal value = e;
+        if (value.precision() < mc.getPrecision()) {
+            MathContext wmc = working(mc, "e");
+            value = expSeries(BigDecimal.ONE, wmc);
+            e = value;
+        }
+        return value.round(mc);
+    }
+
+    private static BigDecimal ln10(MathContext mc) {
+        BigDecimal value = ln10;
+        if (value.precision() < mc.getPrecision()) {
+            MathContext wmc = working(mc, "ln");
+            value = lnReduced(TEN, wmc);
+            ln10 = value;
+        }
+        return value.round(mc);
+    }
+
+    /**
+     * ln(a) for a positive a: a = m * 10^k with m in [1, 10), so ln(a) = ln(m) + k ln(10).
+     */
+    private static BigDecimal lnPositive(BigDecimal a, MathContext wmc) {
+        int k = a.precision() - a.scale() - 1;
+        BigDecimal m = a.movePointLeft(k);
+        BigDecimal result = lnReduced(m, wmc);
+        if (k != 0) {
+            result = result.add(ln10(wmc).multiply(BigDecimal.valueOf(k)), wmc);
+        }
+        return result;
+    }
+
+    /**
+     * ln(m) for m in [1, 10]. The double logarithm y0 gives 16 digits: r = m * exp(-y0) is then
+     * within about 1e-16 of 1, and ln(m) = y0 + ln(r), where the series
+     * ln(r) = 2 (z + z^3/3 + z^5/5 + ...) with z = (r - 1) / (r + 1) gains 32 digits per term.
+     */
+    private static BigDecimal lnReduced(BigDecimal m, MathContext wmc) {
+        if (m.compareTo(BigDecimal.ONE) == 0) {
+            return BigDecimal.ZERO;
+        }
+        // The exact value of the double, whatever its rounding error
+        BigDecimal y0 = new BigDecimal(Math.log(m.doubleValue()));
+        BigDecimal r = m.multiply(exp(y0.negate(), wmc), wmc);
+        if (r.compareTo(BigDecimal.ONE) == 0) {
+            return y0.round(wmc);
+        }
+        BigDecimal z = r.subtract(BigDecimal.ONE).divide(r.add(BigDecimal.ONE), wmc);
+        int scale = fixedPointScale(z, wmc);
+        BigInteger one = powerOfTen(scale);
+        BigInteger x = toFixedPoint(z, scale);
+        BigInteger x2 = x.multiply(x).divide(one);
+        BigInteger power = x;
+        BigInteger sum = x;
+        for (long k = 3; ; k += 2) {
+            power = power.multiply(x2).divide(one);
+            BigInteger term = power.divide(BigInteger.valueOf(k));
+            if (term.signum() == 0) {
+                break;
+            }
+            sum = sum.add(term);
+        }
+        return y0.add(new BigDecimal(sum.shiftLeft(1), scale), wmc);
+    }
+
+    /** sin(x) = x - x^3/3! + x^5/5! - ... */
+    private static BigDecimal sinSeries(BigDecimal x, MathContext wmc) {
+        int scale = fixedPointScale(x, wmc);
+        BigInteger one = powerOfTen(scale);
+        BigInteger fixed = toFixedPoint(x, scale);
+        BigInteger x2 = fixed.multiply(fixed).divide(one).negate();
+        BigInteger term = fixed;
+        BigInteger sum = fixed;
+        for (long k = 2; ; k += 2) {
+            term = term.multiply(x2).divide(one).divide(BigInteger.valueOf(k * (k + 1)));
+            if (term.signum() == 0) {
+                return new BigDecimal(sum, scale, wmc);
+            }
+            sum = sum.add(term);
+        }
+    }
+
+    /** exp(x) = 1 + x + x^2/2! + ..., for |x| <= 1. */
+    private static BigDecimal expSeries(BigDecimal x, MathContext wmc) {
+        int scale = wmc.getPrecision() + 2;
+        BigInteger one = powerOfTen(scale);
+        BigInteger fixed = toFixedPoint(x, scale);
+        BigInteger term = one;
+        BigInteger sum = one;
+        for (long k = 1; ; k++) {
+            term = term.multiply(fixed).divide(one).divide(BigInteger.valueOf(k));
+            if (term.signum() == 0) {
+                return new BigDecimal(sum, scale, wmc);
+            }
+            sum = sum.add(term);
+        }
+    }
+
+    /**
+     * atan(x) in radians. Halves the angle with atan(x) = 2 atan(x / (1 + sqrt(1 + x^2)))
+     * until |x| is below 0.1, where the series converges quickly.
+     */
+    private static BigDecimal atanInRadians(BigDecimal x, MathContext wmc) {
+        int doublings = 0;
+        while (x.abs().compareTo(ONE_TENTH) > 0) {
+            BigDecimal root = BigDecimal.ONE.add(x.multiply(x, wmc)).sqrt(wmc);
+            x = x.divide(BigDecimal.ONE.add(root), wmc);
+            doublings++;
+        }
+        return atanSeries(x, wmc).multiply(TWO.pow(doublings), wmc);
+    }
+
+    /** atan(x) = x - x^3/3 + x^5/5 - ..., for small |x|. */
+    private static BigDecimal atanSeries(BigDecimal x, MathContext wmc) {
+        int scale = fixedPointScale(x, wmc);
+        BigInteger one = powerOfTen(scale);
+        BigInteger fixed = toFixedPoint(x, scale);
+        BigInteger x2 = fixed.multiply(fixed).divide(one).negate();
+        BigInteger power = fixed;
+        BigInteger sum = fixed;
+        for (long k = 3; ; k += 2) {
+            power = power.multiply(x2).divide(one);
+            BigInteger term = power.divide(BigInteger.valueOf(k));
+            if (term.signum() == 0) {
+                return new BigDecimal(sum, scale, wmc);
+            }
+            sum = sum.add(term);
+        }
+    }
+
+    /*
+     * The series run on fixed point integers: a value v is held as round(v * 10^scale). Integer
+     * arithmetic is much cheaper than BigDecimal arithmetic with a MathContext, which must
+     * count the digits of every intermediate result to round it.
+     */
+
+    /**
+     * Returns the fixed point scale giving a series on x, which starts at about |x|, the
+     * precision of wmc plus a few digits for truncation errors.
+     */
+    private static int fixedPointScale(BigDecimal x, MathContext wmc) {
+        int exponent = x.precision() - x.scale() - 1;
+        return wmc.getPrecision() + Math.max(0, -exponent) + 2;
+    }
+
+    private static BigInteger toFixedPoint(BigDecimal x, int scale) {
+        return x.setScale(scale, RoundingMode.HALF_EVEN).unscaledValue();
+    }
+
+    private static BigInteger powerOfTen(int exponent) {
+        if (exponent >= POWERS_OF_TEN.length) {
+            return BigInteger.TEN.pow(exponent);
+        }
+        BigInteger power = POWERS_OF_TEN[exponent];
+        if (power == null) {
+            // Benign race: every thread computes an equal power
+            power = BigInteger.TEN.pow(exponent);
+            POWERS_OF_TEN[exponent] = power;
+        }
+        return power;
+    }
+
+    private static BigDecimal toRadians(BigDecimal degrees, MathContext wmc) {
+        return degrees.multiply(pi(wmc), wmc).divide(HALF_TURN, wmc);
+    }
+
+    private static BigDecimal toDegrees(BigDecimal radians, MathContext wmc) {
+        return radians.multiply(HALF_TURN, wmc).divide(pi(wmc), wmc);
+    }
+
+    private static boolean isInteger(BigDecimal a) {
+        return a.signum() == 0 || a.scale() <= 0 || a.stripTrailingZeros().scale() <= 0;
+    }
+
+    private static void checkUnitDomain(String function, BigDecimal value) {
+        if (value.abs().compareTo(BigDecimal.ONE) > 0) {
+            throw new IllegalArgumentException("Domain definition of " + function + " is (-1, 1)");
+        }
+    }
+}
@@ -0,0 +1,208 @@
+package my.calculator.core;
+
+import java.math.BigDecimal;
+import java.math.MathContext;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * The program of an expression for arbitrary precision evaluation with {@link DecimalMath}.
+ *
+ * It uses the {@link OpCode} instruction set, but number literals are kept as the exact
+ * decimals written in the source rather than as doubles, and π and e are computed at the
+ * precision of each evaluation. It is never optimized, since folding constants as doubles
+ * would lose the precision asked for. User-defined functions work on doubles, so their
+ * arguments and results are converted, and user-defined constants are the decimal form of
+ * their double value.
+ */
+final class DecimalProgram {
+
+    /** Operand of {@link OpCode#CONST} standing for π. */
+    private static final int PI = -1;
+    /** Operand of {@link OpCode#CONST} standing for e. */
+    private static final int E = -2;
+
+    private final int[] code;
+    private final BigDecimal[] literals;
+    private final CompiledExpression.Call[] calls;
+    private final int maxStack;
+    private final int variableCount;
+
+    private DecimalProgram(int[] code, BigDecimal[] literals, CompiledExpression.Call[] calls, int maxStack,
+                           int variableCount) {
+        this.code = code;
+        this.literals = literals;
+        this.calls = calls;
+        this.maxStack = maxStack;
+        this.variableCount = variableCount;
+    }
+
+    /**
+     * Builds the program of an expression already known to be valid.
+     *
+     * @param source        the expression without whitespace, which token positions refer to.
+     * @param rpn           the tokens of the expression in reverse polish notation.
+     * @param variableCount the number of variable slots.
+     * @param functions     the opcode of each function, indexed by the opcode of its token.
+     * @param definitions   the user-defined functions and constants.
+     */
+    static DecimalProgram of(String source, List<Token> rpn, int variableCount, int[] functions,
+                             FunctionRegistry.Snapshot definitions) {
+        int[] code = new int[rpn.size() * 2];
+        List<BigDecimal> literals = new ArrayList<>();
+        List<CompiledExpression.Call> calls = new ArrayList<>();
+        int codeLength = 0;
+        int depth = 0;
+        int maxStack = 0;
+        for (Token token : rpn) {
+            switch (token.type) {
+                case NUMBER -> {
+                    // A unary minus is parsed as "0 -" with an empty zero literal
+                    String text = source.substring(token.position, token.position + token.length);
+                    literals.add(text.isEmpty() ? BigDecimal.ZERO : new BigDecimal(text));
+                    code[codeLength++] = OpCode.CONST;
+                    code[codeLength++] = literals.size() - 1;
+                    maxStack = Math.max(maxStack, ++depth);
+                }
+                case CONSTANT -> {
+                    code[codeLength++] = OpCode.CONST;
+                    if (token.symbol.equals("π")) {
+                        code[codeLength++] = PI;
+                    } else if (token.symbol.equals("e")) {
+                        code[codeLength++] = E;
+                    } else {
+                        literals.add(BigDecimal.valueOf(token.value));
+                        code[codeLength++] = literals.size() - 1;
+                    }
+                    maxStack = Math.max(maxStack, ++depth);
+                }
+                case VARIABLE -> {
+                    code[codeLength++] = OpCode.VAR;
+                    code[codeLength++] = token.slot;
+                    maxStack = Math.max(maxStack, ++depth);
+                }
+                case FUNCTION -> {
+                    if (token.op == OpCode.CALL) {
+                        calls.add(new CompiledExpression.Call(token.symbol,
+                                definitions.functions.get(token.symbol).function, token.arguments));
+                        code[codeLength++] = OpCode.CALL;
+                        code[codeLength++] = calls.size() - 1;
+                        depth -= token.arguments - 1;
+                        maxStack = Math.max(maxStack, depth);
+                    } else {
+                        code[codeLength++] = functions[token.op];
+                    }
+                }
+                case OPERATOR -> {
+                    code[codeLength++] = token.op;
+                    if (OpCode.isBinary(token.op)) {
+                        depth--;
+                    }
+                }
+                default -> throw new IllegalArgumentException("Unknown token: " + token);
+            }
+        }
+        return new DecimalProgram(Arrays.copyOf(code, codeLength), literals.toArray(new BigDecimal[0]),
+                calls.toArray(new CompiledExpression.Call[0]), maxStack, variableCount);
+    }
+
+    /**
+     * Evaluates the program.
+     *
+     * @param variables the variable values, indexed by slot.
+     * @param mc        the precision and rounding of every operation.
+     * @return the result, rounded to {@code mc}.
+     * @throws IllegalArgumentException if fewer values than variables are given, or if a function
+     *                                  is called outside of its domain.
+     * @throws ArithmeticException      if arithmetic errors occur (e.g., division by zero).
+     */
+    BigDecimal evaluate(BigDecimal[] variables, MathContext mc) {
+        if (variables.length < variableCount) {
+            throw new IllegalArgumentException("Expected " + variableCount
+                    + " variable values but got " + variables.length);
+        }
+        BigDecimal[] stack = new BigDecimal[maxStack];
+        int sp = 0;
+        int pc = 0;
+        while (pc < code.length) {
+            int op = code[pc++];
+            switch (op) {
+                case OpCode.CONST -> stack[sp++] = constant(code[pc++], mc);
+                case OpCode.VAR -> stack[sp++] = variables[code[pc++]];
+                case OpCode.ADD, OpCode.SUB, OpCode.MUL, OpCode.DIV, OpCode.MOD, OpCode.POW -> {
+                    sp--;
+                    stack[sp - 1] = binary(op, stack[sp - 1], stack[sp], mc);
+                }
+                case OpCode.CALL -> {
+                    CompiledExpression.Call call = calls[code[pc++]];
+                    sp -= call.arguments;
+                    stack[sp] = call(call, stack, sp);
+                    sp++;
+                }
+                default -> stack[sp - 1] = unary(op, stack[sp - 1], mc);
+            }
+        }
+        return stack[sp - 1].round(mc);
+    }
+
+    private static BigDecimal call(CompiledExpression.Call call, BigDecimal[] stack, int first) {
+        double[] arguments = new double[call.arguments];
+        for (int i = 0; i < arguments.length; i++) {
+            arguments[i] = stack[first + i].doubleValue();
+        }
+        double result = call.function.apply(arguments);
+        if (Double.isNaN(result)) {
+            throw new ArithmeticException("Result is not a real number");
+        }
+        if (Double.isInfinite(result)) {
+            throw new ArithmeticException("Result is too " + (result > 0 ? "large" : "small"));
+        }
+        return BigDecimal.valueOf(result);
+    }
+
+    private BigDecimal constant(int operand, MathContext mc) {
+        return switch (operand) {
+            case PI -> DecimalMath.pi(mc);
+            case E -> DecimalMath.e(mc);
+            default -> literals[operand];
+        };
+    }
+
+    private static BigDecimal binary(int op, BigDecimal a, BigDecimal b, MathContext mc) {
+        return switch (op) {
+            case OpCode.ADD -> a.add(b, mc);
+            case OpCode.SUB -> a.subtract(b, mc);
+            case OpCode.MUL -> a.multiply(b, mc);
+            case OpCode.DIV -> DecimalMath.divide(a, b, mc);
+            case OpCode.MOD -> DecimalMath.mod(a, b, mc);
+            case OpCode.POW -> DecimalMath.pow(a, b, mc);
+            default -> throw new IllegalArgumentException("Unknown operator: " + OpCode.name(op));
+        };
+    }
+
+    private static BigDecimal unary(int op, BigDecimal a, MathContext mc) {
+        return switch (op) {
+            case OpCode.FACTORIAL -> DecimalMath.factorial(a, mc);
+            case OpCode.SIN -> DecimalMath.sin(a, mc);
+            case OpCode.COS -> DecimalMath.cos(a, mc);
+            case OpCode.TAN -> DecimalMath.tan(a, mc);
+            case OpCode.ASIN -> DecimalMath.asin(a, mc);
+            case OpCode.ACOS -> DecimalMath.acos(a, mc);
+            case OpCode.ATAN -> DecimalMath.atan(a, mc);
+            case OpCode.EXP -> DecimalMath.exp(a, mc);
+            case OpCode.LN -> DecimalMath.ln(a, mc);
+            case OpCode.LOG -> DecimalMath.log(a, mc);
+            case OpCode.SQRT -> DecimalMath.sqrt(a, mc);
+            case OpCode.SQUARE -> a.multiply(a, mc);
+            case OpCode.TEN_POW -> DecimalMath.tenPow(a, mc);
+            case OpCode.SIN_RAD -> DecimalMath.sinRadians(a, mc);
+            case OpCode.COS_RAD -> DecimalMath.cosRadians(a, mc);
+            case OpCode.TAN_RAD -> DecimalMath.tanRadians(a, mc);
+            case OpCode.ASIN_RAD -> DecimalMath.asinRadians(a, mc);
+            case OpCode.ACOS_RAD -> DecimalMath.acosRadians(a, mc);
+            case OpCode.ATAN_RAD -> DecimalMath.atanRadians(a, mc);
+            default -> throw new IllegalArgumentException("Unknown function: " + OpCode.name(op));
+        };
+    }
+}
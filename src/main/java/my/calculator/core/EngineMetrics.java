@@ -0,0 +1,269 @@
+package my.calculator.core;
+
+import java.io.PrintStream;
+import java.lang.management.ManagementFactory;
+import java.util.Locale;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+import javax.management.JMException;
+import javax.management.MBeanServer;
+import javax.management.ObjectName;
+
+/**
+ * Where the time goes in {@link CalculatorEngine#calculate(String)}: a histogram of the
+ * duration of each phase, and counters of calculations, errors and cache hits.
+ *
+ * <pre>
+ * EngineMetrics metrics = new EngineMetrics();
+ * CalculatorLogic.setMetrics(metrics);
+ * metrics.register("default");                                  // visible in JConsole
+ * metrics.dumpPeriodically(System.err, 1, TimeUnit.MINUTES);
+ * </pre>
+ *
+ * Metrics are opt-in: an engine without metrics only tests a null field on its way. With
+ * metrics, each phase costs two {@link System#nanoTime()} calls and a few atomic increments,
+ * and threads recording at the same time do not block each other. Parsing phases are only
+ * measured when an expression is compiled, not when it comes from a cache.
+ */
+public final class EngineMetrics implements EngineMetricsMXBean {
+
+    /**
+     * The phases of a calculation, in order.
+     */
+    public enum Phase {
+        TOKENIZE("tokenize"),
+        IMPLICIT_MULTIPLICATION("implicit multiplication"),
+        SHUNTING_YARD("shunting-yard"),
+        /** Translating the RPN into a program, and optimizing it. */
+        COMPILE("compile"),
+        EVALUATE("evaluate"),
+        FORMAT("format");
+
+        private final String label;
+
+        Phase(String label) {
+            this.label = label;
+        }
+
+        /**
+         * Returns the name of the phase in text dumps.
+         */
+        public String getLabel() {
+            return label;
+        }
+    }
+
+    private static final Phase[] PHASES = Phase.values();
+
+    private final Histogram[] phases = new Histogram[PHASES.length];
+    private final Histogram expressionLength = new Histogram();
+    final LongAdder calculations = new LongAdder();
+    final LongAdder invalidExpressions = new LongAdder();
+    final LongAdder arithmeticErrors = new LongAdder();
+    final LongAdder expressionCacheHits = new LongAdder();
+    final LongAdder expressionCacheMisses = new LongAdder();
+    final LongAdder resultCacheHits = new LongAdder();
+    final LongAdder resultCacheMisses = new LongAdder();
+
+    /**
+     * Creates metrics with nothing recorded.
+     */
+    public EngineMetrics() {
+        for (int i = 0; i < phases.length; i++) {
+            phases[i] = new Histogram();
+        }
+    }
+
+    /**
+     * Records the duration of a phase.
+     */
+    void record(Phase phase, long nanos) {
+        phases[phase.ordinal()].record(nanos);
+    }
+
+    /**
+     * Records the start of a calculation.
+     */
+    void calculation(String input) {
+        calculations.increment();
+        if (input != null) {
+            expressionLength.record(input.length());
+        }
+    }
+
+    /**
+     * Records a failed calculation by the type of its error.
+     */
+    void failed(RuntimeException error) {
+        if (error instanceof ArithmeticException) {
+            arithmeticErrors.increment();
+        } else {
+            invalidExpressions.increment();
+        }
+    }
+
+    /**
+     * Returns the durations of a phase, in nanoseconds.
+     *
+     * @param phase the phase.
+     */
+    public Histogram getHistogram(Phase phase) {
+        return phases[phase.ordinal()];
+    }
+
+    /**
+     * Returns the lengths of the expressions calculated, in chars.
+     */
+    public Histogram getExpressionLengths() {
+        return expressionLength;
+    }
+
+    @Override
+    public long getCalculations() {
+        return calculations.sum();
+    }
+
+    @Override
+    public long getInvalidExpressions() {
+        return invalidExpressions.sum();
+    }
+
+    @Override
+    public long getArithmeticErrors() {
+        return arithmeticErrors.sum();
+    }
+
+    @Override
+    public long getExpressionCacheHits() {
+        return expressionCacheHits.sum();
+    }
+
+    @Override
+    public long getExpressionCacheMisses() {
+        return expressionCacheMisses.sum();
+    }
+
+    @Override
+    public long getResultCacheHits() {
+        return resultCacheHits.sum();
+    }
+
+    @Override
+    public long getResultCacheMisses() {
+        return resultCacheMisses.sum();
+    }
+
+    @Override
+    public Histogram.Summary getTokenize() {
+        return getHistogram(Phase.TOKENIZE).summary();
+    }
+
+    @Override
+    public Histogram.Summary getImplicitMultiplication() {
+        return getHistogram(Phase.IMPLICIT_MULTIPLICATION).summary();
+    }
+
+    @Override
+    public Histogram.Summary getShuntingYard() {
+        return getHistogram(Phase.SHUNTING_YARD).summary();
+    }
+
+    @Override
+    public Histogram.Summary getCompile() {
+        return getHistogram(Phase.COMPILE).summary();
+    }
+
+    @Override
+    public Histogram.Summary getEvaluate() {
+        return getHistogram(Phase.EVALUATE).summary();
+    }
+
+    @Override
+    public Histogram.Summary getFormat() {
+        return getHistogram(Phase.FORMAT).summary();
+    }
+
+    @Override
+    public Histogram.Summary getExpressionLength() {
+        return expressionLength.summary();
+    }
+
+    @Override
+    public String dump() {
+        StringBuilder out = new StringBuilder();
+        out.append(String.format(Locale.ROOT, "calculations=%d invalid=%d arithmetic errors=%d%n",
+                getCalculations(), getInvalidExpressions(), getArithmeticErrors()));
+        out.append(String.format(Locale.ROOT, "expression cache hits=%d misses=%d, result cache hits=%d misses=%d%n",
+                getExpressionCacheHits(), getExpressionCacheMisses(), getResultCacheHits(), getResultCacheMisses()));
+        out.append(String.format(Locale.ROOT, "%-24s %10s %10s %10s %10s %10s %10s%n",
+                "phase (ns)", "count", "mean", "p50", "p90", "p99", "max"));
+        for (Phase phase : PHASES) {
+            appendRow(out, phase.getLabel(), getHistogram(phase).summary());
+        }
+        appendRow(out, "expression length", expressionLength.summary());
+        return out.toString();
+    }
+
+    private static void appendRow(StringBuilder out, String label, Histogram.Summary summary) {
+        out.append(String.format(Locale.ROOT, "%-24s %10d %10.1f %10d %10d %10d %10d%n", label, summary.getCount(),
+                summary.getMean(), summary.getP50(), summary.getP90(), summary.getP99(), summary.getMax()));
+    }
+
+    /**
+     * Prints {@link #dump()} at a fixed rate, from a daemon thread, until the returned future
+     * is cancelled.
+     *
+     * @param out    the stream to print to.
+     * @param period the time between two dumps.
+     * @param unit   the unit of the period.
+     * @return the future to cancel to stop printing.
+     */
+    public ScheduledFuture<?> dumpPeriodically(PrintStream out, long period, TimeUnit unit) {
+        return Scheduler.INSTANCE.scheduleAtFixedRate(() -> out.print(dump()), period, period, unit);
+    }
+
+    /**
+     * Registers these metrics with the platform MBean server.
+     *
+     * @param name the name identifying them among other registered metrics.
+     * @return the name they are registered under, to unregister them.
+     * @throws IllegalArgumentException if the name is invalid or already registered.
+     */
+    public ObjectName register(String name) {
+        try {
+            ObjectName objectName = new ObjectName("my.calculator:type=EngineMetrics,name=" + ObjectName.quote(name));
+            ManagementFactory.getPlatformMBeanServer().registerMBean(this, objectName);
+            return objectName;
+        } catch (JMException e) {
+            throw new IllegalArgumentException("Cannot register metrics " + name + ": " + e.getMessage(), e);
+        }
+    }
+
+    /**
+     * Unregisters metrics from the platform MBean server, if they are registered.
+     *
+     * @param objectName the name returned by {@link #register(String)}.
+     */
+    public static void unregister(ObjectName objectName) {
+        MBeanServer server = ManagementFactory.getPlatformMBeanServer();
+        try {
+            if (server.isRegistered(objectName)) {
+                server.unregisterMBean(objectName);
+            }
+        } catch (JMException e) {
+            throw new IllegalStateException("Cannot unregister metrics " + objectName, e);
+        }
+    }
+
+    /** Holds the thread printing periodic dumps, created on first use. */
+    private static final class Scheduler {
+        static final ScheduledExecutorService INSTANCE = Executors.newSingleThreadScheduledExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "calculator-metrics");
+            thread.setDaemon(true);
+            return thread;
+        });
+    }
+}
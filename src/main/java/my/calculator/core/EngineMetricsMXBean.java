@@ -0,0 +1,42 @@
+package my.calculator.core;
+
+/**
+ * Management interface of {@link EngineMetrics}, as seen in JConsole or any JMX client.
+ * Durations are in nanoseconds and lengths in chars.
+ */
+public interface EngineMetricsMXBean {
+
+    /** Returns the number of calls to calculate. */
+    long getCalculations();
+
+    /** Returns the number of calculations that failed on an invalid expression. */
+    long getInvalidExpressions();
+
+    /** Returns the number of calculations that failed on an arithmetic error. */
+    long getArithmeticErrors();
+
+    long getExpressionCacheHits();
+
+    long getExpressionCacheMisses();
+
+    long getResultCacheHits();
+
+    long getResultCacheMisses();
+
+    Histogram.Summary getTokenize();
+
+    Histogram.Summary getImplicitMultiplication();
+
+    Histogram.Summary getShuntingYard();
+
+    Histogram.Summary getCompile();
+
+    Histogram.Summary getEvaluate();
+
+    Histogram.Summary getFormat();
+
+    Histogram.Summary getExpressionLength();
+
+    /** Returns every metric, as text. */
+    String dump();
+}
@@ -0,0 +1,62 @@
+package my.calculator.core;
+
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.StackTrace;
+import jdk.jfr.Threshold;
+
+/**
+ * A JDK Flight Recorder event for the evaluation of a {@link CompiledExpression} by
+ * {@link CalculatorEngine#calculate(String)} or {@link CalculatorEngine#evaluate(String)}.
+ * Results found in a cache are not evaluated again, so they emit no event.
+ *
+ * Only evaluations slower than the threshold are recorded, 1 ms unless the recording sets
+ * another one. The expression itself is not recorded, only its hash and length.
+ */
+@Name(EvaluateEvent.NAME)
+@Label("Evaluate Expression")
+@Category("Calculator")
+@Description("Evaluation of a compiled expression")
+@StackTrace(false)
+@Threshold("1 ms")
+public final class EvaluateEvent extends Event {
+
+    /** Name of the event in recordings. */
+    public static final String NAME = "my.calculator.Evaluate";
+
+    @Label("Expression Hash")
+    @Description("String hash code of the expression")
+    int expressionHash;
+
+    @Label("Expression Length")
+    int expressionLength;
+
+    @Label("Program Size")
+    @Description("Length of the compiled program, in ints")
+    int programSize;
+
+    @Label("Outcome")
+    @Description("\"ok\", or the simple name of the exception thrown")
+    String outcome;
+
+    /**
+     * Ends the event, and commits it if it lasted longer than the threshold.
+     *
+     * @param compiled the expression evaluated.
+     * @param error    the exception thrown, or null.
+     */
+    void complete(CompiledExpression compiled, RuntimeException error) {
+        end();
+        if (shouldCommit()) {
+            String expression = compiled.getExpression();
+            this.expressionHash = expression.hashCode();
+            this.expressionLength = expression.length();
+            this.programSize = compiled.code().length;
+            this.outcome = ParseEvent.outcome(error);
+            commit();
+        }
+    }
+}
@@ -0,0 +1,52 @@
+package my.calculator.core;
+
+/**
+ * Per-thread operand stack shared by every {@link CompiledExpression} evaluated on that thread.
+ *
+ * Each evaluation reserves a frame of {@code maxStack} slots above the current top and
+ * releases it when done, so evaluations may nest (an evaluation can trigger another one)
+ * without clobbering each other. The array only grows, so once a thread has evaluated its
+ * deepest expression, evaluation allocates nothing.
+ */
+final class EvaluationStack {
+
+    private static final int INITIAL_CAPACITY = 64;
+
+    private static final ThreadLocal<EvaluationStack> CURRENT = ThreadLocal.withInitial(EvaluationStack::new);
+
+    double[] values = new double[INITIAL_CAPACITY];
+    int top;
+
+    private EvaluationStack() {
+    }
+
+    /**
+     * Returns the stack of the current thread.
+     */
+    static EvaluationStack current() {
+        return CURRENT.get();
+    }
+
+    /**
+     * Reserves {@code size} slots and returns the index of the first one.
+     * {@link #values} may be replaced by a larger array, so read it after this call.
+     */
+    int reserve(int size) {
+        int base = top;
+        int needed = base + size;
+        if (needed > values.length) {
+            double[] grown = new double[Math.max(needed, values.length * 2)];
+            System.arraycopy(values, 0, grown, 0, base);
+            values = grown;
+        }
+        top = needed;
+        return base;
+    }
+
+    /**
+     * Releases every slot from {@code base} up, as returned by {@link #reserve(int)}.
+     */
+    void release(int base) {
+        top = base;
+    }
+}
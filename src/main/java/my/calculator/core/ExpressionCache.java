@@ -0,0 +1,119 @@
+package my.calculator.core;
+
+import java.util.function.Predicate;
+
+/**
+ * A bounded cache of compiled expressions, keyed by their input text.
+ *
+ * When installed with {@link CalculatorLogic#setExpressionCache(ExpressionCache)}, every
+ * compilation first looks up the exact input string (and variable names), so repeated
+ * expressions skip whitespace removal, tokenizing and parsing entirely. The cache is bounded
+ * both by entry count and by the estimated memory of the cached programs, evicts least
+ * recently used entries first, and is safe for concurrent use.
+ *
+ * Invalid expressions are not cached.
+ */
+public final class ExpressionCache {
+
+    /** Default maximum number of cached expressions. */
+    public static final int DEFAULT_MAX_ENTRIES = 1024;
+    /** Default maximum estimated memory of the cached expressions, in bytes. */
+    public static final long DEFAULT_MAX_BYTES = 4L * 1024 * 1024;
+
+    private final LruCache<String, CompiledExpression> cache;
+
+    /**
+     * Creates a cache with the default limits.
+     */
+    public ExpressionCache() {
+        this(DEFAULT_MAX_ENTRIES, DEFAULT_MAX_BYTES);
+    }
+
+    /**
+     * Creates a cache.
+     *
+     * @param maxEntries the maximum number of cached expressions.
+     * @param maxBytes   the maximum estimated memory of the cached expressions, in bytes.
+     * @throws IllegalArgumentException if a limit is not positive.
+     */
+    public ExpressionCache(int maxEntries, long maxBytes) {
+        this.cache = new LruCache<>(maxEntries, maxBytes, CompiledExpression::estimatedBytes);
+    }
+
+    CompiledExpression get(String key) {
+        return cache.get(key);
+    }
+
+    /**
+     * Returns the expression cached for a key if the caller can use it, or null. An expression
+     * the caller cannot use counts as a miss.
+     */
+    CompiledExpression get(String key, Predicate<CompiledExpression> usable) {
+        return cache.get(key, usable);
+    }
+
+    void put(String key, CompiledExpression expression) {
+        cache.put(key, expression);
+    }
+
+    /**
+     * Builds the cache key of an expression compiled with the given variables.
+     */
+    static String key(String input, String[] variables) {
+        if (variables.length == 0) {
+            return input;
+        }
+        StringBuilder sb = new StringBuilder(input);
+        for (String variable : variables) {
+            // NUL cannot appear in a variable name, so keys cannot collide
+            sb.append('\0').append(variable);
+        }
+        return sb.toString();
+    }
+
+    /** Removes every cached expression. Counters are kept. */
+    public void clear() {
+        cache.clear();
+    }
+
+    /** Returns the number of cached expressions. */
+    public int size() {
+        return cache.size();
+    }
+
+    /** Returns the estimated memory of the cached expressions, in bytes. */
+    public long getEstimatedBytes() {
+        return cache.weight();
+    }
+
+    /** Returns the maximum number of cached expressions. */
+    public int getMaxEntries() {
+        return cache.maxEntries();
+    }
+
+    /** Returns the maximum estimated memory of the cached expressions, in bytes. */
+    public long getMaxBytes() {
+        return cache.maxWeight();
+    }
+
+    /** Returns the number of lookups that found a cached expression. */
+    public long getHitCount() {
+        return cache.hitCount();
+    }
+
+    /** Returns the number of lookups that found nothing. */
+    public long getMissCount() {
+        return cache.missCount();
+    }
+
+    /** Returns the number of expressions evicted to stay within the limits. */
+    public long getEvictionCount() {
+        return cache.evictionCount();
+    }
+
+    @Override
+    public String toString() {
+        return "ExpressionCache[size=" + size() + ", hits=" + getHitCount() + ", misses=" + getMissCount()
+                + ", evictions=" + getEvictionCount() + "]";
+    }
+}
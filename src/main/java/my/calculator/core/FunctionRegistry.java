@@ -0,0 +1,227 @@
+package my.calculator.core;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeSet;
+import java.util.regex.Pattern;
+
+/**
+ * Functions and constants defined by the user, in addition to the built-in ones.
+ *
+ * <pre>
+ * FunctionRegistry registry = new FunctionRegistry();
+ * registry.defineVariadicFunction("max", 1, args -&gt; Arrays.stream(args).max().getAsDouble());
+ * registry.defineFunction("clamp", 3, args -&gt; Math.max(args[1], Math.min(args[2], args[0])));
+ * registry.defineConstant("g", 9.80665);
+ * CalculatorEngine engine = CalculatorEngine.builder().registry(registry).build();
+ * engine.calculate("clamp(max(1, 2g, 3), 0, 10)"); // "10"
+ * </pre>
+ *
+ * Definitions are kept in an immutable snapshot that is replaced as a whole on each change
+ * (copy-on-write), so parsing threads read them without locking. Changes are rare and
+ * serialized. A compiled expression holds direct references to the functions it calls and
+ * the values of the constants it uses, taken when it was compiled: later changes apply to
+ * expressions compiled afterwards, and engines recompile cached expressions when the registry
+ * has changed since.
+ */
+public final class FunctionRegistry {
+
+    /** Allowed shape of a function or constant name. */
+    private static final Pattern NAME = Pattern.compile("[A-Za-z_][A-Za-z0-9_]*");
+
+    /** The current definitions; replaced, never modified. */
+    private volatile Snapshot snapshot = Snapshot.EMPTY;
+
+    /**
+     * Defines a function taking a fixed number of arguments, or replaces the function with the
+     * same name.
+     *
+     * @param name      the name of the function.
+     * @param arguments the number of arguments.
+     * @param function  the implementation.
+     * @throws IllegalArgumentException if the name is invalid or already taken by a built-in
+     *                                  function or by a constant, or if the number is negative.
+     */
+    public void defineFunction(String name, int arguments, UserFunction function) {
+        define(name, arguments, arguments, function);
+    }
+
+    /**
+     * Defines a function taking any number of arguments from a minimum, or replaces the
+     * function with the same name.
+     *
+     * @param name         the name of the function.
+     * @param minArguments the minimum number of arguments.
+     * @param function     the implementation.
+     * @throws IllegalArgumentException if the name is invalid or already taken by a built-in
+     *                                  function or by a constant, or if the number is negative.
+     */
+    public void defineVariadicFunction(String name, int minArguments, UserFunction function) {
+        define(name, minArguments, Integer.MAX_VALUE, function);
+    }
+
+    private synchronized void define(String name, int minArguments, int maxArguments, UserFunction function) {
+        checkName(name);
+        if (minArguments < 0) {
+            throw new IllegalArgumentException("Number of arguments must not be negative");
+        }
+        if (function == null) {
+            throw new IllegalArgumentException("Function must not be null");
+        }
+        Snapshot current = snapshot;
+        if (current.constants.containsKey(name)) {
+            throw new IllegalArgumentException("Name is already a constant: " + name);
+        }
+        Map<String, Definition> functions = new HashMap<>(current.functions);
+        functions.put(name, new Definition(name, minArguments, maxArguments, function));
+        snapshot = new Snapshot(current.version + 1, functions, current.constants);
+    }
+
+    /**
+     * Defines a constant, or replaces the constant with the same name.
+     *
+     * @param name  the name of the constant.
+     * @param value the value.
+     * @throws IllegalArgumentException if the name is invalid or already taken by a built-in
+     *                                  function or constant, or by a function.
+     */
+    public synchronized void defineConstant(String name, double value) {
+        checkName(name);
+        Snapshot current = snapshot;
+        if (current.functions.containsKey(name)) {
+            throw new IllegalArgumentException("Name is already a function: " + name);
+        }
+        Map<String, Double> constants = new HashMap<>(current.constants);
+        constants.put(name, value);
+        snapshot = new Snapshot(current.version + 1, current.functions, constants);
+    }
+
+    /**
+     * Removes a function or constant.
+     *
+     * @param name the name of the function or constant.
+     * @return true if it was defined.
+     */
+    public synchronized boolean remove(String name) {
+        Snapshot current = snapshot;
+        if (current.functions.containsKey(name)) {
+            Map<String, Definition> functions = new HashMap<>(current.functions);
+            functions.remove(name);
+            snapshot = new Snapshot(current.version + 1, functions, current.constants);
+            return true;
+        }
+        if (current.constants.containsKey(name)) {
+            Map<String, Double> constants = new HashMap<>(current.constants);
+            constants.remove(name);
+            snapshot = new Snapshot(current.version + 1, current.functions, constants);
+            return true;
+        }
+        return false;
+    }
+
+    /**
+     * Returns the names of the functions, in alphabetical order.
+     */
+    public Set<String> getFunctionNames() {
+        return Collections.unmodifiableSet(new TreeSet<>(snapshot.functions.keySet()));
+    }
+
+    /**
+     * Returns the names of the constants, in alphabetical order.
+     */
+    public Set<String> getConstantNames() {
+        return Collections.unmodifiableSet(new TreeSet<>(snapshot.constants.keySet()));
+    }
+
+    /**
+     * Returns the number of changes made to this registry, which identifies its definitions.
+     */
+    public long getVersion() {
+        return snapshot.version;
+    }
+
+    /**
+     * Returns the current definitions.
+     */
+    Snapshot snapshot() {
+        return snapshot;
+    }
+
+    private static void checkName(String name) {
+        if (name == null || !NAME.matcher(name).matches()) {
+            throw new IllegalArgumentException("Invalid name: " + name);
+        }
+        if (Lexer.RESERVED_NAMES.contains(name)) {
+            throw new IllegalArgumentException("Name is reserved: " + name);
+        }
+    }
+
+    /**
+     * A user-defined function with the range of arguments it accepts.
+     */
+    static final class Definition {
+        final String name;
+        final int minArguments;
+        final int maxArguments;
+        final UserFunction function;
+
+        Definition(String name, int minArguments, int maxArguments, UserFunction function) {
+            this.name = name;
+            this.minArguments = minArguments;
+            this.maxArguments = maxArguments;
+            this.function = function;
+        }
+
+        /**
+         * Checks the number of arguments of a call.
+         *
+         * @throws IllegalArgumentException if the function does not accept that many arguments.
+         */
+        void checkArguments(int count) {
+            if (count < minArguments || count > maxArguments) {
+                String expected = (minArguments == maxArguments) ? Integer.toString(minArguments)
+                        : (maxArguments == Integer.MAX_VALUE) ? "at least " + minArguments
+                        : minArguments + " to " + maxArguments;
+                int last = (maxArguments == Integer.MAX_VALUE) ? minArguments : maxArguments;
+                throw new IllegalArgumentException("Function " + name + " expects " + expected
+                        + " argument" + (last == 1 ? "" : "s") + " but got " + count);
+            }
+        }
+    }
+
+    /**
+     * An immutable set of definitions.
+     */
+    static final class Snapshot {
+        static final Snapshot EMPTY = new Snapshot(0, Map.of(), Map.of());
+
+        final long version;
+        final Map<String, Definition> functions;
+        final Map<String, Double> constants;
+        /** Every name, longest first, so that the lexer finds the longest match. */
+        final String[] names;
+
+        private Snapshot(long version, Map<String, Definition> functions, Map<String, Double> constants) {
+            this.version = version;
+            this.functions = Map.copyOf(functions);
+            this.constants = Map.copyOf(constants);
+            String[] names = new String[functions.size() + constants.size()];
+            int i = 0;
+            for (String name : functions.keySet()) {
+                names[i++] = name;
+            }
+            for (String name : constants.keySet()) {
+                names[i++] = name;
+            }
+            Arrays.sort(names, (a, b) -> b.length() - a.length());
+            this.names = names;
+        }
+
+        boolean isDefined(String name) {
+            return functions.containsKey(name) || constants.containsKey(name);
+        }
+    }
+}
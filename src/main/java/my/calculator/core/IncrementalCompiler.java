@@ -0,0 +1,131 @@
+package my.calculator.core;
+
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Compiles successive versions of an expression being edited, such as the text of an input
+ * field, reusing the work done for the previous version.
+ *
+ * Each call gives the new text and the offset of the first character changed since the
+ * previous call, as reported by document events. The tokens that end far enough before that
+ * offset cannot be lexed differently, so they are kept and only the rest of the text is lexed
+ * again. Parsing the tokens is linear and is done on the whole expression. The kept prefix is
+ * checked against the new text, so a wrong offset costs a full lex, never a wrong result.
+ *
+ * Expressions are compiled with the settings and the user-defined functions of an engine, but
+ * without its caches. Tokens are only kept while the variables stay the same. Instances keep
+ * the state of one edited text and are not thread-safe.
+ */
+public final class IncrementalCompiler {
+
+    private final CalculatorEngine engine;
+
+    /** The previous text, without whitespace; null if it could not be lexed. */
+    private String text;
+    /** The tokens of {@link #text}. */
+    private List<Token> tokens;
+    /** The definitions the tokens were lexed with. */
+    private FunctionRegistry.Snapshot definitions;
+    /** The variables the tokens were lexed with. */
+    private String[] variables;
+    /** Number of tokens reused by the last compilation. */
+    private int reusedTokens;
+
+    /**
+     * Creates a compiler for the expressions of an engine.
+     *
+     * @param engine the engine whose settings and functions are used.
+     */
+    public IncrementalCompiler(CalculatorEngine engine) {
+        this.engine = engine;
+    }
+
+    /**
+     * Compiles a new version of the expression.
+     *
+     * @param input      the whole text of the expression.
+     * @param editOffset the offset in {@code input} of the first character that may differ from
+     *                   the previous version; 0 if unknown.
+     * @param variables  the names of the variables the expression may reference.
+     * @return the compiled expression.
+     * @throws IllegalArgumentException if the expression or a variable name is invalid.
+     */
+    public CompiledExpression compile(String input, int editOffset, String... variables) {
+        if (input == null || input.trim().isEmpty()) {
+            text = null;
+            throw new IllegalArgumentException("Input is empty");
+        }
+        String stripped = Lexer.removeWhitespace(input);
+        FunctionRegistry.Snapshot current = engine.definitions();
+        Map<String, Integer> slots = CalculatorEngine.variableSlots(variables, current);
+        int keep = 0;
+        if (text != null && definitions == current && Arrays.equals(variables, this.variables)) {
+            keep = reusableTokens(stripped, editOffset(input, editOffset));
+        }
+        List<Token> prefix = (keep == 0) ? List.of() : tokens.subList(0, keep);
+        int position = (keep == 0) ? 0 : prefix.get(keep - 1).position + prefix.get(keep - 1).length;
+
+        text = null;
+        List<Token> lexed = Lexer.tokenizeFrom(stripped, slots, current, prefix, position);
+        text = stripped;
+        tokens = lexed;
+        definitions = current;
+        this.variables = variables.clone();
+        reusedTokens = keep;
+        return engine.parseTokens(input, this.variables, lexed, current, false);
+    }
+
+    /**
+     * Returns the engine whose settings and functions are used.
+     */
+    public CalculatorEngine getEngine() {
+        return engine;
+    }
+
+    /**
+     * Returns the number of tokens the last compilation reused from the previous one.
+     */
+    int getReusedTokens() {
+        return reusedTokens;
+    }
+
+    /**
+     * Converts an offset in the text to an offset in the text without whitespace.
+     */
+    private static int editOffset(String input, int offset) {
+        int end = Math.max(0, Math.min(offset, input.length()));
+        int stripped = 0;
+        for (int i = 0; i < end; i++) {
+            if (!Lexer.isWhitespace(input.charAt(i))) {
+                stripped++;
+            }
+        }
+        return stripped;
+    }
+
+    /**
+     * Returns the number of previous tokens that are still valid in the new text.
+     */
+    private int reusableTokens(String stripped, int edit) {
+        int limit = edit - Lexer.lookahead(definitions, variables);
+        int keep = 0;
+        while (keep < tokens.size()) {
+            Token token = tokens.get(keep);
+            if (token.position + token.length > limit) {
+                break;
+            }
+            keep++;
+        }
+        // A zero inserted for a unary minus goes with its minus sign
+        while (keep > 0 && tokens.get(keep - 1).length == 0) {
+            keep--;
+        }
+        // The margin before the edit is only valid if nothing changed before it
+        if (keep == 0 || edit > text.length() || !stripped.regionMatches(0, text, 0, edit)) {
+            return 0;
+        }
+        return keep;
+    }
+}
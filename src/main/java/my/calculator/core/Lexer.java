@@ -0,0 +1,417 @@
+package my.calculator.core;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Single-pass, character-scanning lexer for calculator expressions.
+ *
+ * Whitespace is ignored everywhere, even inside tokens, and positions are counted without it.
+ * At each position the lexer tries, in order: a user-defined function or constant (longest
+ * first, unless a longer built-in function or variable name matches), a function name (unless a
+ * longer variable name matches), a number, a variable name (longest first), a constant, then an operator, parenthesis or comma. A minus sign at the start of
+ * the expression, after an operator, after "(" or after "," is a unary minus, emitted as "0 -".
+ *
+ * Operators are recognized by a switch on the current character, numbers are converted
+ * without creating substrings when they have at most 15 significant digits, and no exception
+ * is thrown unless the input is invalid.
+ */
+final class Lexer {
+
+    /** Exact powers of ten; a number m / 10^k is correctly rounded when m and 10^k are exact. */
+    private static final double[] POWERS_OF_TEN = {
+        1e0, 1e1, 1e2, 1e3, 1e4, 1e5, 1e6, 1e7, 1e8, 1e9, 1e10, 1e11,
+        1e12, 1e13, 1e14, 1e15, 1e16, 1e17, 1e18, 1e19, 1e20, 1e21, 1e22
+    };
+
+    /** Largest mantissa that is exactly representable as a double. */
+    private static final long MAX_EXACT_MANTISSA = 1L << 53;
+
+    private static final String[] NO_NAMES = new String[0];
+
+    /** Length of the longest built-in function name. */
+    private static final int MAX_FUNCTION_NAME_LENGTH = 4;
+
+    /** Names of the functions, indexed by opcode. */
+    private static final String[] FUNCTION_NAMES = new String[OpCode.COUNT];
+
+    /** Names that cannot be variable names: functions and constants. */
+    static final Set<String> RESERVED_NAMES = Set.of(
+            "sin", "cos", "tan", "asin", "acos", "atan", "exp", "ln", "log", "√", "x²", "10^x", "π", "e");
+
+    static {
+        FUNCTION_NAMES[OpCode.SIN] = "sin";
+        FUNCTION_NAMES[OpCode.COS] = "cos";
+        FUNCTION_NAMES[OpCode.TAN] = "tan";
+        FUNCTION_NAMES[OpCode.ASIN] = "asin";
+        FUNCTION_NAMES[OpCode.ACOS] = "acos";
+        FUNCTION_NAMES[OpCode.ATAN] = "atan";
+        FUNCTION_NAMES[OpCode.EXP] = "exp";
+        FUNCTION_NAMES[OpCode.LN] = "ln";
+        FUNCTION_NAMES[OpCode.LOG] = "log";
+        FUNCTION_NAMES[OpCode.SQRT] = "√";
+        FUNCTION_NAMES[OpCode.TEN_POW] = "10^x";
+    }
+
+    private final String input;
+    private final String[] variableNames;
+    private final Map<String, Integer> variables;
+    private final FunctionRegistry.Snapshot definitions;
+    private final List<Token> tokens = new ArrayList<>();
+    private int pos;
+
+    private Lexer(String input, Map<String, Integer> variables, FunctionRegistry.Snapshot definitions) {
+        this.input = input;
+        this.variables = variables;
+        this.definitions = definitions;
+        this.variableNames = sortedByLengthDescending(variables);
+    }
+
+    /**
+     * Tokenizes an expression.
+     *
+     * @param input     the expression; whitespace is ignored.
+     * @param variables the variable slots, by name.
+     * @return the tokens, with unary minus already rewritten as "0 -".
+     * @throws IllegalArgumentException if the input contains consecutive operators or an invalid token.
+     */
+    static List<Token> tokenize(String input, Map<String, Integer> variables) {
+        return tokenize(input, variables, FunctionRegistry.Snapshot.EMPTY);
+    }
+
+    /**
+     * Tokenizes an expression that may use user-defined functions and constants.
+     *
+     * @param input       the expression; whitespace is ignored.
+     * @param variables   the variable slots, by name.
+     * @param definitions the user-defined functions and constants.
+     * @return the tokens, with unary minus already rewritten as "0 -".
+     * @throws IllegalArgumentException if the input contains consecutive operators or an invalid token.
+     */
+    static List<Token> tokenize(String input, Map<String, Integer> variables, FunctionRegistry.Snapshot definitions) {
+        Lexer lexer = new Lexer(removeWhitespace(input), variables, definitions);
+        lexer.run();
+        return lexer.tokens;
+    }
+
+    /**
+     * Tokenizes the end of an expression whose beginning is already tokenized.
+     *
+     * @param input       the expression without whitespace.
+     * @param variables   the variable slots, by name.
+     * @param definitions the user-defined functions and constants.
+     * @param prefix      the tokens of the expression before {@code position}, as returned by a
+     *                    previous call with the same variables; they are copied, not modified.
+     * @param position    the start of the first token to lex, where the last prefix token ends.
+     * @return the tokens of the whole expression.
+     * @throws IllegalArgumentException if the input contains consecutive operators or an invalid token.
+     * @see #lookahead(FunctionRegistry.Snapshot, String[])
+     */
+    static List<Token> tokenizeFrom(String input, Map<String, Integer> variables, FunctionRegistry.Snapshot definitions,
+                                    List<Token> prefix, int position) {
+        Lexer lexer = new Lexer(input, variables, definitions);
+        lexer.tokens.addAll(prefix);
+        lexer.pos = position;
+        lexer.run();
+        return lexer.tokens;
+    }
+
+    /**
+     * Returns how many characters past its end a token may depend on: a token ending at least
+     * that far before an edit is lexed the same way after it.
+     */
+    static int lookahead(FunctionRegistry.Snapshot definitions, String[] variables) {
+        int longestName = (definitions.names.length > 0) ? definitions.names[0].length() : 0;
+        for (String variable : variables) {
+            longestName = Math.max(longestName, variable.length());
+        }
+        return Math.max(MAX_FUNCTION_NAME_LENGTH, longestName);
+    }
+
+    /**
+     * Returns true if the name is a built-in function.
+     */
+    static boolean isFunctionName(String name) {
+        for (String functionName : FUNCTION_NAMES) {
+            if (name.equals(functionName)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Removes the whitespace characters of an expression. Returns the input itself when it has
+     * none, which is the common case.
+     */
+    static String removeWhitespace(String input) {
+        int length = input.length();
+        int i = 0;
+        while (i < length && !isWhitespace(input.charAt(i))) {
+            i++;
+        }
+        if (i == length) {
+            return input;
+        }
+        StringBuilder sb = new StringBuilder(length);
+        sb.append(input, 0, i);
+        for (; i < length; i++) {
+            char c = input.charAt(i);
+            if (!isWhitespace(c)) {
+                sb.append(c);
+            }
+        }
+        return sb.toString();
+    }
+
+    static boolean isWhitespace(char c) {
+        return c == ' ' || c == '\t' || c == '\n' || c == '\u000B' || c == '\f' || c == '\r';
+    }
+
+    private static String[] sortedByLengthDescending(Map<String, Integer> variables) {
+        if (variables.isEmpty()) {
+            return NO_NAMES;
+        }
+        String[] names = variables.keySet().toArray(NO_NAMES);
+        Arrays.sort(names, (a, b) -> b.length() - a.length());
+        return names;
+    }
+
+    private void run() {
+        int length = input.length();
+        while (pos < length) {
+            if (!(lexUserName() || lexFunction() || lexNumber() || lexVariable() || lexConstant() || lexSymbol())) {
+                throw invalidToken();
+            }
+        }
+    }
+
+    /**
+     * Lexes a user-defined function or constant. A built-in function or a variable whose name
+     * is longer takes precedence, so that defining "a" does not break "asin".
+     */
+    private boolean lexUserName() {
+        for (String name : definitions.names) {
+            if (input.startsWith(name, pos)) {
+                int builtin = builtinFunction();
+                if ((builtin >= 0 && FUNCTION_NAMES[builtin].length() > name.length())
+                        || variableLength() > name.length()) {
+                    return false;
+                }
+                if (definitions.functions.containsKey(name)) {
+                    add(Token.function(name, OpCode.CALL, pos));
+                } else {
+                    add(Token.constant(name, definitions.constants.get(name), pos));
+                }
+                pos += name.length();
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private int variableLength() {
+        for (String name : variableNames) {
+            if (input.startsWith(name, pos)) {
+                return name.length();
+            }
+        }
+        return 0;
+    }
+
+    /**
+     * Lexes a built-in function. A variable whose name is longer takes precedence, so that a
+     * variable "cost" is not read as "cos" followed by "t".
+     */
+    private boolean lexFunction() {
+        int op = builtinFunction();
+        if (op < 0) {
+            return false;
+        }
+        String name = FUNCTION_NAMES[op];
+        if (variableLength() > name.length()) {
+            return false;
+        }
+        add(Token.function(name, op, pos));
+        pos += name.length();
+        return true;
+    }
+
+    /**
+     * Returns the built-in function whose name is at the current position, or -1.
+     */
+    private int builtinFunction() {
+        return switch (input.charAt(pos)) {
+            case 's' -> matchFunction(OpCode.SIN);
+            case 'c' -> matchFunction(OpCode.COS);
+            case 't' -> matchFunction(OpCode.TAN);
+            case 'a' -> matchFunction(OpCode.ASIN, OpCode.ACOS, OpCode.ATAN);
+            case 'e' -> matchFunction(OpCode.EXP);
+            case 'l' -> matchFunction(OpCode.LN, OpCode.LOG);
+            case '√' -> OpCode.SQRT;
+            case '1' -> matchFunction(OpCode.TEN_POW);
+            default -> -1;
+        };
+    }
+
+    /**
+     * Returns the first of the functions whose name is at the current position, or -1.
+     */
+    private int matchFunction(int... ops) {
+        for (int op : ops) {
+            if (input.startsWith(FUNCTION_NAMES[op], pos)) {
+                return op;
+            }
+        }
+        return -1;
+    }
+
+    private int matchFunction(int op) {
+        return input.startsWith(FUNCTION_NAMES[op], pos) ? op : -1;
+    }
+
+    /**
+     * Lexes {@code digits ('.' digits)?}. A dot that is not followed by a digit is left alone.
+     */
+    private boolean lexNumber() {
+        int length = input.length();
+        int start = pos;
+        int i = pos;
+        long mantissa = 0;
+        int significantDigits = 0;
+        int fractionDigits = 0;
+        while (i < length && isDigit(input.charAt(i))) {
+            mantissa = accumulate(mantissa, input.charAt(i));
+            if (mantissa != 0) {
+                significantDigits++;
+            }
+            i++;
+        }
+        if (i == start) {
+            return false;
+        }
+        if (i + 1 < length && input.charAt(i) == '.' && isDigit(input.charAt(i + 1))) {
+            i++;
+            while (i < length && isDigit(input.charAt(i))) {
+                mantissa = accumulate(mantissa, input.charAt(i));
+                if (mantissa != 0) {
+                    significantDigits++;
+                }
+                fractionDigits++;
+                i++;
+            }
+        }
+        double value;
+        if (significantDigits <= 15 && mantissa < MAX_EXACT_MANTISSA && fractionDigits < POWERS_OF_TEN.length) {
+            value = mantissa / POWERS_OF_TEN[fractionDigits];
+        } else {
+            value = Double.parseDouble(input.substring(start, i));
+        }
+        add(Token.number(value, start, i - start));
+        pos = i;
+        return true;
+    }
+
+    private static long accumulate(long mantissa, char digit) {
+        // Saturates instead of overflowing; such numbers take the slow path anyway
+        return (mantissa > Long.MAX_VALUE / 10 - 10) ? Long.MAX_VALUE : mantissa * 10 + (digit - '0');
+    }
+
+    private static boolean isDigit(char c) {
+        return c >= '0' && c <= '9';
+    }
+
+    private boolean lexVariable() {
+        for (String name : variableNames) {
+            if (input.startsWith(name, pos)) {
+                add(Token.variable(name, variables.get(name), pos));
+                pos += name.length();
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private boolean lexConstant() {
+        switch (input.charAt(pos)) {
+            case 'π' -> add(Token.constant("π", Math.PI, pos));
+            case 'e' -> add(Token.constant("e", Math.E, pos));
+            default -> {
+                return false;
+            }
+        }
+        pos++;
+        return true;
+    }
+
+    private boolean lexSymbol() {
+        char c = input.charAt(pos);
+        switch (c) {
+            case '+' -> addOperator("+", OpCode.ADD);
+            case '-' -> addOperator("-", OpCode.SUB);
+            case '*' -> addOperator("*", OpCode.MUL);
+            case '/', '÷' -> addOperator("/", OpCode.DIV);
+            case '%' -> addOperator("%", OpCode.MOD);
+            case '^' -> addOperator("^", OpCode.POW);
+            case '!' -> addOperator("!", OpCode.FACTORIAL);
+            case '(' -> add(Token.leftParen(pos));
+            case ')' -> add(Token.rightParen(pos));
+            case ',' -> add(Token.comma(pos));
+            default -> {
+                return false;
+            }
+        }
+        pos++;
+        return true;
+    }
+
+    private void addOperator(String symbol, int op) {
+        if (isBinaryOperatorChar(input.charAt(pos)) && pos > 0 && isBinaryOperatorChar(input.charAt(pos - 1))) {
+            throw consecutiveOperators();
+        }
+        if (op == OpCode.SUB && isUnaryMinusContext()) {
+            // Unary minus detected, treat it as "0 - ..."
+            add(Token.number(0, pos, 0));
+        }
+        add(Token.operator(symbol, op, pos, 1));
+    }
+
+    private boolean isUnaryMinusContext() {
+        if (tokens.isEmpty()) {
+            return true;
+        }
+        Token.Type previous = tokens.get(tokens.size() - 1).type;
+        return previous == Token.Type.OPERATOR || previous == Token.Type.LEFT_PAREN || previous == Token.Type.COMMA;
+    }
+
+    private void add(Token token) {
+        tokens.add(token);
+    }
+
+    /**
+     * Characters that may not follow each other. "÷" and "!" are not part of the set.
+     */
+    private static boolean isBinaryOperatorChar(char c) {
+        return c == '-' || c == '+' || c == '*' || c == '/' || c == '%' || c == '^';
+    }
+
+    /**
+     * Builds the error for an unrecognized character. Consecutive operators anywhere in the
+     * expression take precedence, as they are the more helpful message.
+     */
+    private IllegalArgumentException invalidToken() {
+        for (int i = pos + 1; i < input.length(); i++) {
+            if (isBinaryOperatorChar(input.charAt(i)) && isBinaryOperatorChar(input.charAt(i - 1))) {
+                return consecutiveOperators();
+            }
+        }
+        return new IllegalArgumentException("Invalid token at position " + pos);
+    }
+
+    private static IllegalArgumentException consecutiveOperators() {
+        return new IllegalArgumentException("Invalid input: Consecutive operators");
+    }
+}
@@ -0,0 +1,213 @@
+package my.calculator.core;
+
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Predicate;
+import java.util.function.ToLongFunction;
+
+/**
+ * A concurrent cache bounded both by entry count and by total weight, with least recently used
+ * eviction.
+ *
+ * Keys are spread over independent segments by hash, each segment being an access-ordered
+ * {@link LinkedHashMap} under its own lock, so concurrent callers only contend when they hit
+ * the same segment. Limits are split between segments so that they add up to the limits of the
+ * cache, which therefore never holds more than its bounds.
+ *
+ * @param <K> the key type.
+ * @param <V> the value type.
+ */
+final class LruCache<K, V> {
+
+    private static final int MAX_SEGMENTS = 16;
+
+    private final Segment<K, V>[] segments;
+    private final int segmentMask;
+    private final ToLongFunction<V> weigher;
+    private final int maxEntries;
+    private final long maxWeight;
+
+    private final LongAdder hits = new LongAdder();
+    private final LongAdder misses = new LongAdder();
+    private final LongAdder evictions = new LongAdder();
+
+    /**
+     * Creates a cache.
+     *
+     * @param maxEntries the maximum number of entries, at least 1.
+     * @param maxWeight  the maximum total weight of the values, at least 1.
+     * @param weigher    computes the weight of a value.
+     */
+    LruCache(int maxEntries, long maxWeight, ToLongFunction<V> weigher) {
+        if (maxEntries < 1 || maxWeight < 1) {
+            throw new IllegalArgumentException("Cache limits must be positive");
+        }
+        // Every segment gets at least one entry and one unit of weight
+        int segmentCount = Integer.highestOneBit((int) Math.min(Math.min(MAX_SEGMENTS, maxEntries), maxWeight));
+        this.segments = newSegments(segmentCount);
+        for (int i = 0; i < segmentCount; i++) {
+            segments[i] = new Segment<>(
+                    (int) share(maxEntries, i, segmentCount),
+                    share(maxWeight, i, segmentCount));
+        }
+        this.segmentMask = segmentCount - 1;
+        this.weigher = weigher;
+        this.maxEntries = maxEntries;
+        this.maxWeight = maxWeight;
+    }
+
+    /**
+     * Returns the value cached for a key, or null, and marks it as most recently used.
+     */
+    V get(K key) {
+        return get(key, value -> true);
+    }
+
+    /**
+     * Returns the value cached for a key if the caller can use it, or null, and marks it as most
+     * recently used. A value the caller cannot use counts as a miss.
+     *
+     * @param usable tells whether the caller can use a cached value.
+     */
+    V get(K key, Predicate<? super V> usable) {
+        Segment<K, V> segment = segmentFor(key);
+        V value;
+        synchronized (segment) {
+            Weighted<V> entry = segment.map.get(key);
+            value = (entry == null) ? null : entry.value;
+        }
+        if (value != null && !usable.test(value)) {
+            value = null;
+        }
+        if (value == null) {
+            misses.increment();
+        } else {
+            hits.increment();
+        }
+        return value;
+    }
+
+    /**
+     * Caches a value, evicting the least recently used entries of its segment if a limit is
+     * exceeded. A value heavier than a whole segment is not cached.
+     */
+    void put(K key, V value) {
+        long weight = weigher.applyAsLong(value);
+        Segment<K, V> segment = segmentFor(key);
+        if (weight > segment.maxWeight) {
+            return;
+        }
+        int evicted = 0;
+        synchronized (segment) {
+            Weighted<V> previous = segment.map.put(key, new Weighted<>(value, weight));
+            if (previous != null) {
+                segment.weight -= previous.weight;
+            }
+            segment.weight += weight;
+            Iterator<Map.Entry<K, Weighted<V>>> eldest = segment.map.entrySet().iterator();
+            while (segment.map.size() > segment.maxEntries || segment.weight > segment.maxWeight) {
+                Weighted<V> removed = eldest.next().getValue();
+                eldest.remove();
+                segment.weight -= removed.weight;
+                evicted++;
+            }
+        }
+        if (evicted > 0) {
+            evictions.add(evicted);
+        }
+    }
+
+    /** Removes every entry. Counters are kept. */
+    void clear() {
+        for (Segment<K, V> segment : segments) {
+            synchronized (segment) {
+                segment.map.clear();
+                segment.weight = 0;
+            }
+        }
+    }
+
+    int size() {
+        int size = 0;
+        for (Segment<K, V> segment : segments) {
+            synchronized (segment) {
+                size += segment.map.size();
+            }
+        }
+        return size;
+    }
+
+    long weight() {
+        long weight = 0;
+        for (Segment<K, V> segment : segments) {
+            synchronized (segment) {
+                weight += segment.weight;
+            }
+        }
+        return weight;
+    }
+
+    int maxEntries() {
+        return maxEntries;
+    }
+
+    long maxWeight() {
+        return maxWeight;
+    }
+
+    long hitCount() {
+        return hits.sum();
+    }
+
+    long missCount() {
+        return misses.sum();
+    }
+
+    long evictionCount() {
+        return evictions.sum();
+    }
+
+    /**
+     * Returns the part of a limit given to a segment: the remainder of an even split goes to the
+     * first segments, so the parts add up to the limit.
+     */
+    private static long share(long limit, int segment, int segmentCount) {
+        return limit / segmentCount + (segment < limit % segmentCount ? 1 : 0);
+    }
+
+    // Arrays of a generic type cannot be created directly; this one never leaves the cache
+    @SuppressWarnings({"rawtypes", "unchecked"})
+    private static <K, V> Segment<K, V>[] newSegments(int count) {
+        return new Segment[count];
+    }
+
+    private Segment<K, V> segmentFor(K key) {
+        int h = key.hashCode();
+        h ^= (h >>> 16);
+        return segments[h & segmentMask];
+    }
+
+    private static final class Segment<K, V> {
+        final LinkedHashMap<K, Weighted<V>> map = new LinkedHashMap<>(16, 0.75f, true);
+        final int maxEntries;
+        final long maxWeight;
+        long weight;
+
+        Segment(int maxEntries, long maxWeight) {
+            this.maxEntries = maxEntries;
+            this.maxWeight = maxWeight;
+        }
+    }
+
+    private static final class Weighted<V> {
+        final V value;
+        final long weight;
+
+        Weighted(V value, long weight) {
+            this.value = value;
+            this.weight = weight;
+        }
+    }
+}
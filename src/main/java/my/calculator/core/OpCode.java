@@ -0,0 +1,103 @@
+package my.calculator.core;
+
+/**
+ * Instruction set of a {@link CompiledExpression} program.
+ *
+ * Programs are flat {@code int[]} arrays: each instruction is an opcode, followed by a single
+ * operand for the instructions that take one (see {@link #hasOperand(int)}).
+ */
+final class OpCode {
+
+    /** Private constructor to prevent instantiation */
+    private OpCode() {
+        // Prevent instantiation
+    }
+
+    /** Pushes {@code constants[operand]}. */
+    static final int CONST = 0;
+    /** Pushes {@code variables[operand]}. */
+    static final int VAR = 1;
+
+    // Binary operators: pop b, pop a, push (a op b)
+    static final int ADD = 2;
+    static final int SUB = 3;
+    static final int MUL = 4;
+    static final int DIV = 5;
+    static final int MOD = 6;
+    static final int POW = 7;
+
+    // Unary operators and functions: pop a, push f(a)
+    static final int FACTORIAL = 8;
+    static final int SIN = 9;
+    static final int COS = 10;
+    static final int TAN = 11;
+    static final int ASIN = 12;
+    static final int ACOS = 13;
+    static final int ATAN = 14;
+    static final int EXP = 15;
+    static final int LN = 16;
+    static final int LOG = 17;
+    static final int SQRT = 18;
+    static final int SQUARE = 19;
+    static final int TEN_POW = 20;
+    /** Pushes {@code 0 - a}, which unlike {@code -a} is +0.0 when a is 0.0. */
+    static final int NEG = 21;
+    // Trigonometric functions with angles in radians; SIN to ATAN take degrees
+    static final int SIN_RAD = 22;
+    static final int COS_RAD = 23;
+    static final int TAN_RAD = 24;
+    static final int ASIN_RAD = 25;
+    static final int ACOS_RAD = 26;
+    static final int ATAN_RAD = 27;
+
+    // Temporaries, used to compute common subexpressions once
+    /** Copies the top of the stack to {@code temps[operand]}, without popping it. */
+    static final int STORE = 28;
+    /** Pushes {@code temps[operand]}. */
+    static final int LOAD = 29;
+
+    /**
+     * Calls a user-defined function: pops its arguments, the first one deepest, and pushes its
+     * result. The operand is the index of the call in the calls of the expression.
+     */
+    static final int CALL = 30;
+
+    /** Number of opcodes, the size of tables indexed by opcode. */
+    static final int COUNT = 31;
+
+    /** Mnemonics indexed by opcode, used for disassembly. */
+    private static final String[] NAMES = {
+        "const", "var", "add", "sub", "mul", "div", "mod", "pow",
+        "fact", "sin", "cos", "tan", "asin", "acos", "atan",
+        "exp", "ln", "log", "sqrt", "square", "tenpow", "neg",
+        "sinr", "cosr", "tanr", "asinr", "acosr", "atanr", "store", "load", "call"
+    };
+
+    /**
+     * Returns true if the opcode is followed by an operand in the program.
+     */
+    static boolean hasOperand(int opcode) {
+        return opcode == CONST || opcode == VAR || opcode == STORE || opcode == LOAD || opcode == CALL;
+    }
+
+    /**
+     * Returns true if the opcode pops two values.
+     */
+    static boolean isBinary(int opcode) {
+        return opcode >= ADD && opcode <= POW;
+    }
+
+    /**
+     * Returns true if the opcode pops one value and pushes a function of it.
+     */
+    static boolean isUnary(int opcode) {
+        return opcode >= FACTORIAL && opcode <= ATAN_RAD;
+    }
+
+    /**
+     * Returns the mnemonic of an opcode.
+     */
+    static String name(int opcode) {
+        return NAMES[opcode];
+    }
+}
@@ -0,0 +1,250 @@
+package my.calculator.core;
+
+/**
+ * Arithmetic and scientific primitives shared by every evaluator.
+ * Each method carries the domain checks and error messages of the calculator, so that all
+ * evaluation paths report errors the same way.
+ */
+final class Operations {
+
+    /** Private constructor to prevent instantiation */
+    private Operations() {
+        // Prevent instantiation
+    }
+
+    /**
+     * Divides a by b.
+     *
+     * @throws ArithmeticException if b is zero
+     */
+    static double divide(double a, double b) {
+        if (b == 0) {
+            throw new ArithmeticException("Cannot divide by zero");
+        }
+        return a / b;
+    }
+
+    /**
+     * Computes a modulo b.
+     *
+     * @throws ArithmeticException if b is zero
+     */
+    static double mod(double a, double b) {
+        if (b == 0) {
+            throw new ArithmeticException("Cannot mod by zero");
+        }
+        return a % b;
+    }
+
+    static double pow(double a, double b) {
+        return Math.pow(a, b);
+    }
+
+    /** Sine of an angle in degrees. */
+    static double sin(double a) {
+        return Math.sin(Math.toRadians(a));
+    }
+
+    /** Cosine of an angle in degrees. */
+    static double cos(double a) {
+        return Math.cos(Math.toRadians(a));
+    }
+
+    /** Tangent of an angle in degrees. */
+    static double tan(double a) {
+        return Math.tan(Math.toRadians(a));
+    }
+
+    /**
+     * Arc sine, in degrees.
+     *
+     * @throws IllegalArgumentException if a is outside [-1, 1]
+     */
+    static double asin(double a) {
+        checkUnitDomain("asin", a);
+        return Math.toDegrees(Math.asin(a));
+    }
+
+    /**
+     * Arc cosine, in degrees.
+     *
+     * @throws IllegalArgumentException if a is outside [-1, 1]
+     */
+    static double acos(double a) {
+        checkUnitDomain("acos", a);
+        return Math.toDegrees(Math.acos(a));
+    }
+
+    /** Arc tangent, in degrees. */
+    static double atan(double a) {
+        return Math.toDegrees(Math.atan(a));
+    }
+
+    static double sinRadians(double a) {
+        return Math.sin(a);
+    }
+
+    static double cosRadians(double a) {
+        return Math.cos(a);
+    }
+
+    static double tanRadians(double a) {
+        return Math.tan(a);
+    }
+
+    /**
+     * Arc sine, in radians.
+     *
+     * @throws IllegalArgumentException if a is outside [-1, 1]
+     */
+    static double asinRadians(double a) {
+        checkUnitDomain("asin", a);
+        return Math.asin(a);
+    }
+
+    /**
+     * Arc cosine, in radians.
+     *
+     * @throws IllegalArgumentException if a is outside [-1, 1]
+     */
+    static double acosRadians(double a) {
+        checkUnitDomain("acos", a);
+        return Math.acos(a);
+    }
+
+    static double atanRadians(double a) {
+        return Math.atan(a);
+    }
+
+    static double exp(double a) {
+        return Math.exp(a);
+    }
+
+    /**
+     * Natural logarithm.
+     *
+     * @throws ArithmeticException if a is not positive
+     */
+    static double ln(double a) {
+        if (a <= 0) {
+            throw new ArithmeticException("ln undefined for non-positive values");
+        }
+        return Math.log(a);
+    }
+
+    /**
+     * Base 10 logarithm.
+     *
+     * @throws ArithmeticException if a is not positive
+     */
+    static double log(double a) {
+        if (a <= 0) {
+            throw new ArithmeticException("log undefined for non-positive values");
+        }
+        return Math.log10(a);
+    }
+
+    /**
+     * Square root.
+     *
+     * @throws ArithmeticException if a is negative
+     */
+    static double sqrt(double a) {
+        if (a < 0) {
+            throw new ArithmeticException("Square root of negative number is undefined");
+        }
+        return Math.sqrt(a);
+    }
+
+    /**
+     * Negation as the calculator always computed it, {@code 0 - a}: zero stays +0.0.
+     */
+    static double negate(double a) {
+        return 0.0 - a;
+    }
+
+    static double square(double a) {
+        return a * a;
+    }
+
+    static double tenPow(double a) {
+        return Math.pow(10, a);
+    }
+
+    /**
+     * Calculates the factorial of a number (only for non-negative integers).
+     *
+     * @param a the number to factorial
+     * @return factorial of a
+     * @throws ArithmeticException if a is negative or non-integer, or if the result is too large
+     */
+    static double factorial(double a) {
+        if (a < 0 || a != (int) a) {
+            throw new ArithmeticException("Factorial is only defined for non-negative integers");
+        }
+        int n = (int) a;
+        if (n > 20) {
+            // to prevent overflow
+            throw new ArithmeticException("Factorial result is too large");
+        }
+        long result = 1;
+        for (int i = 2; i <= n; i++) {
+            result *= i;
+        }
+        return result;
+    }
+
+    /**
+     * Applies a unary opcode (function or factorial) to an operand.
+     *
+     * @throws IllegalArgumentException if the opcode is not unary
+     */
+    static double unary(int opcode, double a) {
+        return switch (opcode) {
+            case OpCode.FACTORIAL -> factorial(a);
+            case OpCode.SIN -> sin(a);
+            case OpCode.COS -> cos(a);
+            case OpCode.TAN -> tan(a);
+            case OpCode.ASIN -> asin(a);
+            case OpCode.ACOS -> acos(a);
+            case OpCode.ATAN -> atan(a);
+            case OpCode.EXP -> exp(a);
+            case OpCode.LN -> ln(a);
+            case OpCode.LOG -> log(a);
+            case OpCode.SQRT -> sqrt(a);
+            case OpCode.SQUARE -> square(a);
+            case OpCode.TEN_POW -> tenPow(a);
+            case OpCode.NEG -> negate(a);
+            case OpCode.SIN_RAD -> sinRadians(a);
+            case OpCode.COS_RAD -> cosRadians(a);
+            case OpCode.TAN_RAD -> tanRadians(a);
+            case OpCode.ASIN_RAD -> asinRadians(a);
+            case OpCode.ACOS_RAD -> acosRadians(a);
+            case OpCode.ATAN_RAD -> atanRadians(a);
+            default -> throw new IllegalArgumentException("Unknown function: " + OpCode.name(opcode));
+        };
+    }
+
+    /**
+     * Applies a binary opcode to two operands.
+     *
+     * @throws IllegalArgumentException if the opcode is not binary
+     */
+    static double binary(int opcode, double a, double b) {
+        return switch (opcode) {
+            case OpCode.ADD -> a + b;
+            case OpCode.SUB -> a - b;
+            case OpCode.MUL -> a * b;
+            case OpCode.DIV -> divide(a, b);
+            case OpCode.MOD -> mod(a, b);
+            case OpCode.POW -> pow(a, b);
+            default -> throw new IllegalArgumentException("Unknown operator: " + OpCode.name(opcode));
+        };
+    }
+
+    private static void checkUnitDomain(String function, double value) {
+        if (value < -1 || value > 1) {
+            throw new IllegalArgumentException("Domain definition of " + function + " is (-1, 1)");
+        }
+    }
+}
@@ -0,0 +1,347 @@
+package my.calculator.core;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Deque;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Optimization pass over the program of a {@link CompiledExpression}.
+ *
+ * The program is turned back into an expression graph, simplified, and emitted again:
+ * <ul>
+ *     <li>constant subtrees are evaluated once, at compile time, unless they throw, in which
+ *     case they are left for evaluation to report the error;</li>
+ *     <li>{@code 0 - x}, which is how a unary minus is parsed, becomes {@link OpCode#NEG};</li>
+ *     <li>{@code x^2} becomes {@link OpCode#SQUARE}, {@code 10^x} becomes {@link OpCode#TEN_POW},
+ *     and {@code x^1}, {@code x*1}, {@code 1*x}, {@code x/1} and {@code x-0} become {@code x};</li>
+ *     <li>identical subexpressions are computed once, stored in a temporary with
+ *     {@link OpCode#STORE} and reused with {@link OpCode#LOAD}.</li>
+ * </ul>
+ *
+ * Every rewrite gives bit-for-bit the same result, and errors are thrown in the same order,
+ * so optimized and unoptimized programs are indistinguishable except for speed. Rewrites that
+ * would change the last bit of a result, such as {@code e^x} to {@code exp(x)}, are not done.
+ */
+final class Optimizer {
+
+    /** Private constructor to prevent instantiation */
+    private Optimizer() {
+        // Prevent instantiation
+    }
+
+    /**
+     * Optimizes the program of an expression.
+     *
+     * @param expression an expression compiled without temporaries.
+     * @return an equivalent expression with an optimized program, or the expression itself if
+     *         it calls user-defined functions, which may have side effects.
+     */
+    static CompiledExpression optimize(CompiledExpression expression) {
+        if (expression.calls().length > 0) {
+            return expression;
+        }
+        List<Node> roots = decode(expression.code(), expression.constants());
+
+        // Values left below the result are never read, but the errors they throw must still be
+        List<Node> kept = new ArrayList<>();
+        for (int i = 0; i < roots.size(); i++) {
+            Node root = roots.get(i);
+            if (i == roots.size() - 1 || root.mayThrow) {
+                kept.add(root);
+            }
+        }
+        countUses(kept);
+
+        Emitter emitter = new Emitter();
+        for (Node root : kept) {
+            emitter.emit(root);
+        }
+        return expression.withProgram(Arrays.copyOf(emitter.code, emitter.codeLength),
+                Arrays.copyOf(emitter.constants, emitter.constantCount), emitter.maxStack, emitter.temps);
+    }
+
+    /**
+     * Rebuilds the expression graph of a program, simplifying each node as it is built.
+     * Identical nodes are merged, so that common subexpressions are shared.
+     *
+     * @return the values left on the stack by the program, bottom first.
+     */
+    private static List<Node> decode(int[] code, double[] constants) {
+        Map<Node, Node> interned = new HashMap<>();
+        List<Node> stack = new ArrayList<>();
+        int pc = 0;
+        while (pc < code.length) {
+            int op = code[pc++];
+            Node node;
+            if (op == OpCode.CONST) {
+                node = Node.constant(constants[code[pc++]]);
+            } else if (op == OpCode.VAR) {
+                node = new Node(OpCode.VAR, 0, code[pc++], null, null);
+            } else if (OpCode.isBinary(op)) {
+                Node b = stack.remove(stack.size() - 1);
+                Node a = stack.remove(stack.size() - 1);
+                node = simplifyBinary(op, a, b, interned);
+            } else if (OpCode.isUnary(op)) {
+                node = simplifyUnary(op, stack.remove(stack.size() - 1));
+            } else {
+                throw new IllegalStateException("Unexpected opcode " + OpCode.name(op) + " at " + (pc - 1));
+            }
+            stack.add(intern(node, interned));
+        }
+        return stack;
+    }
+
+    private static Node intern(Node node, Map<Node, Node> interned) {
+        Node existing = interned.putIfAbsent(node, node);
+        return (existing != null) ? existing : node;
+    }
+
+    private static Node simplifyUnary(int op, Node a) {
+        if (a.isConstant()) {
+            try {
+                return Node.constant(Operations.unary(op, a.value));
+            } catch (ArithmeticException | IllegalArgumentException e) {
+                // Not folded: evaluation reports the error
+            }
+        }
+        return new Node(op, 0, 0, a, null);
+    }
+
+    private static Node simplifyBinary(int op, Node a, Node b, Map<Node, Node> interned) {
+        if (a.isConstant() && b.isConstant()) {
+            try {
+                return Node.constant(Operations.binary(op, a.value, b.value));
+            } catch (ArithmeticException | IllegalArgumentException e) {
+                // Not folded: evaluation reports the error
+            }
+        }
+        switch (op) {
+            case OpCode.SUB -> {
+                if (a.isConstant(0.0)) {
+                    return new Node(OpCode.NEG, 0, 0, b, null);
+                }
+                if (b.isConstant(0.0)) {
+                    return a;
+                }
+            }
+            case OpCode.MUL -> {
+                if (b.isConstant(1.0)) {
+                    return a;
+                }
+                if (a.isConstant(1.0)) {
+                    return b;
+                }
+            }
+            case OpCode.DIV -> {
+                if (b.isConstant(1.0)) {
+                    return a;
+                }
+            }
+            case OpCode.POW -> {
+                // Math.pow(x, 1) is x and Math.pow(x, 2) is x * x, exactly
+                if (b.isConstant(1.0)) {
+                    return a;
+                }
+                if (b.isConstant(2.0)) {
+                    return intern(new Node(OpCode.SQUARE, 0, 0, a, null), interned);
+                }
+                if (a.isConstant(10.0)) {
+                    return intern(new Node(OpCode.TEN_POW, 0, 0, b, null), interned);
+                }
+            }
+            default -> {
+                // No rewrite
+            }
+        }
+        return new Node(op, 0, 0, a, b);
+    }
+
+    /**
+     * Counts, for each node reachable from the roots, how many times its value is used.
+     */
+    private static void countUses(List<Node> roots) {
+        Deque<Node> pending = new ArrayDeque<>();
+        for (Node root : roots) {
+            root.uses++;
+            pending.push(root);
+        }
+        while (!pending.isEmpty()) {
+            Node node = pending.pop();
+            if (node.visited) {
+                continue;
+            }
+            node.visited = true;
+            for (Node child : new Node[] {node.a, node.b}) {
+                if (child != null) {
+                    child.uses++;
+                    if (!child.visited) {
+                        pending.push(child);
+                    }
+                }
+            }
+        }
+    }
+
+    /**
+     * Returns true if evaluating the operation itself may throw.
+     */
+    private static boolean canThrow(int op) {
+        return switch (op) {
+            case OpCode.DIV, OpCode.MOD, OpCode.FACTORIAL, OpCode.ASIN, OpCode.ACOS, OpCode.ASIN_RAD,
+                 OpCode.ACOS_RAD, OpCode.LN, OpCode.LOG, OpCode.SQRT -> true;
+            default -> false;
+        };
+    }
+
+    /**
+     * A node of the expression graph. Equality is structural, with children compared by
+     * identity: children are interned before their parents, so that is enough.
+     */
+    private static final class Node {
+        final int op;
+        final double value;
+        final int slot;
+        final Node a;
+        final Node b;
+        /** Whether evaluating this node may throw. */
+        final boolean mayThrow;
+
+        int uses;
+        boolean visited;
+        boolean expanded;
+        /** The temporary holding the value once computed, or -1. */
+        int temp = -1;
+
+        Node(int op, double value, int slot, Node a, Node b) {
+            this.op = op;
+            this.value = value;
+            this.slot = slot;
+            this.a = a;
+            this.b = b;
+            this.mayThrow = canThrow(op) || (a != null && a.mayThrow) || (b != null && b.mayThrow);
+        }
+
+        static Node constant(double value) {
+            return new Node(OpCode.CONST, value, 0, null, null);
+        }
+
+        boolean isConstant() {
+            return op == OpCode.CONST;
+        }
+
+        /**
+         * Returns true if this is the given constant; 0.0 and -0.0 are different constants.
+         */
+        boolean isConstant(double constant) {
+            return op == OpCode.CONST && Double.doubleToLongBits(value) == Double.doubleToLongBits(constant);
+        }
+
+        boolean isLeaf() {
+            return op == OpCode.CONST || op == OpCode.VAR;
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            if (!(o instanceof Node)) {
+                return false;
+            }
+            Node other = (Node) o;
+            return op == other.op && slot == other.slot && a == other.a && b == other.b
+                    && Double.doubleToLongBits(value) == Double.doubleToLongBits(other.value);
+        }
+
+        @Override
+        public int hashCode() {
+            int hash = op;
+            hash = 31 * hash + Double.hashCode(value);
+            hash = 31 * hash + slot;
+            hash = 31 * hash + System.identityHashCode(a);
+            hash = 31 * hash + System.identityHashCode(b);
+            return hash;
+        }
+    }
+
+    /**
+     * Writes the program of an expression graph. Nodes used more than once are computed the
+     * first time they are reached and loaded from a temporary afterwards.
+     */
+    private static final class Emitter {
+        int[] code = new int[16];
+        int codeLength;
+        double[] constants = new double[4];
+        int constantCount;
+        final Map<Long, Integer> constantIndexes = new HashMap<>();
+        int depth;
+        int maxStack;
+        int temps;
+
+        /**
+         * Emits the program computing a node, in post-order, without recursion so that very
+         * long expressions cannot overflow the stack.
+         */
+        void emit(Node root) {
+            Deque<Node> work = new ArrayDeque<>();
+            work.push(root);
+            while (!work.isEmpty()) {
+                Node node = work.peek();
+                if (node.op == OpCode.CONST) {
+                    work.pop();
+                    push(OpCode.CONST, constantIndex(node.value));
+                } else if (node.op == OpCode.VAR) {
+                    work.pop();
+                    push(OpCode.VAR, node.slot);
+                } else if (node.temp >= 0) {
+                    work.pop();
+                    push(OpCode.LOAD, node.temp);
+                } else if (!node.expanded) {
+                    node.expanded = true;
+                    if (node.b != null) {
+                        work.push(node.b);
+                    }
+                    work.push(node.a);
+                } else {
+                    work.pop();
+                    write(node.op);
+                    if (node.b != null) {
+                        depth--;
+                    }
+                    if (node.uses > 1) {
+                        node.temp = temps++;
+                        write(OpCode.STORE);
+                        write(node.temp);
+                    }
+                }
+            }
+        }
+
+        private void push(int op, int operand) {
+            write(op);
+            write(operand);
+            maxStack = Math.max(maxStack, ++depth);
+        }
+
+        private void write(int value) {
+            if (codeLength == code.length) {
+                code = Arrays.copyOf(code, codeLength * 2);
+            }
+            code[codeLength++] = value;
+        }
+
+        private int constantIndex(double value) {
+            Integer index = constantIndexes.get(Double.doubleToLongBits(value));
+            if (index != null) {
+                return index;
+            }
+            if (constantCount == constants.length) {
+                constants = Arrays.copyOf(constants, constantCount * 2);
+            }
+            constants[constantCount] = value;
+            constantIndexes.put(Double.doubleToLongBits(value), constantCount);
+            return constantCount++;
+        }
+    }
+}
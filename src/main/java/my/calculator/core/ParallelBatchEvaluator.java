@@ -0,0 +1,90 @@
+package my.calculator.core;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.List;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+
+/**
+ * Splits a batch into chunks of rows and evaluates them on a {@link ForkJoinPool}.
+ *
+ * Each chunk writes only its own rows of the output array, so the results are in input order
+ * whatever the scheduling. Errors are collected per chunk and reported together once every
+ * chunk has finished.
+ */
+final class ParallelBatchEvaluator {
+
+    /** Default rows per chunk: 64 blocks, about 512 KB of results. */
+    static final int DEFAULT_CHUNK_SIZE = 64 * BatchEvaluator.BLOCK_SIZE;
+
+    /** Private constructor to prevent instantiation */
+    private ParallelBatchEvaluator() {
+        // Prevent instantiation
+    }
+
+    /**
+     * Evaluates every row of a batch on the given pool.
+     *
+     * @throws BatchEvaluationException if one or more chunks failed.
+     */
+    static void evaluate(CompiledExpression expression, double[][] columns, double[] out,
+                         ForkJoinPool pool, int chunkSize) {
+        ConcurrentLinkedQueue<BatchEvaluationException.ChunkFailure> failures = new ConcurrentLinkedQueue<>();
+        pool.invoke(new ChunkTask(expression, columns, out, 0, out.length, chunkSize, failures));
+        if (!failures.isEmpty()) {
+            List<BatchEvaluationException.ChunkFailure> sorted = new ArrayList<>(failures);
+            sorted.sort(Comparator.comparingInt(BatchEvaluationException.ChunkFailure::getFromRow));
+            int chunkCount = (out.length + chunkSize - 1) / chunkSize;
+            throw new BatchEvaluationException(sorted, chunkCount);
+        }
+    }
+
+    private static final class ChunkTask extends RecursiveAction {
+
+        private static final long serialVersionUID = 1L;
+
+        private final transient CompiledExpression expression;
+        private final double[][] columns;
+        private final double[] out;
+        private final int from;
+        private final int to;
+        private final int chunkSize;
+        private final transient ConcurrentLinkedQueue<BatchEvaluationException.ChunkFailure> failures;
+
+        ChunkTask(CompiledExpression expression, double[][] columns, double[] out, int from, int to,
+                  int chunkSize, ConcurrentLinkedQueue<BatchEvaluationException.ChunkFailure> failures) {
+            this.expression = expression;
+            this.columns = columns;
+            this.out = out;
+            this.from = from;
+            this.to = to;
+            this.chunkSize = chunkSize;
+            this.failures = failures;
+        }
+
+        @Override
+        protected void compute() {
+            int chunks = (to - from + chunkSize - 1) / chunkSize;
+            if (chunks <= 1) {
+                evaluateChunk();
+                return;
+            }
+            // Split on a chunk boundary so that chunks are the same whatever the split order
+            int middle = from + (chunks / 2) * chunkSize;
+            invokeAll(new ChunkTask(expression, columns, out, from, middle, chunkSize, failures),
+                      new ChunkTask(expression, columns, out, middle, to, chunkSize, failures));
+        }
+
+        private void evaluateChunk() {
+            try {
+                BatchEvaluator.evaluate(expression, columns, out, from, to);
+            } catch (ArithmeticException | IllegalArgumentException e) {
+                Arrays.fill(out, from, to, Double.NaN);
+                failures.add(new BatchEvaluationException.ChunkFailure(from, to, e));
+            }
+        }
+    }
+}
@@ -0,0 +1,69 @@
+package my.calculator.core;
+
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.StackTrace;
+import jdk.jfr.Threshold;
+
+/**
+ * A JDK Flight Recorder event for the parsing of an expression, from its text to a
+ * {@link CompiledExpression}. Expressions found in a cache are not parsed again, so they
+ * emit no event.
+ *
+ * Only parses slower than the threshold are recorded, 1 ms unless the recording sets another
+ * one. The expression itself is not recorded, only its hash and length.
+ */
+@Name(ParseEvent.NAME)
+@Label("Parse Expression")
+@Category("Calculator")
+@Description("Parsing of an expression into a program")
+@StackTrace(false)
+@Threshold("1 ms")
+public final class ParseEvent extends Event {
+
+    /** Name of the event in recordings. */
+    public static final String NAME = "my.calculator.Parse";
+
+    @Label("Expression Hash")
+    @Description("String hash code of the expression")
+    int expressionHash;
+
+    @Label("Expression Length")
+    int expressionLength;
+
+    @Label("Token Count")
+    @Description("Number of tokens of the expression, 0 if it could not be tokenized")
+    int tokenCount;
+
+    @Label("Outcome")
+    @Description("\"ok\", or the simple name of the exception thrown")
+    String outcome;
+
+    /**
+     * Ends the event, and commits it if it lasted longer than the threshold.
+     *
+     * @param expression the expression parsed.
+     * @param tokenCount its number of tokens.
+     * @param error      the exception thrown, or null.
+     */
+    void complete(String expression, int tokenCount, RuntimeException error) {
+        end();
+        if (shouldCommit()) {
+            this.expressionHash = expression.hashCode();
+            this.expressionLength = expression.length();
+            this.tokenCount = tokenCount;
+            this.outcome = outcome(error);
+            commit();
+        }
+    }
+
+    /**
+     * Returns the outcome recorded for an exception, or for none.
+     */
+    static String outcome(RuntimeException error) {
+        return (error == null) ? "ok" : error.getClass().getSimpleName();
+    }
+}
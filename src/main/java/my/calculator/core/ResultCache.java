@@ -0,0 +1,128 @@
+package my.calculator.core;
+
+/**
+ * A bounded cache of formatted results, keyed by expression text.
+ *
+ * Expressions without variables are pure functions of their text, so once installed with
+ * {@link CalculatorLogic#setResultCache(ResultCache)}, {@link CalculatorLogic#calculate(String)}
+ * returns the already formatted result of an expression it has seen before. Deterministic
+ * errors (such as "Cannot divide by zero" or an invalid expression) are cached as well, and
+ * thrown again with the same type and message.
+ * Expressions calling functions of a {@link FunctionRegistry} are not cached, since those
+ * functions may have side effects or return other values on each call.
+ *
+ * Entries never expire; the least recently used ones are evicted once the capacity is reached.
+ * The cache is safe for concurrent use.
+ */
+public final class ResultCache {
+
+    /** Default maximum number of cached results. */
+    public static final int DEFAULT_MAX_ENTRIES = 4096;
+
+    private final LruCache<String, Outcome> cache;
+
+    /**
+     * Creates a cache with the default capacity.
+     */
+    public ResultCache() {
+        this(DEFAULT_MAX_ENTRIES);
+    }
+
+    /**
+     * Creates a cache.
+     *
+     * @param maxEntries the maximum number of cached results.
+     * @throws IllegalArgumentException if the capacity is not positive.
+     */
+    public ResultCache(int maxEntries) {
+        this.cache = new LruCache<>(maxEntries, Long.MAX_VALUE, outcome -> 1);
+    }
+
+    /**
+     * Returns the cached result of an expression, throws its cached error, or returns null if
+     * the expression is not cached or was calculated with other settings, which counts as a
+     * miss.
+     *
+     * @param input  the expression.
+     * @param engine the engine looking up the result.
+     */
+    String get(String input, CalculatorEngine engine) {
+        Outcome outcome = cache.get(input, cached -> engine.calculatesLike(cached.engine));
+        return (outcome == null) ? null : outcome.replay();
+    }
+
+    void putResult(String input, String result, CalculatorEngine engine) {
+        cache.put(input, new Outcome(result, null, engine));
+    }
+
+    void putError(String input, RuntimeException error, CalculatorEngine engine) {
+        cache.put(input, new Outcome(null, error, engine));
+    }
+
+    /** Removes every cached result. Counters are kept. */
+    public void clear() {
+        cache.clear();
+    }
+
+    /** Returns the number of cached results. */
+    public int size() {
+        return cache.size();
+    }
+
+    /** Returns the maximum number of cached results. */
+    public int getMaxEntries() {
+        return cache.maxEntries();
+    }
+
+    /** Returns the number of lookups that found a cached result or error. */
+    public long getHitCount() {
+        return cache.hitCount();
+    }
+
+    /** Returns the number of lookups that found nothing. */
+    public long getMissCount() {
+        return cache.missCount();
+    }
+
+    /** Returns the number of results evicted to stay within the capacity. */
+    public long getEvictionCount() {
+        return cache.evictionCount();
+    }
+
+    @Override
+    public String toString() {
+        return "ResultCache[size=" + size() + ", hits=" + getHitCount() + ", misses=" + getMissCount()
+                + ", evictions=" + getEvictionCount() + "]";
+    }
+
+    /**
+     * The cached outcome of a calculation: either a formatted result or an error, with the
+     * engine that calculated it.
+     */
+    private static final class Outcome {
+        private final String result;
+        private final boolean arithmeticError;
+        private final String errorMessage;
+        private final CalculatorEngine engine;
+
+        Outcome(String result, RuntimeException error, CalculatorEngine engine) {
+            this.result = result;
+            this.arithmeticError = error instanceof ArithmeticException;
+            this.errorMessage = (error == null) ? null : error.getMessage();
+            this.engine = engine;
+        }
+
+        /**
+         * Returns the result, or throws a fresh copy of the error.
+         */
+        String replay() {
+            if (result != null) {
+                return result;
+            }
+            if (arithmeticError) {
+                throw new ArithmeticException(errorMessage);
+            }
+            throw new IllegalArgumentException(errorMessage);
+        }
+    }
+}
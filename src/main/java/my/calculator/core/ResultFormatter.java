@@ -0,0 +1,295 @@
+package my.calculator.core;
+
+import java.math.BigDecimal;
+import java.math.RoundingMode;
+import java.text.DecimalFormat;
+import java.text.DecimalFormatSymbols;
+import java.util.Locale;
+
+/**
+ * Formats results the way the calculator displays them: at most ten fraction digits, rounded
+ * half up, trailing zeros removed and '.' as decimal separator, exactly as
+ * {@code new DecimalFormat("#.##########")} with {@link RoundingMode#HALF_UP} does.
+ *
+ * Unlike {@link DecimalFormat}, formatting creates no formatter, takes no lock, and can write
+ * into a caller-supplied {@link StringBuilder}. Like {@link DecimalFormat}, it rounds the
+ * shortest decimal representation of the value ({@link Double#toString(double)}) and looks at
+ * the exact binary value only to break ties. The sign, digits, infinity and NaN symbols of the
+ * default locale are honored.
+ *
+ * This class is thread-safe.
+ */
+public final class ResultFormatter {
+
+    /** Maximum number of fraction digits of the default format. */
+    public static final int DEFAULT_FRACTION_DIGITS = 10;
+
+    /** Integers below this magnitude are printed exactly as a long. */
+    private static final double EXACT_INTEGER_LIMIT = 1L << 53;
+
+    private static volatile Symbols symbols;
+
+    /** Private constructor to prevent instantiation */
+    private ResultFormatter() {
+        // Prevent instantiation
+    }
+
+    /**
+     * Formats a result.
+     *
+     * @param value the value to format.
+     * @return the formatted value.
+     */
+    public static String format(double value) {
+        return format(value, DEFAULT_FRACTION_DIGITS);
+    }
+
+    /**
+     * Formats a result with another number of fraction digits, rounded half up like the
+     * default format.
+     *
+     * @param value          the value to format.
+     * @param fractionDigits the maximum number of fraction digits.
+     * @return the formatted value.
+     * @throws IllegalArgumentException if the number of fraction digits is negative.
+     */
+    public static String format(double value, int fractionDigits) {
+        if (fractionDigits < 0) {
+            throw new IllegalArgumentException("Number of fraction digits must not be negative");
+        }
+        Symbols s = currentSymbols();
+        if (s.asciiDigits && isSmallInteger(value)) {
+            // Fast path for the most common results
+            long integer = (long) value;
+            if (integer == 0 && isNegative(value)) {
+                return s.minus + "0";
+            }
+            return (integer < 0) ? s.minus + Long.toString(-integer) : Long.toString(integer);
+        }
+        StringBuilder sb = new StringBuilder(24);
+        formatTo(value, sb, s, fractionDigits);
+        return sb.toString();
+    }
+
+    /**
+     * Formats a result, appending it to a builder.
+     *
+     * @param value the value to format.
+     * @param sb    the builder receiving the formatted value.
+     * @return the builder.
+     */
+    public static StringBuilder formatTo(double value, StringBuilder sb) {
+        formatTo(value, sb, currentSymbols(), DEFAULT_FRACTION_DIGITS);
+        return sb;
+    }
+
+    private static void formatTo(double value, StringBuilder sb, Symbols s, int fractionDigits) {
+        if (Double.isNaN(value)) {
+            sb.append(s.nan);
+            return;
+        }
+        if (isNegative(value)) {
+            sb.append(s.minus);
+        }
+        if (Double.isInfinite(value)) {
+            sb.append(s.infinity);
+            return;
+        }
+        double magnitude = Math.abs(value);
+        if (isSmallInteger(magnitude)) {
+            appendDigits(sb, Long.toString((long) magnitude), s.zero);
+            return;
+        }
+        Digits digits = new Digits(magnitude);
+        digits.roundToFractionDigits(fractionDigits);
+        digits.appendTo(sb, s.zero);
+    }
+
+    private static boolean isSmallInteger(double value) {
+        return value == Math.rint(value) && Math.abs(value) < EXACT_INTEGER_LIMIT;
+    }
+
+    private static boolean isNegative(double value) {
+        // Also true for -0.0, which DecimalFormat prints as "-0"
+        return value < 0 || (value == 0 && 1 / value < 0);
+    }
+
+    private static void appendDigits(StringBuilder sb, CharSequence digits, char zero) {
+        if (zero == '0') {
+            sb.append(digits);
+            return;
+        }
+        for (int i = 0; i < digits.length(); i++) {
+            sb.append((char) (digits.charAt(i) - '0' + zero));
+        }
+    }
+
+    private static Symbols currentSymbols() {
+        Locale locale = Locale.getDefault(Locale.Category.FORMAT);
+        Symbols s = symbols;
+        if (s == null || s.locale != locale) {
+            s = new Symbols(locale);
+            symbols = s;
+        }
+        return s;
+    }
+
+    /**
+     * The locale dependent parts of the output, taken from a real {@link DecimalFormat} once per
+     * default locale.
+     */
+    private static final class Symbols {
+        final Locale locale;
+        final char zero;
+        final boolean asciiDigits;
+        final String minus;
+        final String infinity;
+        final String nan;
+
+        Symbols(Locale locale) {
+            DecimalFormatSymbols dfs = new DecimalFormatSymbols(locale);
+            dfs.setDecimalSeparator('.');
+            DecimalFormat df = new DecimalFormat("#.##########", dfs);
+            df.setRoundingMode(RoundingMode.HALF_UP);
+            String negativeOne = df.format(-1);
+            this.locale = locale;
+            this.zero = dfs.getZeroDigit();
+            this.asciiDigits = zero == '0';
+            this.minus = negativeOne.substring(0, negativeOne.length() - 1);
+            this.infinity = df.format(Double.POSITIVE_INFINITY);
+            this.nan = df.format(Double.NaN);
+        }
+    }
+
+    /**
+     * The significant digits of a positive value and the position of its decimal point,
+     * mirroring the digit list DecimalFormat works on.
+     */
+    private static final class Digits {
+        final double value;
+        final String shortest;
+        final char[] digits = new char[20];
+        int count;
+        /** Number of digits before the decimal point; may be negative or exceed count. */
+        int decimalAt;
+
+        Digits(double value) {
+            this.value = value;
+            this.shortest = Double.toString(value);
+            int exponent = 0;
+            int leadingZerosAfterPoint = 0;
+            boolean nonZeroSeen = false;
+            decimalAt = -1;
+            for (int i = 0; i < shortest.length(); i++) {
+                char c = shortest.charAt(i);
+                if (c == '.') {
+                    decimalAt = count;
+                } else if (c == 'E') {
+                    exponent = Integer.parseInt(shortest, i + 1, shortest.length(), 10);
+                    break;
+                } else {
+                    if (!nonZeroSeen) {
+                        nonZeroSeen = c != '0';
+                        if (!nonZeroSeen && decimalAt != -1) {
+                            leadingZerosAfterPoint++;
+                        }
+                    }
+                    if (nonZeroSeen) {
+                        digits[count++] = c;
+                    }
+                }
+            }
+            if (decimalAt == -1) {
+                decimalAt = count;
+            }
+            if (nonZeroSeen) {
+                decimalAt += exponent - leadingZerosAfterPoint;
+            }
+            while (count > 1 && digits[count - 1] == '0') {
+                count--;
+            }
+        }
+
+        void roundToFractionDigits(int fractionDigits) {
+            if (-decimalAt > fractionDigits) {
+                // Too small to show any digit
+                count = 0;
+                return;
+            }
+            if (-decimalAt == fractionDigits) {
+                // The first significant digit is just past the last shown one
+                if (shouldRoundUp(0)) {
+                    count = 1;
+                    decimalAt++;
+                    digits[0] = '1';
+                } else {
+                    count = 0;
+                }
+                return;
+            }
+            int kept = fractionDigits + decimalAt;
+            if (kept >= count) {
+                return;
+            }
+            if (shouldRoundUp(kept)) {
+                while (true) {
+                    kept--;
+                    if (kept < 0) {
+                        // Carried past the first digit, e.g. 9.99999999999 -> 10
+                        digits[0] = '1';
+                        decimalAt++;
+                        kept = 0;
+                        break;
+                    }
+                    digits[kept]++;
+                    if (digits[kept] <= '9') {
+                        break;
+                    }
+                }
+                kept++;
+            }
+            count = kept;
+            while (count > 1 && digits[count - 1] == '0') {
+                count--;
+            }
+        }
+
+        /**
+         * Half up rounding of the digits from {@code index} on. A lone trailing '5' is a tie in
+         * the shortest representation only; the exact binary value decides which way it goes.
+         */
+        private boolean shouldRoundUp(int index) {
+            if (digits[index] != '5') {
+                return digits[index] > '5';
+            }
+            if (index != count - 1) {
+                return true;
+            }
+            int comparison = new BigDecimal(value).compareTo(new BigDecimal(shortest));
+            return comparison >= 0;
+        }
+
+        void appendTo(StringBuilder sb, char zero) {
+            if (count == 0) {
+                sb.append(zero);
+                return;
+            }
+            if (decimalAt <= 0) {
+                sb.append(zero);
+            } else {
+                for (int i = 0; i < decimalAt; i++) {
+                    sb.append(i < count ? (char) (digits[i] - '0' + zero) : zero);
+                }
+            }
+            if (count > decimalAt) {
+                sb.append('.');
+                for (int i = decimalAt; i < 0; i++) {
+                    sb.append(zero);
+                }
+                for (int i = Math.max(decimalAt, 0); i < count; i++) {
+                    sb.append((char) (digits[i] - '0' + zero));
+                }
+            }
+        }
+    }
+}
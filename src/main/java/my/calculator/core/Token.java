@@ -0,0 +1,97 @@
+package my.calculator.core;
+
+/**
+ * A lexical token of an expression, produced by {@link Lexer}.
+ *
+ * Operators, parentheses, functions and constants carry their canonical symbol as a shared
+ * string literal, operators and functions also carry their {@link OpCode}, numbers carry their
+ * parsed value, and variables carry their slot. Positions
+ * are offsets in the expression once whitespace is removed, the same offsets reported in error
+ * messages.
+ */
+final class Token {
+
+    /** The kinds of tokens. */
+    enum Type {
+        NUMBER, CONSTANT, VARIABLE, FUNCTION, OPERATOR, LEFT_PAREN, RIGHT_PAREN, COMMA
+    }
+
+    final Type type;
+    /** Canonical symbol, or the variable name; null for numbers. */
+    final String symbol;
+    /** Value of a number or constant. */
+    final double value;
+    /** Slot of a variable. */
+    final int slot;
+    /**
+     * Opcode of an operator, or of a function with angles in degrees, or {@link OpCode#CALL}
+     * for a user-defined function; -1 for other tokens. Parsing looks operators up by opcode
+     * rather than by symbol.
+     */
+    final int op;
+    /** Number of arguments of a function call, counted by the parser; 1 until then. */
+    final int arguments;
+    /** Offset of the first character, in the expression without whitespace. */
+    final int position;
+    /** Number of characters; 0 for tokens inserted by the parser (unary minus zero, implicit "*"). */
+    final int length;
+
+    private Token(Type type, String symbol, double value, int slot, int op, int arguments, int position,
+                  int length) {
+        this.type = type;
+        this.symbol = symbol;
+        this.value = value;
+        this.slot = slot;
+        this.op = op;
+        this.arguments = arguments;
+        this.position = position;
+        this.length = length;
+    }
+
+    static Token number(double value, int position, int length) {
+        return new Token(Type.NUMBER, null, value, -1, -1, 1, position, length);
+    }
+
+    static Token constant(String symbol, double value, int position) {
+        return new Token(Type.CONSTANT, symbol, value, -1, -1, 1, position, symbol.length());
+    }
+
+    static Token variable(String name, int slot, int position) {
+        return new Token(Type.VARIABLE, name, 0, slot, -1, 1, position, name.length());
+    }
+
+    static Token function(String name, int op, int position) {
+        return new Token(Type.FUNCTION, name, 0, -1, op, 1, position, name.length());
+    }
+
+    static Token operator(String symbol, int op, int position, int length) {
+        return new Token(Type.OPERATOR, symbol, 0, -1, op, 1, position, length);
+    }
+
+    static Token leftParen(int position) {
+        return new Token(Type.LEFT_PAREN, "(", 0, -1, -1, 1, position, 1);
+    }
+
+    static Token rightParen(int position) {
+        return new Token(Type.RIGHT_PAREN, ")", 0, -1, -1, 1, position, 1);
+    }
+
+    static Token comma(int position) {
+        return new Token(Type.COMMA, ",", 0, -1, -1, 1, position, 1);
+    }
+
+    /** Returns this function call with the number of arguments counted by the parser. */
+    Token withArguments(int arguments) {
+        return new Token(type, symbol, value, slot, op, arguments, position, length);
+    }
+
+    /** Returns true for tokens whose value is known without evaluation: numbers and constants. */
+    boolean isValue() {
+        return type == Type.NUMBER || type == Type.CONSTANT;
+    }
+
+    @Override
+    public String toString() {
+        return (type == Type.NUMBER) ? Double.toString(value) : symbol;
+    }
+}
@@ -0,0 +1,22 @@
+package my.calculator.core;
+
+/**
+ * A function defined by the user in a {@link FunctionRegistry}, such as {@code max(a, b, c)}.
+ *
+ * Implementations may be called concurrently from several threads. They report invalid
+ * arguments with an {@link IllegalArgumentException} and arithmetic errors with an
+ * {@link ArithmeticException}, whose messages are shown to the user like those of the
+ * built-in functions.
+ */
+@FunctionalInterface
+public interface UserFunction {
+
+    /**
+     * Computes the function.
+     *
+     * @param arguments the arguments. The array may be reused once the call returns, so it must
+     *                  not be kept.
+     * @return the result.
+     */
+    double apply(double[] arguments);
+}
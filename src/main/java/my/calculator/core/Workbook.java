@@ -0,0 +1,515 @@
+package my.calculator.core;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Deque;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * Named cells whose expressions can use the values of other cells, like a spreadsheet.
+ *
+ * <pre>
+ * Workbook workbook = new Workbook();
+ * workbook.evaluate("a = 3");
+ * workbook.evaluate("b = a*2");
+ * workbook.evaluate("c = sin(b)+a");
+ * workbook.evaluate("a = 15");        // recomputes b, then c
+ * workbook.getValue("c");             // 15.5
+ * workbook.evaluate("c*2");           // "31"
+ * </pre>
+ *
+ * Each cell is compiled once by the engine, with the cells it uses as variables. The cells
+ * form a directed acyclic graph: a definition that would close a cycle is rejected. Changing
+ * a cell recomputes only the cells depending on it, directly or not, in topological order,
+ * layer by layer: the cells of a layer depend only on earlier layers, so large layers are
+ * evaluated in parallel on a {@link ForkJoinPool}.
+ *
+ * A cell whose evaluation fails keeps the error, and so do the cells depending on it, until
+ * the error goes away. Instances are thread-safe; changes are serialized, and expressions
+ * that are not kept are evaluated on a {@link Snapshot} of the cells without blocking them.
+ */
+public final class Workbook {
+
+    /** Minimum number of cells in a layer to evaluate it in parallel. */
+    static final int PARALLEL_THRESHOLD = 256;
+
+    /** Cells per task when a layer is evaluated in parallel. */
+    private static final int CHUNK_SIZE = 64;
+
+    /** {@code name = expression}. */
+    private static final Pattern ASSIGNMENT = Pattern.compile("\\s*([A-Za-z_][A-Za-z0-9_]*)\\s*=(.*)", Pattern.DOTALL);
+
+    private final CalculatorEngine engine;
+    private final ForkJoinPool pool;
+    /** The cells, in the order they were defined. */
+    private final Map<String, Cell> cells = new LinkedHashMap<>();
+    /** Number of cells evaluated by the last change. */
+    private int recomputed;
+    /** Number of changes made to the cells. */
+    private long version;
+
+    /**
+     * Creates a workbook evaluated with the default engine of {@link CalculatorLogic}, as it is
+     * now, on the common pool.
+     */
+    public Workbook() {
+        this(CalculatorLogic.getDefaultEngine());
+    }
+
+    /**
+     * Creates a workbook evaluated with an engine, on the common pool.
+     *
+     * @param engine the engine compiling and evaluating the cells.
+     */
+    public Workbook(CalculatorEngine engine) {
+        this(engine, ForkJoinPool.commonPool());
+    }
+
+    /**
+     * Creates a workbook evaluated with an engine, on a pool.
+     *
+     * @param engine the engine compiling and evaluating the cells.
+     * @param pool   the pool evaluating large layers of cells.
+     */
+    public Workbook(CalculatorEngine engine, ForkJoinPool pool) {
+        this.engine = engine;
+        this.pool = pool;
+    }
+
+    /**
+     * Evaluates a line: either an assignment {@code name = expression}, which defines or
+     * replaces a cell, or an expression, which may use the cells and is not kept. An expression
+     * using no cell is calculated by {@link CalculatorEngine#calculate(String)}, with its caches
+     * and metrics.
+     *
+     * @param line the line.
+     * @return the formatted value of the cell or of the expression.
+     * @throws IllegalArgumentException if the expression is invalid, uses an unknown name or
+     *                                  would make a cell depend on itself.
+     * @throws ArithmeticException      if the evaluation fails.
+     */
+    public String evaluate(String line) {
+        Matcher assignment = ASSIGNMENT.matcher(line);
+        if (assignment.matches()) {
+            String name = assignment.group(1);
+            synchronized (this) {
+                set(name, assignment.group(2));
+                return engine.format(getValue(name));
+            }
+        }
+        // Evaluated on a copy of the values, so that a long evaluation does not block changes
+        Snapshot snapshot = snapshot();
+        if (snapshot.names.length == 0) {
+            return engine.calculate(line);
+        }
+        CompiledExpression compiled = engine.compile(line, snapshot.names);
+        if (usedSlots(compiled).length == 0) {
+            return engine.calculate(line);
+        }
+        return engine.format(compiled.evaluate(snapshot.bind(compiled, 0)));
+    }
+
+    /**
+     * Returns the names, values and errors of the cells as they are now, to evaluate expressions
+     * using them without blocking changes.
+     */
+    public synchronized Snapshot snapshot() {
+        Cell[] current = cells.values().toArray(new Cell[0]);
+        double[] values = new double[current.length];
+        RuntimeException[] errors = new RuntimeException[current.length];
+        for (int i = 0; i < current.length; i++) {
+            values[i] = current[i].value;
+            errors[i] = current[i].error;
+        }
+        return new Snapshot(version, cells.keySet().toArray(new String[0]), values, errors);
+    }
+
+    /**
+     * Defines a cell, or replaces its expression, and recomputes the cells depending on it.
+     * An expression that fails to evaluate still defines the cell, with the error as value.
+     *
+     * @param name       the name of the cell.
+     * @param expression the expression, which may use other cells by name.
+     * @throws IllegalArgumentException if the name or the expression is invalid, the
+     *                                  expression uses an unknown name, or it would make the
+     *                                  cell depend on itself.
+     */
+    public synchronized void set(String name, String expression) {
+        // Compile with every name, the cell's own included, to find the cells used
+        Set<String> known = new LinkedHashSet<>(cells.keySet());
+        known.add(name);
+        String[] names = known.toArray(new String[0]);
+        CompiledExpression discovery = engine.compile(expression, names);
+        List<String> dependencies = new ArrayList<>();
+        for (int slot : usedSlots(discovery)) {
+            dependencies.add(names[slot]);
+        }
+        checkAcyclic(name, dependencies);
+        CompiledExpression compiled = engine.compile(expression, dependencies.toArray(new String[0]));
+
+        Cell cell = cells.get(name);
+        if (cell == null) {
+            cell = new Cell(name);
+            cells.put(name, cell);
+        } else {
+            for (Cell dependency : cell.dependencies) {
+                dependency.dependents.remove(cell);
+            }
+        }
+        version++;
+        cell.expression = expression.trim();
+        cell.compiled = compiled;
+        cell.dependencies = new Cell[dependencies.size()];
+        for (int i = 0; i < cell.dependencies.length; i++) {
+            cell.dependencies[i] = cells.get(dependencies.get(i));
+            cell.dependencies[i].dependents.add(cell);
+        }
+        recompute(cell);
+    }
+
+    /**
+     * Removes a cell.
+     *
+     * @param name the name of the cell.
+     * @return true if the cell was defined.
+     * @throws IllegalArgumentException if other cells use it.
+     */
+    public synchronized boolean remove(String name) {
+        Cell cell = cells.get(name);
+        if (cell == null) {
+            return false;
+        }
+        if (!cell.dependents.isEmpty()) {
+            throw new IllegalArgumentException("Cell " + name + " is used by " + cell.dependents.iterator().next().name);
+        }
+        for (Cell dependency : cell.dependencies) {
+            dependency.dependents.remove(cell);
+        }
+        cells.remove(name);
+        version++;
+        return true;
+    }
+
+    /**
+     * Returns the value of a cell.
+     *
+     * @param name the name of the cell.
+     * @throws IllegalArgumentException if the cell is not defined, or if its evaluation, or
+     *                                  that of a cell it uses, failed with this exception.
+     * @throws ArithmeticException      if its evaluation, or that of a cell it uses, failed
+     *                                  with this exception.
+     */
+    public synchronized double getValue(String name) {
+        return cell(name).value();
+    }
+
+    /**
+     * Returns the expression of a cell.
+     *
+     * @param name the name of the cell.
+     * @throws IllegalArgumentException if the cell is not defined.
+     */
+    public synchronized String getExpression(String name) {
+        return cell(name).expression;
+    }
+
+    /**
+     * Returns the names of the cells, in the order they were defined.
+     */
+    public synchronized Set<String> getNames() {
+        return Collections.unmodifiableSet(new LinkedHashSet<>(cells.keySet()));
+    }
+
+    /**
+     * Returns the names of the cells a cell uses directly.
+     *
+     * @param name the name of the cell.
+     * @throws IllegalArgumentException if the cell is not defined.
+     */
+    public synchronized Set<String> getDependencies(String name) {
+        Set<String> names = new LinkedHashSet<>();
+        for (Cell dependency : cell(name).dependencies) {
+            names.add(dependency.name);
+        }
+        return Collections.unmodifiableSet(names);
+    }
+
+    /**
+     * Returns the engine compiling and evaluating the cells.
+     */
+    public CalculatorEngine getEngine() {
+        return engine;
+    }
+
+    /**
+     * Returns the number of cells evaluated by the last change.
+     */
+    synchronized int getRecomputed() {
+        return recomputed;
+    }
+
+    private Cell cell(String name) {
+        Cell cell = cells.get(name);
+        if (cell == null) {
+            throw new IllegalArgumentException("Unknown cell: " + name);
+        }
+        return cell;
+    }
+
+    /**
+     * Returns the variable slots a program reads.
+     */
+    private static int[] usedSlots(CompiledExpression compiled) {
+        boolean[] used = new boolean[compiled.getVariableCount()];
+        int count = 0;
+        int[] code = compiled.code();
+        int pc = 0;
+        while (pc < code.length) {
+            int op = code[pc++];
+            if (op == OpCode.VAR && !used[code[pc]]) {
+                used[code[pc]] = true;
+                count++;
+            }
+            if (OpCode.hasOperand(op)) {
+                pc++;
+            }
+        }
+        int[] slots = new int[count];
+        for (int slot = 0, i = 0; slot < used.length; slot++) {
+            if (used[slot]) {
+                slots[i++] = slot;
+            }
+        }
+        return slots;
+    }
+
+    /**
+     * Checks that a cell using the given cells would not depend on itself.
+     *
+     * @throws IllegalArgumentException if it would, with the cycle in the message.
+     */
+    private void checkAcyclic(String name, List<String> dependencies) {
+        Map<String, String> reachedFrom = new HashMap<>();
+        Deque<String> pending = new ArrayDeque<>();
+        for (String dependency : dependencies) {
+            if (reachedFrom.putIfAbsent(dependency, name) == null) {
+                pending.push(dependency);
+            }
+        }
+        while (!pending.isEmpty()) {
+            String current = pending.pop();
+            if (current.equals(name)) {
+                List<String> cycle = new ArrayList<>();
+                cycle.add(name);
+                for (String step = reachedFrom.get(name); !step.equals(name); step = reachedFrom.get(step)) {
+                    cycle.add(step);
+                }
+                cycle.add(name);
+                Collections.reverse(cycle);
+                throw new IllegalArgumentException("Circular reference: " + String.join(" -> ", cycle));
+            }
+            for (Cell dependency : cells.get(current).dependencies) {
+                if (reachedFrom.putIfAbsent(dependency.name, current) == null) {
+                    pending.push(dependency.name);
+                }
+            }
+        }
+    }
+
+    /**
+     * Recomputes a cell and every cell depending on it, layer by layer.
+     */
+    private void recompute(Cell changed) {
+        // The cells to recompute, and how many of the cells each one uses are among them
+        Map<Cell, Integer> waiting = new HashMap<>();
+        Deque<Cell> pending = new ArrayDeque<>();
+        waiting.put(changed, 0);
+        pending.push(changed);
+        while (!pending.isEmpty()) {
+            for (Cell dependent : pending.pop().dependents) {
+                if (waiting.merge(dependent, 1, Integer::sum) == 1) {
+                    pending.push(dependent);
+                }
+            }
+        }
+        // Kahn's algorithm: a layer is the cells whose dependencies are all up to date
+        List<Cell> layer = List.of(changed);
+        recomputed = 0;
+        while (!layer.isEmpty()) {
+            evaluateLayer(layer);
+            recomputed += layer.size();
+            List<Cell> nextLayer = new ArrayList<>();
+            for (Cell cell : layer) {
+                for (Cell dependent : cell.dependents) {
+                    if (waiting.merge(dependent, -1, Integer::sum) == 0) {
+                        nextLayer.add(dependent);
+                    }
+                }
+            }
+            layer = nextLayer;
+        }
+    }
+
+    private void evaluateLayer(List<Cell> layer) {
+        if (layer.size() < PARALLEL_THRESHOLD) {
+            for (Cell cell : layer) {
+                cell.evaluate();
+            }
+        } else {
+            pool.invoke(new LayerTask(layer, 0, layer.size()));
+        }
+    }
+
+    /**
+     * The cells of a workbook as they were at one point.
+     */
+    public static final class Snapshot {
+        private final long version;
+        private final String[] names;
+        private final double[] values;
+        private final RuntimeException[] errors;
+        private final Map<String, Integer> slots = new HashMap<>();
+
+        private Snapshot(long version, String[] names, double[] values, RuntimeException[] errors) {
+            this.version = version;
+            this.names = names;
+            this.values = values;
+            this.errors = errors;
+            for (int i = 0; i < names.length; i++) {
+                slots.put(names[i], i);
+            }
+        }
+
+        /**
+         * Returns the number of changes made to the workbook before this snapshot: two
+         * snapshots of a workbook with the same version hold the same cells.
+         */
+        public long getVersion() {
+            return version;
+        }
+
+        /**
+         * Returns the names of the cells, in the order they were defined.
+         */
+        public String[] getNames() {
+            return names.clone();
+        }
+
+        /**
+         * Returns the variables of an expression using the cells, with the values of the cells.
+         *
+         * @param compiled an expression compiled with its own variables first, then names of
+         *                 cells.
+         * @param first    the slot of the first cell; the slots before it are left at 0.
+         * @return the values of the variables, to evaluate the expression.
+         * @throws IllegalArgumentException if a variable from {@code first} on is not a cell, or
+         *                                  if the evaluation of a cell used failed with this
+         *                                  exception.
+         * @throws ArithmeticException      if the evaluation of a cell used failed with this
+         *                                  exception.
+         */
+        public double[] bind(CompiledExpression compiled, int first) {
+            List<String> variables = compiled.getVariableNames();
+            double[] bound = new double[variables.size()];
+            for (int slot : usedSlots(compiled)) {
+                if (slot < first) {
+                    continue;
+                }
+                Integer cell = slots.get(variables.get(slot));
+                if (cell == null) {
+                    throw new IllegalArgumentException("Unknown cell: " + variables.get(slot));
+                }
+                if (errors[cell] != null) {
+                    throw errors[cell];
+                }
+                bound[slot] = values[cell];
+            }
+            return bound;
+        }
+    }
+
+    /**
+     * A named cell and its edges in the dependency graph.
+     */
+    private static final class Cell {
+        final String name;
+        String expression;
+        /** Compiled with the names of {@link #dependencies} as variables, in order. */
+        CompiledExpression compiled;
+        Cell[] dependencies = new Cell[0];
+        /** Cells using this one directly. */
+        final Set<Cell> dependents = new LinkedHashSet<>();
+        double value;
+        /** The error of the evaluation, or null. */
+        RuntimeException error;
+
+        Cell(String name) {
+            this.name = name;
+        }
+
+        double value() {
+            if (error != null) {
+                throw error;
+            }
+            return value;
+        }
+
+        /**
+         * Evaluates the expression; the cells used must be up to date. Only writes this cell.
+         */
+        void evaluate() {
+            double[] values = new double[dependencies.length];
+            for (int i = 0; i < values.length; i++) {
+                Cell dependency = dependencies[i];
+                if (dependency.error != null) {
+                    error = dependency.error;
+                    return;
+                }
+                values[i] = dependency.value;
+            }
+            try {
+                value = compiled.evaluate(values);
+                error = null;
+            } catch (ArithmeticException | IllegalArgumentException e) {
+                error = e;
+            }
+        }
+    }
+
+    private static final class LayerTask extends RecursiveAction {
+
+        private static final long serialVersionUID = 1L;
+
+        private final transient List<Cell> layer;
+        private final int from;
+        private final int to;
+
+        LayerTask(List<Cell> layer, int from, int to) {
+            this.layer = layer;
+            this.from = from;
+            this.to = to;
+        }
+
+        @Override
+        protected void compute() {
+            if (to - from <= CHUNK_SIZE) {
+                for (int i = from; i < to; i++) {
+                    layer.get(i).evaluate();
+                }
+                return;
+            }
+            int middle = (from + to) >>> 1;
+            invokeAll(new LayerTask(layer, from, middle), new LayerTask(layer, middle, to));
+        }
+    }
+}
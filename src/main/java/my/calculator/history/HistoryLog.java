@@ -0,0 +1,243 @@
+package my.calculator.history;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.List;
+import java.util.zip.CRC32;
+
+/**
+ * The file of a {@link HistoryStore}: a header followed by length-prefixed records, only ever
+ * appended to, except when it is rewritten as a whole to drop old records.
+ *
+ * <pre>
+ * header: int magic, int version
+ * record: int length, int crc32 of the bytes, byte[length] UTF-8 text
+ * </pre>
+ *
+ * All values are big-endian. A record cut short by a crash, or whose checksum does not match,
+ * ends the log: it is truncated there when opened. The records found when opening are read
+ * from a memory mapping of the file, on demand.
+ *
+ * A mapping lasts until it is garbage collected, and some systems cannot replace a mapped file,
+ * so the log is rewritten to a file beside it, named with a {@code .compacted} suffix, which is
+ * appended to from then on. It replaces the file when the log is opened again, before mapping.
+ */
+final class HistoryLog implements Closeable {
+
+    /** "CALH". */
+    static final int MAGIC = 0x43414C48;
+    static final int VERSION = 1;
+    private static final int HEADER_LENGTH = 8;
+    private static final int RECORD_HEADER_LENGTH = 8;
+    /** Longest record accepted, in bytes; three bytes per char at most. */
+    private static final int MAX_RECORD_LENGTH = 3 * HistoryStore.MAX_ENTRY_LENGTH;
+
+    private final Path file;
+    private FileChannel channel;
+    /** Offset where the next record is written. */
+    private long end;
+    /** Number of records in the file. */
+    private long records;
+    /** The file as it was when opened; null once released. */
+    private MappedByteBuffer mapped;
+    /** Offsets of the last records found when opening, oldest first. */
+    private final int[] loaded;
+
+    private HistoryLog(Path file, FileChannel channel, long end, long records, MappedByteBuffer mapped, int[] loaded) {
+        this.file = file;
+        this.channel = channel;
+        this.end = end;
+        this.records = records;
+        this.mapped = mapped;
+        this.loaded = loaded;
+    }
+
+    /**
+     * Opens a log, creating it if it does not exist.
+     *
+     * @param file     the file.
+     * @param retained the number of most recent records to locate.
+     * @throws IOException if the file cannot be opened or is not a history log.
+     */
+    static HistoryLog open(Path file, int retained) throws IOException {
+        if (file.getParent() != null) {
+            Files.createDirectories(file.getParent());
+        }
+        // A log rewritten in an earlier session replaces the file, which nothing maps yet
+        Path compacted = compacted(file);
+        if (Files.exists(compacted)) {
+            Files.move(compacted, file, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        }
+        FileChannel channel = FileChannel.open(file, StandardOpenOption.CREATE, StandardOpenOption.READ,
+                StandardOpenOption.WRITE);
+        try {
+            long size = channel.size();
+            if (size < HEADER_LENGTH) {
+                // New, or cut short before its header was complete
+                channel.truncate(0);
+                writeFully(channel, header(), 0);
+                return new HistoryLog(file, channel, HEADER_LENGTH, 0, null, new int[0]);
+            }
+            if (size > Integer.MAX_VALUE) {
+                throw new IOException("History file is too large: " + file);
+            }
+            MappedByteBuffer mapped = channel.map(FileChannel.MapMode.READ_ONLY, 0, size);
+            if (mapped.getInt(0) != MAGIC || mapped.getInt(4) != VERSION) {
+                throw new IOException("Not a history file: " + file);
+            }
+
+            // Offsets of the last records, in a ring
+            int[] ring = new int[retained];
+            long count = 0;
+            int position = HEADER_LENGTH;
+            CRC32 crc = new CRC32();
+            while (position <= size - RECORD_HEADER_LENGTH) {
+                int length = mapped.getInt(position);
+                if (length < 0 || length > MAX_RECORD_LENGTH || length > size - position - RECORD_HEADER_LENGTH) {
+                    break;
+                }
+                crc.reset();
+                crc.update(mapped.slice(position + RECORD_HEADER_LENGTH, length));
+                if ((int) crc.getValue() != mapped.getInt(position + 4)) {
+                    break;
+                }
+                if (retained > 0) {
+                    ring[(int) (count % retained)] = position;
+                }
+                count++;
+                position += RECORD_HEADER_LENGTH + length;
+            }
+            if (position < size) {
+                channel.truncate(position);
+            }
+
+            int n = (int) Math.min(count, retained);
+            int[] loaded = new int[n];
+            for (int i = 0; i < n; i++) {
+                loaded[i] = ring[(int) ((count - n + i) % retained)];
+            }
+            return new HistoryLog(file, channel, position, count, mapped, loaded);
+        } catch (IOException | RuntimeException e) {
+            channel.close();
+            throw e;
+        }
+    }
+
+    /**
+     * Returns the offsets of the most recent records found when opening, oldest first.
+     */
+    int[] loadedOffsets() {
+        return loaded;
+    }
+
+    /**
+     * Reads a record found when opening.
+     *
+     * @param offset the offset of the record.
+     */
+    String read(int offset) {
+        int length = mapped.getInt(offset);
+        byte[] bytes = new byte[length];
+        mapped.get(offset + RECORD_HEADER_LENGTH, bytes);
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+
+    /**
+     * Drops the memory mapping, once no record found when opening will be read anymore.
+     */
+    void releaseMapping() {
+        mapped = null;
+    }
+
+    /**
+     * Returns the number of records in the file.
+     */
+    long records() {
+        return records;
+    }
+
+    /**
+     * Appends records, in a single write. They are not durable until {@link #force()}.
+     */
+    void append(List<String> entries) throws IOException {
+        end += writeFully(channel, encode(entries), end);
+        records += entries.size();
+    }
+
+    /**
+     * Makes the records appended so far durable.
+     */
+    void force() throws IOException {
+        channel.force(false);
+    }
+
+    /**
+     * Replaces the whole log with the given records, in the compacted file, which is never
+     * mapped. The new file is written beside it and moved over it, so a crash leaves either the
+     * compacted file or the previous one, complete.
+     */
+    void rewrite(List<String> entries) throws IOException {
+        Path compacted = compacted(file);
+        Path temporary = file.resolveSibling(file.getFileName() + ".tmp");
+        try (FileChannel out = FileChannel.open(temporary, StandardOpenOption.CREATE,
+                StandardOpenOption.TRUNCATE_EXISTING, StandardOpenOption.WRITE)) {
+            long position = writeFully(out, header(), 0);
+            writeFully(out, encode(entries), position);
+            out.force(true);
+        }
+        channel.close();
+        Files.move(temporary, compacted, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        channel = FileChannel.open(compacted, StandardOpenOption.READ, StandardOpenOption.WRITE);
+        end = channel.size();
+        records = entries.size();
+    }
+
+    @Override
+    public void close() throws IOException {
+        channel.close();
+    }
+
+    /**
+     * Returns the file a log is rewritten to.
+     */
+    static Path compacted(Path file) {
+        return file.resolveSibling(file.getFileName() + ".compacted");
+    }
+
+    private static ByteBuffer header() {
+        return ByteBuffer.allocate(HEADER_LENGTH).putInt(MAGIC).putInt(VERSION).flip();
+    }
+
+    private static ByteBuffer encode(List<String> entries) {
+        byte[][] texts = new byte[entries.size()][];
+        int size = 0;
+        for (int i = 0; i < texts.length; i++) {
+            texts[i] = entries.get(i).getBytes(StandardCharsets.UTF_8);
+            size += RECORD_HEADER_LENGTH + texts[i].length;
+        }
+        ByteBuffer buffer = ByteBuffer.allocate(size);
+        CRC32 crc = new CRC32();
+        for (byte[] text : texts) {
+            crc.reset();
+            crc.update(text);
+            buffer.putInt(text.length).putInt((int) crc.getValue()).put(text);
+        }
+        return buffer.flip();
+    }
+
+    private static long writeFully(FileChannel channel, ByteBuffer buffer, long position) throws IOException {
+        long written = 0;
+        while (buffer.hasRemaining()) {
+            written += channel.write(buffer, position + written);
+        }
+        return written;
+    }
+}
@@ -0,0 +1,351 @@
+package my.calculator.history;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.PriorityQueue;
+import java.util.TreeMap;
+
+/**
+ * The history of the expressions entered, kept in memory and optionally in a file.
+ *
+ * <pre>
+ * HistoryStore history = HistoryStore.open(Path.of("history.log"), HistoryStore.DEFAULT_CAPACITY);
+ * history.append("2+2");
+ * history.get(history.size() - 1);  // "2+2"
+ * history.search("2+", 10);         // ["2+2"]
+ * history.close();
+ * </pre>
+ *
+ * Only the most recent entries are retained, up to a capacity, in a ring: appending to a
+ * full history drops the oldest entry. Entries are written to an append-only
+ * {@link HistoryLog} by a background thread, which syncs each batch of entries appended while
+ * it was busy with a single fsync, so appending never waits for the disk. The log is
+ * rewritten with only the retained entries once it holds twice as many.
+ *
+ * Opening a log only locates the retained records, through a memory mapping; their text is
+ * decoded when first read. The prefix index used by {@link #search(String, int)} is built on
+ * the first search, then kept up to date.
+ *
+ * Instances are thread-safe.
+ */
+public final class HistoryStore implements Closeable {
+
+    /** Default number of entries retained. */
+    public static final int DEFAULT_CAPACITY = 100_000;
+    /** Longest entry accepted, in chars. */
+    public static final int MAX_ENTRY_LENGTH = 16 * 1024;
+
+    private final int capacity;
+    /** The retained entries, in a ring indexed by sequence number; null if not decoded yet. */
+    private final String[] entries;
+    /** Offsets in the log of the entries not decoded yet. */
+    private final int[] offsets;
+    /** Sequence number of the oldest retained entry. */
+    private long first;
+    /** Sequence number of the next entry. */
+    private long next;
+    /** Number of entries not decoded yet. */
+    private int undecoded;
+    /** Latest sequence number of each distinct retained entry; null until the first search. */
+    private TreeMap<String, Long> index;
+
+    /** The log, or null if the history is only in memory. */
+    private final HistoryLog log;
+    private final Thread writer;
+    /** Entries appended but not written to the log yet. */
+    private final List<String> pending = new ArrayList<>();
+    /** Sequence number up to which entries are durable. */
+    private long durable;
+    private IOException failure;
+    /** True once the failure was thrown by {@link #append(String)}. */
+    private boolean failureReported;
+    private boolean closed;
+
+    private HistoryStore(int capacity, HistoryLog log) {
+        if (capacity < 1) {
+            throw new IllegalArgumentException("Capacity must be positive");
+        }
+        this.capacity = capacity;
+        this.entries = new String[capacity];
+        this.offsets = new int[capacity];
+        this.log = log;
+        if (log != null) {
+            int[] loaded = log.loadedOffsets();
+            System.arraycopy(loaded, 0, offsets, 0, loaded.length);
+            next = loaded.length;
+            undecoded = loaded.length;
+            if (undecoded == 0) {
+                log.releaseMapping();
+            }
+            durable = next;
+            writer = new Thread(this::writeLoop, "calculator-history");
+            writer.setDaemon(true);
+            writer.start();
+        } else {
+            writer = null;
+        }
+    }
+
+    /**
+     * Opens a history kept in a file, creating the file if it does not exist.
+     *
+     * @param file     the file.
+     * @param capacity the number of entries retained.
+     * @return the history, with the entries retained from the file.
+     * @throws IOException if the file cannot be opened or is not a history file.
+     */
+    public static HistoryStore open(Path file, int capacity) throws IOException {
+        if (capacity < 1) {
+            throw new IllegalArgumentException("Capacity must be positive");
+        }
+        return new HistoryStore(capacity, HistoryLog.open(file, capacity));
+    }
+
+    /**
+     * Creates a history kept only in memory.
+     *
+     * @param capacity the number of entries retained.
+     */
+    public static HistoryStore inMemory(int capacity) {
+        return new HistoryStore(capacity, null);
+    }
+
+    /**
+     * Appends an entry, dropping the oldest one if the history is full. The entry is written
+     * to the file later.
+     *
+     * @param entry the entry.
+     * @throws IllegalArgumentException if the entry is longer than {@link #MAX_ENTRY_LENGTH}.
+     * @throws IllegalStateException    if the history is closed.
+     * @throws UncheckedIOException     the first time an entry is appended after writing the
+     *                                  file failed. The entry is still appended, and the
+     *                                  history is only kept in memory from then on.
+     */
+    public synchronized void append(String entry) {
+        Objects.requireNonNull(entry, "entry");
+        if (entry.length() > MAX_ENTRY_LENGTH) {
+            throw new IllegalArgumentException("History entry is too long");
+        }
+        if (closed) {
+            throw new IllegalStateException("History is closed");
+        }
+        if (next - first == capacity) {
+            evictOldest();
+        }
+        entries[slot(next)] = entry;
+        if (index != null) {
+            index.put(entry, next);
+        }
+        next++;
+        if (log != null && failure == null) {
+            pending.add(entry);
+            notifyAll();
+        } else if (failure != null && !failureReported) {
+            failureReported = true;
+            throw new UncheckedIOException(failure);
+        }
+    }
+
+    /**
+     * Returns the number of entries retained.
+     */
+    public synchronized int size() {
+        return (int) (next - first);
+    }
+
+    /**
+     * Returns an entry.
+     *
+     * @param index the position of the entry, from 0 for the oldest to {@code size() - 1} for
+     *              the most recent.
+     * @throws IndexOutOfBoundsException if there is no such entry.
+     */
+    public synchronized String get(int index) {
+        Objects.checkIndex(index, size());
+        return entry(first + index);
+    }
+
+    /**
+     * Returns the most recent distinct entries starting with a prefix.
+     *
+     * @param prefix the prefix; an empty prefix matches every entry.
+     * @param limit  the maximum number of entries returned.
+     * @return the entries, most recent first.
+     */
+    public synchronized List<String> search(String prefix, int limit) {
+        if (index == null) {
+            index = new TreeMap<>();
+            for (long sequence = first; sequence < next; sequence++) {
+                index.put(entry(sequence), sequence);
+            }
+        }
+        // The most recent matches, least recent at the head
+        PriorityQueue<Map.Entry<String, Long>> recent = new PriorityQueue<>(Map.Entry.comparingByValue());
+        for (Map.Entry<String, Long> candidate : index.tailMap(prefix, true).entrySet()) {
+            if (!candidate.getKey().startsWith(prefix)) {
+                break;
+            }
+            recent.add(candidate);
+            if (recent.size() > limit) {
+                recent.poll();
+            }
+        }
+        List<Map.Entry<String, Long>> sorted = new ArrayList<>(recent);
+        sorted.sort(Map.Entry.<String, Long>comparingByValue(Comparator.reverseOrder()));
+        List<String> matches = new ArrayList<>(sorted.size());
+        for (Map.Entry<String, Long> match : sorted) {
+            matches.add(match.getKey());
+        }
+        return matches;
+    }
+
+    /**
+     * Waits until every entry appended so far is durable.
+     *
+     * @throws IOException if writing the file failed.
+     */
+    public synchronized void flush() throws IOException {
+        long target = next;
+        boolean interrupted = false;
+        while (log != null && durable < target && failure == null && writer.isAlive()) {
+            try {
+                wait();
+            } catch (InterruptedException e) {
+                interrupted = true;
+            }
+        }
+        if (interrupted) {
+            Thread.currentThread().interrupt();
+        }
+        if (failure != null) {
+            throw failure;
+        }
+    }
+
+    /**
+     * Writes the pending entries and closes the file. Entries can no longer be appended.
+     *
+     * @throws IOException if writing the file failed, unless {@link #append(String)} reported it.
+     */
+    @Override
+    public void close() throws IOException {
+        synchronized (this) {
+            if (closed) {
+                return;
+            }
+            closed = true;
+            notifyAll();
+        }
+        if (log == null) {
+            return;
+        }
+        try {
+            writer.join();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        log.close();
+        synchronized (this) {
+            if (failure != null && !failureReported) {
+                throw failure;
+            }
+        }
+    }
+
+    private int slot(long sequence) {
+        return (int) (sequence % capacity);
+    }
+
+    /**
+     * Returns a retained entry, decoding it from the log if needed.
+     */
+    private String entry(long sequence) {
+        int slot = slot(sequence);
+        String entry = entries[slot];
+        if (entry == null) {
+            entry = log.read(offsets[slot]);
+            entries[slot] = entry;
+            decoded();
+        }
+        return entry;
+    }
+
+    private void evictOldest() {
+        int slot = slot(first);
+        if (index != null) {
+            // Older occurrences are evicted already, so this one is the latest if any is
+            index.remove(entry(first), first);
+        } else if (entries[slot] == null) {
+            decoded();
+        }
+        entries[slot] = null;
+        first++;
+    }
+
+    private void decoded() {
+        if (--undecoded == 0) {
+            log.releaseMapping();
+        }
+    }
+
+    /**
+     * Writes the pending entries in batches until the history is closed.
+     */
+    private void writeLoop() {
+        try {
+            while (true) {
+                List<String> batch;
+                long batchEnd;
+                synchronized (this) {
+                    while (pending.isEmpty() && !closed) {
+                        wait();
+                    }
+                    if (pending.isEmpty()) {
+                        return;
+                    }
+                    batch = new ArrayList<>(pending);
+                    pending.clear();
+                    batchEnd = next;
+                }
+                log.append(batch);
+                log.force();
+
+                List<String> retained = null;
+                synchronized (this) {
+                    durable = batchEnd;
+                    notifyAll();
+                    if (log.records() >= 2L * capacity) {
+                        // The pending entries are part of the rewritten file
+                        retained = new ArrayList<>(size());
+                        for (long sequence = first; sequence < next; sequence++) {
+                            retained.add(entry(sequence));
+                        }
+                        pending.clear();
+                        batchEnd = next;
+                    }
+                }
+                if (retained != null) {
+                    log.rewrite(retained);
+                    synchronized (this) {
+                        durable = batchEnd;
+                        notifyAll();
+                    }
+                }
+            }
+        } catch (IOException e) {
+            synchronized (this) {
+                failure = e;
+                notifyAll();
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+}
@@ -1,9 +1,57 @@
 package my.calculator.runner;
 
+import java.io.FileDescriptor;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.Arrays;
+import java.util.concurrent.TimeUnit;
+
+import my.calculator.core.CalculatorLogic;
+import my.calculator.core.EngineMetrics;
+import my.calculator.history.HistoryStore;
+import my.calculator.server.CalculatorServer;
 import my.calculator.ui.CalculatorFrame;
 
 public class CalculatorRunner {
-    public static void main(String[] args) {
-        new CalculatorFrame();
+    public static void main(String[] args) throws IOException {
+        if (Arrays.asList(args).contains("--metrics")) {
+            // Record where the time goes, visible in JConsole and printed every minute
+            EngineMetrics metrics = new EngineMetrics();
+            CalculatorLogic.setMetrics(metrics);
+            metrics.register("default");
+            metrics.dumpPeriodically(System.err, 1, TimeUnit.MINUTES);
+        }
+        int serve = Arrays.asList(args).indexOf("--serve");
+        if (serve >= 0) {
+            // Serve on the given port until the process is stopped
+            boolean hasPort = serve + 1 < args.length && !args[serve + 1].startsWith("--");
+            int port = hasPort ? Integer.parseInt(args[serve + 1]) : CalculatorServer.DEFAULT_PORT;
+            CalculatorServer server = CalculatorServer.start(port);
+            System.err.println("Calculator server listening on http://localhost:" + server.getPort());
+            return;
+        }
+        if (Arrays.asList(args).contains("--headless")) {
+            // Evaluate stdin to stdout, without loading the window
+            OutputStream out = new FileOutputStream(FileDescriptor.out);
+            new HeadlessEvaluator(Runtime.getRuntime().availableProcessors()).run(System.in, out);
+            return;
+        }
+        new CalculatorFrame(openHistory());
+    }
+
+    /**
+     * Opens the history kept in the home directory, or a history in memory if it cannot be.
+     */
+    private static HistoryStore openHistory() {
+        Path file = Paths.get(System.getProperty("user.home"), ".calculator", "history.log");
+        try {
+            return HistoryStore.open(file, HistoryStore.DEFAULT_CAPACITY);
+        } catch (IOException e) {
+            System.err.println("Cannot open history " + file + ": " + e.getMessage());
+            return HistoryStore.inMemory(HistoryStore.DEFAULT_CAPACITY);
+        }
     }
-}
\ No newline at end of file
+}
@@ -0,0 +1,339 @@
+package my.calculator.runner;
+
+import java.io.IOException;
+import java.io.PrintStream;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Deque;
+import java.util.List;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+/**
+ * Evaluates a file of expressions, one per line, without the calculator window.
+ *
+ * The input is memory-mapped a region at a time and cut into chunks of whole lines, which are
+ * evaluated in parallel. Each chunk produces its block of output lines, and the blocks are
+ * written in input order, so line n of the output is the result of line n of the input, or
+ * "Error: " followed by the message if it could not be evaluated. Only a bounded number of
+ * chunks are in flight at a time, so memory use does not depend on the size of the file.
+ *
+ * <pre>
+ * java -cp calculator.jar my.calculator.runner.FileEvaluator input.txt output.txt [threads]
+ * </pre>
+ */
+public class FileEvaluator {
+
+    /** Default size of the regions of the input mapped at a time. */
+    static final int DEFAULT_REGION_SIZE = 64 << 20;
+    /** Default size of a chunk of input lines evaluated by a single task. */
+    static final int DEFAULT_CHUNK_SIZE = 256 << 10;
+    /** Number of line errors reported individually by {@link #main}. */
+    static final int MAX_REPORTED_ERRORS = 100;
+
+    private final int threads;
+    private final int regionSize;
+    private final int chunkSize;
+
+    /**
+     * Creates an evaluator using one thread per available processor.
+     */
+    public FileEvaluator() {
+        this(Runtime.getRuntime().availableProcessors());
+    }
+
+    /**
+     * Creates an evaluator using the given number of threads.
+     *
+     * @param threads the number of evaluation threads.
+     * @throws IllegalArgumentException if the number of threads is not positive.
+     */
+    public FileEvaluator(int threads) {
+        this(threads, DEFAULT_REGION_SIZE, DEFAULT_CHUNK_SIZE);
+    }
+
+    FileEvaluator(int threads, int regionSize, int chunkSize) {
+        if (threads <= 0) {
+            throw new IllegalArgumentException("Number of threads must be positive");
+        }
+        if (regionSize <= 0 || chunkSize <= 0) {
+            throw new IllegalArgumentException("Region and chunk sizes must be positive");
+        }
+        this.threads = threads;
+        this.regionSize = regionSize;
+        this.chunkSize = chunkSize;
+    }
+
+    /**
+     * Evaluates every line of a file and writes the results to another.
+     *
+     * @param input  the file of expressions, encoded in UTF-8.
+     * @param output the file written with one result per line. It is replaced if it exists.
+     * @return the number of lines and errors, and the time taken.
+     * @throws IOException if a file cannot be read or written.
+     */
+    public Summary evaluate(Path input, Path output) throws IOException {
+        long start = System.nanoTime();
+        ExecutorService pool = Executors.newFixedThreadPool(threads, runnable -> {
+            Thread thread = new Thread(runnable, "file-evaluator");
+            thread.setDaemon(true);
+            return thread;
+        });
+        try (FileChannel in = FileChannel.open(input, StandardOpenOption.READ);
+             FileChannel out = FileChannel.open(output, StandardOpenOption.WRITE, StandardOpenOption.CREATE,
+                     StandardOpenOption.TRUNCATE_EXISTING)) {
+            Writer writer = new Writer(out);
+            Deque<Future<Chunk>> pending = new ArrayDeque<>();
+            int maxPending = 4 * threads;
+            long size = in.size();
+            long position = 0;
+            while (position < size) {
+                MappedByteBuffer region = map(in, position, size);
+                int chunkStart = 0;
+                while (chunkStart < region.limit()) {
+                    int chunkEnd = lineEnd(region, Math.min(chunkStart + chunkSize, region.limit()) - 1);
+                    ByteBuffer chunk = region.slice(chunkStart, chunkEnd - chunkStart);
+                    pending.add(pool.submit(() -> Chunk.evaluate(chunk)));
+                    while (pending.size() >= maxPending) {
+                        writer.write(await(pending.poll()));
+                    }
+                    chunkStart = chunkEnd;
+                }
+                position += region.limit();
+            }
+            while (!pending.isEmpty()) {
+                writer.write(await(pending.poll()));
+            }
+            return new Summary(writer.lines, writer.errors, System.nanoTime() - start, writer.errorLines);
+        } finally {
+            pool.shutdownNow();
+        }
+    }
+
+    /**
+     * Maps the next region of the input, ending after the last line that fits in it. A line
+     * longer than a region is mapped whole, in a larger region.
+     */
+    private MappedByteBuffer map(FileChannel in, long position, long size) throws IOException {
+        long length = Math.min(regionSize, size - position);
+        while (true) {
+            MappedByteBuffer region = in.map(FileChannel.MapMode.READ_ONLY, position, length);
+            if (position + length == size) {
+                return region;
+            }
+            for (int i = (int) length - 1; i >= 0; i--) {
+                if (region.get(i) == '\n') {
+                    region.limit(i + 1);
+                    return region;
+                }
+            }
+            if (length == Integer.MAX_VALUE) {
+                throw new IOException("Line at byte " + position + " is longer than " + Integer.MAX_VALUE + " bytes");
+            }
+            length = Math.min(Math.min(2 * length, Integer.MAX_VALUE), size - position);
+        }
+    }
+
+    /**
+     * Returns the index after the end of the line containing the given index.
+     */
+    private static int lineEnd(ByteBuffer region, int index) {
+        while (index < region.limit() && region.get(index) != '\n') {
+            index++;
+        }
+        return Math.min(index + 1, region.limit());
+    }
+
+    private static Chunk await(Future<Chunk> future) throws IOException {
+        try {
+            return future.get();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IOException("Interrupted while evaluating", e);
+        } catch (ExecutionException e) {
+            throw new IOException("Evaluation failed", e.getCause());
+        }
+    }
+
+    /**
+     * The output of a chunk of lines.
+     */
+    private static final class Chunk {
+        final ByteBuffer output;
+        final int lines;
+        /** The lines that could not be evaluated, numbered from the start of the chunk. */
+        final List<LineError> errors;
+
+        private Chunk(ByteBuffer output, int lines, List<LineError> errors) {
+            this.output = output;
+            this.lines = lines;
+            this.errors = errors;
+        }
+
+        static Chunk evaluate(ByteBuffer input) {
+            byte[] bytes = new byte[input.remaining()];
+            input.get(bytes);
+            StringBuilder out = new StringBuilder(bytes.length);
+            List<LineError> errors = new ArrayList<>();
+            int lines = 0;
+            int lineStart = 0;
+            while (lineStart < bytes.length) {
+                int lineEnd = lineStart;
+                while (lineEnd < bytes.length && bytes[lineEnd] != '\n') {
+                    lineEnd++;
+                }
+                String error = LineEvaluator.evaluate(
+                        new String(bytes, lineStart, lineEnd - lineStart, StandardCharsets.UTF_8), out);
+                if (error != null) {
+                    errors.add(new LineError(lines, error));
+                }
+                lines++;
+                lineStart = lineEnd + 1;
+            }
+            return new Chunk(ByteBuffer.wrap(out.toString().getBytes(StandardCharsets.UTF_8)), lines, errors);
+        }
+    }
+
+    /**
+     * Writes the chunks in order, numbering their lines.
+     */
+    private static final class Writer {
+        private final FileChannel out;
+        long lines;
+        long errors;
+        final List<LineError> errorLines = new ArrayList<>();
+
+        Writer(FileChannel out) {
+            this.out = out;
+        }
+
+        void write(Chunk chunk) throws IOException {
+            while (chunk.output.hasRemaining()) {
+                out.write(chunk.output);
+            }
+            for (LineError error : chunk.errors) {
+                if (errorLines.size() < MAX_REPORTED_ERRORS) {
+                    errorLines.add(new LineError(lines + error.line, error.message));
+                }
+            }
+            errors += chunk.errors.size();
+            lines += chunk.lines;
+        }
+    }
+
+    /**
+     * A line that could not be evaluated.
+     */
+    public static final class LineError {
+        private final long line;
+        private final String message;
+
+        LineError(long line, String message) {
+            this.line = line;
+            this.message = message;
+        }
+
+        /**
+         * @return the line number, starting at 1.
+         */
+        public long getLine() {
+            return line + 1;
+        }
+
+        /**
+         * @return the error message.
+         */
+        public String getMessage() {
+            return message;
+        }
+    }
+
+    /**
+     * The outcome of evaluating a file.
+     */
+    public static final class Summary {
+        private final long lines;
+        private final long errors;
+        private final long elapsedNanos;
+        private final List<LineError> errorLines;
+
+        Summary(long lines, long errors, long elapsedNanos, List<LineError> errorLines) {
+            this.lines = lines;
+            this.errors = errors;
+            this.elapsedNanos = elapsedNanos;
+            this.errorLines = Collections.unmodifiableList(errorLines);
+        }
+
+        /**
+         * @return the number of lines evaluated.
+         */
+        public long getLines() {
+            return lines;
+        }
+
+        /**
+         * @return the number of lines that could not be evaluated.
+         */
+        public long getErrors() {
+            return errors;
+        }
+
+        /**
+         * @return the time taken, in nanoseconds.
+         */
+        public long getElapsedNanos() {
+            return elapsedNanos;
+        }
+
+        /**
+         * @return the number of lines evaluated per second.
+         */
+        public double getLinesPerSecond() {
+            return (elapsedNanos == 0) ? 0 : lines * 1e9 / elapsedNanos;
+        }
+
+        /**
+         * @return the first {@value FileEvaluator#MAX_REPORTED_ERRORS} lines that could not be evaluated,
+         *         in input order.
+         */
+        public List<LineError> getErrorLines() {
+            return errorLines;
+        }
+
+        /**
+         * Prints the errors and the throughput.
+         *
+         * @param out the stream to print to.
+         */
+        public void print(PrintStream out) {
+            for (LineError error : errorLines) {
+                out.println("Line " + error.getLine() + ": " + error.getMessage());
+            }
+            if (errors > errorLines.size()) {
+                out.println("... and " + (errors - errorLines.size()) + " more errors");
+            }
+            out.printf("%d lines, %d errors in %.3f s (%.0f lines/s)%n",
+                    lines, errors, elapsedNanos / 1e9, getLinesPerSecond());
+        }
+    }
+
+    public static void main(String[] args) throws IOException {
+        if (args.length < 2 || args.length > 3) {
+            System.err.println("Usage: FileEvaluator <input> <output> [threads]");
+            System.exit(2);
+        }
+        FileEvaluator evaluator = (args.length == 3) ? new FileEvaluator(Integer.parseInt(args[2])) : new FileEvaluator();
+        Summary summary = evaluator.evaluate(Paths.get(args[0]), Paths.get(args[1]));
+        summary.print(System.err);
+    }
+}
@@ -0,0 +1,152 @@
+package my.calculator.runner;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+/**
+ * Evaluates a stream of expressions, one per line, into a stream of results, one per line.
+ *
+ * A reader thread cuts the input into batches of lines and hands them to a pool of workers;
+ * the calling thread writes the output of the batches in input order. The queue between them
+ * is bounded, so a slow consumer of the output holds back the reader instead of filling the
+ * memory. A batch is also closed whenever no more input is available yet, and the output is
+ * flushed whenever the writer has caught up, so an interactive producer gets each result as
+ * soon as it is computed.
+ */
+class HeadlessEvaluator {
+
+    /** Maximum number of lines in a batch. */
+    static final int MAX_BATCH_LINES = 1024;
+
+    /** Output of the batch marking the end of the input. */
+    private static final Future<String> END = CompletableFuture.completedFuture(null);
+
+    private final int threads;
+
+    /**
+     * Creates an evaluator using the given number of worker threads.
+     *
+     * @param threads the number of worker threads.
+     * @throws IllegalArgumentException if the number of threads is not positive.
+     */
+    HeadlessEvaluator(int threads) {
+        if (threads <= 0) {
+            throw new IllegalArgumentException("Number of threads must be positive");
+        }
+        this.threads = threads;
+    }
+
+    /**
+     * Evaluates every line of the input until its end.
+     *
+     * @param in  the expressions, encoded in UTF-8.
+     * @param out the stream the results are written to, in UTF-8. It is flushed but not closed.
+     * @throws IOException if the input cannot be read or the output written.
+     */
+    void run(InputStream in, OutputStream out) throws IOException {
+        BlockingQueue<Future<String>> batches = new ArrayBlockingQueue<>(4 * threads);
+        ExecutorService workers = Executors.newFixedThreadPool(threads, runnable -> {
+            Thread thread = new Thread(runnable, "headless-worker");
+            thread.setDaemon(true);
+            return thread;
+        });
+        Thread reader = new Thread(() -> read(in, batches, workers), "headless-reader");
+        reader.setDaemon(true);
+        reader.start();
+        try {
+            write(batches, new OutputStreamWriter(out, StandardCharsets.UTF_8));
+        } finally {
+            reader.interrupt();
+            workers.shutdownNow();
+        }
+    }
+
+    /**
+     * Reads batches of lines and submits them, in order, until the end of the input.
+     */
+    private static void read(InputStream in, BlockingQueue<Future<String>> batches, ExecutorService workers) {
+        try {
+            BufferedReader reader = new BufferedReader(new InputStreamReader(in, StandardCharsets.UTF_8), 1 << 16);
+            List<String> batch = new ArrayList<>();
+            String line;
+            while ((line = reader.readLine()) != null) {
+                batch.add(line);
+                if (batch.size() == MAX_BATCH_LINES || !reader.ready()) {
+                    List<String> lines = batch;
+                    batches.put(workers.submit(() -> evaluate(lines)));
+                    batch = new ArrayList<>();
+                }
+            }
+            if (!batch.isEmpty()) {
+                List<String> lines = batch;
+                batches.put(workers.submit(() -> evaluate(lines)));
+            }
+            batches.put(END);
+        } catch (IOException e) {
+            CompletableFuture<String> failed = new CompletableFuture<>();
+            failed.completeExceptionally(e);
+            try {
+                batches.put(failed);
+            } catch (InterruptedException interrupted) {
+                // The writer has given up already
+            }
+        } catch (InterruptedException e) {
+            // The writer has given up: stop reading
+        }
+    }
+
+    private static String evaluate(List<String> lines) {
+        StringBuilder out = new StringBuilder(lines.size() * 16);
+        for (String line : lines) {
+            LineEvaluator.evaluate(line, out);
+        }
+        return out.toString();
+    }
+
+    /**
+     * Writes the output of the batches in order until the end marker.
+     */
+    private static void write(BlockingQueue<Future<String>> batches, Writer out) throws IOException {
+        try {
+            while (true) {
+                Future<String> batch = batches.poll();
+                if (batch == null || !batch.isDone()) {
+                    // Caught up: make what was written visible before waiting
+                    out.flush();
+                    if (batch == null) {
+                        batch = batches.take();
+                    }
+                }
+                String output = batch.get();
+                if (output == null) {
+                    out.flush();
+                    return;
+                }
+                out.write(output);
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IOException("Interrupted while evaluating", e);
+        } catch (ExecutionException e) {
+            if (e.getCause() instanceof IOException) {
+                throw (IOException) e.getCause();
+            }
+            throw new IOException("Evaluation failed", e.getCause());
+        }
+    }
+}
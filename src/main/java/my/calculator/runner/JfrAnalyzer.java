@@ -0,0 +1,266 @@
+package my.calculator.runner;
+
+import java.io.IOException;
+import java.io.PrintStream;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.TreeMap;
+import jdk.jfr.consumer.RecordedEvent;
+import jdk.jfr.consumer.RecordingFile;
+
+import my.calculator.core.EvaluateEvent;
+import my.calculator.core.Histogram;
+import my.calculator.core.ParseEvent;
+
+/**
+ * Summarizes the {@link ParseEvent} and {@link EvaluateEvent} of a JDK Flight Recorder
+ * recording: the time spent in each phase, and the slowest expressions.
+ *
+ * <pre>
+ * java -XX:StartFlightRecording:filename=calculator.jfr -cp calculator.jar my.calculator.runner.CalculatorRunner --serve
+ * java -cp calculator.jar my.calculator.runner.JfrAnalyzer calculator.jfr [limit]
+ * </pre>
+ *
+ * Events only cover parses and evaluations slower than their threshold, 1 ms by default.
+ * Expressions are identified by their hash, as the recording does not hold their text.
+ */
+public class JfrAnalyzer {
+
+    /** Default number of expressions printed. */
+    static final int DEFAULT_LIMIT = 20;
+
+    /** Private constructor to prevent instantiation */
+    private JfrAnalyzer() {
+        // Prevent instantiation
+    }
+
+    /**
+     * Reads the events of a recording.
+     *
+     * @param file the recording.
+     * @return the summary of the events.
+     * @throws IOException if the file cannot be read or is not a recording.
+     */
+    public static Report analyze(Path file) throws IOException {
+        Report report = new Report();
+        try (RecordingFile recording = new RecordingFile(file)) {
+            while (recording.hasMoreEvents()) {
+                RecordedEvent event = recording.readEvent();
+                String name = event.getEventType().getName();
+                if (name.equals(ParseEvent.NAME)) {
+                    report.add(report.parse, event, event.getInt("tokenCount"));
+                } else if (name.equals(EvaluateEvent.NAME)) {
+                    report.add(report.evaluate, event, -1);
+                }
+            }
+        }
+        return report;
+    }
+
+    /**
+     * The time spent in a phase, over all the expressions.
+     */
+    public static final class Phase {
+        private final String name;
+        private final Histogram durations = new Histogram();
+        private final Map<String, Long> outcomes = new TreeMap<>();
+
+        Phase(String name) {
+            this.name = name;
+        }
+
+        /**
+         * @return the durations of the events, in nanoseconds.
+         */
+        public Histogram getDurations() {
+            return durations;
+        }
+
+        /**
+         * @return the number of events by outcome: "ok" or the name of an exception.
+         */
+        public Map<String, Long> getOutcomes() {
+            return Collections.unmodifiableMap(outcomes);
+        }
+    }
+
+    /**
+     * The events of an expression, identified by its hash.
+     */
+    public static final class Expression {
+        private final int hash;
+        private int length;
+        private int tokenCount = -1;
+        private long count;
+        private long parseNanos;
+        private long evaluateNanos;
+        private long maxNanos;
+        private String outcome;
+
+        Expression(int hash) {
+            this.hash = hash;
+        }
+
+        /**
+         * @return the hash code of the expression.
+         */
+        public int getHash() {
+            return hash;
+        }
+
+        /**
+         * @return the length of the expression, in chars.
+         */
+        public int getLength() {
+            return length;
+        }
+
+        /**
+         * @return the number of tokens of the expression, or -1 if no parse was recorded.
+         */
+        public int getTokenCount() {
+            return tokenCount;
+        }
+
+        /**
+         * @return the number of events.
+         */
+        public long getCount() {
+            return count;
+        }
+
+        /**
+         * @return the total duration of the parse events, in nanoseconds.
+         */
+        public long getParseNanos() {
+            return parseNanos;
+        }
+
+        /**
+         * @return the total duration of the evaluate events, in nanoseconds.
+         */
+        public long getEvaluateNanos() {
+            return evaluateNanos;
+        }
+
+        /**
+         * @return the duration of the slowest event, in nanoseconds.
+         */
+        public long getMaxNanos() {
+            return maxNanos;
+        }
+
+        /**
+         * @return the outcome of the slowest event.
+         */
+        public String getOutcome() {
+            return outcome;
+        }
+    }
+
+    /**
+     * The summary of a recording.
+     */
+    public static final class Report {
+        final Phase parse = new Phase("parse");
+        final Phase evaluate = new Phase("evaluate");
+        private final Map<Integer, Expression> expressions = new HashMap<>();
+
+        Report() {
+        }
+
+        void add(Phase phase, RecordedEvent event, int tokenCount) {
+            long nanos = event.getDuration().toNanos();
+            String outcome = event.getString("outcome");
+            phase.durations.record(nanos);
+            phase.outcomes.merge(outcome, 1L, Long::sum);
+
+            Expression expression = expressions.computeIfAbsent(event.getInt("expressionHash"), Expression::new);
+            expression.length = event.getInt("expressionLength");
+            if (tokenCount >= 0) {
+                expression.tokenCount = tokenCount;
+            }
+            expression.count++;
+            if (phase == parse) {
+                expression.parseNanos += nanos;
+            } else {
+                expression.evaluateNanos += nanos;
+            }
+            if (nanos >= expression.maxNanos) {
+                expression.maxNanos = nanos;
+                expression.outcome = outcome;
+            }
+        }
+
+        /**
+         * @return the parse events.
+         */
+        public Phase getParse() {
+            return parse;
+        }
+
+        /**
+         * @return the evaluate events.
+         */
+        public Phase getEvaluate() {
+            return evaluate;
+        }
+
+        /**
+         * Returns the expressions with the slowest events.
+         *
+         * @param limit the maximum number of expressions returned.
+         * @return the expressions, slowest first.
+         */
+        public List<Expression> getSlowest(int limit) {
+            List<Expression> slowest = new ArrayList<>(expressions.values());
+            slowest.sort(Comparator.comparingLong(Expression::getMaxNanos).reversed()
+                    .thenComparingInt(Expression::getHash));
+            return slowest.subList(0, Math.min(limit, slowest.size()));
+        }
+
+        /**
+         * Prints the time spent in each phase, then the slowest expressions.
+         *
+         * @param out   the stream to print to.
+         * @param limit the maximum number of expressions printed.
+         */
+        public void print(PrintStream out, int limit) {
+            out.printf(Locale.ROOT, "%-10s %8s %12s %10s %10s %10s %10s  %s%n",
+                    "phase", "events", "total (ms)", "mean (us)", "p50 (us)", "p99 (us)", "max (us)", "outcomes");
+            for (Phase phase : List.of(parse, evaluate)) {
+                Histogram durations = phase.durations;
+                out.printf(Locale.ROOT, "%-10s %8d %12.3f %10.1f %10.1f %10.1f %10.1f  %s%n",
+                        phase.name, durations.getCount(), durations.getMean() * durations.getCount() / 1e6,
+                        durations.getMean() / 1e3, durations.getPercentile(50) / 1e3,
+                        durations.getPercentile(99) / 1e3, durations.getMax() / 1e3, phase.outcomes);
+            }
+            out.println();
+            out.printf(Locale.ROOT, "%-12s %8s %8s %8s %12s %12s %10s  %s%n",
+                    "expression", "length", "tokens", "events", "parse (ms)", "eval (ms)", "max (us)", "outcome");
+            for (Expression expression : getSlowest(limit)) {
+                out.printf(Locale.ROOT, "%08x     %8d %8s %8d %12.3f %12.3f %10.1f  %s%n",
+                        expression.hash, expression.length,
+                        (expression.tokenCount < 0) ? "-" : Integer.toString(expression.tokenCount),
+                        expression.count, expression.parseNanos / 1e6, expression.evaluateNanos / 1e6,
+                        expression.maxNanos / 1e3, expression.outcome);
+            }
+        }
+    }
+
+    public static void main(String[] args) throws IOException {
+        if (args.length < 1 || args.length > 2) {
+            System.err.println("Usage: JfrAnalyzer <recording.jfr> [limit]");
+            System.exit(2);
+        }
+        int limit = (args.length == 2) ? Integer.parseInt(args[1]) : DEFAULT_LIMIT;
+        analyze(Paths.get(args[0])).print(System.out, limit);
+    }
+}
@@ -0,0 +1,40 @@
+package my.calculator.runner;
+
+import my.calculator.core.CalculatorLogic;
+
+/**
+ * Evaluates one line of text for the headless commands, the same way the calculator window
+ * evaluates its display: the formatted result, or "Error: " followed by the message.
+ */
+final class LineEvaluator {
+
+    /** Prefix of the output line of an expression that could not be evaluated. */
+    static final String ERROR_PREFIX = "Error: ";
+
+    /** Private constructor to prevent instantiation */
+    private LineEvaluator() {
+        // Prevent instantiation
+    }
+
+    /**
+     * Evaluates a line and appends its output line, newline included.
+     *
+     * @param line the expression, without its line terminator. A trailing carriage return is ignored.
+     * @param out  the builder the output line is appended to.
+     * @return the error message if the line could not be evaluated, or null.
+     */
+    static String evaluate(String line, StringBuilder out) {
+        if (line.endsWith("\r")) {
+            line = line.substring(0, line.length() - 1);
+        }
+        String error = null;
+        try {
+            out.append(CalculatorLogic.calculate(line));
+        } catch (ArithmeticException | IllegalArgumentException e) {
+            error = e.getMessage();
+            out.append(ERROR_PREFIX).append(error);
+        }
+        out.append('\n');
+        return error;
+    }
+}
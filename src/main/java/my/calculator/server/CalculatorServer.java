@@ -0,0 +1,303 @@
+package my.calculator.server;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.lang.reflect.Method;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.net.URLDecoder;
+import java.nio.charset.StandardCharsets;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpHandler;
+import com.sun.net.httpserver.HttpServer;
+
+import my.calculator.core.CalculatorEngine;
+import my.calculator.core.CalculatorLogic;
+import my.calculator.core.ExpressionCache;
+
+/**
+ * Local HTTP service evaluating expressions for other processes, on the JDK's built-in
+ * {@link HttpServer}. It listens on the loopback interface only.
+ *
+ * <ul>
+ *     <li>{@code GET /evaluate?expression=2%2B3} or {@code POST /evaluate} with the expression as
+ *     body, or a JSON body {@code {"expression": "2+3"}}, responds with {@code {"result":"5"}},
+ *     or {@code {"error":"..."}} and status 400 if the expression cannot be evaluated.</li>
+ *     <li>{@code POST /batch} with a JSON array of expressions responds with a JSON array of
+ *     results and errors in the same order. With any other body, each line is an expression,
+ *     and each line of the plain text response is its result, or "Error: " and the message.</li>
+ * </ul>
+ *
+ * Each request runs on its own virtual thread when the runtime has them (Java 21 and later),
+ * and on a cached thread pool otherwise. Compiled expressions are reused across requests
+ * through the {@link ExpressionCache} of the engine served, and {@link #start(int)} gives the
+ * default engine one if it has none, on a copy so that the rest of the process is unaffected.
+ *
+ * Launch the JVM with {@code -Dsun.net.httpserver.nodelay=true}: without TCP_NODELAY, small
+ * responses wait for delayed acknowledgements, about 40 ms each. The JDK reads the property
+ * once, when the first server is created, so it cannot be set from here.
+ */
+public final class CalculatorServer implements AutoCloseable {
+
+    /** Default port. */
+    public static final int DEFAULT_PORT = 8080;
+    /** Maximum size of a request body. */
+    static final int MAX_BODY_BYTES = 16 << 20;
+
+    private final HttpServer server;
+    private final ExecutorService executor;
+    private final CalculatorEngine engine;
+
+    private CalculatorServer(HttpServer server, ExecutorService executor, CalculatorEngine engine) {
+        this.server = server;
+        this.executor = executor;
+        this.engine = engine;
+    }
+
+    /**
+     * Starts a server on the default engine, with an {@link ExpressionCache} if it has none.
+     *
+     * @param port the port to listen on, or 0 for any free port.
+     * @return the running server.
+     * @throws IOException if the port cannot be bound.
+     */
+    public static CalculatorServer start(int port) throws IOException {
+        CalculatorEngine engine = CalculatorLogic.getDefaultEngine();
+        if (engine.getExpressionCache() == null) {
+            engine = engine.toBuilder().expressionCache(new ExpressionCache()).build();
+        }
+        return start(port, engine);
+    }
+
+    /**
+     * Starts a server.
+     *
+     * @param port the port to listen on, or 0 for any free port.
+     * @param engine the engine evaluating the expressions.
+     * @return the running server.
+     * @throws IOException if the port cannot be bound.
+     */
+    public static CalculatorServer start(int port, CalculatorEngine engine) throws IOException {
+        HttpServer server = HttpServer.create(new InetSocketAddress(InetAddress.getLoopbackAddress(), port), 0);
+        ExecutorService executor = newRequestExecutor();
+        CalculatorServer calculatorServer = new CalculatorServer(server, executor, engine);
+        server.setExecutor(executor);
+        server.createContext("/evaluate", exchange -> handle(exchange, calculatorServer::handleEvaluate));
+        server.createContext("/batch", exchange -> handle(exchange, calculatorServer::handleBatch));
+        server.start();
+        return calculatorServer;
+    }
+
+    /**
+     * Returns an executor starting a virtual thread per task if the runtime supports them,
+     * or a cached pool of daemon threads otherwise. The project targets Java 17, so virtual
+     * threads are looked up reflectively.
+     */
+    static ExecutorService newRequestExecutor() {
+        try {
+            Method factory = Executors.class.getMethod("newVirtualThreadPerTaskExecutor");
+            return (ExecutorService) factory.invoke(null);
+        } catch (ReflectiveOperationException | UnsupportedOperationException e) {
+            return Executors.newCachedThreadPool(runnable -> {
+                Thread thread = new Thread(runnable, "calculator-server");
+                thread.setDaemon(true);
+                return thread;
+            });
+        }
+    }
+
+    /**
+     * @return the engine evaluating the expressions.
+     */
+    public CalculatorEngine getEngine() {
+        return engine;
+    }
+
+    /**
+     * @return the port the server listens on.
+     */
+    public int getPort() {
+        return server.getAddress().getPort();
+    }
+
+    /**
+     * Stops the server, without waiting for requests in progress.
+     */
+    @Override
+    public void close() {
+        server.stop(0);
+        executor.shutdownNow();
+    }
+
+    /**
+     * Runs a handler and closes the exchange, responding with status 400 to invalid requests.
+     */
+    private static void handle(HttpExchange exchange, HttpHandler handler) throws IOException {
+        try (exchange) {
+            try {
+                handler.handle(exchange);
+            } catch (IllegalArgumentException e) {
+                // Invalid JSON, missing expression or body too large
+                send(exchange, 400, "application/json", error(e.getMessage(), new StringBuilder()));
+            }
+        }
+    }
+
+    private void handleEvaluate(HttpExchange exchange) throws IOException {
+        String expression;
+        String method = exchange.getRequestMethod();
+        if (method.equals("GET")) {
+            expression = queryParameter(exchange.getRequestURI().getRawQuery(), "expression");
+        } else if (method.equals("POST")) {
+            String body = readBody(exchange);
+            expression = isJson(exchange, body) ? expressionOf(Json.parse(body)) : stripNewline(body);
+        } else {
+            send(exchange, 405, "application/json", error("Method not allowed", new StringBuilder()));
+            return;
+        }
+        StringBuilder out = new StringBuilder();
+        boolean ok = evaluate(expression, out);
+        send(exchange, ok ? 200 : 400, "application/json", out);
+    }
+
+    private void handleBatch(HttpExchange exchange) throws IOException {
+        if (!exchange.getRequestMethod().equals("POST")) {
+            send(exchange, 405, "application/json", error("Method not allowed", new StringBuilder()));
+            return;
+        }
+        String body = readBody(exchange);
+        if (isJson(exchange, body)) {
+            List<?> expressions = expressionsOf(Json.parse(body));
+            StringBuilder out = new StringBuilder(expressions.size() * 24).append('[');
+            for (int i = 0; i < expressions.size(); i++) {
+                if (i > 0) {
+                    out.append(',');
+                }
+                Object expression = expressions.get(i);
+                if (expression instanceof String) {
+                    evaluate((String) expression, out);
+                } else {
+                    error("Expression must be a string", out);
+                }
+            }
+            send(exchange, 200, "application/json", out.append(']'));
+        } else {
+            StringBuilder out = new StringBuilder(body.length());
+            int start = 0;
+            while (start < body.length()) {
+                int end = body.indexOf('\n', start);
+                if (end < 0) {
+                    end = body.length();
+                }
+                String line = body.substring(start, (end > start && body.charAt(end - 1) == '\r') ? end - 1 : end);
+                try {
+                    out.append(engine.calculate(line));
+                } catch (ArithmeticException | IllegalArgumentException e) {
+                    out.append("Error: ").append(e.getMessage());
+                }
+                out.append('\n');
+                start = end + 1;
+            }
+            send(exchange, 200, "text/plain; charset=utf-8", out);
+        }
+    }
+
+    /**
+     * Evaluates an expression and appends its JSON result or error.
+     *
+     * @return true if the expression could be evaluated.
+     */
+    private boolean evaluate(String expression, StringBuilder out) {
+        String result;
+        try {
+            result = engine.calculate(expression);
+        } catch (ArithmeticException | IllegalArgumentException e) {
+            error(e.getMessage(), out);
+            return false;
+        }
+        Json.quote(result, out.append("{\"result\":")).append('}');
+        return true;
+    }
+
+    private static StringBuilder error(String message, StringBuilder out) {
+        return Json.quote(String.valueOf(message), out.append("{\"error\":")).append('}');
+    }
+
+    private static String expressionOf(Object json) {
+        if (json instanceof Map && ((Map<?, ?>) json).get("expression") instanceof String) {
+            return (String) ((Map<?, ?>) json).get("expression");
+        }
+        throw new IllegalArgumentException("Expected an object with an \"expression\" string");
+    }
+
+    private static List<?> expressionsOf(Object json) {
+        if (json instanceof Map) {
+            json = ((Map<?, ?>) json).get("expressions");
+        }
+        if (json instanceof List) {
+            return (List<?>) json;
+        }
+        throw new IllegalArgumentException("Expected an array of expressions");
+    }
+
+    private static boolean isJson(HttpExchange exchange, String body) {
+        String contentType = exchange.getRequestHeaders().getFirst("Content-Type");
+        if (contentType != null) {
+            return contentType.contains("json");
+        }
+        String trimmed = body.stripLeading();
+        return trimmed.startsWith("{") || trimmed.startsWith("[");
+    }
+
+    private static String queryParameter(String query, String name) {
+        if (query != null) {
+            for (String parameter : query.split("&")) {
+                int equals = parameter.indexOf('=');
+                if (equals > 0 && parameter.substring(0, equals).equals(name)) {
+                    return URLDecoder.decode(parameter.substring(equals + 1), StandardCharsets.UTF_8);
+                }
+            }
+        }
+        throw new IllegalArgumentException("Missing \"" + name + "\" parameter");
+    }
+
+    private static String stripNewline(String body) {
+        int end = body.length();
+        while (end > 0 && (body.charAt(end - 1) == '\n' || body.charAt(end - 1) == '\r')) {
+            end--;
+        }
+        return body.substring(0, end);
+    }
+
+    private static String readBody(HttpExchange exchange) throws IOException {
+        try (InputStream in = exchange.getRequestBody()) {
+            byte[] body = in.readNBytes(MAX_BODY_BYTES + 1);
+            if (body.length > MAX_BODY_BYTES) {
+                throw new IllegalArgumentException("Request body is larger than " + MAX_BODY_BYTES + " bytes");
+            }
+            return new String(body, StandardCharsets.UTF_8);
+        }
+    }
+
+    private static void send(HttpExchange exchange, int status, String contentType, CharSequence body)
+            throws IOException {
+        byte[] bytes = body.toString().getBytes(StandardCharsets.UTF_8);
+        exchange.getResponseHeaders().set("Content-Type", contentType);
+        exchange.sendResponseHeaders(status, bytes.length);
+        try (OutputStream out = exchange.getResponseBody()) {
+            out.write(bytes);
+        }
+    }
+
+    public static void main(String[] args) throws IOException {
+        int port = (args.length > 0) ? Integer.parseInt(args[0]) : DEFAULT_PORT;
+        CalculatorServer server = start(port);
+        System.err.println("Calculator server listening on http://localhost:" + server.getPort());
+    }
+}
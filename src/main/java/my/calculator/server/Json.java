@@ -0,0 +1,217 @@
+package my.calculator.server;
+
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * The small subset of JSON the server needs: parsing request bodies into strings, numbers,
+ * booleans, null, lists and maps, and quoting strings for responses.
+ */
+final class Json {
+
+    /** Maximum nesting of arrays and objects, so a hostile body cannot overflow the stack. */
+    static final int MAX_DEPTH = 64;
+
+    private final String text;
+    private int position;
+    private int depth;
+
+    private Json(String text) {
+        this.text = text;
+    }
+
+    /**
+     * Parses a JSON document.
+     *
+     * @param text the document.
+     * @return a String, Double, Boolean, List, Map, or null.
+     * @throws IllegalArgumentException if the document is not valid JSON, or is nested more than
+     *                                  {@link #MAX_DEPTH} levels deep.
+     */
+    static Object parse(String text) {
+        Json parser = new Json(text);
+        Object value = parser.value();
+        parser.skipWhitespace();
+        if (parser.position != text.length()) {
+            throw parser.error("Unexpected content");
+        }
+        return value;
+    }
+
+    /**
+     * Appends a string as a JSON string literal.
+     *
+     * @param s   the string.
+     * @param out the builder it is appended to.
+     * @return {@code out}.
+     */
+    static StringBuilder quote(String s, StringBuilder out) {
+        out.append('"');
+        for (int i = 0; i < s.length(); i++) {
+            char c = s.charAt(i);
+            switch (c) {
+                case '"' -> out.append("\\\"");
+                case '\\' -> out.append("\\\\");
+                case '\n' -> out.append("\\n");
+                case '\r' -> out.append("\\r");
+                case '\t' -> out.append("\\t");
+                default -> {
+                    if (c < 0x20) {
+                        out.append(String.format("\\u%04x", (int) c));
+                    } else {
+                        out.append(c);
+                    }
+                }
+            }
+        }
+        return out.append('"');
+    }
+
+    private Object value() {
+        skipWhitespace();
+        if (position == text.length()) {
+            throw error("Unexpected end of input");
+        }
+        char c = text.charAt(position);
+        if ((c == '[' || c == '{') && depth == MAX_DEPTH) {
+            throw error("Too deeply nested");
+        }
+        return switch (c) {
+            case '"' -> string();
+            case '[' -> array();
+            case '{' -> object();
+            case 't' -> literal("true", Boolean.TRUE);
+            case 'f' -> literal("false", Boolean.FALSE);
+            case 'n' -> literal("null", null);
+            default -> number();
+        };
+    }
+
+    private List<Object> array() {
+        List<Object> list = new ArrayList<>();
+        position++;
+        skipWhitespace();
+        if (peek(']')) {
+            return list;
+        }
+        depth++;
+        do {
+            list.add(value());
+            skipWhitespace();
+        } while (peek(','));
+        depth--;
+        expect(']');
+        return list;
+    }
+
+    private Map<String, Object> object() {
+        Map<String, Object> map = new LinkedHashMap<>();
+        position++;
+        skipWhitespace();
+        if (peek('}')) {
+            return map;
+        }
+        depth++;
+        do {
+            skipWhitespace();
+            if (position == text.length() || text.charAt(position) != '"') {
+                throw error("Expected a member name");
+            }
+            String name = string();
+            skipWhitespace();
+            expect(':');
+            map.put(name, value());
+            skipWhitespace();
+        } while (peek(','));
+        depth--;
+        expect('}');
+        return map;
+    }
+
+    private String string() {
+        StringBuilder sb = new StringBuilder();
+        position++;
+        while (position < text.length()) {
+            char c = text.charAt(position++);
+            if (c == '"') {
+                return sb.toString();
+            }
+            if (c != '\\') {
+                sb.append(c);
+                continue;
+            }
+            if (position == text.length()) {
+                break;
+            }
+            char escaped = text.charAt(position++);
+            switch (escaped) {
+                case '"', '\\', '/' -> sb.append(escaped);
+                case 'b' -> sb.append('\b');
+                case 'f' -> sb.append('\f');
+                case 'n' -> sb.append('\n');
+                case 'r' -> sb.append('\r');
+                case 't' -> sb.append('\t');
+                case 'u' -> {
+                    if (position + 4 > text.length()) {
+                        throw error("Invalid escape");
+                    }
+                    try {
+                        sb.append((char) Integer.parseInt(text.substring(position, position + 4), 16));
+                    } catch (NumberFormatException e) {
+                        throw error("Invalid escape");
+                    }
+                    position += 4;
+                }
+                default -> throw error("Invalid escape");
+            }
+        }
+        throw error("Unterminated string");
+    }
+
+    private Object literal(String literal, Object value) {
+        if (!text.startsWith(literal, position)) {
+            throw error("Unexpected character");
+        }
+        position += literal.length();
+        return value;
+    }
+
+    private Double number() {
+        int start = position;
+        while (position < text.length() && "+-0123456789.eE".indexOf(text.charAt(position)) >= 0) {
+            position++;
+        }
+        try {
+            return Double.valueOf(text.substring(start, position));
+        } catch (NumberFormatException e) {
+            position = start;
+            throw error("Unexpected character");
+        }
+    }
+
+    private boolean peek(char c) {
+        if (position < text.length() && text.charAt(position) == c) {
+            position++;
+            return true;
+        }
+        return false;
+    }
+
+    private void expect(char c) {
+        if (!peek(c)) {
+            throw error("Expected '" + c + "'");
+        }
+    }
+
+    private void skipWhitespace() {
+        while (position < text.length() && Character.isWhitespace(text.charAt(position))) {
+            position++;
+        }
+    }
+
+    private IllegalArgumentException error(String message) {
+        return new IllegalArgumentException("Invalid JSON: " + message + " at position " + position);
+    }
+}
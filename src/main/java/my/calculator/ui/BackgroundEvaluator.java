@@ -0,0 +1,121 @@
+package my.calculator.ui;
+
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.function.Consumer;
+import java.util.function.Function;
+import javax.swing.SwingUtilities;
+import javax.swing.Timer;
+
+/**
+ * Evaluates expressions on a background thread, so that the Event Dispatch Thread stays free
+ * to repaint and to handle input, and posts the outcome back to the Event Dispatch Thread.
+ *
+ * One evaluation runs at a time: starting one cancels the previous one. An evaluation that
+ * takes longer than the timeout is cancelled and reported as an error. Evaluations do not
+ * check for interruption, so a cancelled one may keep its thread busy until it ends; its
+ * outcome is discarded, and new evaluations run on other threads meanwhile.
+ *
+ * All methods must be called on the Event Dispatch Thread, and the callbacks are called on it.
+ */
+class BackgroundEvaluator {
+
+    /** Time after which an evaluation is cancelled, in milliseconds. */
+    static final int DEFAULT_TIMEOUT = 10_000;
+
+    private final Function<String, String> evaluation;
+    private final Timer timer;
+    private final ExecutorService executor = Executors.newCachedThreadPool(runnable -> {
+        Thread thread = new Thread(runnable, "calculator-evaluation");
+        thread.setDaemon(true);
+        return thread;
+    });
+
+    /** Incremented when an evaluation starts or is cancelled; older outcomes are discarded. */
+    private long generation;
+    private Future<?> running;
+    private Consumer<String> onError;
+
+    /**
+     * Creates an evaluator.
+     *
+     * @param evaluation the function computing the result of an expression; its exceptions
+     *                   are reported as errors.
+     * @param timeout    the time after which an evaluation is cancelled, in milliseconds.
+     */
+    BackgroundEvaluator(Function<String, String> evaluation, int timeout) {
+        this.evaluation = evaluation;
+        this.timer = new Timer(timeout, e -> timedOut());
+        this.timer.setRepeats(false);
+    }
+
+    /**
+     * Starts evaluating an expression, cancelling the current evaluation if any.
+     *
+     * @param expression the expression.
+     * @param onResult   called with the result.
+     * @param onError    called with the message of the error, if the evaluation fails or
+     *                   times out.
+     */
+    void evaluate(String expression, Consumer<String> onResult, Consumer<String> onError) {
+        cancel();
+        long started = ++generation;
+        this.onError = onError;
+        running = executor.submit(() -> {
+            String result;
+            boolean failed = false;
+            try {
+                result = evaluation.apply(expression);
+            } catch (RuntimeException e) {
+                result = e.getMessage();
+                failed = true;
+            }
+            String outcome = result;
+            boolean error = failed;
+            SwingUtilities.invokeLater(() -> {
+                if (generation != started) {
+                    return;
+                }
+                finish();
+                (error ? onError : onResult).accept(outcome);
+            });
+        });
+        timer.restart();
+    }
+
+    /**
+     * Returns true if an evaluation is running.
+     */
+    boolean isRunning() {
+        return running != null;
+    }
+
+    /**
+     * Cancels the current evaluation, whose callbacks are then never called.
+     *
+     * @return true if an evaluation was running.
+     */
+    boolean cancel() {
+        if (running == null) {
+            return false;
+        }
+        running.cancel(true);
+        generation++;
+        finish();
+        return true;
+    }
+
+    private void finish() {
+        timer.stop();
+        running = null;
+        onError = null;
+    }
+
+    private void timedOut() {
+        Consumer<String> handler = onError;
+        if (cancel()) {
+            handler.accept("Evaluation timed out");
+        }
+    }
+}
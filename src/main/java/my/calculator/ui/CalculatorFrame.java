@@ -13,44 +13,65 @@ import java.awt.event.ActionListener;
 import java.awt.event.FocusAdapter;
 import java.awt.event.KeyAdapter;
 import java.awt.event.KeyEvent;
+import java.awt.event.WindowAdapter;
+import java.awt.event.WindowEvent;
 import java.io.File;
 import java.io.IOException;
-import java.util.ArrayList;
-import java.util.Arrays;
-import java.util.HashSet;
+import java.io.UncheckedIOException;
 import java.util.List;
-import java.util.Set;
 import javax.swing.JButton;
 import javax.swing.JFrame;
+import javax.swing.JLabel;
+import javax.swing.JOptionPane;
 import javax.swing.JPanel;
 import javax.swing.JTextField;
+import javax.swing.SwingConstants;
 import javax.swing.WindowConstants;
 import javax.swing.border.EmptyBorder;
 import javax.swing.event.DocumentEvent;
 import javax.swing.event.DocumentListener;
 import javax.swing.text.Caret;
-import my.calculator.core.CalculatorLogic;
+import my.calculator.core.Workbook;
+import my.calculator.history.HistoryStore;
 
 /**
  * Main application frame for the Java Scientific Calculator.
  */
 public class CalculatorFrame {
+    /** Maximum number of history entries recalled with UP and DOWN. */
+    private static final int HISTORY_MATCHES = 1000;
+
     private JFrame frame;
     private JTextField textField;
+    private JLabel previewLabel;
+    private LivePreview livePreview;
+    private JButton cancelButton;
+    /**
+     * Cells defined with {@code name = expression}, usable in later expressions, and the engine
+     * of the window: the default engine as it was when the window was created.
+     */
+    private final Workbook workbook = new Workbook();
+    private final BackgroundEvaluator evaluator =
+            new BackgroundEvaluator(workbook::evaluate, BackgroundEvaluator.DEFAULT_TIMEOUT);
     private String currentText = "";
-    private List<String> history = new ArrayList<>();
+    private final HistoryStore history;
+    /** Entries starting with the text history navigation started from, most recent first. */
+    private List<String> historyMatches;
     private int historyIndex = -1;
+    private boolean navigatingHistory;
+    /** Whether the text is the outcome of an evaluation rather than typed. */
+    private boolean showingResult;
     private Font mainFont;
     private boolean isScientific = false;
     private JPanel scientificPanel;
+    private boolean isPlotting = false;
+    private PlotPanel plotPanel;
     private boolean isError = false;
     private final String[] sciButtons = { 
         "sin", "cos", "tan", "exp", "asin", "acos", "atan", "ln",
-        "!", "√", "x²", "π", "log", "10^", "e", "^", "(", ")", "←", "→"
+        "!", "√", "x²", "π", "log", "10^", "e", "^", "(", ")", "←", "→",
+        "x", "Plot"
     };
-    private final Set<String> functions = new HashSet<>(Arrays.asList(
-            "sin", "cos", "tan", "asin", "acos", "atan", "exp", "ln", "log", "√", "10^x"
-    ));
 
     public boolean isScientific() {
         return isScientific;
@@ -64,6 +85,23 @@ public class CalculatorFrame {
         return currentText;
     }
 
+    public JLabel getPreviewLabel() {
+        return previewLabel;
+    }
+
+    public Workbook getWorkbook() {
+        return workbook;
+    }
+
+    public JButton getCancelButton() {
+        return cancelButton;
+    }
+
+    /** Returns true while an expression is being evaluated. */
+    public boolean isEvaluating() {
+        return evaluator.isRunning();
+    }
+
     public JFrame getFrame() {
         return frame;
     }
@@ -72,12 +110,30 @@ public class CalculatorFrame {
         return scientificPanel;
     }
 
+    public boolean isPlotting() {
+        return isPlotting;
+    }
+
+    public PlotPanel getPlotPanel() {
+        return plotPanel;
+    }
+
     public int getCaretPosition() {
         return textField.getCaretPosition();
     }
 
-    /** Constructs the calculator frame and initializes UI. */
+    /** Constructs the calculator frame, with a history kept in memory, and initializes UI. */
     public CalculatorFrame() {
+        this(HistoryStore.inMemory(HistoryStore.DEFAULT_CAPACITY));
+    }
+
+    /**
+     * Constructs the calculator frame and initializes UI.
+     *
+     * @param history the history of the expressions entered; closed with the frame.
+     */
+    public CalculatorFrame(HistoryStore history) {
+        this.history = history;
         initialize();
     }
 
@@ -88,6 +144,19 @@ public class CalculatorFrame {
         frame.setSize(400, 600);
         frame.setLocationRelativeTo(null);
         frame.setLayout(new BorderLayout());
+        frame.addWindowListener(new WindowAdapter() {
+            @Override
+            public void windowClosing(WindowEvent e) {
+                try {
+                    history.close();
+                } catch (IOException ex) {
+                    // The window is about to go, so the error cannot be shown in the display
+                    JOptionPane.showMessageDialog(frame, "Cannot save the history: " + ex.getMessage(),
+                            frame.getTitle(), JOptionPane.ERROR_MESSAGE);
+                }
+            }
+        });
+        frame.getContentPane().setBackground(new Color(51, 51, 51));
 
         try {
             mainFont = Font.createFont(Font.TRUETYPE_FONT,
@@ -109,30 +178,27 @@ public class CalculatorFrame {
                 textField.requestFocusInWindow();
             }
         });
+        previewLabel = new JLabel("", SwingConstants.RIGHT);
+        previewLabel.setFont(mainFont.deriveFont(18f));
+        previewLabel.setForeground(Color.LIGHT_GRAY);
+        previewLabel.setBorder(new EmptyBorder(0, 10, 0, 20));
+        previewLabel.setPreferredSize(new Dimension(0, 28));
+        livePreview = new LivePreview(previewLabel, LivePreview.DEBOUNCE_DELAY, workbook);
         textField.getDocument().addDocumentListener(new DocumentListener() {
             @Override
             public void insertUpdate(DocumentEvent e) {
-                currentText = textField.getText();
+                textEdited(e.getOffset());
             }
             @Override
             public void removeUpdate(DocumentEvent e) {
-                currentText = textField.getText();
+                textEdited(e.getOffset());
             }
             @Override
             public void changedUpdate(DocumentEvent e) {
                 currentText = textField.getText();
             }
         });
-        textField.addActionListener(e -> {
-            try {
-                String expr = currentText;
-                String result = CalculatorLogic.calculate(expr);
-                addToHistory(expr);
-                updateDisplay(result);
-            } catch (Exception ex) {
-                updateDisplay("Error: " + ex.getMessage());
-            }
-        });
+        textField.addActionListener(e -> evaluateCurrentText());
         textField.addKeyListener(new KeyAdapter() {
             @Override
             public void keyPressed(KeyEvent e) {
@@ -140,13 +206,31 @@ public class CalculatorFrame {
                     navigateHistory(-1);
                 } else if (e.getKeyCode() == KeyEvent.VK_DOWN) {
                     navigateHistory(1);
+                } else if (e.getKeyCode() == KeyEvent.VK_ESCAPE) {
+                    cancelEvaluation();
                 }
             }
         });
-        frame.add(textField, BorderLayout.NORTH);
+        cancelButton = new RoundedButtonUI("Cancel");
+        cancelButton.setFont(mainFont.deriveFont(14f));
+        cancelButton.setPreferredSize(new Dimension(90, 28));
+        cancelButton.setVisible(false);
+        cancelButton.addActionListener(e -> cancelEvaluation());
+
+        JPanel statusPanel = new JPanel(new BorderLayout());
+        statusPanel.setBackground(new Color(51, 51, 51));
+        statusPanel.add(previewLabel, BorderLayout.CENTER);
+        statusPanel.add(cancelButton, BorderLayout.EAST);
+
+        JPanel displayPanel = new JPanel(new BorderLayout());
+        displayPanel.setBackground(new Color(51, 51, 51));
+        displayPanel.add(textField, BorderLayout.CENTER);
+        displayPanel.add(statusPanel, BorderLayout.SOUTH);
+        frame.add(displayPanel, BorderLayout.NORTH);
 
         initializeBasicPanel();
         initializeScientificPanel();
+        initializePlotPanel();
         frame.setVisible(true);
     }
 
@@ -208,6 +292,14 @@ public class CalculatorFrame {
         frame.add(scientificPanel, BorderLayout.EAST);
     }
 
+    /** Builds the plot of the expression, shown below the buttons. */
+    private void initializePlotPanel() {
+        plotPanel = new PlotPanel(workbook);
+        plotPanel.setPreferredSize(new Dimension(0, 300));
+        plotPanel.setVisible(false);
+        frame.add(plotPanel, BorderLayout.SOUTH);
+    }
+
     private void setupScientificPanelLayout() {
         GridBagLayout sciLayout = new GridBagLayout();
         scientificPanel.setLayout(sciLayout);
@@ -246,10 +338,14 @@ public class CalculatorFrame {
         String command = e.getActionCommand();
         if (command.equals("e") || command.equals("π")) {
             insertConstantIntoTextField(command);
-        } else if (functions.contains(command)) {
+        } else if (workbook.getEngine().isFunction(command)) {
             insertFunctionIntoTextField(command);
         } else if (command.equals("x²")) {
             insertAtCaret("^2");
+        } else if (command.equals("x")) {
+            insertAtCaret("x");
+        } else if (command.equals("Plot")) {
+            togglePlot();
         } else if (command.equals("←")) {
             int pos = textField.getCaretPosition();
             if (pos > 0) {
@@ -271,6 +367,35 @@ public class CalculatorFrame {
         }
     }
 
+    /**
+     * Evaluates the text on a background thread. The result replaces the text, unless the
+     * text was edited in the meantime.
+     */
+    private void evaluateCurrentText() {
+        String expr = currentText;
+        cancelButton.setVisible(true);
+        evaluator.evaluate(expr, result -> {
+            cancelButton.setVisible(false);
+            addToHistory(expr);
+            if (expr.equals(currentText)) {
+                updateDisplay(result);
+                showingResult = true;
+            }
+        }, message -> {
+            cancelButton.setVisible(false);
+            if (expr.equals(currentText)) {
+                showError("Error: " + message);
+                showingResult = true;
+            }
+        });
+    }
+
+    private void cancelEvaluation() {
+        evaluator.cancel();
+        cancelButton.setVisible(false);
+        textField.requestFocusInWindow();
+    }
+
     private void updateDisplay(String newText) {
         currentText = newText;
         textField.setText(newText);
@@ -290,6 +415,21 @@ public class CalculatorFrame {
         frame.repaint();
     }
 
+    /** Shows or hides the plot of the expression as a function of x. */
+    public void togglePlot() {
+        if (!isPlotting) {
+            plotPanel.setVisible(true);
+            frame.setSize(frame.getWidth(), frame.getHeight() + plotPanel.getPreferredSize().height);
+            plotPanel.setExpression(currentText);
+        } else {
+            frame.setSize(frame.getWidth(), frame.getHeight() - plotPanel.getPreferredSize().height);
+            plotPanel.setVisible(false);
+        }
+        isPlotting = !isPlotting;
+        frame.validate();
+        frame.repaint();
+    }
+
     public void insertFunctionIntoTextField(String functionName) {
         int caretPos = textField.getCaretPosition();
         String before = currentText.substring(0, caretPos);
@@ -329,20 +469,53 @@ public class CalculatorFrame {
         updateDisplay(errorMessage);
     }
 
+    private void textEdited(int offset) {
+        currentText = textField.getText();
+        livePreview.edited(currentText, offset);
+        if (isPlotting) {
+            plotPanel.setExpression(currentText);
+        }
+        showingResult = false;
+        if (!navigatingHistory) {
+            historyMatches = null;
+        }
+    }
+
     private void addToHistory(String expression) {
-        history.add(expression);
-        historyIndex = history.size();
+        try {
+            history.append(expression);
+        } catch (UncheckedIOException e) {
+            // Reported once; the result stays in the display
+            JOptionPane.showMessageDialog(frame, "Cannot save the history: " + e.getCause().getMessage(),
+                    frame.getTitle(), JOptionPane.ERROR_MESSAGE);
+        }
+        historyMatches = null;
     }
 
+    /**
+     * Recalls an entry of the history starting with the text typed before navigating, or any
+     * entry after an evaluation, the most recent first.
+     *
+     * @param direction -1 for an older entry, 1 for a more recent one.
+     */
     private void navigateHistory(int direction) {
-        if (history.isEmpty()) return;
-        historyIndex += direction;
+        if (historyMatches == null) {
+            historyMatches = history.search(showingResult ? "" : currentText, HISTORY_MATCHES);
+            historyIndex = -1;
+        }
+        if (historyMatches.isEmpty()) return;
+        historyIndex -= direction;
         if (historyIndex < 0) {
             historyIndex = 0;
-        } else if (historyIndex >= history.size()) {
-            historyIndex = history.size() - 1;
+        } else if (historyIndex >= historyMatches.size()) {
+            historyIndex = historyMatches.size() - 1;
+        }
+        navigatingHistory = true;
+        try {
+            setCurrentText(historyMatches.get(historyIndex));
+        } finally {
+            navigatingHistory = false;
         }
-        setCurrentText(history.get(historyIndex));
     }
 
     public void setCurrentText(String text) {
@@ -364,16 +537,7 @@ public class CalculatorFrame {
                         updateDisplay(newText.isEmpty() ? "" : newText);
                     }
                 }
-                case "=" -> {
-                    try {
-                        String expr = currentText;
-                        String result = CalculatorLogic.calculate(expr);
-                        addToHistory(expr);
-                        updateDisplay(result);
-                    } catch (Exception ex) {
-                        showError("Error: " + ex.getMessage());
-                    }
-                }
+                case "=" -> evaluateCurrentText();
                 default -> insertAtCaret(command);
             }
             textField.requestFocusInWindow();
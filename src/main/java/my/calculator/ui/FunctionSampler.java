@@ -0,0 +1,197 @@
+package my.calculator.ui;
+
+import java.util.Arrays;
+import my.calculator.core.CompiledExpression;
+
+/**
+ * Samples a function of one variable over the pixel columns of a plot.
+ *
+ * Column {@code c} covers x from {@code c * xScale} to {@code (c + 1) * xScale}, columns being
+ * numbered from x = 0 rather than from the edge of the plot, so that the same column has the
+ * same samples wherever the plot is panned. The function is evaluated in batch at the edges
+ * of the columns. A column where the curve moves by more than {@link #REFINE_THRESHOLD}
+ * pixels, or leaves the domain of the function, is sampled again at up to
+ * {@link #MAX_SUBSAMPLES} points inside it, so steep parts are drawn as precisely as flat ones
+ * without sampling the whole plot densely.
+ *
+ * The samples of the last request are kept: panning only evaluates the columns it exposes,
+ * while zooming samples every column again.
+ *
+ * Instances are not thread-safe; a plot uses its sampler from its rendering thread only.
+ */
+final class FunctionSampler {
+
+    /** Vertical distance, in pixels, between the edges of a column above which it is refined. */
+    static final double REFINE_THRESHOLD = 2;
+    /** Maximum number of samples inside a column. */
+    static final int MAX_SUBSAMPLES = 16;
+
+    private final CompiledExpression function;
+    /** The values of the variables after x. */
+    private final double[] constants;
+    private Samples cached;
+    private long evaluations;
+
+    /**
+     * Creates a sampler.
+     *
+     * @param function the function, whose only variable is x.
+     */
+    FunctionSampler(CompiledExpression function) {
+        this(function, new double[1]);
+    }
+
+    /**
+     * Creates a sampler of a function with other variables, which keep their values.
+     *
+     * @param function  the function, whose first variable is x.
+     * @param variables the values of the variables; the first one, x, is ignored.
+     */
+    FunctionSampler(CompiledExpression function, double[] variables) {
+        this.function = function;
+        this.constants = variables.clone();
+    }
+
+    /**
+     * Returns the number of points evaluated so far.
+     */
+    long getEvaluations() {
+        return evaluations;
+    }
+
+    /**
+     * Samples a range of columns.
+     *
+     * @param firstColumn the first column.
+     * @param width       the number of columns.
+     * @param xScale      the width of a column, in units of x.
+     * @param yScale      the height of a pixel, in units of y.
+     * @return the samples.
+     */
+    Samples sample(long firstColumn, int width, double xScale, double yScale) {
+        Samples samples = new Samples(firstColumn, width, xScale, yScale);
+        // Columns [reusedFrom, reusedTo) and their edges are copied from the previous samples
+        int reusedFrom = 0;
+        int reusedTo = 0;
+        Samples previous = cached;
+        if (previous != null && previous.xScale == xScale && previous.yScale == yScale) {
+            long from = Math.max(firstColumn, previous.firstColumn);
+            long to = Math.min(firstColumn + width, previous.firstColumn + previous.width);
+            if (from < to) {
+                int source = (int) (from - previous.firstColumn);
+                reusedFrom = (int) (from - firstColumn);
+                reusedTo = (int) (to - firstColumn);
+                System.arraycopy(previous.edges, source, samples.edges, reusedFrom, reusedTo - reusedFrom + 1);
+                System.arraycopy(previous.inner, source, samples.inner, reusedFrom, reusedTo - reusedFrom);
+            }
+        }
+
+        // The edges not copied, in one batch
+        int edgesFrom = reusedFrom;
+        int edgesTo = (reusedTo > reusedFrom) ? reusedTo + 1 : reusedFrom;
+        double[] xs = new double[width + 1 - (edgesTo - edgesFrom)];
+        int n = 0;
+        for (int c = 0; c <= width; c++) {
+            if (c < edgesFrom || c >= edgesTo) {
+                xs[n++] = (firstColumn + c) * xScale;
+            }
+        }
+        double[] ys = evaluate(xs);
+        n = 0;
+        for (int c = 0; c <= width; c++) {
+            if (c < edgesFrom || c >= edgesTo) {
+                samples.edges[c] = ys[n++];
+            }
+        }
+
+        // The points inside the columns not copied that need refining, in one batch
+        int[] counts = new int[width];
+        int total = 0;
+        for (int c = 0; c < width; c++) {
+            if (c < reusedFrom || c >= reusedTo) {
+                counts[c] = subsamples(samples.edges[c], samples.edges[c + 1], yScale);
+                total += counts[c];
+            }
+        }
+        if (total > 0) {
+            xs = new double[total];
+            n = 0;
+            for (int c = 0; c < width; c++) {
+                double x = (firstColumn + c) * xScale;
+                for (int i = 1; i <= counts[c]; i++) {
+                    xs[n++] = x + i * xScale / (counts[c] + 1);
+                }
+            }
+            ys = evaluate(xs);
+            n = 0;
+            for (int c = 0; c < width; c++) {
+                if (counts[c] > 0) {
+                    double[] inner = new double[counts[c]];
+                    System.arraycopy(ys, n, inner, 0, inner.length);
+                    samples.inner[c] = inner;
+                    n += inner.length;
+                }
+            }
+        }
+        cached = samples;
+        return samples;
+    }
+
+    /**
+     * Returns the number of points to sample inside a column, given its edges.
+     */
+    private static int subsamples(double left, double right, double yScale) {
+        boolean leftFinite = Double.isFinite(left);
+        boolean rightFinite = Double.isFinite(right);
+        if (leftFinite != rightFinite) {
+            // The column holds an edge of the domain, or a pole
+            return MAX_SUBSAMPLES;
+        }
+        if (!leftFinite) {
+            return 0;
+        }
+        double pixels = Math.abs(right - left) / yScale;
+        if (pixels <= REFINE_THRESHOLD) {
+            return 0;
+        }
+        return (int) Math.min(MAX_SUBSAMPLES, Math.ceil(pixels / REFINE_THRESHOLD) - 1);
+    }
+
+    private double[] evaluate(double[] xs) {
+        double[] ys = new double[xs.length];
+        if (xs.length > 0) {
+            double[][] columns = new double[constants.length][];
+            columns[0] = xs;
+            for (int i = 1; i < columns.length; i++) {
+                columns[i] = new double[xs.length];
+                Arrays.fill(columns[i], constants[i]);
+            }
+            function.evaluateBatchLenient(columns, ys);
+            evaluations += xs.length;
+        }
+        return ys;
+    }
+
+    /**
+     * The samples of a range of columns. Values that could not be evaluated are {@code NaN}.
+     */
+    static final class Samples {
+        final long firstColumn;
+        final int width;
+        final double xScale;
+        final double yScale;
+        /** The values at the left edge of each column, and at the right edge of the last. */
+        final double[] edges;
+        /** The values at evenly spaced points inside each column, or null if it is not refined. */
+        final double[][] inner;
+
+        Samples(long firstColumn, int width, double xScale, double yScale) {
+            this.firstColumn = firstColumn;
+            this.width = width;
+            this.xScale = xScale;
+            this.yScale = yScale;
+            this.edges = new double[width + 1];
+            this.inner = new double[width][];
+        }
+    }
+}
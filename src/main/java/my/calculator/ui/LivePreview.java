@@ -0,0 +1,119 @@
+package my.calculator.ui;
+
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import javax.swing.JLabel;
+import javax.swing.SwingUtilities;
+import javax.swing.Timer;
+import my.calculator.core.CompiledExpression;
+import my.calculator.core.IncrementalCompiler;
+import my.calculator.core.Workbook;
+
+/**
+ * Shows the result of the expression being typed, updated as the text changes.
+ *
+ * Edits are debounced: the expression is evaluated once typing pauses, on a background thread
+ * so that the Event Dispatch Thread never waits for it. A new evaluation cancels the previous
+ * one, and a result is only shown if no edit was made since it was started. Expressions are
+ * compiled incrementally from the offsets of the document events, may use the cells of a
+ * {@link Workbook}, and show no result while they are invalid or incomplete.
+ */
+class LivePreview {
+
+    /** Delay without edits before evaluating, in milliseconds. */
+    static final int DEBOUNCE_DELAY = 150;
+
+    private final JLabel label;
+    private final Workbook workbook;
+    private final Timer timer;
+    private final ExecutorService executor = Executors.newSingleThreadExecutor(runnable -> {
+        Thread thread = new Thread(runnable, "calculator-preview");
+        thread.setDaemon(true);
+        return thread;
+    });
+
+    /** The text to evaluate when the timer fires; only used on the Event Dispatch Thread. */
+    private String pendingText = "";
+    /** Incremented on each edit; an evaluation started for an older one is stale. */
+    private volatile long generation;
+    private Future<?> running;
+
+    /** Smallest offset edited since the last compilation; guarded by this. */
+    private int editOffset;
+    /** Only used by the preview thread. */
+    private final IncrementalCompiler compiler;
+
+    /**
+     * Creates a preview shown in a label.
+     *
+     * @param label    the label showing the result.
+     * @param delay    the delay without edits before evaluating, in milliseconds.
+     * @param workbook the cells the expressions may use, and the engine evaluating them.
+     */
+    LivePreview(JLabel label, int delay, Workbook workbook) {
+        this.label = label;
+        this.workbook = workbook;
+        this.compiler = new IncrementalCompiler(workbook.getEngine());
+        this.timer = new Timer(delay, e -> evaluate());
+        this.timer.setRepeats(false);
+    }
+
+    /**
+     * Records an edit of the text. Must be called on the Event Dispatch Thread.
+     *
+     * @param text   the whole text after the edit.
+     * @param offset the offset of the first character changed.
+     */
+    void edited(String text, int offset) {
+        synchronized (this) {
+            editOffset = Math.min(editOffset, offset);
+        }
+        pendingText = text;
+        generation++;
+        label.setText("");
+        timer.restart();
+    }
+
+    private void evaluate() {
+        if (running != null) {
+            running.cancel(true);
+        }
+        String text = pendingText;
+        long started = generation;
+        if (text.isBlank()) {
+            return;
+        }
+        running = executor.submit(() -> {
+            if (generation != started) {
+                return;
+            }
+            String result = compute(text);
+            SwingUtilities.invokeLater(() -> {
+                if (generation == started) {
+                    label.setText(result);
+                }
+            });
+        });
+    }
+
+    /**
+     * Evaluates the text on the preview thread.
+     *
+     * @return the formatted result, or an empty string if the text cannot be evaluated.
+     */
+    private String compute(String text) {
+        int offset;
+        synchronized (this) {
+            offset = editOffset;
+            editOffset = Integer.MAX_VALUE;
+        }
+        Workbook.Snapshot cells = workbook.snapshot();
+        try {
+            CompiledExpression compiled = compiler.compile(text, offset, cells.getNames());
+            return "= " + workbook.getEngine().format(compiled.evaluate(cells.bind(compiled, 0)));
+        } catch (ArithmeticException | IllegalArgumentException e) {
+            return "";
+        }
+    }
+}
@@ -0,0 +1,390 @@
+package my.calculator.ui;
+
+import java.awt.BasicStroke;
+import java.awt.Color;
+import java.awt.FontMetrics;
+import java.awt.Graphics;
+import java.awt.Graphics2D;
+import java.awt.RenderingHints;
+import java.awt.event.ComponentAdapter;
+import java.awt.event.ComponentEvent;
+import java.awt.event.MouseAdapter;
+import java.awt.event.MouseEvent;
+import java.awt.event.MouseWheelEvent;
+import java.awt.geom.Line2D;
+import java.awt.image.BufferedImage;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicReference;
+import javax.swing.JComponent;
+import my.calculator.core.CompiledExpression;
+import my.calculator.core.Workbook;
+
+/**
+ * Plots the expression being typed as a function of {@code x}, which may use the cells of a
+ * {@link Workbook} with their current values. Dragging pans the plot, the mouse wheel zooms
+ * around the pointer, and a double click restores the initial view.
+ *
+ * The plot is sampled by a {@link FunctionSampler} and drawn into an image on a background
+ * thread, so an expensive expression never blocks the Event Dispatch Thread. Requests made
+ * while a frame is being drawn are merged into the next one. Until it is ready, the last
+ * frame is painted moved and scaled to the current view, so panning and zooming follow the
+ * pointer at once. The two images drawn into are reused from frame to frame.
+ */
+public class PlotPanel extends JComponent {
+
+    /** Units of x and y per pixel of the initial view. */
+    static final double DEFAULT_SCALE = 1.0 / 40;
+    /** Zoom factor of one step of the mouse wheel. */
+    private static final double ZOOM_STEP = 1.2;
+
+    private static final Color BACKGROUND = new Color(51, 51, 51);
+    private static final Color AXES = Color.GRAY;
+    private static final Color CURVE = Color.ORANGE;
+
+    private final Workbook workbook;
+    private final ExecutorService renderer = Executors.newSingleThreadExecutor(runnable -> {
+        Thread thread = new Thread(runnable, "calculator-plot");
+        thread.setDaemon(true);
+        return thread;
+    });
+    /** The latest view requested and not drawn yet, or null. */
+    private final AtomicReference<View> pending = new AtomicReference<>();
+
+    // The view, only used on the Event Dispatch Thread
+    private String expression = "";
+    /** The column at the center of the plot. */
+    private long centerColumn;
+    /** The value of y at the center of the plot. */
+    private double centerY;
+    private double xScale = DEFAULT_SCALE;
+    private double yScale = DEFAULT_SCALE;
+
+    // The last frame drawn and the image to draw the next one into, guarded by lock
+    private final Object lock = new Object();
+    private BufferedImage front;
+    private View frontView;
+    private BufferedImage back;
+
+    // Only used by the rendering thread
+    private String compiledExpression;
+    /** The cells the expression was compiled with. */
+    private Workbook.Snapshot cells;
+    private FunctionSampler sampler;
+    private String error;
+
+    /**
+     * Creates an empty plot, without cells, evaluated with the default engine of
+     * {@link my.calculator.core.CalculatorLogic} as it is now.
+     */
+    public PlotPanel() {
+        this(new Workbook());
+    }
+
+    /**
+     * Creates an empty plot.
+     *
+     * @param workbook the cells the expressions may use, and the engine evaluating them.
+     */
+    public PlotPanel(Workbook workbook) {
+        this.workbook = workbook;
+        setOpaque(true);
+        setBackground(BACKGROUND);
+        addComponentListener(new ComponentAdapter() {
+            @Override
+            public void componentResized(ComponentEvent e) {
+                requestRender();
+            }
+        });
+        MouseAdapter mouse = new MouseAdapter() {
+            private int lastX;
+            private int lastY;
+
+            @Override
+            public void mousePressed(MouseEvent e) {
+                lastX = e.getX();
+                lastY = e.getY();
+            }
+
+            @Override
+            public void mouseDragged(MouseEvent e) {
+                pan(e.getX() - lastX, e.getY() - lastY);
+                lastX = e.getX();
+                lastY = e.getY();
+            }
+
+            @Override
+            public void mouseWheelMoved(MouseWheelEvent e) {
+                zoom(e.getX(), e.getY(), Math.pow(ZOOM_STEP, e.getPreciseWheelRotation()));
+            }
+
+            @Override
+            public void mouseClicked(MouseEvent e) {
+                if (e.getClickCount() == 2) {
+                    resetView();
+                }
+            }
+        };
+        addMouseListener(mouse);
+        addMouseMotionListener(mouse);
+        addMouseWheelListener(mouse);
+    }
+
+    /**
+     * Plots another expression.
+     *
+     * @param expression the expression, in terms of {@code x}.
+     */
+    public void setExpression(String expression) {
+        this.expression = expression;
+        requestRender();
+    }
+
+    /**
+     * Restores the initial view, centered on the origin.
+     */
+    public void resetView() {
+        centerColumn = 0;
+        centerY = 0;
+        xScale = DEFAULT_SCALE;
+        yScale = DEFAULT_SCALE;
+        requestRender();
+    }
+
+    /**
+     * Moves the plot by a number of pixels.
+     */
+    void pan(int dx, int dy) {
+        centerColumn -= dx;
+        centerY += dy * yScale;
+        requestRender();
+    }
+
+    /**
+     * Scales the plot around a point, keeping the value under it in place.
+     *
+     * @param x      the column of the point.
+     * @param y      the row of the point.
+     * @param factor the factor the units per pixel are multiplied by.
+     */
+    void zoom(int x, int y, double factor) {
+        View view = currentView();
+        double valueX = (view.firstColumn + x) * xScale;
+        double valueY = view.top - y * yScale;
+        xScale *= factor;
+        yScale *= factor;
+        centerColumn = Math.round(valueX / xScale) - x + getWidth() / 2;
+        centerY = valueY + (y - getHeight() / 2) * yScale;
+        requestRender();
+    }
+
+    private View currentView() {
+        int width = getWidth();
+        int height = getHeight();
+        return new View(expression, centerColumn - width / 2, width, height, xScale, yScale,
+                centerY + (height / 2) * yScale);
+    }
+
+    private void requestRender() {
+        View view = currentView();
+        if (view.width <= 0 || view.height <= 0) {
+            return;
+        }
+        if (pending.getAndSet(view) == null) {
+            renderer.execute(this::render);
+        }
+        repaint();
+    }
+
+    /**
+     * Returns a future completed once the frames requested so far are drawn.
+     */
+    Future<?> rendered() {
+        return renderer.submit(() -> { });
+    }
+
+    /**
+     * Returns the last frame drawn, or null.
+     */
+    BufferedImage getImage() {
+        synchronized (lock) {
+            return front;
+        }
+    }
+
+    /**
+     * Returns the number of points evaluated for the current expression. Must be called
+     * after {@link #rendered()} completes.
+     */
+    long getEvaluations() {
+        return (sampler == null) ? 0 : sampler.getEvaluations();
+    }
+
+    @Override
+    protected void paintComponent(Graphics g) {
+        g.setColor(getBackground());
+        g.fillRect(0, 0, getWidth(), getHeight());
+        View view = currentView();
+        synchronized (lock) {
+            if (front == null) {
+                return;
+            }
+            // The last frame, where its values are in the current view
+            double x = frontView.firstColumn * frontView.xScale / view.xScale - view.firstColumn;
+            double y = (view.top - frontView.top) / view.yScale;
+            double width = frontView.width * frontView.xScale / view.xScale;
+            double height = frontView.height * frontView.yScale / view.yScale;
+            g.drawImage(front, (int) Math.round(x), (int) Math.round(y),
+                    (int) Math.round(width), (int) Math.round(height), null);
+        }
+    }
+
+    /**
+     * Draws the latest view requested, on the rendering thread.
+     */
+    private void render() {
+        View view = pending.getAndSet(null);
+        if (view == null) {
+            return;
+        }
+        prepare(view.expression);
+        BufferedImage image;
+        synchronized (lock) {
+            image = back;
+        }
+        if (image == null || image.getWidth() != view.width || image.getHeight() != view.height) {
+            image = new BufferedImage(view.width, view.height, BufferedImage.TYPE_INT_RGB);
+        }
+        Graphics2D g = image.createGraphics();
+        try {
+            draw(g, view);
+        } finally {
+            g.dispose();
+        }
+        synchronized (lock) {
+            back = front;
+            front = image;
+            frontView = view;
+        }
+        repaint();
+    }
+
+    /**
+     * Compiles the expression if it or the cells changed since the last frame.
+     */
+    private void prepare(String text) {
+        Workbook.Snapshot current = workbook.snapshot();
+        if (text.equals(compiledExpression) && cells != null && current.getVersion() == cells.getVersion()) {
+            return;
+        }
+        compiledExpression = text;
+        cells = current;
+        sampler = null;
+        error = null;
+        if (text.isBlank()) {
+            return;
+        }
+        // The x of the plot hides a cell named x
+        List<String> variables = new ArrayList<>();
+        variables.add("x");
+        for (String name : current.getNames()) {
+            if (!name.equals("x")) {
+                variables.add(name);
+            }
+        }
+        try {
+            CompiledExpression function = workbook.getEngine().compile(text, variables.toArray(new String[0]));
+            sampler = new FunctionSampler(function, current.bind(function, 1));
+        } catch (ArithmeticException | IllegalArgumentException e) {
+            error = (e.getMessage() == null) ? "Invalid expression" : e.getMessage();
+        }
+    }
+
+    private void draw(Graphics2D g, View view) {
+        g.setColor(BACKGROUND);
+        g.fillRect(0, 0, view.width, view.height);
+        g.setRenderingHint(RenderingHints.KEY_ANTIALIASING, RenderingHints.VALUE_ANTIALIAS_ON);
+
+        // Axes, where they are in view
+        g.setColor(AXES);
+        long originColumn = -view.firstColumn;
+        if (originColumn >= 0 && originColumn < view.width) {
+            g.drawLine((int) originColumn, 0, (int) originColumn, view.height);
+        }
+        double originRow = view.top / view.yScale;
+        if (originRow >= 0 && originRow < view.height) {
+            g.drawLine(0, (int) originRow, view.width, (int) originRow);
+        }
+
+        if (error != null) {
+            FontMetrics metrics = g.getFontMetrics();
+            g.setColor(Color.LIGHT_GRAY);
+            g.drawString(error, (view.width - metrics.stringWidth(error)) / 2, view.height / 2);
+        } else if (sampler != null) {
+            g.setColor(CURVE);
+            g.setStroke(new BasicStroke(1.5f));
+            drawCurve(g, view, sampler.sample(view.firstColumn, view.width, view.xScale, view.yScale));
+        }
+    }
+
+    /**
+     * Joins the samples in order, leaving gaps where the function is undefined or jumps by
+     * more than the height of the plot.
+     */
+    private static void drawCurve(Graphics2D g, View view, FunctionSampler.Samples samples) {
+        Line2D.Double line = new Line2D.Double();
+        double previousX = 0;
+        double previousRow = Double.NaN;
+        for (int c = 0; c <= samples.width; c++) {
+            double[] inner = (c < samples.width) ? samples.inner[c] : null;
+            int count = (inner == null) ? 0 : inner.length;
+            for (int i = 0; i <= count; i++) {
+                double x = c + (double) i / (count + 1);
+                double value = (i == 0) ? samples.edges[c] : inner[i - 1];
+                double row = (view.top - value) / view.yScale;
+                if (Double.isFinite(row) && Double.isFinite(previousRow)
+                        && Math.abs(row - previousRow) <= view.height && isVisible(row, previousRow, view.height)) {
+                    line.setLine(previousX, clamp(previousRow, view.height), x, clamp(row, view.height));
+                    g.draw(line);
+                }
+                previousX = x;
+                previousRow = row;
+            }
+        }
+    }
+
+    private static boolean isVisible(double row, double previousRow, int height) {
+        return !(row < 0 && previousRow < 0) && !(row > height && previousRow > height);
+    }
+
+    private static double clamp(double row, int height) {
+        return Math.max(-height, Math.min(2.0 * height, row));
+    }
+
+    /**
+     * What a frame shows.
+     */
+    private static final class View {
+        final String expression;
+        final long firstColumn;
+        final int width;
+        final int height;
+        final double xScale;
+        final double yScale;
+        /** The value of y at the top edge. */
+        final double top;
+
+        View(String expression, long firstColumn, int width, int height, double xScale, double yScale, double top) {
+            this.expression = expression;
+            this.firstColumn = firstColumn;
+            this.width = width;
+            this.height = height;
+            this.xScale = xScale;
+            this.yScale = yScale;
+            this.top = top;
+        }
+    }
+}
@@ -15,6 +15,8 @@ import javax.swing.JButton;
  */
 public class RoundedButtonUI extends JButton {
 
+    private static final int CORNER_RADIUS = 20;
+
     public RoundedButtonUI(String text) {
         super(text);
         setPreferredSize(new Dimension(40, 40));
@@ -29,8 +31,7 @@ public class RoundedButtonUI extends JButton {
 
     @Override
     protected void paintComponent(Graphics g) {
-        final int CORNER_RADIUS = 20;
-        Graphics2D g2 = (Graphics2D) g;
+        Graphics2D g2 = (Graphics2D) g.create();
         g2.setRenderingHint(RenderingHints.KEY_ANTIALIASING, RenderingHints.VALUE_ANTIALIAS_ON);
 
         if (getModel().isArmed()) {
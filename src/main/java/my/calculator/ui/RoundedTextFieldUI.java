@@ -36,7 +36,6 @@ public class RoundedTextFieldUI extends JTextField {
         Graphics2D g2 = (Graphics2D) g;
         g2.setRenderingHint(RenderingHints.KEY_ANTIALIASING, RenderingHints.VALUE_ANTIALIAS_ON);
         g2.setColor(Color.BLACK);
-        getParent().setBackground(new Color(51, 51, 51));
         g2.fillRoundRect(0, 0, getWidth(), getHeight(), arcWidth, arcHeight);
         super.paintComponent(g);
     }
@@ -0,0 +1,115 @@
+package my.calculator.core;
+
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+
+class BytecodeCompilerTest {
+
+    private static final List<String> EXPRESSIONS = List.of(
+            "2+3*4", "((((((((1+2)*3)-4)/5)+6)*7)-8)/9)", "2^3^2", "10%4-7", "-5+2",
+            "sin(30)+cos(60)*tan(45)-ln(10)+log(100)+√(16)+exp(2)-atan(1)", "asin(0.5)+acos(0.5)",
+            "9sin(90)+2π(3)-4e", "3!+4!", "10^x(2)", "1/3", "0.1+0.2", "1e");
+
+    @AfterEach
+    void restoreThreshold() {
+        CalculatorLogic.setJitThreshold(CalculatorLogic.DEFAULT_JIT_THRESHOLD);
+    }
+
+    private static CompiledExpression interpreted(String expression, String... variables) {
+        CalculatorLogic.setJitThreshold(-1);
+        return CalculatorLogic.compile(expression, variables);
+    }
+
+    private static CompiledFunction bytecode(String expression, String... variables) {
+        CompiledFunction function = BytecodeCompiler.compile(interpreted(expression, variables));
+        assertNotNull(function, expression);
+        return function;
+    }
+
+    @Test
+    void testSameResultsAsInterpreter() {
+        for (String expression : EXPRESSIONS) {
+            double expected = interpreted(expression).evaluate();
+            assertEquals(expected, bytecode(expression).apply(new double[0]), expression);
+        }
+    }
+
+    @Test
+    void testVariables() {
+        CompiledFunction function = bytecode("3x^2+sin(x)/(y+1)-√(y)*ln(x+2)", "x", "y");
+        CompiledExpression expression = interpreted("3x^2+sin(x)/(y+1)-√(y)*ln(x+2)", "x", "y");
+        for (int i = 0; i < 100; i++) {
+            double[] variables = {i / 7.0, i / 3.0};
+            assertEquals(expression.evaluate(variables), function.apply(variables));
+        }
+    }
+
+    @Test
+    void testManyVariables() {
+        // Slots past 5 and past 127 are loaded with different instructions
+        String[] names = new String[200];
+        StringBuilder sum = new StringBuilder("0");
+        double[] values = new double[names.length];
+        for (int i = 0; i < names.length; i++) {
+            names[i] = "v" + i;
+            sum.append("+v").append(i).append("*").append(i);
+            values[i] = 1;
+        }
+        assertEquals(199 * 200 / 2.0, bytecode(sum.toString(), names).apply(values));
+    }
+
+    @Test
+    void testSameErrorsAsInterpreter() {
+        for (String expression : List.of("5/0", "5%0", "asin(2)", "acos(-2)", "ln(0)", "log(-1)", "√(-4)",
+                "(0-1)!", "2.5!", "21!")) {
+            RuntimeException expected = assertThrows(RuntimeException.class, () -> interpreted(expression).evaluate());
+            CompiledFunction function = bytecode(expression);
+            RuntimeException actual = assertThrows(RuntimeException.class, () -> function.apply(new double[0]));
+            assertEquals(expected.getClass(), actual.getClass(), expression);
+            assertEquals(expected.getMessage(), actual.getMessage(), expression);
+        }
+    }
+
+    @Test
+    void testPromotionAfterThreshold() {
+        CalculatorLogic.setJitThreshold(3);
+        CompiledExpression expression = CalculatorLogic.compile("x*(x+1)", "x");
+        for (int i = 0; i < 3; i++) {
+            assertEquals(12.0, expression.evaluate(new double[] {3}));
+            assertFalse(expression.isPromoted());
+        }
+        assertEquals(20.0, expression.evaluate(new double[] {4}));
+        assertTrue(expression.isPromoted());
+        assertEquals(30.0, expression.evaluate(new double[] {5}));
+        assertThrows(IllegalArgumentException.class, () -> expression.evaluate(new double[0]));
+    }
+
+    @Test
+    void testDisabledPromotion() {
+        CompiledExpression expression = interpreted("1+1");
+        for (int i = 0; i < 100; i++) {
+            expression.evaluate();
+        }
+        assertFalse(expression.isPromoted());
+    }
+
+    @Test
+    void testLargeExpressionStaysInterpreted() {
+        StringBuilder sb = new StringBuilder("1");
+        for (int i = 0; i < BytecodeCompiler.MAX_CODE_BYTES; i++) {
+            sb.append("+x");
+        }
+        CompiledExpression expression = interpreted(sb.toString(), "x");
+        assertNull(BytecodeCompiler.compile(expression));
+        assertNull(expression.promote());
+        assertEquals(BytecodeCompiler.MAX_CODE_BYTES + 1.0, expression.evaluate(new double[] {1}));
+    }
+}
@@ -0,0 +1,134 @@
+package my.calculator.core;
+
+import java.math.MathContext;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+
+class CalculatorEngineTest {
+
+    private static final CalculatorEngine RADIANS = CalculatorEngine.builder().angleUnit(AngleUnit.RADIANS).build();
+
+    @AfterEach
+    void resetDefaultEngine() {
+        CalculatorLogic.setDefaultEngine(CalculatorEngine.builder().build());
+    }
+
+    @Test
+    void testAngleUnits() {
+        CalculatorEngine degrees = CalculatorEngine.builder().build();
+        assertEquals("1", RADIANS.calculate("sin(π/2)"));
+        assertEquals("-1", RADIANS.calculate("cos(π)"));
+        assertEquals("1.5574077247", RADIANS.calculate("tan(1)"));
+        assertEquals("1.5707963268", RADIANS.calculate("asin(1)"));
+        assertEquals("3.1415926536", RADIANS.calculate("acos(-1)"));
+        assertEquals("0.7853981634", RADIANS.calculate("atan(1)"));
+        assertEquals("1", degrees.calculate("sin(90)"));
+        assertEquals("90", degrees.calculate("asin(1)"));
+
+        IllegalArgumentException e = assertThrows(IllegalArgumentException.class, () -> RADIANS.calculate("acos(2)"));
+        assertEquals("Domain definition of acos is (-1, 1)", e.getMessage());
+    }
+
+    @Test
+    void testRadiansWithVariables() {
+        CompiledExpression interpreted = RADIANS.toBuilder().jitThreshold(-1).optimizationEnabled(false).build()
+                .compile("sin(x)+cos(x)", "x");
+        CompiledExpression translated = RADIANS.toBuilder().jitThreshold(0).build().compile("sin(x)+cos(x)", "x");
+        for (double x = -3; x <= 3; x += 0.25) {
+            double expected = Math.sin(x) + Math.cos(x);
+            assertEquals(expected, interpreted.evaluate(new double[] {x}), 1e-12);
+            assertEquals(expected, translated.evaluate(new double[] {x}), 1e-12);
+        }
+    }
+
+    @Test
+    void testRadiansWithArbitraryPrecision() {
+        MathContext mc = new MathContext(30);
+        assertEquals("0.84147098480789650665250232163", RADIANS.calculate("sin(1)", mc));
+        assertEquals("1.57079632679489661923132169164", RADIANS.calculate("asin(1)", mc));
+        assertEquals("0.5", CalculatorEngine.builder().build().calculate("sin(30)", mc));
+    }
+
+    @Test
+    void testFractionDigits() {
+        CalculatorEngine engine = CalculatorEngine.builder().fractionDigits(3).build();
+        assertEquals("0.333", engine.calculate("1/3"));
+        assertEquals("0.667", engine.calculate("2/3"));
+        assertEquals("1", engine.calculate("0.9999"));
+        assertEquals("0.3333333333", CalculatorEngine.builder().build().calculate("1/3"));
+        assertThrows(IllegalArgumentException.class, () -> CalculatorEngine.builder().fractionDigits(-1));
+    }
+
+    @Test
+    void testToBuilderLeavesEngineUnchanged() {
+        ResultCache cache = new ResultCache();
+        CalculatorEngine engine = CalculatorEngine.builder().resultCache(cache).build();
+        CalculatorEngine copy = engine.toBuilder().angleUnit(AngleUnit.RADIANS).resultCache(null).build();
+        assertEquals(AngleUnit.DEGREES, engine.getAngleUnit());
+        assertSame(cache, engine.getResultCache());
+        assertEquals(AngleUnit.RADIANS, copy.getAngleUnit());
+        assertNull(copy.getResultCache());
+        assertEquals(engine.getFractionDigits(), copy.getFractionDigits());
+    }
+
+    @Test
+    void testSharedCachesKeepSettingsApart() {
+        CalculatorEngine degrees = CalculatorEngine.builder()
+                .expressionCache(new ExpressionCache()).resultCache(new ResultCache()).build();
+        CalculatorEngine radians = degrees.toBuilder().angleUnit(AngleUnit.RADIANS).build();
+        CalculatorEngine fourDigits = degrees.toBuilder().fractionDigits(4).build();
+        assertEquals("1", degrees.calculate("sin(90)"));
+        assertEquals("0.8939966636", radians.calculate("sin(90)"));
+        assertEquals("0.3333333333", degrees.calculate("1/3"));
+        assertEquals("0.3333", fourDigits.calculate("1/3"));
+        assertEquals("1", degrees.calculate("sin(90)"));
+        assertEquals("0.3333333333", degrees.calculate("1/3"));
+
+        assertEquals(1.0, degrees.compile("sin(x)", "x").evaluate(new double[] {90}));
+        assertEquals(Math.sin(90), radians.compile("sin(x)", "x").evaluate(new double[] {90}));
+
+        CalculatorEngine interpreted = degrees.toBuilder().jitThreshold(-1).build();
+        assertSame(interpreted, interpreted.compile("sin(x)", "x").engine());
+        // Engines with the same settings share entries
+        CompiledExpression compiled = degrees.compile("2x", "x");
+        assertSame(compiled, degrees.toBuilder().build().compile("2x", "x"));
+    }
+
+    @Test
+    void testSharedCachesCountEntriesOfOtherSettingsAsMisses() {
+        ExpressionCache expressions = new ExpressionCache();
+        ResultCache results = new ResultCache();
+        CalculatorEngine degrees = CalculatorEngine.builder().expressionCache(expressions).resultCache(results).build();
+        CalculatorEngine radians = degrees.toBuilder().angleUnit(AngleUnit.RADIANS).build();
+        assertEquals("1", degrees.calculate("sin(90)"));
+        assertEquals("0.8939966636", radians.calculate("sin(90)"));
+        assertEquals("1", degrees.calculate("sin(90)"));
+        assertEquals(0, results.getHitCount());
+        assertEquals(3, results.getMissCount());
+        assertEquals(0, expressions.getHitCount());
+        assertEquals(3, expressions.getMissCount());
+
+        degrees.compile("sin(x)", "x");
+        radians.compile("sin(x)", "x");
+        radians.compile("sin(x)", "x");
+        assertEquals(1, expressions.getHitCount());
+        assertEquals(5, expressions.getMissCount());
+    }
+
+    @Test
+    void testDefaultEngine() {
+        CalculatorLogic.setDefaultEngine(RADIANS);
+        assertEquals("1", CalculatorLogic.calculate("sin(π/2)"));
+        CalculatorLogic.setJitThreshold(5);
+        assertEquals(5, CalculatorLogic.getJitThreshold());
+        // Setters keep the other settings of the default engine
+        assertEquals(AngleUnit.RADIANS, CalculatorLogic.getDefaultEngine().getAngleUnit());
+        assertEquals(AngleUnit.DEGREES, CalculatorEngine.builder().build().getAngleUnit());
+        assertThrows(IllegalArgumentException.class, () -> CalculatorLogic.setDefaultEngine(null));
+    }
+}
@@ -1,5 +1,7 @@
 package my.calculator.core;
 
+import java.util.List;
+
 import static org.junit.jupiter.api.Assertions.assertEquals;
 import static org.junit.jupiter.api.Assertions.assertThrows;
 import static org.junit.jupiter.api.Assertions.assertTrue;
@@ -35,4 +37,73 @@ class CalculatorLogicTest {
         assertThrows(ArithmeticException.class, () -> CalculatorLogic.calculate("(-4)!"));
         assertThrows(IllegalArgumentException.class, () -> CalculatorLogic.calculate("asin(2)"));
     }
-}
\ No newline at end of file
+
+    @Test
+    void testCompiledExpressionIsReusable() {
+        CompiledExpression compiled = CalculatorLogic.compile("2*(3+4)-9sin(90)");
+        assertEquals(5.0, compiled.evaluate());
+        assertEquals(5.0, compiled.evaluate());
+        assertEquals("2*(3+4)-9sin(90)", compiled.getExpression());
+    }
+
+    @Test
+    void testCompiledExpressionErrors() {
+        assertThrows(IllegalArgumentException.class, () -> CalculatorLogic.compile("2++2"));
+        assertThrows(IllegalArgumentException.class, () -> CalculatorLogic.compile("sin()"));
+        CompiledExpression divByZero = CalculatorLogic.compile("1/(2-2)");
+        assertThrows(ArithmeticException.class, divByZero::evaluate);
+    }
+
+    @Test
+    void testVariables() {
+        CompiledExpression compiled = CalculatorLogic.compile("3x^2+sin(x)", "x");
+        assertEquals(12.0 + Math.sin(Math.toRadians(2)), compiled.evaluate(new double[] {2}), 1e-12);
+        assertEquals(300.0 + Math.sin(Math.toRadians(10)), compiled.evaluate(new double[] {10}), 1e-12);
+
+        CompiledExpression twoVariables = CalculatorLogic.compile("rate*(1+t)-t", "t", "rate");
+        assertEquals(List.of("t", "rate"), twoVariables.getVariableNames());
+        assertEquals(5.0, twoVariables.evaluate(new double[] {1, 3}));
+        assertEquals(6.0, CalculatorLogic.compile("2x(y)", "x", "y").evaluate(new double[] {1, 3}));
+    }
+
+    @Test
+    void testVariablesStartingWithFunctionNames() {
+        assertEquals(10.0, CalculatorLogic.compile("cost*2", "cost").evaluate(new double[] {5}));
+        assertEquals(7.0, CalculatorLogic.compile("expo+login", "expo", "login").evaluate(new double[] {3, 4}));
+        // The longest name wins, so the function is still found next to a shorter variable
+        assertEquals(1.0, CalculatorLogic.compile("cos(t)+sin(90)t", "t", "cost").evaluate(new double[] {0, 5}),
+                1e-12);
+    }
+
+    @Test
+    void testVariableErrors() {
+        assertThrows(IllegalArgumentException.class, () -> CalculatorLogic.compile("x+y", "x"));
+        assertThrows(IllegalArgumentException.class, () -> CalculatorLogic.compile("sin+1", "sin"));
+        assertThrows(IllegalArgumentException.class, () -> CalculatorLogic.compile("x", "x", "x"));
+        assertThrows(IllegalArgumentException.class, () -> CalculatorLogic.compile("x", "1x"));
+        assertThrows(IllegalArgumentException.class, () -> CalculatorLogic.compile("x", "x").evaluate());
+    }
+
+    @Test
+    void testErrorMessages() {
+        assertEquals("Invalid token at position 2",
+                assertThrows(IllegalArgumentException.class, () -> CalculatorLogic.calculate("1 + #")).getMessage());
+        assertEquals("Invalid input: Consecutive operators",
+                assertThrows(IllegalArgumentException.class, () -> CalculatorLogic.calculate("#1+ +2")).getMessage());
+        assertEquals("Mismatched parentheses",
+                assertThrows(IllegalArgumentException.class, () -> CalculatorLogic.calculate("(2+3")).getMessage());
+        assertEquals("Cannot divide by zero",
+                assertThrows(ArithmeticException.class, () -> CalculatorLogic.calculate("5÷0")).getMessage());
+    }
+
+    @Test
+    void testWhitespaceAndNumbers() {
+        assertEquals("5", CalculatorLogic.calculate(" 2 +\t3 "));
+        assertEquals("12", CalculatorLogic.calculate("1 2"));
+        assertEquals("0.3", CalculatorLogic.calculate("0.1+0.2"));
+        assertEquals("-5", CalculatorLogic.calculate("-5"));
+        assertEquals("100000000000000000000", CalculatorLogic.calculate("100000000000000000000"));
+        assertEquals(0.1, CalculatorLogic.compile("0.1").evaluate());
+        assertEquals(123456789.123456789, CalculatorLogic.compile("123456789.123456789").evaluate());
+    }
+}
@@ -0,0 +1,181 @@
+package my.calculator.core;
+
+import com.sun.management.ThreadMXBean;
+import java.lang.management.ManagementFactory;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.ForkJoinPool;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.junit.jupiter.api.Assumptions.assumeTrue;
+import org.junit.jupiter.api.Test;
+
+class CompiledExpressionTest {
+    @Test
+    void testBatchMatchesPointwiseEvaluation() {
+        CompiledExpression compiled = CalculatorLogic.compile("3x^2+sin(x)/(y+1)-√(y)", "x", "y");
+        int rows = 2 * BatchEvaluator.BLOCK_SIZE + 17;
+        double[] xs = new double[rows];
+        double[] ys = new double[rows];
+        for (int i = 0; i < rows; i++) {
+            xs[i] = i * 0.25 - 100;
+            ys[i] = i % 13;
+        }
+        double[] out = new double[rows];
+        compiled.evaluateBatch(new double[][] {xs, ys}, out);
+
+        double[] expected = new double[rows];
+        for (int i = 0; i < rows; i++) {
+            expected[i] = compiled.evaluate(new double[] {xs[i], ys[i]});
+        }
+        assertArrayEquals(expected, out);
+    }
+
+    @Test
+    void testBatchWithoutVariables() {
+        double[] out = new double[3];
+        CalculatorLogic.compile("2+2").evaluateBatch(new double[0][], out);
+        assertArrayEquals(new double[] {4, 4, 4}, out);
+    }
+
+    @Test
+    void testBatchResultIsTopOfStack() {
+        // "5!x" leaves 5 below the result, which must be ignored like evaluate() does
+        CompiledExpression compiled = CalculatorLogic.compile("5!x", "x");
+        double[] out = new double[2];
+        compiled.evaluateBatch(new double[][] {{2, 3}}, out);
+        assertArrayEquals(new double[] {compiled.evaluate(new double[] {2}), compiled.evaluate(new double[] {3})}, out);
+    }
+
+    @Test
+    void testBatchErrors() {
+        CompiledExpression compiled = CalculatorLogic.compile("1/x", "x");
+        double[] out = new double[4];
+        ArithmeticException e = assertThrows(ArithmeticException.class,
+                () -> compiled.evaluateBatch(new double[][] {{1, 2, 0, 4}}, out));
+        assertEquals("Cannot divide by zero", e.getMessage());
+        assertThrows(IllegalArgumentException.class,
+                () -> compiled.evaluateBatch(new double[][] {{1, 2}}, out));
+        assertThrows(IllegalArgumentException.class,
+                () -> compiled.evaluateBatch(new double[0][], out));
+    }
+
+    @Test
+    void testLenientBatch() {
+        CompiledExpression compiled = CalculatorLogic.compile("1/x+√(x)", "x");
+        int rows = BatchEvaluator.BLOCK_SIZE + 3;
+        double[] xs = new double[rows];
+        for (int i = 0; i < rows; i++) {
+            xs[i] = i - 2;
+        }
+        double[] out = new double[rows];
+        compiled.evaluateBatchLenient(new double[][] {xs}, out);
+
+        // -2, -1 and 0 fail, in the first block only
+        assertTrue(Double.isNaN(out[0]) && Double.isNaN(out[1]) && Double.isNaN(out[2]));
+        for (int i = 3; i < rows; i++) {
+            assertEquals(compiled.evaluate(new double[] {xs[i]}), out[i], "row " + i);
+        }
+        assertThrows(IllegalArgumentException.class,
+                () -> compiled.evaluateBatchLenient(new double[0][], out));
+    }
+
+    @Test
+    void testParallelBatchMatchesSequentialBatch() {
+        CompiledExpression compiled = CalculatorLogic.compile("x^2-3x+ln(x+1)", "x");
+        int rows = 100_003;
+        double[] xs = new double[rows];
+        for (int i = 0; i < rows; i++) {
+            xs[i] = i * 0.01;
+        }
+        double[] sequential = new double[rows];
+        double[] parallel = new double[rows];
+        compiled.evaluateBatch(new double[][] {xs}, sequential);
+        ForkJoinPool pool = new ForkJoinPool(4);
+        try {
+            compiled.evaluateBatchParallel(new double[][] {xs}, parallel, pool, 1000);
+        } finally {
+            pool.shutdown();
+        }
+        assertArrayEquals(sequential, parallel);
+    }
+
+    @Test
+    void testParallelBatchReportsFailedChunks() {
+        CompiledExpression compiled = CalculatorLogic.compile("1/x", "x");
+        double[] xs = new double[100];
+        Arrays.fill(xs, 2);
+        xs[15] = 0;
+        xs[72] = 0;
+        double[] out = new double[100];
+        BatchEvaluationException e = assertThrows(BatchEvaluationException.class,
+                () -> compiled.evaluateBatchParallel(new double[][] {xs}, out, ForkJoinPool.commonPool(), 10));
+
+        List<BatchEvaluationException.ChunkFailure> failures = e.getFailures();
+        assertEquals(2, failures.size());
+        assertEquals(10, failures.get(0).getFromRow());
+        assertEquals(20, failures.get(0).getToRow());
+        assertEquals(70, failures.get(1).getFromRow());
+        assertEquals("Cannot divide by zero", failures.get(1).getError().getMessage());
+        assertEquals(0.5, out[9]);
+        assertTrue(Double.isNaN(out[10]));
+        assertEquals(0.5, out[20]);
+    }
+
+    @Test
+    void testEvaluateDoesNotAllocate() {
+        CompiledExpression compiled = CalculatorEngine.builder().jitThreshold(-1).build()
+                .compile("3x^2+sin(x)/(y+1)-√(y)*ln(x+2)", "x", "y");
+        assertNoAllocation(compiled);
+        assertFalse(compiled.isPromoted());
+    }
+
+    @Test
+    void testBytecodeEvaluateDoesNotAllocate() {
+        CompiledExpression compiled = CalculatorEngine.builder().jitThreshold(0).build()
+                .compile("3x^2+sin(x)/(y+1)-√(y)*ln(x+2)", "x", "y");
+        assertNoAllocation(compiled);
+        assertTrue(compiled.isPromoted());
+    }
+
+    private static void assertNoAllocation(CompiledExpression compiled) {
+        ThreadMXBean threads = (ThreadMXBean) ManagementFactory.getThreadMXBean();
+        assumeTrue(threads.isThreadAllocatedMemorySupported());
+        threads.setThreadAllocatedMemoryEnabled(true);
+
+        double[] variables = {1.5, 2};
+        double sum = 0;
+        for (int i = 0; i < 200_000; i++) {
+            variables[0] = i % 100;
+            sum += compiled.evaluate(variables);
+        }
+
+        int iterations = 100_000;
+        long threadId = Thread.currentThread().getId();
+        long before = threads.getThreadAllocatedBytes(threadId);
+        for (int i = 0; i < iterations; i++) {
+            variables[0] = i % 100;
+            sum += compiled.evaluate(variables);
+        }
+        long allocated = threads.getThreadAllocatedBytes(threadId) - before;
+
+        assertTrue(sum > 0);
+        // The counter itself may allocate a few bytes; anything per call would be megabytes
+        assertTrue(allocated < 1024, "Allocated " + allocated + " bytes in " + iterations + " evaluations");
+    }
+
+    @Test
+    void testNestedEvaluationsDoNotShareStackSlots() {
+        CompiledExpression outer = CalculatorLogic.compile("x*(x+1)", "x");
+        EvaluationStack stack = EvaluationStack.current();
+        int base = stack.reserve(3);
+        stack.values[base] = 42;
+        assertEquals(12.0, outer.evaluate(new double[] {3}));
+        assertEquals(42.0, stack.values[base]);
+        stack.release(base);
+    }
+}
@@ -0,0 +1,126 @@
+package my.calculator.core;
+
+import java.math.BigDecimal;
+import java.math.BigInteger;
+import java.math.MathContext;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import org.junit.jupiter.api.Test;
+
+class DecimalMathTest {
+
+    private static final MathContext DIGITS_100 = new MathContext(100);
+
+    @Test
+    void testLiteralsAreExact() {
+        assertEquals("0.3", CalculatorLogic.calculate("0.1+0.2", MathContext.DECIMAL64));
+        assertEquals("12345678901234568", CalculatorLogic.calculate("12345678901234567+1", MathContext.UNLIMITED));
+        assertEquals("1267650600228229401496703205376", CalculatorLogic.calculate("2^100", MathContext.UNLIMITED));
+        assertEquals("0.3333333333333333333333333333333333", CalculatorLogic.calculate("1/3", MathContext.DECIMAL128));
+        assertEquals("-3", CalculatorLogic.calculate("-5+2", MathContext.DECIMAL64));
+    }
+
+    @Test
+    void testExactPowersAreBounded() {
+        assertEquals(30103, CalculatorLogic.calculate("2^100000", MathContext.UNLIMITED).length());
+        assertEquals("1", CalculatorLogic.calculate("1^999999999", MathContext.UNLIMITED));
+        assertEquals("Result is too large", assertThrows(ArithmeticException.class,
+                () -> CalculatorLogic.calculate("3^999999999", MathContext.UNLIMITED)).getMessage());
+        assertEquals("Result is too small", assertThrows(ArithmeticException.class,
+                () -> CalculatorLogic.calculate("2^(0-999999999)", MathContext.UNLIMITED)).getMessage());
+        // With a limited precision, only the leading digits are computed
+        assertEquals("1.74799901E+477121254", CalculatorLogic.evaluate("3^999999999", new MathContext(9)).toString());
+    }
+
+    @Test
+    void testLargeFactorials() {
+        assertEquals("51090942171709440000", CalculatorLogic.calculate("21!", MathContext.UNLIMITED));
+        String factorial = CalculatorLogic.calculate("1000!", MathContext.UNLIMITED);
+        BigInteger expected = BigInteger.ONE;
+        for (int i = 2; i <= 1000; i++) {
+            expected = expected.multiply(BigInteger.valueOf(i));
+        }
+        assertEquals(expected.toString(), factorial);
+        // Memoized checkpoints must not change later results
+        assertEquals(expected.divide(BigInteger.valueOf(1000)).toString(),
+                CalculatorLogic.calculate("999!", MathContext.UNLIMITED));
+        assertEquals("1.551121004E+25", CalculatorLogic.evaluate("25!", new MathContext(10)).toString());
+    }
+
+    @Test
+    void testTranscendentalFunctions() {
+        // Reference digits from Python's decimal module and published tables
+        assertEquals("3.141592653589793238462643383279502884197169399375105820974944592307816406286208998628034825342117068",
+                CalculatorLogic.evaluate("π", DIGITS_100).toString());
+        assertEquals("2.718281828459045235360287471352662497757247093699959574966967627724076630353547594571382178525166427",
+                CalculatorLogic.evaluate("e", DIGITS_100).toString());
+        assertEquals("0.6931471805599453094172321214581765680755001343602552541206800094933936219696947156058633269964186875",
+                CalculatorLogic.evaluate("ln(2)", DIGITS_100).toString());
+        assertEquals("0.3010299956639811952137388947244930267681898814621085413104274611271081892744245094869272521181861720",
+                CalculatorLogic.evaluate("log(2)", DIGITS_100).toString());
+        assertEquals("3.720075976020835962959695803863118337358892292376781967120613876663290475895815718157118778642281497E-44",
+                CalculatorLogic.evaluate("exp(-100)", DIGITS_100).toString());
+        assertEquals("1.414213562373095048801688724209698078569671875376948073176679737990732478462107038850387534327641573",
+                CalculatorLogic.evaluate("2^0.5", DIGITS_100).toString());
+        assertEquals("0.01745240643728351281941897851631619247225272030713964268361242764059738420392807004200192679102134691",
+                CalculatorLogic.evaluate("sin(1)", DIGITS_100).toString());
+    }
+
+    @Test
+    void testExactAngles() {
+        MathContext mc = MathContext.DECIMAL128;
+        assertEquals("0", CalculatorLogic.calculate("sin(180)", mc));
+        assertEquals("0", CalculatorLogic.calculate("cos(90)", mc));
+        assertEquals("-1", CalculatorLogic.calculate("sin(-90)", mc));
+        assertEquals("0.5", CalculatorLogic.calculate("sin(30)", mc));
+        assertEquals("1", CalculatorLogic.calculate("tan(45)", mc));
+        assertEquals("45", CalculatorLogic.calculate("atan(1)", mc));
+        assertEquals("60", CalculatorLogic.calculate("acos(0.5)", mc));
+        assertEquals("3", CalculatorLogic.calculate("log(1000)", mc));
+    }
+
+    @Test
+    void testAgreesWithDoubleEvaluation() {
+        List<String> expressions = List.of("sin(37)+cos(12)*tan(71)", "asin(0.3)-acos(0.7)+atan(5)", "exp(2.5)-ln(7)",
+                "log(123.456)+√(2)", "10^x(0.5)", "2^0.3+3^(1/3)", "9sin(90)+2π(3)-4e", "7%3+10!/3!");
+        for (String expression : expressions) {
+            double expected = CalculatorLogic.evaluate(expression);
+            double actual = CalculatorLogic.evaluate(expression, MathContext.DECIMAL128).doubleValue();
+            assertTrue(Math.abs(expected - actual) <= 1e-12 * Math.abs(expected), expression + ": " + actual);
+        }
+    }
+
+    @Test
+    void testVariables() {
+        CompiledExpression compiled = CalculatorLogic.compile("x*y+1", "x", "y");
+        BigDecimal result = compiled.evaluate(new BigDecimal[] {new BigDecimal("0.1"), new BigDecimal("0.2")},
+                MathContext.DECIMAL64);
+        assertEquals(new BigDecimal("1.02"), result);
+        assertThrows(IllegalArgumentException.class, () -> compiled.evaluate(MathContext.DECIMAL64));
+    }
+
+    @Test
+    void testErrors() {
+        MathContext mc = MathContext.DECIMAL64;
+        assertEquals("Cannot divide by zero",
+                assertThrows(ArithmeticException.class, () -> CalculatorLogic.evaluate("5/0", mc)).getMessage());
+        assertEquals("Cannot mod by zero",
+                assertThrows(ArithmeticException.class, () -> CalculatorLogic.evaluate("5%0", mc)).getMessage());
+        assertEquals("Domain definition of asin is (-1, 1)",
+                assertThrows(IllegalArgumentException.class, () -> CalculatorLogic.evaluate("asin(2)", mc)).getMessage());
+        assertEquals("ln undefined for non-positive values",
+                assertThrows(ArithmeticException.class, () -> CalculatorLogic.evaluate("ln(0)", mc)).getMessage());
+        assertEquals("Square root of negative number is undefined",
+                assertThrows(ArithmeticException.class, () -> CalculatorLogic.evaluate("√(-1)", mc)).getMessage());
+        assertEquals("Factorial is only defined for non-negative integers",
+                assertThrows(ArithmeticException.class, () -> CalculatorLogic.evaluate("2.5!", mc)).getMessage());
+        assertEquals("Factorial result is too large",
+                assertThrows(ArithmeticException.class, () -> CalculatorLogic.evaluate("10001!", mc)).getMessage());
+        assertEquals("Result is not a real number",
+                assertThrows(ArithmeticException.class, () -> CalculatorLogic.evaluate("(-8)^(1/3)", mc)).getMessage());
+        assertThrows(ArithmeticException.class, () -> CalculatorLogic.evaluate("sin(1)", MathContext.UNLIMITED));
+    }
+}
@@ -0,0 +1,77 @@
+package my.calculator.core;
+
+import java.lang.management.ManagementFactory;
+import javax.management.MBeanServer;
+import javax.management.ObjectName;
+import javax.management.openmbean.CompositeData;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import org.junit.jupiter.api.Test;
+
+class EngineMetricsTest {
+
+    private final EngineMetrics metrics = new EngineMetrics();
+    private final CalculatorEngine engine = CalculatorEngine.builder()
+            .metrics(metrics)
+            .expressionCache(new ExpressionCache())
+            .resultCache(new ResultCache())
+            .build();
+
+    @Test
+    void testCounters() {
+        assertEquals("14", engine.calculate("2+3*4"));
+        assertEquals("14", engine.calculate("2+3*4"));
+        assertThrows(ArithmeticException.class, () -> engine.calculate("1/0"));
+        assertThrows(ArithmeticException.class, () -> engine.calculate("1/0"));
+        assertThrows(IllegalArgumentException.class, () -> engine.calculate("2+"));
+        engine.compile("2+3*4");
+
+        assertEquals(5, metrics.getCalculations());
+        assertEquals(2, metrics.getArithmeticErrors());
+        assertEquals(1, metrics.getInvalidExpressions());
+        assertEquals(2, metrics.getResultCacheHits());
+        assertEquals(3, metrics.getResultCacheMisses());
+        assertEquals(1, metrics.getExpressionCacheHits());
+        assertEquals(3, metrics.getExpressionCacheMisses());
+        assertEquals(5, metrics.getExpressionLengths().getCount());
+        assertEquals(5, metrics.getExpressionLengths().getMax());
+    }
+
+    @Test
+    void testPhases() {
+        CalculatorEngine uncached = engine.toBuilder().expressionCache(null).resultCache(null).build();
+        for (int i = 0; i < 10; i++) {
+            uncached.calculate("sin(30)+2π");
+        }
+        for (EngineMetrics.Phase phase : EngineMetrics.Phase.values()) {
+            assertEquals(10, metrics.getHistogram(phase).getCount(), phase.getLabel());
+        }
+        String dump = metrics.dump();
+        assertTrue(dump.startsWith("calculations=10 invalid=0 arithmetic errors=0"), dump);
+        assertTrue(dump.contains("shunting-yard"), dump);
+
+        // Engines without metrics record nothing
+        CalculatorEngine.builder().build().calculate("1+1");
+        assertEquals(10, metrics.getCalculations());
+    }
+
+    @Test
+    void testJmx() throws Exception {
+        engine.calculate("1+1");
+        ObjectName name = metrics.register("test");
+        try {
+            MBeanServer server = ManagementFactory.getPlatformMBeanServer();
+            assertEquals(1L, server.getAttribute(name, "Calculations"));
+            CompositeData evaluate = (CompositeData) server.getAttribute(name, "Evaluate");
+            assertEquals(1L, evaluate.get("count"));
+            assertTrue(((String) server.invoke(name, "dump", null, null)).contains("evaluate"));
+            assertThrows(IllegalArgumentException.class, () -> metrics.register("test"));
+        } finally {
+            EngineMetrics.unregister(name);
+        }
+        assertFalse(ManagementFactory.getPlatformMBeanServer().isRegistered(name));
+    }
+}
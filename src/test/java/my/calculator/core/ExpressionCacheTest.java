@@ -0,0 +1,72 @@
+package my.calculator.core;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotSame;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+
+class ExpressionCacheTest {
+    @AfterEach
+    void disableCache() {
+        CalculatorLogic.setExpressionCache(null);
+    }
+
+    @Test
+    void testRepeatedExpressionsAreCompiledOnce() {
+        ExpressionCache cache = new ExpressionCache();
+        CalculatorLogic.setExpressionCache(cache);
+
+        CompiledExpression first = CalculatorLogic.compile("2*x+1", "x");
+        assertSame(first, CalculatorLogic.compile("2*x+1", "x"));
+        assertNotSame(first, CalculatorLogic.compile("2*x+1", "x", "y"));
+        assertEquals("7", CalculatorLogic.calculate("3+4"));
+        assertEquals("7", CalculatorLogic.calculate("3+4"));
+
+        assertEquals(2, cache.getHitCount());
+        assertEquals(3, cache.getMissCount());
+        assertEquals(3, cache.size());
+    }
+
+    @Test
+    void testInvalidExpressionsAreNotCached() {
+        ExpressionCache cache = new ExpressionCache();
+        CalculatorLogic.setExpressionCache(cache);
+        assertThrows(IllegalArgumentException.class, () -> CalculatorLogic.calculate("2++2"));
+        assertEquals(0, cache.size());
+    }
+
+    @Test
+    void testLeastRecentlyUsedIsEvicted() {
+        ExpressionCache cache = new ExpressionCache(1, ExpressionCache.DEFAULT_MAX_BYTES);
+        CalculatorLogic.setExpressionCache(cache);
+        CalculatorLogic.compile("1+1");
+        CalculatorLogic.compile("2+2");
+        assertEquals(1, cache.size());
+        assertEquals(1, cache.getEvictionCount());
+        assertNull(cache.get("1+1"));
+    }
+
+    @Test
+    void testEntryBoundIsNotExceeded() {
+        ExpressionCache cache = new ExpressionCache(17, ExpressionCache.DEFAULT_MAX_BYTES);
+        CompiledExpression compiled = CalculatorLogic.compile("1+1");
+        for (int i = 0; i < 1000; i++) {
+            cache.put("k" + i, compiled);
+            assertTrue(cache.size() <= 17);
+        }
+    }
+
+    @Test
+    void testMemoryBound() {
+        ExpressionCache cache = new ExpressionCache(1000, 10_000);
+        for (int i = 0; i < 100; i++) {
+            cache.put("k" + i, CalculatorLogic.compile(i + "+sin(" + i + ")"));
+        }
+        assertTrue(cache.getEstimatedBytes() <= 10_000);
+        assertTrue(cache.getEvictionCount() > 0);
+    }
+}
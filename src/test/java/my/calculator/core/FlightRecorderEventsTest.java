@@ -0,0 +1,82 @@
+package my.calculator.core;
+
+import java.io.IOException;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import jdk.jfr.Recording;
+import jdk.jfr.consumer.RecordedEvent;
+import jdk.jfr.consumer.RecordingFile;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+class FlightRecorderEventsTest {
+
+    @TempDir
+    Path directory;
+
+    private final CalculatorEngine engine = CalculatorEngine.builder().build();
+
+    private List<RecordedEvent> record(Duration threshold, Runnable calculations) throws IOException {
+        Path file = directory.resolve("recording.jfr");
+        try (Recording recording = new Recording()) {
+            if (threshold == null) {
+                recording.enable(ParseEvent.NAME);
+                recording.enable(EvaluateEvent.NAME);
+            } else {
+                recording.enable(ParseEvent.NAME).withThreshold(threshold);
+                recording.enable(EvaluateEvent.NAME).withThreshold(threshold);
+            }
+            recording.start();
+            calculations.run();
+            recording.stop();
+            recording.dump(file);
+        }
+        return RecordingFile.readAllEvents(file);
+    }
+
+    @Test
+    void testEvents() throws IOException {
+        List<RecordedEvent> events = record(Duration.ZERO, () -> {
+            engine.calculate("2+3*4");
+            assertThrows(ArithmeticException.class, () -> engine.calculate("1/0"));
+            assertThrows(IllegalArgumentException.class, () -> engine.calculate("2+"));
+        });
+        List<String> recorded = new ArrayList<>();
+        for (RecordedEvent event : events) {
+            recorded.add(event.getEventType().getName() + " " + event.getInt("expressionLength")
+                    + " " + event.getString("outcome"));
+        }
+        assertEquals(List.of(
+                ParseEvent.NAME + " 5 ok", EvaluateEvent.NAME + " 5 ok",
+                ParseEvent.NAME + " 3 ok", EvaluateEvent.NAME + " 3 ArithmeticException",
+                ParseEvent.NAME + " 2 IllegalArgumentException"), recorded);
+
+        RecordedEvent parse = events.get(0);
+        assertEquals("2+3*4".hashCode(), parse.getInt("expressionHash"));
+        assertEquals(5, parse.getInt("tokenCount"));
+        assertTrue(events.get(1).getInt("programSize") > 0);
+    }
+
+    @Test
+    void testThreshold() throws IOException {
+        for (int i = 0; i < 1000; i++) {
+            engine.calculate("2*" + i);
+        }
+        // Only the calculations slower than the default threshold are recorded, if any
+        List<RecordedEvent> events = record(null, () -> {
+            for (int i = 0; i < 1000; i++) {
+                engine.calculate("1+" + i);
+            }
+        });
+        assertTrue(events.size() < 100, events.size() + " events");
+        for (RecordedEvent event : events) {
+            assertTrue(event.getDuration().compareTo(Duration.ofMillis(1)) >= 0, event.toString());
+        }
+    }
+}
@@ -0,0 +1,133 @@
+package my.calculator.core;
+
+import java.math.MathContext;
+import java.util.Arrays;
+import java.util.Set;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+class FunctionRegistryTest {
+
+    private FunctionRegistry registry;
+    private CalculatorEngine engine;
+
+    @BeforeEach
+    void createEngine() {
+        registry = new FunctionRegistry();
+        registry.defineVariadicFunction("max", 1, args -> Arrays.stream(args).max().getAsDouble());
+        registry.defineFunction("clamp", 3, args -> Math.max(args[1], Math.min(args[2], args[0])));
+        registry.defineFunction("two", 0, args -> 2);
+        registry.defineConstant("g", 9.80665);
+        engine = CalculatorEngine.builder().registry(registry).build();
+    }
+
+    @Test
+    void testCalls() {
+        assertEquals("3", engine.calculate("max(1, 3, 2)"));
+        assertEquals("10", engine.calculate("clamp(max(1, 2g, 3), 0, 10)"));
+        assertEquals("-1", engine.calculate("max(-1,-2)"));
+        assertEquals("7", engine.calculate("max(2+3*(1+1)/2, 1) + two()"));
+        assertEquals("19.6133", engine.calculate("2g"));
+        assertEquals("12", engine.calculate("3max(1,2)(1+1)"));
+        assertEquals("1", engine.calculate("sin(max(30, 90))"));
+    }
+
+    @Test
+    void testInvalidCalls() {
+        assertEquals("Function clamp expects 3 arguments but got 2",
+                assertThrows(IllegalArgumentException.class, () -> engine.calculate("clamp(1,2)")).getMessage());
+        assertEquals("Function max expects at least 1 argument but got 0",
+                assertThrows(IllegalArgumentException.class, () -> engine.calculate("max()")).getMessage());
+        assertEquals("Function sin expects 1 argument but got 2",
+                assertThrows(IllegalArgumentException.class, () -> engine.calculate("sin(1,2)")).getMessage());
+        assertEquals("Misplaced comma at position 2",
+                assertThrows(IllegalArgumentException.class, () -> engine.calculate("(1,2)")).getMessage());
+        assertEquals("Misplaced comma at position 1",
+                assertThrows(IllegalArgumentException.class, () -> engine.calculate("1,2")).getMessage());
+        assertEquals("Missing argument at position 6",
+                assertThrows(IllegalArgumentException.class, () -> engine.calculate("max(1,)")).getMessage());
+        assertEquals("Missing argument at position 4",
+                assertThrows(IllegalArgumentException.class, () -> engine.calculate("max(,1)")).getMessage());
+        // Without a registry the names are unknown
+        assertThrows(IllegalArgumentException.class, () -> CalculatorLogic.calculate("max(1,2)"));
+    }
+
+    @Test
+    void testDefinitions() {
+        assertThrows(IllegalArgumentException.class, () -> registry.defineConstant("sin", 1));
+        assertThrows(IllegalArgumentException.class, () -> registry.defineConstant("π", 1));
+        assertThrows(IllegalArgumentException.class, () -> registry.defineConstant("max", 1));
+        assertThrows(IllegalArgumentException.class, () -> registry.defineFunction("g", 1, args -> 0));
+        assertThrows(IllegalArgumentException.class, () -> registry.defineFunction("2x", 1, args -> 0));
+        assertThrows(IllegalArgumentException.class, () -> engine.compile("x+1", "g"));
+        assertEquals(Set.of("clamp", "max", "two"), registry.getFunctionNames());
+        assertEquals(Set.of("g"), registry.getConstantNames());
+        assertTrue(engine.isFunction("max"));
+        assertTrue(engine.isFunction("√"));
+        assertFalse(engine.isFunction("g"));
+
+        // A built-in function or a variable with a longer name takes precedence
+        registry.defineConstant("a", 2);
+        assertEquals("90", engine.calculate("asin(1)"));
+        assertEquals("4", engine.calculate("2a"));
+        assertEquals(10.0, engine.compile("a*ab", "ab").evaluate(new double[] {5}));
+    }
+
+    @Test
+    void testChangesApplyToCachedExpressions() {
+        CalculatorEngine cached = engine.toBuilder()
+                .expressionCache(new ExpressionCache())
+                .resultCache(new ResultCache())
+                .build();
+        assertEquals("19.6133", cached.calculate("2g"));
+        CompiledExpression compiled = cached.compile("g*x", "x");
+        registry.defineConstant("g", 10);
+        assertEquals("20", cached.calculate("2g"));
+        assertEquals(20.0, cached.compile("g*x", "x").evaluate(new double[] {2}));
+        // Expressions already compiled keep their definitions
+        assertEquals(9.80665 * 2, compiled.evaluate(new double[] {2}));
+
+        assertTrue(registry.remove("g"));
+        assertFalse(registry.remove("g"));
+        assertThrows(IllegalArgumentException.class, () -> cached.calculate("2g"));
+    }
+
+    @Test
+    void testCallsAreNotMemoized() {
+        int[] count = {0};
+        registry.defineFunction("next", 0, args -> ++count[0]);
+        registry.defineFunction("fail", 0, args -> {
+            throw new ArithmeticException("Failure " + ++count[0]);
+        });
+        ResultCache cache = new ResultCache();
+        CalculatorEngine cached = engine.toBuilder().resultCache(cache).build();
+        assertEquals("1", cached.calculate("next()"));
+        assertEquals("2", cached.calculate("next()"));
+        assertEquals("Failure 3", assertThrows(ArithmeticException.class, () -> cached.calculate("fail()")).getMessage());
+        assertEquals("Failure 4", assertThrows(ArithmeticException.class, () -> cached.calculate("fail()")).getMessage());
+        assertEquals("19.6133", cached.calculate("2g"));
+        assertEquals(1, cache.size());
+        assertEquals(0, cache.getHitCount());
+    }
+
+    @Test
+    void testEvaluationModes() {
+        CompiledExpression compiled = engine.toBuilder().jitThreshold(0).build().compile("max(x, 2x, 1) + x", "x");
+        assertEquals(3.0, compiled.evaluate(new double[] {1}));
+        assertEquals(0.5, compiled.evaluate(new double[] {-0.5}));
+
+        double[] out = new double[3];
+        compiled.evaluateBatch(new double[][] {{1, -0.5, 2}}, out);
+        assertArrayEquals(new double[] {3, 0.5, 6}, out);
+
+        assertEquals("19.6133", engine.calculate("max(1, 2g)", new MathContext(20)));
+        assertEquals("call max/3", compiled.disassemble().lines().filter(line -> line.startsWith("call"))
+                .findFirst().orElse(""));
+    }
+}
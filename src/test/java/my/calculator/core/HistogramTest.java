@@ -0,0 +1,55 @@
+package my.calculator.core;
+
+import java.util.Random;
+import java.util.stream.IntStream;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import org.junit.jupiter.api.Test;
+
+class HistogramTest {
+
+    @Test
+    void testBuckets() {
+        Random random = new Random(7);
+        for (int i = 0; i < 100_000; i++) {
+            long value = (random.nextLong() >>> 1) >>> random.nextInt(63);
+            int index = Histogram.index(value);
+            long highest = Histogram.highestEquivalentValue(index);
+            assertTrue(highest >= value, "bucket of " + value);
+            assertEquals(index, Histogram.index(highest), "bucket of " + value);
+            // Relative width of a bucket is at most 1/32
+            assertTrue(highest - value <= value / 32, "precision for " + value);
+        }
+        assertEquals(Histogram.index(Long.MAX_VALUE), Histogram.index(Histogram.highestEquivalentValue(Histogram.index(Long.MAX_VALUE))));
+    }
+
+    @Test
+    void testPercentiles() {
+        Histogram histogram = new Histogram();
+        assertEquals(0, histogram.getPercentile(99));
+        for (int value = 1; value <= 100_000; value++) {
+            histogram.record(value);
+        }
+        assertEquals(100_000, histogram.getCount());
+        assertEquals(50_000.5, histogram.getMean());
+        assertEquals(100_000, histogram.getMax());
+        assertEquals(100_000, histogram.getPercentile(100));
+        assertEquals(1, histogram.getPercentile(0));
+        long median = histogram.getPercentile(50);
+        assertTrue(median >= 50_000 && median <= 50_000 * 33 / 32, "median " + median);
+        long p99 = histogram.getPercentile(99);
+        assertTrue(p99 >= 99_000 && p99 <= 99_000 * 33 / 32, "p99 " + p99);
+        assertThrows(IllegalArgumentException.class, () -> histogram.getPercentile(101));
+    }
+
+    @Test
+    void testConcurrentRecording() {
+        Histogram histogram = new Histogram();
+        IntStream.range(0, 1_000_000).parallel().forEach(i -> histogram.record(i % 1000));
+        assertEquals(1_000_000, histogram.getCount());
+        assertEquals(999, histogram.getMax());
+        assertEquals(499.5, histogram.getMean());
+    }
+}
@@ -0,0 +1,115 @@
+package my.calculator.core;
+
+import java.util.Arrays;
+import java.util.Random;
+import java.util.function.DoubleSupplier;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import org.junit.jupiter.api.Test;
+
+class IncrementalCompilerTest {
+
+    private static final String[] PIECES = {
+        "1", "2", "0", "9", "3.5", ".", "π", "e", "sin", "cos", "asin", "exp", "ln", "log", "√", "10^x",
+        "+", "-", "*", "/", "%", "^", "!", "(", ")", " ", "g", "max", ",", "a"
+    };
+
+    private final CalculatorEngine engine = CalculatorEngine.builder().build();
+
+    @Test
+    void testTypingReusesTokens() {
+        IncrementalCompiler compiler = new IncrementalCompiler(engine);
+        StringBuilder text = new StringBuilder();
+        for (int i = 0; i < 20; i++) {
+            text.append("sin(30)+");
+        }
+        compiler.compile(text + "1", 0);
+        assertEquals(0, compiler.getReusedTokens());
+        assertEquals("22", engine.format(compiler.compile(text + "12", text.length() + 1).evaluate()));
+        assertTrue(compiler.getReusedTokens() > 70);
+
+        // An edit at the start cannot reuse anything
+        compiler.compile("2" + text + "12", 0);
+        assertEquals(0, compiler.getReusedTokens());
+    }
+
+    @Test
+    void testWrongOffsetIsDetected() {
+        IncrementalCompiler compiler = new IncrementalCompiler(engine);
+        compiler.compile("1+2+3+4+5+6+7", 0);
+        assertEquals(36.0, compiler.compile("9+2+3+4+5+6+7", 12).evaluate());
+        assertEquals(0, compiler.getReusedTokens());
+
+        // A change right after the tokens that would be kept
+        compiler.compile("12+3+4+5+6+7+8", 0);
+        assertEquals(639.0, compiler.compile("12+3+4+5+607+8", 14).evaluate());
+    }
+
+    @Test
+    void testSameResultsAsFullCompilation() {
+        FunctionRegistry registry = new FunctionRegistry();
+        registry.defineVariadicFunction("max", 1, args -> Math.max(args[0], args[args.length - 1]));
+        registry.defineConstant("g", 9.80665);
+        assertSameResultsAsFullCompilation(CalculatorEngine.builder().registry(registry).build(), PIECES);
+    }
+
+    @Test
+    void testSameResultsWithVariables() {
+        String[] pieces = Arrays.copyOf(PIECES, PIECES.length + 3);
+        pieces[PIECES.length] = "cost";
+        pieces[PIECES.length + 1] = "t";
+        pieces[PIECES.length + 2] = "ab";
+        assertSameResultsAsFullCompilation(engine, pieces, "cost", "t", "ab", "a");
+    }
+
+    /**
+     * Edits a text at random and checks that each version compiles incrementally to the same
+     * result as from scratch.
+     */
+    private static void assertSameResultsAsFullCompilation(CalculatorEngine engine, String[] pieces,
+                                                           String... variables) {
+        IncrementalCompiler compiler = new IncrementalCompiler(engine);
+        double[] values = new double[variables.length];
+        for (int i = 0; i < values.length; i++) {
+            values[i] = i + 1.5;
+        }
+        Random random = new Random(42);
+        StringBuilder text = new StringBuilder();
+        for (int i = 0; i < 20_000; i++) {
+            int offset;
+            if (text.length() > 0 && random.nextInt(4) == 0) {
+                offset = random.nextInt(text.length());
+                text.delete(offset, Math.min(text.length(), offset + 1 + random.nextInt(3)));
+            } else {
+                // Mostly typing at the end, sometimes in the middle
+                offset = (random.nextInt(5) == 0) ? random.nextInt(text.length() + 1) : text.length();
+                text.insert(offset, pieces[random.nextInt(pieces.length)]);
+            }
+            if (text.length() > 60) {
+                text.setLength(0);
+                offset = 0;
+            }
+            String input = text.toString();
+            int edit = offset;
+            assertEquals(outcome(() -> engine.compile(input, variables).evaluate(values)),
+                    outcome(() -> compiler.compile(input, edit, variables).evaluate(values)), input);
+        }
+    }
+
+    @Test
+    void testEmptyInput() {
+        IncrementalCompiler compiler = new IncrementalCompiler(engine);
+        assertThrows(IllegalArgumentException.class, () -> compiler.compile(" ", 0));
+        assertEquals(3.0, compiler.compile("1+2", 0).evaluate());
+    }
+
+    private static String outcome(DoubleSupplier evaluation) {
+        try {
+            return Double.toString(evaluation.getAsDouble());
+        } catch (ArithmeticException | IllegalArgumentException e) {
+            return e.getClass().getSimpleName() + ": " + e.getMessage();
+        }
+    }
+}
@@ -0,0 +1,151 @@
+package my.calculator.core;
+
+import java.util.List;
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+
+class OptimizerTest {
+
+    private static final String[] FUNCTIONS = {
+        "sin", "cos", "tan", "asin", "acos", "atan", "exp", "ln", "log", "√", "10^x"
+    };
+    private static final String[] OPERATORS = {"+", "-", "*", "/", "%", "^"};
+    private static final String[] ATOMS = {"x", "y", "0", "1", "2", "10", "0.5", "3.25", "π", "e"};
+    private static final double[] VALUES = {0.0, -0.0, 1, -1, 2, 0.5, 10, -3.7, 90, 1e300, Double.NaN};
+
+    @AfterEach
+    void restoreSettings() {
+        CalculatorLogic.setOptimizationEnabled(true);
+        CalculatorLogic.setJitThreshold(CalculatorLogic.DEFAULT_JIT_THRESHOLD);
+    }
+
+    private static CompiledExpression compile(String expression, boolean optimized) {
+        CalculatorLogic.setOptimizationEnabled(optimized);
+        CalculatorLogic.setJitThreshold(-1);
+        return CalculatorLogic.compile(expression, "x", "y");
+    }
+
+    /** Builds a random, well formed expression. */
+    private static String randomExpression(Random random, int depth) {
+        int choice = (depth == 0) ? 0 : random.nextInt(6);
+        return switch (choice) {
+            case 0 -> ATOMS[random.nextInt(ATOMS.length)];
+            case 1 -> FUNCTIONS[random.nextInt(FUNCTIONS.length)] + "(" + randomExpression(random, depth - 1) + ")";
+            case 2 -> "-(" + randomExpression(random, depth - 1) + ")";
+            case 3 -> "(" + randomExpression(random, depth - 1) + ")!";
+            default -> {
+                // Repeat operands now and then, to give common subexpressions
+                String a = randomExpression(random, depth - 1);
+                String b = random.nextInt(4) == 0 ? a : randomExpression(random, depth - 1);
+                yield "(" + a + ")" + OPERATORS[random.nextInt(OPERATORS.length)] + "(" + b + ")";
+            }
+        };
+    }
+
+    private static String outcome(CompiledExpression expression, double[] variables) {
+        try {
+            return Long.toHexString(Double.doubleToRawLongBits(expression.evaluate(variables)));
+        } catch (ArithmeticException | IllegalArgumentException e) {
+            return e.getClass().getSimpleName() + ": " + e.getMessage();
+        }
+    }
+
+    private static String bytecodeOutcome(CompiledFunction function, double[] variables) {
+        try {
+            return Long.toHexString(Double.doubleToRawLongBits(function.apply(variables)));
+        } catch (ArithmeticException | IllegalArgumentException e) {
+            return e.getClass().getSimpleName() + ": " + e.getMessage();
+        }
+    }
+
+    @Test
+    void testSameResultsAsUnoptimized() {
+        Random random = new Random(12);
+        for (int i = 0; i < 5_000; i++) {
+            String source = randomExpression(random, 1 + random.nextInt(4));
+            CompiledExpression plain = compile(source, false);
+            CompiledExpression optimized = compile(source, true);
+            CompiledFunction bytecode = BytecodeCompiler.compile(optimized);
+            assertNotNull(bytecode, source);
+            for (double x : VALUES) {
+                double[] variables = {x, random.nextGaussian() * 100};
+                String expected = outcome(plain, variables);
+                assertEquals(expected, outcome(optimized, variables), source + " with " + x);
+                assertEquals(expected, bytecodeOutcome(bytecode, variables), source + " with " + x);
+            }
+        }
+    }
+
+    @Test
+    void testSameBatchResultsAsUnoptimized() {
+        Random random = new Random(34);
+        double[][] columns = new double[2][VALUES.length * 3];
+        for (int i = 0; i < columns[0].length; i++) {
+            columns[0][i] = VALUES[i % VALUES.length];
+            columns[1][i] = random.nextGaussian() * 100;
+        }
+        int compared = 0;
+        while (compared < 1_000) {
+            String source = randomExpression(random, 1 + random.nextInt(4));
+            CompiledExpression plain = compile(source, false);
+            double[] expected = new double[columns[0].length];
+            try {
+                plain.evaluateBatch(columns, expected);
+            } catch (ArithmeticException | IllegalArgumentException e) {
+                continue;
+            }
+            double[] actual = new double[expected.length];
+            compile(source, true).evaluateBatch(columns, actual);
+            for (int row = 0; row < expected.length; row++) {
+                assertEquals(Double.doubleToRawLongBits(expected[row]), Double.doubleToRawLongBits(actual[row]),
+                        source + " at row " + row);
+            }
+            compared++;
+        }
+    }
+
+    @Test
+    void testConstantsAreFolded() {
+        assertEquals(List.of("const 6.283185307179586", "var x", "mul"), listing(compile("2*π*x", true)));
+        // A constant division by zero is left for evaluation to report
+        assertEquals(List.of("const 5.0", "const 0.0", "div", "var x", "mul"), listing(compile("5/0*x", true)));
+    }
+
+    @Test
+    void testSimplifications() {
+        assertEquals(List.of("var x", "neg"), listing(compile("-x", true)));
+        assertEquals(List.of("var x", "square"), listing(compile("x^2", true)));
+        assertEquals(List.of("var x", "tenpow"), listing(compile("10^(x)", true)));
+        assertEquals(List.of("var x"), listing(compile("(x^1)*1/1-0", true)));
+        // -0 is kept apart from 0: "0-x" and "-x" must give +0.0 for x = 0
+        assertEquals("0", CalculatorLogic.formatResult(compile("-x", true).evaluate(new double[2])));
+    }
+
+    @Test
+    void testCommonSubexpressionsAreComputedOnce() {
+        CompiledExpression optimized = compile("(x+1)*(x+1)-sin(x+1)", true);
+        assertEquals(List.of("var x", "const 1.0", "add", "store t0", "load t0", "mul", "load t0", "sin", "sub"),
+                listing(optimized));
+        assertEquals(1, optimized.temps());
+        assertEquals(compile("(x+1)*(x+1)-sin(x+1)", false).evaluate(new double[] {2, 0}),
+                optimized.evaluate(new double[] {2, 0}));
+    }
+
+    @Test
+    void testUnreadValuesStillReportErrors() {
+        // "5/0" is left below the result, which is 2; the division must still fail
+        CompiledExpression optimized = compile("(5/0)!2", true);
+        ArithmeticException e = assertThrows(ArithmeticException.class, () -> optimized.evaluate(new double[2]));
+        assertEquals("Cannot divide by zero", e.getMessage());
+        assertEquals(List.of("const 2.0"), listing(compile("5!2", true)));
+    }
+
+    private static List<String> listing(CompiledExpression expression) {
+        return List.of(expression.disassemble().split("\n"));
+    }
+}
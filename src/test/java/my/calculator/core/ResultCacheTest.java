@@ -0,0 +1,49 @@
+package my.calculator.core;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+
+class ResultCacheTest {
+    @AfterEach
+    void disableCache() {
+        CalculatorLogic.setResultCache(null);
+    }
+
+    @Test
+    void testResultsAreMemoized() {
+        ResultCache cache = new ResultCache();
+        CalculatorLogic.setResultCache(cache);
+        assertEquals("0.3333333333", CalculatorLogic.calculate("1/3"));
+        assertEquals("0.3333333333", CalculatorLogic.calculate("1/3"));
+        assertEquals(1, cache.getHitCount());
+        assertEquals(1, cache.getMissCount());
+    }
+
+    @Test
+    void testErrorsAreMemoized() {
+        ResultCache cache = new ResultCache();
+        CalculatorLogic.setResultCache(cache);
+        for (int i = 0; i < 2; i++) {
+            ArithmeticException e = assertThrows(ArithmeticException.class, () -> CalculatorLogic.calculate("5/0"));
+            assertEquals("Cannot divide by zero", e.getMessage());
+            IllegalArgumentException invalid = assertThrows(IllegalArgumentException.class,
+                    () -> CalculatorLogic.calculate("8++2"));
+            assertEquals("Invalid input: Consecutive operators", invalid.getMessage());
+        }
+        assertEquals(2, cache.getHitCount());
+        assertEquals(2, cache.size());
+    }
+
+    @Test
+    void testCapacity() {
+        ResultCache cache = new ResultCache(2);
+        CalculatorLogic.setResultCache(cache);
+        CalculatorLogic.calculate("1+1");
+        CalculatorLogic.calculate("1+2");
+        CalculatorLogic.calculate("1+3");
+        assertEquals(2, cache.size());
+        assertEquals(1, cache.getEvictionCount());
+    }
+}
@@ -0,0 +1,72 @@
+package my.calculator.core;
+
+import java.math.RoundingMode;
+import java.text.DecimalFormat;
+import java.text.DecimalFormatSymbols;
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import org.junit.jupiter.api.Test;
+
+class ResultFormatterTest {
+
+    /** The formatting the calculator always used, which ResultFormatter must reproduce. */
+    private static String reference(double value) {
+        DecimalFormatSymbols symbols = new DecimalFormatSymbols();
+        symbols.setDecimalSeparator('.');
+        DecimalFormat df = new DecimalFormat("#.##########", symbols);
+        df.setRoundingMode(RoundingMode.HALF_UP);
+        return df.format(value);
+    }
+
+    private static void assertSameAsReference(double value) {
+        assertEquals(reference(value), ResultFormatter.format(value), "format(" + value + ")");
+        assertEquals(reference(value), ResultFormatter.formatTo(value, new StringBuilder()).toString(),
+                "formatTo(" + value + ")");
+    }
+
+    @Test
+    void testSpecialValues() {
+        double[] values = {
+            0.0, -0.0, 1, -1, 0.5, -0.5, Double.NaN, Double.POSITIVE_INFINITY, Double.NEGATIVE_INFINITY,
+            Double.MIN_VALUE, -Double.MIN_VALUE, Double.MAX_VALUE, -Double.MAX_VALUE,
+            1e23, 9007199254740992.0, 9007199254740993.0, 1e-10, 1.5e-10, 5e-11, 4.9e-11, -5e-11,
+            0.1 + 0.2, 1.0 / 3, 2.0 / 3, 9.99999999995, 9.99999999994, 0.00000000005, 123456789.123456789
+        };
+        for (double value : values) {
+            assertSameAsReference(value);
+        }
+    }
+
+    @Test
+    void testTies() {
+        // Values whose shortest representation ends with a 5 just past the tenth fraction digit
+        for (long i = 0; i < 10_000; i++) {
+            double value = (i * 10 + 5) / 1e11;
+            assertSameAsReference(value);
+            assertSameAsReference(-value);
+            assertSameAsReference(value + i);
+        }
+    }
+
+    @Test
+    void testRandomValues() {
+        Random random = new Random(42);
+        for (int i = 0; i < 200_000; i++) {
+            double value = switch (i % 4) {
+                case 0 -> random.nextDouble();
+                case 1 -> (random.nextDouble() - 0.5) * Math.pow(10, random.nextInt(40) - 20);
+                case 2 -> random.nextInt(100_000) / Math.pow(10, random.nextInt(12));
+                default -> Double.longBitsToDouble(random.nextLong());
+            };
+            assertSameAsReference(value);
+        }
+    }
+
+    @Test
+    void testCalculatorResults() {
+        assertEquals(1.0, CalculatorLogic.evaluate("sin(90)"));
+        assertEquals("0.3333333333", CalculatorLogic.calculate("1/3"));
+        assertEquals(reference(CalculatorLogic.evaluate("exp(2)-atan(1)")), CalculatorLogic.calculate("exp(2)-atan(1)"));
+    }
+}
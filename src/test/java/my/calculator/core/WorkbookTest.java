@@ -0,0 +1,132 @@
+package my.calculator.core;
+
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ForkJoinPool;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import org.junit.jupiter.api.Test;
+
+class WorkbookTest {
+
+    private final Workbook workbook = new Workbook(CalculatorEngine.builder().build());
+
+    @Test
+    void testAssignments() {
+        assertEquals("3", workbook.evaluate("a = 3"));
+        assertEquals("6", workbook.evaluate("b = a*2"));
+        assertEquals("3.1045284633", workbook.evaluate("c = sin(b)+a"));
+        assertEquals("15", workbook.evaluate("a=15"));
+        assertEquals(30.0, workbook.getValue("b"));
+        assertEquals(15.5, workbook.getValue("c"));
+        assertEquals("31", workbook.evaluate("c*2"));
+        assertEquals("45", workbook.evaluate("2a + a"));
+        assertEquals("sin(b)+a", workbook.getExpression("c"));
+        assertEquals(Set.of("a", "b"), workbook.getDependencies("c"));
+        assertEquals(List.of("a", "b", "c"), List.copyOf(workbook.getNames()));
+
+        assertEquals("5", workbook.evaluate("cost = 5"));
+        assertEquals("6", workbook.evaluate("total = cost + 1"));
+        assertEquals("10", workbook.evaluate("cost*2"));
+    }
+
+    @Test
+    void testExpressionsWithoutCellsAreCalculated() {
+        ResultCache cache = new ResultCache();
+        Workbook cached = new Workbook(CalculatorEngine.builder().resultCache(cache).build());
+        assertEquals("0.3333333333", cached.evaluate("1/3"));
+        cached.evaluate("a = 3");
+        assertEquals("0.3333333333", cached.evaluate("1/3"));
+        assertEquals("1", cached.evaluate("a/3"));
+        assertEquals(1, cache.getHitCount());
+    }
+
+    @Test
+    void testSnapshot() {
+        workbook.set("a", "2");
+        workbook.set("b", "1/(a-2)");
+        Workbook.Snapshot snapshot = workbook.snapshot();
+        assertArrayEquals(new String[] {"a", "b"}, snapshot.getNames());
+        CompiledExpression compiled = workbook.getEngine().compile("x*a", "x", "a", "b");
+        assertArrayEquals(new double[] {0, 2, 0}, snapshot.bind(compiled, 1));
+        assertThrows(ArithmeticException.class,
+                () -> snapshot.bind(workbook.getEngine().compile("x*b", "x", "a", "b"), 1));
+        assertThrows(IllegalArgumentException.class,
+                () -> snapshot.bind(workbook.getEngine().compile("c", "c"), 0));
+
+        assertEquals(snapshot.getVersion(), workbook.snapshot().getVersion());
+        workbook.set("a", "3");
+        assertTrue(workbook.snapshot().getVersion() > snapshot.getVersion());
+    }
+
+    @Test
+    void testOnlyDependentsAreRecomputed() {
+        workbook.set("a", "1");
+        workbook.set("b", "a+1");
+        workbook.set("c", "b+1");
+        workbook.set("x", "10");
+        workbook.set("y", "x*2");
+        workbook.set("d", "a+c");
+        workbook.set("b", "a+5");
+        assertEquals(3, workbook.getRecomputed());
+        assertEquals(8.0, workbook.getValue("d"));
+        workbook.set("x", "1");
+        assertEquals(2, workbook.getRecomputed());
+        assertEquals(2.0, workbook.getValue("y"));
+    }
+
+    @Test
+    void testCycles() {
+        workbook.set("a", "1");
+        workbook.set("b", "a*2");
+        workbook.set("c", "b+1");
+        assertEquals("Circular reference: a -> c -> b -> a",
+                assertThrows(IllegalArgumentException.class, () -> workbook.set("a", "c")).getMessage());
+        assertEquals("Circular reference: d -> d",
+                assertThrows(IllegalArgumentException.class, () -> workbook.set("d", "d+1")).getMessage());
+        // Rejected definitions change nothing
+        assertEquals(3.0, workbook.getValue("c"));
+        assertEquals(Set.of("a", "b", "c"), workbook.getNames());
+    }
+
+    @Test
+    void testErrors() {
+        workbook.set("a", "0");
+        workbook.set("b", "1/a");
+        workbook.set("c", "b+1");
+        assertEquals("Cannot divide by zero", assertThrows(ArithmeticException.class, () -> workbook.getValue("c")).getMessage());
+        assertThrows(ArithmeticException.class, () -> workbook.evaluate("c*2"));
+        assertEquals("1", workbook.evaluate("a+1"));
+        workbook.set("a", "4");
+        assertEquals(1.25, workbook.getValue("c"));
+
+        assertThrows(IllegalArgumentException.class, () -> workbook.set("d", "unknown+1"));
+        assertThrows(IllegalArgumentException.class, () -> workbook.set("sin", "1"));
+        assertThrows(IllegalArgumentException.class, () -> workbook.getValue("d"));
+        assertEquals("Cell b is used by c",
+                assertThrows(IllegalArgumentException.class, () -> workbook.remove("b")).getMessage());
+        assertTrue(workbook.remove("c"));
+        assertTrue(workbook.remove("b"));
+        assertFalse(workbook.remove("b"));
+    }
+
+    @Test
+    void testParallelLayers() {
+        int width = 2 * Workbook.PARALLEL_THRESHOLD;
+        Workbook wide = new Workbook(CalculatorEngine.builder().build(), new ForkJoinPool(4));
+        wide.set("x", "1");
+        StringBuilder sum = new StringBuilder("0");
+        for (int i = 0; i < width; i++) {
+            wide.set("c" + i, "x*" + i);
+            sum.append("+c").append(i);
+        }
+        wide.set("total", sum.toString());
+        wide.set("x", "2");
+        assertEquals(width + 2, wide.getRecomputed());
+        assertEquals((double) width * (width - 1), wide.getValue("total"));
+    }
+}
@@ -0,0 +1,174 @@
+package my.calculator.history;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTimeoutPreemptively;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+class HistoryStoreTest {
+
+    @TempDir
+    Path directory;
+
+    @Test
+    void testRingRetention() {
+        HistoryStore history = HistoryStore.inMemory(3);
+        for (int i = 1; i <= 5; i++) {
+            history.append(i + "+" + i);
+        }
+        assertEquals(List.of("3+3", "4+4", "5+5"), entries(history));
+        assertThrows(IndexOutOfBoundsException.class, () -> history.get(3));
+        assertThrows(IllegalArgumentException.class, () -> HistoryStore.inMemory(0));
+    }
+
+    @Test
+    void testSearch() {
+        HistoryStore history = HistoryStore.inMemory(5);
+        history.append("sin(30)");
+        history.append("1+2");
+        history.append("sin(90)");
+        history.append("sin(30)");
+        assertEquals(List.of("sin(30)", "sin(90)"), history.search("sin", 10));
+        assertEquals(List.of("sin(30)"), history.search("sin", 1));
+        assertEquals(List.of("sin(30)", "sin(90)", "1+2"), history.search("", 10));
+        assertEquals(List.of(), history.search("cos", 10));
+
+        // The index follows appends and evictions
+        history.append("sinh");
+        history.append("2");
+        history.append("3");
+        assertEquals(List.of("sinh", "sin(30)", "sin(90)"), history.search("sin", 10));
+        history.append("4");
+        assertEquals(List.of("sinh", "sin(30)"), history.search("sin", 10));
+        history.append("5");
+        history.append("6");
+        assertEquals(List.of(), history.search("sin", 10));
+    }
+
+    @Test
+    void testPersistence() throws IOException {
+        Path file = directory.resolve("history").resolve("history.log");
+        HistoryStore history = HistoryStore.open(file, 10);
+        history.append("2+2");
+        history.append("√(π)");
+        history.close();
+        assertThrows(IllegalStateException.class, () -> history.append("1"));
+
+        HistoryStore reopened = HistoryStore.open(file, 10);
+        assertEquals(List.of("2+2", "√(π)"), entries(reopened));
+        reopened.append("3");
+        reopened.flush();
+        assertEquals(List.of("3", "√(π)"), reopened.search("", 2));
+        reopened.close();
+
+        // Opening with a smaller capacity keeps the most recent entries
+        HistoryStore smaller = HistoryStore.open(file, 2);
+        assertEquals(List.of("√(π)", "3"), entries(smaller));
+        smaller.close();
+    }
+
+    @Test
+    void testLogIsRewrittenWhenFull() throws IOException {
+        Path file = directory.resolve("history.log");
+        HistoryStore history = HistoryStore.open(file, 4);
+        List<String> expected = new ArrayList<>();
+        for (int i = 0; i < 100; i++) {
+            history.append(Integer.toString(i));
+            expected.add(Integer.toString(i));
+            if (i % 7 == 0) {
+                history.flush();
+            }
+        }
+        history.close();
+        // Header and at most twice the capacity of 8-byte records with 1 or 2 chars
+        Path compacted = directory.resolve("history.log.compacted");
+        assertTrue(Files.size(compacted) <= 8 + 8 * 10 * 2);
+
+        // The compacted file replaces the mapped one when reopening
+        HistoryStore reopened = HistoryStore.open(file, 4);
+        assertEquals(expected.subList(96, 100), entries(reopened));
+        reopened.close();
+        assertFalse(Files.exists(compacted));
+        assertTrue(Files.size(file) <= 8 + 8 * 10 * 2);
+    }
+
+    @Test
+    void testWriteFailureIsReportedOnAppend() throws IOException {
+        Path file = directory.resolve("history.log");
+        HistoryStore full = HistoryStore.open(file, 10);
+        for (int i = 0; i < 4; i++) {
+            full.append(Integer.toString(i));
+        }
+        full.close();
+
+        // The rewritten log cannot be created
+        Files.createDirectory(directory.resolve("history.log.tmp"));
+        HistoryStore history = HistoryStore.open(file, 2);
+        history.append("4");
+        assertTimeoutPreemptively(Duration.ofSeconds(10), () -> assertThrows(IOException.class, () -> {
+            while (true) {
+                history.flush();
+                Thread.sleep(1);
+            }
+        }));
+        assertThrows(UncheckedIOException.class, () -> history.append("5"));
+        history.append("6");
+        assertEquals(List.of("5", "6"), entries(history));
+        history.close();
+    }
+
+    @Test
+    void testTruncatedLog() throws IOException {
+        Path file = directory.resolve("history.log");
+        HistoryStore history = HistoryStore.open(file, 10);
+        history.append("1+1");
+        history.append("2+2");
+        history.close();
+
+        // A record cut short, as if the process died while writing it
+        long size = Files.size(file);
+        Files.write(file, new byte[] {0, 0, 0, 9, 1, 2, 3}, StandardOpenOption.APPEND);
+        HistoryStore reopened = HistoryStore.open(file, 10);
+        assertEquals(List.of("1+1", "2+2"), entries(reopened));
+        assertEquals(size, Files.size(file));
+        reopened.append("3+3");
+        reopened.close();
+
+        // A corrupted record ends the log
+        byte[] bytes = Files.readAllBytes(file);
+        bytes[bytes.length - 1] = '4';
+        Files.write(file, bytes);
+        HistoryStore corrupted = HistoryStore.open(file, 10);
+        assertEquals(List.of("1+1", "2+2"), entries(corrupted));
+        corrupted.close();
+    }
+
+    @Test
+    void testNotAHistoryFile() throws IOException {
+        Path file = directory.resolve("notes.txt");
+        Files.write(file, "some text that is not a history".getBytes(StandardCharsets.UTF_8));
+        assertEquals("Not a history file: " + file,
+                assertThrows(IOException.class, () -> HistoryStore.open(file, 10)).getMessage());
+    }
+
+    private static List<String> entries(HistoryStore history) {
+        List<String> entries = new ArrayList<>();
+        for (int i = 0; i < history.size(); i++) {
+            entries.add(history.get(i));
+        }
+        return entries;
+    }
+}
@@ -0,0 +1,92 @@
+package my.calculator.runner;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+import my.calculator.core.CalculatorLogic;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+class FileEvaluatorTest {
+
+    private static final String[] EXPRESSIONS = {
+        "1+1", "2π", "√(16)÷4", "5/0", "sin(30)*2", "3!+ln(e)", "(1+2", "10^x(2)", "", "0.1+0.2"
+    };
+
+    @TempDir
+    Path directory;
+
+    private static String expected(String line) {
+        try {
+            return CalculatorLogic.calculate(line);
+        } catch (ArithmeticException | IllegalArgumentException e) {
+            return "Error: " + e.getMessage();
+        }
+    }
+
+    @Test
+    void testResultsAreInInputOrder() throws IOException {
+        Random random = new Random(5);
+        List<String> lines = new ArrayList<>();
+        List<String> expected = new ArrayList<>();
+        int errors = 0;
+        for (int i = 0; i < 20_000; i++) {
+            String line = EXPRESSIONS[random.nextInt(EXPRESSIONS.length)] + (random.nextInt(3) == 0 ? "+" + i : "");
+            lines.add(line);
+            expected.add(expected(line));
+            if (expected.get(i).startsWith("Error: ")) {
+                errors++;
+            }
+        }
+        Path input = directory.resolve("input.txt");
+        Path output = directory.resolve("output.txt");
+        Files.write(input, lines, StandardCharsets.UTF_8);
+
+        // Small regions and chunks, so that lines straddle both
+        FileEvaluator.Summary summary = new FileEvaluator(4, 4096, 300).evaluate(input, output);
+
+        assertEquals(expected, Files.readAllLines(output, StandardCharsets.UTF_8));
+        assertEquals(lines.size(), summary.getLines());
+        assertEquals(errors, summary.getErrors());
+        assertEquals(FileEvaluator.MAX_REPORTED_ERRORS, summary.getErrorLines().size());
+        FileEvaluator.LineError first = summary.getErrorLines().get(0);
+        assertEquals(expected.get((int) first.getLine() - 1), "Error: " + first.getMessage());
+    }
+
+    @Test
+    void testLineEndings() throws IOException {
+        Path input = directory.resolve("input.txt");
+        Path output = directory.resolve("output.txt");
+        // Windows line endings, a line longer than a region, and no newline at the end
+        String longLine = "1" + "+1".repeat(100);
+        Files.write(input, ("2*3\r\n" + longLine + "\n5/0\n7").getBytes(StandardCharsets.UTF_8));
+
+        FileEvaluator.Summary summary = new FileEvaluator(2, 16, 8).evaluate(input, output);
+
+        assertEquals(List.of("6", "101", "Error: Cannot divide by zero", "7"),
+                Files.readAllLines(output, StandardCharsets.UTF_8));
+        assertEquals(4, summary.getLines());
+        assertEquals(1, summary.getErrors());
+        assertEquals(3, summary.getErrorLines().get(0).getLine());
+        assertTrue(summary.getLinesPerSecond() > 0);
+    }
+
+    @Test
+    void testEmptyFile() throws IOException {
+        Path input = Files.createFile(directory.resolve("input.txt"));
+        Path output = directory.resolve("output.txt");
+
+        FileEvaluator.Summary summary = new FileEvaluator(1).evaluate(input, output);
+
+        assertEquals(0, summary.getLines());
+        assertEquals(0, Files.size(output));
+    }
+}
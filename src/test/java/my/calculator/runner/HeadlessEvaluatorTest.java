@@ -0,0 +1,49 @@
+package my.calculator.runner;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+
+import my.calculator.core.CalculatorLogic;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import org.junit.jupiter.api.Test;
+
+class HeadlessEvaluatorTest {
+
+    private static String run(String input, int threads) throws IOException {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        new HeadlessEvaluator(threads).run(new ByteArrayInputStream(input.getBytes(StandardCharsets.UTF_8)), out);
+        return out.toString(StandardCharsets.UTF_8);
+    }
+
+    @Test
+    void testResultsAreInInputOrder() throws IOException {
+        StringBuilder input = new StringBuilder();
+        StringBuilder expected = new StringBuilder();
+        // Several full batches and a partial one
+        for (int i = 0; i < 5 * HeadlessEvaluator.MAX_BATCH_LINES + 7; i++) {
+            String line = (i % 10 == 0) ? i + "/0" : "√(" + i + ")+π";
+            input.append(line).append('\n');
+            if (i % 10 == 0) {
+                expected.append("Error: Cannot divide by zero\n");
+            } else {
+                expected.append(CalculatorLogic.calculate(line)).append('\n');
+            }
+        }
+        assertEquals(expected.toString(), run(input.toString(), 4));
+    }
+
+    @Test
+    void testLineEndings() throws IOException {
+        assertEquals("6\nError: Invalid expression\n7\n", run("2*3\r\n()\n7", 2));
+        assertEquals("", run("", 1));
+    }
+
+    @Test
+    void testInvalidThreadCount() {
+        assertThrows(IllegalArgumentException.class, () -> new HeadlessEvaluator(0));
+    }
+}
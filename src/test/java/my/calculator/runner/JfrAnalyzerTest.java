@@ -0,0 +1,78 @@
+package my.calculator.runner;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.PrintStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.List;
+import java.util.Map;
+import jdk.jfr.Recording;
+
+import my.calculator.core.CalculatorLogic;
+import my.calculator.core.EvaluateEvent;
+import my.calculator.core.ParseEvent;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+class JfrAnalyzerTest {
+
+    @TempDir
+    Path directory;
+
+    @Test
+    void testReport() throws IOException {
+        // A sum long enough to be the slowest expression of the recording
+        StringBuilder sum = new StringBuilder("1");
+        for (int i = 0; i < 20_000; i++) {
+            sum.append("+1");
+        }
+        String slow = sum.append("+0.0625").toString();
+
+        Path file = directory.resolve("recording.jfr");
+        try (Recording recording = new Recording()) {
+            recording.enable(ParseEvent.NAME).withThreshold(Duration.ZERO);
+            recording.enable(EvaluateEvent.NAME).withThreshold(Duration.ZERO);
+            recording.start();
+            // Expressions no other test calculates, in case the default engine has caches
+            CalculatorLogic.calculate("2+2.0625");
+            CalculatorLogic.calculate(slow);
+            assertThrows(ArithmeticException.class, () -> CalculatorLogic.calculate("5/0+0.0625"));
+            recording.stop();
+            recording.dump(file);
+        }
+
+        JfrAnalyzer.Report report = JfrAnalyzer.analyze(file);
+        assertEquals(3, report.getParse().getDurations().getCount());
+        assertEquals(Map.of("ok", 3L), report.getParse().getOutcomes());
+        assertEquals(Map.of("ok", 2L, "ArithmeticException", 1L), report.getEvaluate().getOutcomes());
+
+        List<JfrAnalyzer.Expression> slowest = report.getSlowest(2);
+        assertEquals(2, slowest.size());
+        JfrAnalyzer.Expression first = slowest.get(0);
+        assertEquals(slow.hashCode(), first.getHash());
+        assertEquals(slow.length(), first.getLength());
+        assertEquals(40_003, first.getTokenCount());
+        assertEquals(2, first.getCount());
+        assertEquals(first.getMaxNanos(), Math.max(first.getParseNanos(), first.getEvaluateNanos()));
+
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        report.print(new PrintStream(out, true, StandardCharsets.UTF_8), 10);
+        String printed = out.toString(StandardCharsets.UTF_8);
+        assertTrue(printed.contains(String.format("%08x", slow.hashCode())), printed);
+        assertTrue(printed.contains("{ArithmeticException=1, ok=2}"), printed);
+    }
+
+    @Test
+    void testNotARecording() throws IOException {
+        Path file = directory.resolve("notes.txt");
+        Files.writeString(file, "not a recording");
+        assertThrows(IOException.class, () -> JfrAnalyzer.analyze(file));
+    }
+}
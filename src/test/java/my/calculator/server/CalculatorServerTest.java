@@ -0,0 +1,127 @@
+package my.calculator.server;
+
+import java.io.IOException;
+import java.net.URI;
+import java.net.URLEncoder;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.nio.charset.StandardCharsets;
+import java.util.List;
+import java.util.Map;
+
+import my.calculator.core.AngleUnit;
+import my.calculator.core.CalculatorEngine;
+import my.calculator.core.CalculatorLogic;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+class CalculatorServerTest {
+
+    private CalculatorServer server;
+    private HttpClient client;
+
+    @BeforeEach
+    void startServer() throws IOException {
+        server = CalculatorServer.start(0);
+        client = HttpClient.newBuilder().version(HttpClient.Version.HTTP_1_1).build();
+    }
+
+    @AfterEach
+    void stopServer() {
+        server.close();
+    }
+
+    private HttpResponse<String> post(String path, String contentType, String body)
+            throws IOException, InterruptedException {
+        HttpRequest.Builder request = HttpRequest.newBuilder(URI.create("http://localhost:" + server.getPort() + path))
+                .POST(HttpRequest.BodyPublishers.ofString(body));
+        if (contentType != null) {
+            request.header("Content-Type", contentType);
+        }
+        return client.send(request.build(), HttpResponse.BodyHandlers.ofString());
+    }
+
+    private HttpResponse<String> get(String path) throws IOException, InterruptedException {
+        HttpRequest request = HttpRequest.newBuilder(URI.create("http://localhost:" + server.getPort() + path)).build();
+        return client.send(request, HttpResponse.BodyHandlers.ofString());
+    }
+
+    @Test
+    void testEvaluate() throws Exception {
+        HttpResponse<String> response = post("/evaluate", null, "√(16)÷4+π");
+        assertEquals(200, response.statusCode());
+        assertEquals("{\"result\":\"4.1415926536\"}", response.body());
+
+        response = post("/evaluate", "application/json", "{\"expression\": \"2*\\u00b3\"}");
+        assertEquals(400, response.statusCode());
+        assertEquals("{\"error\":\"Invalid token at position 2\"}", response.body());
+
+        response = get("/evaluate?expression=" + URLEncoder.encode("5/0", StandardCharsets.UTF_8));
+        assertEquals(400, response.statusCode());
+        assertEquals("{\"error\":\"Cannot divide by zero\"}", response.body());
+
+        response = get("/evaluate?expression=" + URLEncoder.encode("2+3", StandardCharsets.UTF_8));
+        assertEquals("{\"result\":\"5\"}", response.body());
+        // Parsed expressions are kept for later requests, without touching the default engine
+        assertNotNull(server.getEngine().getExpressionCache());
+        assertNull(CalculatorLogic.getExpressionCache());
+    }
+
+    @Test
+    void testGivenEngine() throws Exception {
+        server.close();
+        server = CalculatorServer.start(0, CalculatorEngine.builder().angleUnit(AngleUnit.RADIANS).build());
+        assertEquals("{\"result\":\"-1\"}", post("/evaluate", null, "cos(π)").body());
+        assertEquals("-1\n", post("/batch", null, "cos(π)").body());
+    }
+
+    @Test
+    void testBatch() throws Exception {
+        HttpResponse<String> response = post("/batch", "application/json", "[\"1+1\", \"5/0\", 3]");
+        assertEquals(200, response.statusCode());
+        assertEquals("[{\"result\":\"2\"},{\"error\":\"Cannot divide by zero\"},"
+                + "{\"error\":\"Expression must be a string\"}]", response.body());
+
+        response = post("/batch", "text/plain", "2*3\r\n(1+2\nsin(30)");
+        assertEquals(200, response.statusCode());
+        assertEquals("6\nError: Mismatched parentheses\n0.5\n", response.body());
+    }
+
+    @Test
+    void testInvalidRequests() throws Exception {
+        assertEquals(400, post("/batch", "application/json", "[\"1+1\"").statusCode());
+        assertEquals(400, post("/evaluate", "application/json", "{\"expr\": \"1\"}").statusCode());
+        assertEquals(400, get("/evaluate").statusCode());
+        assertEquals(405, get("/batch").statusCode());
+        assertEquals(400, post("/batch", "application/json", "[".repeat(100_000)).statusCode());
+    }
+
+    @Test
+    void testJson() {
+        assertEquals(List.of("a\"b", 1.5, true, Map.of("x", List.of())),
+                Json.parse(" [\"a\\\"b\", 1.5, true, {\"x\": []}] "));
+        assertEquals("\"π\\n\\u0001\"", Json.quote("π\n\u0001", new StringBuilder()).toString());
+        assertThrows(IllegalArgumentException.class, () -> Json.parse("[1,]"));
+        assertThrows(IllegalArgumentException.class, () -> Json.parse("{\"a\" 1}"));
+
+        String nested = "[{\"a\":".repeat(Json.MAX_DEPTH / 2) + "1" + "}]".repeat(Json.MAX_DEPTH / 2);
+        assertEquals(1.0, unwrap(Json.parse(nested), Json.MAX_DEPTH / 2));
+        assertTrue(assertThrows(IllegalArgumentException.class, () -> Json.parse("[" + nested + "]"))
+                .getMessage().startsWith("Invalid JSON: Too deeply nested"));
+    }
+
+    private static Object unwrap(Object value, int levels) {
+        for (int i = 0; i < levels; i++) {
+            value = ((Map<?, ?>) ((List<?>) value).get(0)).get("a");
+        }
+        return value;
+    }
+}
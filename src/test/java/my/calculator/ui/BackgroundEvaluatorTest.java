@@ -0,0 +1,85 @@
+package my.calculator.ui;
+
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import javax.swing.SwingUtilities;
+
+import my.calculator.core.CalculatorLogic;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import org.junit.jupiter.api.Test;
+
+class BackgroundEvaluatorTest {
+    private final BlockingQueue<String> outcomes = new ArrayBlockingQueue<>(10);
+
+    @Test
+    void testResultsAndErrors() throws Exception {
+        BackgroundEvaluator evaluator = new BackgroundEvaluator(CalculatorLogic::calculate, 5000);
+        evaluate(evaluator, "2+2");
+        assertEquals("result 4", outcomes.poll(5, TimeUnit.SECONDS));
+        evaluate(evaluator, "1/0");
+        assertEquals("error Cannot divide by zero", outcomes.poll(5, TimeUnit.SECONDS));
+    }
+
+    @Test
+    void testTimeout() throws Exception {
+        CountDownLatch release = new CountDownLatch(1);
+        BackgroundEvaluator evaluator = new BackgroundEvaluator(expression -> {
+            awaitUninterruptibly(release);
+            return expression;
+        }, 100);
+        evaluate(evaluator, "slow");
+        assertEquals("error Evaluation timed out", outcomes.poll(5, TimeUnit.SECONDS));
+        release.countDown();
+        // The outcome of the abandoned evaluation is discarded
+        assertNull(outcomes.poll(300, TimeUnit.MILLISECONDS));
+    }
+
+    @Test
+    void testCancel() throws Exception {
+        CountDownLatch release = new CountDownLatch(1);
+        BackgroundEvaluator evaluator = new BackgroundEvaluator(expression -> {
+            if (expression.equals("slow")) {
+                awaitUninterruptibly(release);
+            }
+            return expression;
+        }, 5000);
+        evaluate(evaluator, "slow");
+        SwingUtilities.invokeAndWait(() -> {
+            assertTrue(evaluator.isRunning());
+            assertTrue(evaluator.cancel());
+            assertFalse(evaluator.isRunning());
+        });
+        // A new evaluation does not wait for the cancelled one
+        evaluate(evaluator, "fast");
+        assertEquals("result fast", outcomes.poll(5, TimeUnit.SECONDS));
+        release.countDown();
+        assertNull(outcomes.poll(300, TimeUnit.MILLISECONDS));
+    }
+
+    private void evaluate(BackgroundEvaluator evaluator, String expression) throws Exception {
+        SwingUtilities.invokeAndWait(() -> evaluator.evaluate(expression,
+                result -> outcomes.add("result " + result), message -> outcomes.add("error " + message)));
+    }
+
+    /** Blocks like an evaluation that does not check for interruption. */
+    private static void awaitUninterruptibly(CountDownLatch latch) {
+        boolean interrupted = false;
+        while (latch.getCount() > 0) {
+            try {
+                latch.await();
+            } catch (InterruptedException e) {
+                interrupted = true;
+            }
+        }
+        if (interrupted) {
+            Thread.currentThread().interrupt();
+        }
+    }
+}
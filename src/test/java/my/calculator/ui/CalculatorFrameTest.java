@@ -2,6 +2,7 @@ package my.calculator.ui;
 
 import java.awt.event.ActionEvent;
 import java.lang.reflect.InvocationTargetException;
+import java.util.concurrent.atomic.AtomicBoolean;
 
 import javax.swing.SwingUtilities;
 
@@ -38,7 +39,19 @@ class CalculatorFrameTest {
             calculator.new ButtonClickListener().actionPerformed(
                 new ActionEvent(calculator, ActionEvent.ACTION_PERFORMED, "=")
             );
-            assertEquals("4", calculator.getCurrentText(), "Basic addition should work");
         });
+        awaitEvaluation();
+        SwingUtilities.invokeAndWait(() ->
+            assertEquals("4", calculator.getCurrentText(), "Basic addition should work"));
+    }
+
+    /** Waits until the background evaluation has posted its result. */
+    private void awaitEvaluation() throws InvocationTargetException, InterruptedException {
+        AtomicBoolean evaluating = new AtomicBoolean(true);
+        long deadline = System.currentTimeMillis() + 5000;
+        while (evaluating.get() && System.currentTimeMillis() < deadline) {
+            Thread.sleep(10);
+            SwingUtilities.invokeAndWait(() -> evaluating.set(calculator.isEvaluating()));
+        }
     }
 }
\ No newline at end of file
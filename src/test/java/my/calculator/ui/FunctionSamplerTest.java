@@ -0,0 +1,67 @@
+package my.calculator.ui;
+
+import my.calculator.core.CalculatorLogic;
+import my.calculator.core.CompiledExpression;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import org.junit.jupiter.api.Test;
+
+class FunctionSamplerTest {
+
+    private static final double SCALE = 0.125;
+
+    @Test
+    void testSamplesAreTheFunctionAtColumnEdges() {
+        CompiledExpression function = CalculatorLogic.compile("x^2-3x", "x");
+        FunctionSampler.Samples samples = new FunctionSampler(function).sample(-40, 80, SCALE, 1);
+        assertEquals(81, samples.edges.length);
+        for (int c = 0; c <= 80; c++) {
+            assertEquals(function.evaluate(new double[] {(c - 40) * SCALE}), samples.edges[c], "column " + c);
+        }
+    }
+
+    @Test
+    void testPanningOnlyEvaluatesExposedColumns() {
+        FunctionSampler sampler = new FunctionSampler(CalculatorLogic.compile("x/2", "x"));
+        FunctionSampler.Samples first = sampler.sample(0, 100, SCALE, SCALE);
+        assertEquals(101, sampler.getEvaluations());
+
+        FunctionSampler.Samples right = sampler.sample(10, 100, SCALE, SCALE);
+        assertEquals(111, sampler.getEvaluations());
+        assertEquals(first.edges[10], right.edges[0]);
+        assertEquals(55 * SCALE, right.edges[100]);
+
+        sampler.sample(-5, 100, SCALE, SCALE);
+        assertEquals(126, sampler.getEvaluations());
+
+        // Zooming samples every column again
+        sampler.sample(-5, 100, SCALE / 2, SCALE / 2);
+        assertEquals(227, sampler.getEvaluations());
+    }
+
+    @Test
+    void testSteepColumnsAreRefined() {
+        // A line rising 8 pixels per column, then flat
+        FunctionSampler.Samples samples = new FunctionSampler(CalculatorLogic.compile("8x", "x"))
+                .sample(0, 10, 1, 1);
+        assertEquals(3, samples.inner[0].length);
+        assertEquals(4, samples.inner[0][1]);
+        assertNull(new FunctionSampler(CalculatorLogic.compile("x/8", "x")).sample(0, 10, 1, 1).inner[0]);
+
+        // Around the pole of 1/x, the edge at 0 is NaN and both columns are sampled densely
+        FunctionSampler.Samples pole = new FunctionSampler(CalculatorLogic.compile("1/x", "x"))
+                .sample(-2, 4, SCALE, SCALE);
+        assertTrue(Double.isNaN(pole.edges[2]));
+        assertEquals(FunctionSampler.MAX_SUBSAMPLES, pole.inner[1].length);
+        assertEquals(FunctionSampler.MAX_SUBSAMPLES, pole.inner[2].length);
+        assertTrue(pole.inner[2][0] > 100);
+
+        // Outside of the domain of √, nothing is refined
+        FunctionSampler.Samples root = new FunctionSampler(CalculatorLogic.compile("√(x)", "x"))
+                .sample(-10, 5, SCALE, SCALE);
+        assertTrue(Double.isNaN(root.edges[0]));
+        assertNull(root.inner[0]);
+    }
+}
@@ -0,0 +1,71 @@
+package my.calculator.ui;
+
+import java.lang.reflect.InvocationTargetException;
+import java.util.concurrent.atomic.AtomicReference;
+
+import javax.swing.JLabel;
+import javax.swing.SwingUtilities;
+
+import my.calculator.core.CalculatorEngine;
+import my.calculator.core.Workbook;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import org.junit.jupiter.api.Test;
+
+class LivePreviewTest {
+    private final JLabel label = new JLabel();
+    private final Workbook workbook = new Workbook(CalculatorEngine.builder().build());
+    private final LivePreview preview = new LivePreview(label, 20, workbook);
+
+    @Test
+    void testPreviewWhileTyping() throws Exception {
+        String text = "";
+        for (String typed : new String[] {"2", "+", "s", "i", "n", "(", "3", "0", ")"}) {
+            String before = text;
+            text += typed;
+            String after = text;
+            SwingUtilities.invokeAndWait(() -> preview.edited(after, before.length()));
+        }
+        assertEquals("= 2.5", awaitPreview("= 2.5"));
+    }
+
+    @Test
+    void testInvalidExpressionShowsNothing() throws Exception {
+        SwingUtilities.invokeAndWait(() -> preview.edited("1+2", 0));
+        assertEquals("= 3", awaitPreview("= 3"));
+        SwingUtilities.invokeAndWait(() -> preview.edited("1+2*", 3));
+        Thread.sleep(300);
+        assertEquals("", labelText());
+        SwingUtilities.invokeAndWait(() -> preview.edited("1+2*4", 4));
+        assertEquals("= 9", awaitPreview("= 9"));
+        SwingUtilities.invokeAndWait(() -> preview.edited("1/0", 0));
+        Thread.sleep(300);
+        assertEquals("", labelText());
+    }
+
+    @Test
+    void testCells() throws Exception {
+        workbook.evaluate("b = 3");
+        SwingUtilities.invokeAndWait(() -> preview.edited("b*2", 0));
+        assertEquals("= 6", awaitPreview("= 6"));
+        workbook.evaluate("b = 4");
+        SwingUtilities.invokeAndWait(() -> preview.edited("b*2+1", 3));
+        assertEquals("= 9", awaitPreview("= 9"));
+    }
+
+    private String awaitPreview(String expected) throws Exception {
+        long deadline = System.currentTimeMillis() + 5000;
+        String text = labelText();
+        while (!expected.equals(text) && System.currentTimeMillis() < deadline) {
+            Thread.sleep(10);
+            text = labelText();
+        }
+        return text;
+    }
+
+    private String labelText() throws InvocationTargetException, InterruptedException {
+        AtomicReference<String> text = new AtomicReference<>();
+        SwingUtilities.invokeAndWait(() -> text.set(label.getText()));
+        return text.get();
+    }
+}
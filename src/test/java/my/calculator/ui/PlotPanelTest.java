@@ -0,0 +1,97 @@
+package my.calculator.ui;
+
+import java.awt.Color;
+import java.awt.image.BufferedImage;
+import java.util.concurrent.TimeUnit;
+
+import my.calculator.core.CalculatorEngine;
+import my.calculator.core.Workbook;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import org.junit.jupiter.api.Test;
+
+class PlotPanelTest {
+
+    private static void await(PlotPanel plot) throws Exception {
+        plot.rendered().get(10, TimeUnit.SECONDS);
+    }
+
+    /**
+     * Returns true if the curve is drawn within a pixel of a point.
+     */
+    private static boolean isCurveNear(BufferedImage image, int x, int y) {
+        for (int dx = -1; dx <= 1; dx++) {
+            for (int dy = -1; dy <= 1; dy++) {
+                int rgb = image.getRGB(x + dx, y + dy);
+                // Orange, rather than the gray axes or the background
+                if (((rgb >> 16) & 0xff) > 150 && (rgb & 0xff) < 100) {
+                    return true;
+                }
+            }
+        }
+        return false;
+    }
+
+    @Test
+    void testRendering() throws Exception {
+        PlotPanel plot = new PlotPanel();
+        plot.setSize(200, 100);
+        plot.setExpression("x");
+        await(plot);
+        BufferedImage image = plot.getImage();
+        assertNotNull(image);
+        assertEquals(200, image.getWidth());
+
+        // The origin is at the center, and both axes have the same scale
+        assertTrue(isCurveNear(image, 120, 30));
+        assertTrue(isCurveNear(image, 70, 80));
+        assertTrue(!isCurveNear(image, 120, 70));
+        assertEquals(Color.GRAY.getRGB(), image.getRGB(100, 90));
+
+        // Panning only evaluates the exposed columns
+        long evaluations = plot.getEvaluations();
+        plot.pan(-10, 0);
+        await(plot);
+        assertEquals(evaluations + 10, plot.getEvaluations());
+        assertTrue(isCurveNear(plot.getImage(), 110, 30));
+
+        // Zooming out around (0.5, 0.5) keeps it in place, and brings the origin closer
+        plot.resetView();
+        plot.zoom(120, 30, 2);
+        await(plot);
+        assertTrue(isCurveNear(plot.getImage(), 120, 30));
+        assertEquals(Color.GRAY.getRGB(), plot.getImage().getRGB(110, 90));
+        assertEquals(Color.GRAY.getRGB(), plot.getImage().getRGB(10, 40));
+    }
+
+    @Test
+    void testCells() throws Exception {
+        Workbook workbook = new Workbook(CalculatorEngine.builder().build());
+        workbook.evaluate("x = 100");
+        workbook.evaluate("slope = 2");
+        PlotPanel plot = new PlotPanel(workbook);
+        plot.setSize(200, 100);
+        plot.setExpression("slope*x");
+        await(plot);
+        // y = 2x, the x of the plot hiding the cell
+        assertTrue(isCurveNear(plot.getImage(), 110, 30));
+        assertTrue(!isCurveNear(plot.getImage(), 120, 30));
+
+        workbook.evaluate("slope = 1");
+        plot.pan(0, 0);
+        await(plot);
+        assertTrue(isCurveNear(plot.getImage(), 120, 30));
+    }
+
+    @Test
+    void testInvalidExpression() throws Exception {
+        PlotPanel plot = new PlotPanel();
+        plot.setSize(200, 100);
+        plot.setExpression("2+");
+        await(plot);
+        assertNotNull(plot.getImage());
+        assertEquals(0, plot.getEvaluations());
+    }
+}